@@ -0,0 +1,65 @@
+package com.ac.games.rest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ac.games.rest.controller.AutocompleteController;
+import com.ac.games.rest.controller.AutocompleteController.GameAutoValue;
+
+/**
+ * Measures breaking down the autocomplete values the UI sends back to GET /autocomplete, in each
+ * of the formats the name lists produce.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AutocompleteParseBenchmark {
+
+  public String publisherAndYear = "Five Tribes (Days of Wonder - 2014)";
+  public String yearOnly         = "Five Tribes (2014)";
+  public String publisherOnly    = "Five Tribes (Days of Wonder)";
+  public String bggValue         = "Five Tribes (157354 - 2014)";
+  public String csiValue         = "Five Tribes (203495 - Board Games)";
+
+  @Benchmark
+  public GameAutoValue gamePublisherAndYear() {
+    return AutocompleteController.parseGameAutoValue(publisherAndYear);
+  }
+
+  @Benchmark
+  public GameAutoValue gameYearOnly() {
+    return AutocompleteController.parseGameAutoValue(yearOnly);
+  }
+
+  /**
+   * The slow one: the year parse fails, and we pay for the NumberFormatException
+   */
+  @Benchmark
+  public GameAutoValue gamePublisherOnly() {
+    return AutocompleteController.parseGameAutoValue(publisherOnly);
+  }
+
+  @Benchmark
+  public long bggID() {
+    return AutocompleteController.parseAutoValueID(bggValue);
+  }
+
+  @Benchmark
+  public long csiID() {
+    return AutocompleteController.parseAutoValueID(csiValue);
+  }
+}
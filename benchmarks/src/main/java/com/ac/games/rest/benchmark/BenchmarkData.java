@@ -0,0 +1,193 @@
+package com.ac.games.rest.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CollectionItem;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameType;
+import com.ac.games.data.GameWeight;
+import com.ac.games.data.MiniatureMarketPriceData;
+
+/**
+ * Synthetic catalog and collection data for the controller hot path benchmarks.  Everything is
+ * built from a fixed seed, so every run measures the same data.
+ *
+ * @author ac010168
+ */
+public class BenchmarkData {
+
+  public static final String[] MECHANICS = new String[] {
+    "Hand Management", "Worker Placement", "Deck / Pool Building", "Area Control / Area Influence",
+    "Dice Rolling", "Set Collection", "Tile Placement", "Variable Player Powers", "Cooperative Play",
+    "Auction/Bidding", "Route/Network Building", "Trading", "Simultaneous Action Selection"
+  };
+
+  private static final GameWeight[] WEIGHTS = GameWeight.values();
+
+  /**
+   * Build a collection where roughly one game in four is an expansion, and a third of those
+   * expansions belong to a base game that isn't in the collection.
+   *
+   * @param size The number of items
+   *
+   * @return The collection items
+   */
+  public static List<CollectionItem> collection(int size) {
+    Random random = new Random(42L);
+    List<CollectionItem> items = new ArrayList<CollectionItem>(size);
+    for (int i = 0; i < size; i++) {
+      long gameID = 1000 + i;
+      Game game = game(random, gameID);
+      if ((i % 4 == 3) && (i > 0)) {
+        game.setGameType(GameType.EXPANSION);
+        //Mostly expansions for games we own, the rest orphaned
+        game.setParentGameID((i % 3 == 0) ? 900000 + i : gameID - 1 - random.nextInt(Math.min(i, 3)));
+      }
+
+      CollectionItem item = new CollectionItem();
+      item.setItemID(50000 + i);
+      item.setGameID(gameID);
+      item.setGame(game);
+      item.setDateAcquired(new Date(1400000000000L + (i * 86400000L)));
+      item.setWhereAcquired("Benchmark");
+      item.setOverrideMinPlayers(-1);
+      item.setOverrideMaxPlayers(-1);
+      item.setOverrideMinTime(-1);
+      item.setOverrideMaxTime((i % 10 == 0) ? 240 : -1);
+      List<GameWeight> weights = new ArrayList<GameWeight>(2);
+      weights.add(WEIGHTS[random.nextInt(WEIGHTS.length)]);
+      weights.add(WEIGHTS[random.nextInt(WEIGHTS.length)]);
+      item.setWeights(weights);
+      items.add(item);
+    }
+    return items;
+  }
+
+  /**
+   * Build matching database and BGG copies of the same games.  The BGG copies have a fresher
+   * rating and rank, and come back from BGG in reverse order.
+   *
+   * @param count The number of games
+   * @param dbSources The database copies are added here
+   * @param bggSources The BGG copies are added here
+   */
+  public static void bggGames(int count, List<BGGGame> dbSources, List<BGGGame> bggSources) {
+    for (int i = 0; i < count; i++) {
+      dbSources.add(bggGame(new Random(i), 150000 + i, 7.1));
+      bggSources.add(0, bggGame(new Random(i), 150000 + i, 7.3));
+    }
+  }
+
+  /**
+   * @param csiID The csiID
+   *
+   * @return A CSI listing
+   */
+  public static CoolStuffIncPriceData csiListing(long csiID) {
+    CoolStuffIncPriceData data = new CoolStuffIncPriceData();
+    data.setCsiID(csiID);
+    data.setTitle("Benchmark Game " + csiID);
+    data.setCurPrice(39.99 + (csiID % 20));
+    data.setMsrpValue(59.99);
+    data.setImageURL("http://www.coolstuffinc.com/images/" + csiID + ".jpg");
+    setAvailability(data, "INSTOCK");
+    return data;
+  }
+
+  /**
+   * @param mmID The mmID
+   *
+   * @return An MM listing
+   */
+  public static MiniatureMarketPriceData mmListing(long mmID) {
+    MiniatureMarketPriceData data = new MiniatureMarketPriceData();
+    data.setMmID(mmID);
+    data.setTitle("Benchmark Game " + mmID);
+    data.setSku("BMK" + mmID);
+    data.setCurPrice(-1.0);
+    data.setMsrpValue(49.99);
+    data.setImageURL("http://www.miniaturemarket.com/media/" + mmID + ".jpg");
+    setAvailability(data, "PREORDER");
+    return data;
+  }
+
+  private static Game game(Random random, long gameID) {
+    Game game = new Game();
+    game.setGameID(gameID);
+    game.setBggID(100000 + gameID);
+    game.setName("Benchmark Game " + gameID);
+    game.setYearPublished(1995 + random.nextInt(20));
+    game.setMinPlayers(1 + random.nextInt(2));
+    game.setMaxPlayers(2 + random.nextInt(5));
+    game.setMinPlayingTime(15 * (1 + random.nextInt(4)));
+    game.setMaxPlayingTime(30 * (1 + random.nextInt(6)));
+    game.setImageThumbnailURL("http://cf.geekdo-images.com/images/pic" + gameID + "_t.jpg");
+    game.setGameType((random.nextInt(20) == 0) ? GameType.COLLECTIBLE : GameType.BASE);
+    game.setParentGameID(-1);
+    game.setMechanisms(mechanics(random));
+    return game;
+  }
+
+  private static BGGGame bggGame(Random random, long bggID, double rating) {
+    BGGGame game = new BGGGame();
+    game.setBggID(bggID);
+    game.setName("Benchmark Game " + bggID);
+    game.setYearPublished(2010);
+    game.setMinPlayers(2);
+    game.setMaxPlayers(4);
+    game.setMinPlayingTime(45);
+    game.setMaxPlayingTime(90);
+    game.setBggRating(rating);
+    game.setBggRatingUsers(1200);
+    game.setBggRank(300);
+    game.setParentGameID(-1);
+    game.setGameType(GameType.BASE);
+    game.setImageURL("http://cf.geekdo-images.com/images/pic" + bggID + ".jpg");
+    game.setImageThumbnailURL("http://cf.geekdo-images.com/images/pic" + bggID + "_t.jpg");
+    StringBuilder description = new StringBuilder(2000);
+    while (description.length() < 1800)
+      description.append("A benchmark game description, about the length of a real BGG one. ");
+    game.setDescription(description.toString());
+    game.setMechanisms(mechanics(random));
+    List<String> publishers = new ArrayList<String>();
+    publishers.add("Benchmark Games");
+    publishers.add("Synthetic Press");
+    game.setPublishers(publishers);
+    List<String> designers = new ArrayList<String>();
+    designers.add("A. Designer");
+    game.setDesigners(designers);
+    List<String> categories = new ArrayList<String>();
+    categories.add("Economic");
+    game.setCategories(categories);
+    return game;
+  }
+
+  private static List<String> mechanics(Random random) {
+    int count = 1 + random.nextInt(4);
+    List<String> mechanics = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++)
+      mechanics.add(MECHANICS[random.nextInt(MECHANICS.length)]);
+    return mechanics;
+  }
+
+  /**
+   * The availability enums live in the pojo jar, and differ between vendors, so look them up
+   * from the getter rather than tying the benchmarks to their names.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static void setAvailability(Object data, String availability) {
+    try {
+      Class enumType = data.getClass().getMethod("getAvailability").getReturnType();
+      Method setter  = data.getClass().getMethod("setAvailability", enumType);
+      setter.invoke(data, Enum.valueOf(enumType, availability));
+    } catch (Exception e) {
+      throw new IllegalStateException("Unable to set the availability on " + data.getClass().getSimpleName(), e);
+    }
+  }
+}
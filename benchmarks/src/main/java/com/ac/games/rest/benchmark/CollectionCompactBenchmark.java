@@ -0,0 +1,67 @@
+package com.ac.games.rest.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ac.games.data.CollectionItem;
+import com.ac.games.data.CompactSearchData;
+import com.ac.games.rest.controller.CollectionController;
+
+/**
+ * Measures the two compact views of GET /collection: the <code>topx</code> display rows and the
+ * <code>compact=y</code> expansion folding.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollectionCompactBenchmark {
+
+  @Param({ "50", "500", "2000" })
+  public int collectionSize;
+
+  private List<CollectionItem> allItems;
+
+  @Setup
+  public void setup() {
+    allItems = BenchmarkData.collection(collectionSize);
+  }
+
+  /**
+   * buildCompact adds to the parents' expansion lists, so clear them before every call or they
+   * grow without bound.  Invocation level setup costs a little accuracy, but these calls take
+   * tens of microseconds, so it's noise.
+   */
+  @Setup(Level.Invocation)
+  public void clearExpansions() {
+    for (CollectionItem item : allItems)
+      item.setExpansionList(null);
+  }
+
+  @Benchmark
+  public List<CompactSearchData> topTwentyFive() {
+    return CollectionController.buildTopX(allItems, 25);
+  }
+
+  @Benchmark
+  public List<CollectionItem> compact() {
+    return CollectionController.buildCompact(allItems);
+  }
+}
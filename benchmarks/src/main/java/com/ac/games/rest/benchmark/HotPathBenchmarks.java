@@ -0,0 +1,35 @@
+package com.ac.games.rest.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the controller hot path benchmarks with the GC profiler attached, so every result comes
+ * with its allocation rate and bytes allocated per operation.  Any extra JMH command line
+ * options (-p collectionSize=500, -rf json, ...) are passed through.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.ac.games.rest.benchmark.HotPathBenchmarks
+ * </pre>
+ *
+ * @author ac010168
+ */
+public class HotPathBenchmarks {
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+      .parent(new CommandLineOptions(args))
+      .include(RecommendBenchmark.class.getSimpleName())
+      .include(HybridMergeBenchmark.class.getSimpleName())
+      .include(CollectionCompactBenchmark.class.getSimpleName())
+      .include(PriceCardBenchmark.class.getSimpleName())
+      .include(AutocompleteParseBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,57 @@
+package com.ac.games.rest.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.rest.controller.BGGDataController;
+
+/**
+ * Measures the database/BGG merge behind GET /external/bggdata?source=hybrid for single games
+ * and for batches.
+ * <p>
+ * The merge updates the database copies in place, so after the first call they already match
+ * BGG.  That's the common case in production too (most refreshes change only the rating), and
+ * it's the expensive one for the String comparisons, which have to run to the end.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HybridMergeBenchmark {
+
+  @Param({ "1", "20", "100" })
+  public int batch;
+
+  private List<BGGGame> dbSources;
+  private List<BGGGame> bggSources;
+
+  @Setup
+  public void setup() {
+    dbSources  = new ArrayList<BGGGame>(batch);
+    bggSources = new ArrayList<BGGGame>(batch);
+    BenchmarkData.bggGames(batch, dbSources, bggSources);
+  }
+
+  @Benchmark
+  public List<BGGGame> mergeHybrid() {
+    return BGGDataController.mergeHybrid(dbSources, bggSources);
+  }
+}
@@ -0,0 +1,139 @@
+package com.ac.games.rest.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+
+import com.ac.games.rest.logging.DroppingAsyncAppender;
+
+/**
+ * Compares 32 concurrent "requests" that each write the eight debug lines the BGG GET used to
+ * print, going through a synchronized PrintStream (what System.out.println does) against the
+ * async logging pipeline, with debug both on and off.
+ * <p>
+ * Both sinks write to real temp files, so the synchronized case pays for the write under its lock
+ * the same way the console did.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingContentionBenchmark {
+
+  /** Simulated request work between the log lines */
+  private static final long REQUEST_TOKENS = 2000;
+
+  private File syncFile;
+  private File asyncFile;
+  private PrintStream syncOut;
+  private LoggerContext context;
+  private Logger debugLogger;
+  private Logger infoLogger;
+
+  @Setup
+  public void setup() throws IOException {
+    syncFile  = File.createTempFile("bench-sync", ".log");
+    asyncFile = File.createTempFile("bench-async", ".log");
+    syncOut   = new PrintStream(new FileOutputStream(syncFile), true);
+
+    context = new LoggerContext();
+    PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+    encoder.setContext(context);
+    encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5level [%thread] %logger{36} - %msg%n");
+    encoder.start();
+
+    FileAppender<ILoggingEvent> fileAppender = new FileAppender<ILoggingEvent>();
+    fileAppender.setContext(context);
+    fileAppender.setFile(asyncFile.getAbsolutePath());
+    fileAppender.setEncoder(encoder);
+    fileAppender.start();
+
+    DroppingAsyncAppender asyncAppender = new DroppingAsyncAppender();
+    asyncAppender.setContext(context);
+    asyncAppender.setName("bench");
+    asyncAppender.addAppender(fileAppender);
+    asyncAppender.start();
+
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.addAppender(asyncAppender);
+    debugLogger = context.getLogger("bench.debug");
+    debugLogger.setLevel(Level.DEBUG);
+    infoLogger = context.getLogger("bench.info");
+    infoLogger.setLevel(Level.INFO);
+  }
+
+  @TearDown
+  public void tearDown() {
+    syncOut.close();
+    context.stop();
+    System.out.println ("Dropped " + DroppingAsyncAppender.getTotalDropped() + " async events");
+    syncFile.delete();
+    asyncFile.delete();
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void synchronizedPrintStream() {
+    syncOut.println ("bggID:    " + 1234);
+    syncOut.println ("name:     " + "null");
+    syncOut.println ("review:   " + "null");
+    syncOut.println ("source:   " + "hybrid");
+    syncOut.println ("batch:    " + 1);
+    syncOut.println ("sync:     " + "n");
+    syncOut.println ("filter:   " + "none");
+    syncOut.println ("execMode: " + 0);
+    Blackhole.consumeCPU(REQUEST_TOKENS);
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void asyncDebugEnabled() {
+    logRequest(debugLogger);
+    Blackhole.consumeCPU(REQUEST_TOKENS);
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void asyncDebugDisabled() {
+    logRequest(infoLogger);
+    Blackhole.consumeCPU(REQUEST_TOKENS);
+  }
+
+  private static void logRequest(Logger logger) {
+    logger.debug("bggID:    {}", 1234);
+    logger.debug("name:     {}", "null");
+    logger.debug("review:   {}", "null");
+    logger.debug("source:   {}", "hybrid");
+    logger.debug("batch:    {}", 1);
+    logger.debug("sync:     {}", "n");
+    logger.debug("filter:   {}", "none");
+    logger.debug("execMode: {}", 0);
+  }
+}
@@ -0,0 +1,58 @@
+package com.ac.games.rest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ac.games.data.CompactPriceData;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.rest.price.PriceCardBuilder;
+
+/**
+ * Measures building the {@link CompactPriceData} cards that /gamereltn and /wishlist?display=full
+ * show for every vendor listing.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceCardBenchmark {
+
+  private CoolStuffIncPriceData csiData;
+  private MiniatureMarketPriceData mmData;
+
+  @Setup
+  public void setup() {
+    csiData = BenchmarkData.csiListing(203495L);
+    mmData  = BenchmarkData.mmListing(40693L);
+  }
+
+  @Benchmark
+  public CompactPriceData csiCard() {
+    return PriceCardBuilder.fromCSI(csiData);
+  }
+
+  @Benchmark
+  public CompactPriceData mmCard() {
+    return PriceCardBuilder.fromMM(mmData);
+  }
+
+  @Benchmark
+  public String formatPrice() {
+    return PriceCardBuilder.formatPrice(csiData.getCurPrice(), csiData.getMsrpValue());
+  }
+}
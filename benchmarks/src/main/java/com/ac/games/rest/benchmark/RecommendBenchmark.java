@@ -0,0 +1,71 @@
+package com.ac.games.rest.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ac.games.data.CollectionItem;
+import com.ac.games.data.GameWeight;
+import com.ac.games.rest.controller.RecommendController;
+import com.ac.games.rest.data.RecommendValues;
+
+/**
+ * Measures the filtering loops behind POST /recommend, for a handful of filter combinations,
+ * across small, typical and very large collections.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecommendBenchmark {
+
+  @Param({ "50", "500", "2000" })
+  public int collectionSize;
+
+  private List<CollectionItem> games;
+
+  @Setup
+  public void setup() {
+    games = BenchmarkData.collection(collectionSize);
+  }
+
+  @Benchmark
+  public List<CollectionItem> allFilters() {
+    RecommendValues values = new RecommendValues();
+    values.setPlayerCount(3);
+    values.setGameLength(60);
+    values.setGameWeight("Medium");
+    values.setMechanic("Worker Placement");
+    return RecommendController.findMatchingGames(games, values, GameWeight.MEDIUM);
+  }
+
+  @Benchmark
+  public List<CollectionItem> mechanicOnly() {
+    RecommendValues values = new RecommendValues();
+    values.setMechanic("Cooperative Play");
+    return RecommendController.findMatchingGames(games, values, null);
+  }
+
+  @Benchmark
+  public List<CollectionItem> firstFiveByPlayerCount() {
+    RecommendValues values = new RecommendValues();
+    values.setPlayerCount(2);
+    values.setRecommendNum(5);
+    return RecommendController.findMatchingGames(games, values, null);
+  }
+}
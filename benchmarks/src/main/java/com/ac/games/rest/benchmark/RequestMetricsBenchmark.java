@@ -0,0 +1,64 @@
+package com.ac.games.rest.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ac.games.rest.metrics.RequestMetricsRegistry;
+
+/**
+ * Measures what {@link com.ac.games.rest.filter.RequestMetricsFilter} adds to every request:
+ * building the route key, and recording into the route's histogram, both on one thread and
+ * with eight threads hammering the same route.
+ *
+ * @author ac010168
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestMetricsBenchmark {
+
+  private RequestMetricsRegistry registry;
+
+  @Setup
+  public void setup() {
+    registry = new RequestMetricsRegistry();
+    registry.record("GET /wishlist?display=full", 1000, false, 0);
+  }
+
+  @Benchmark
+  public String buildRouteKey() {
+    return RequestMetricsRegistry.buildRouteKey("GET", "/wishlist", "userid=12&display=full&token=abc");
+  }
+
+  @Benchmark
+  public void recordSingleThread() {
+    registry.record("GET /wishlist?display=full", ThreadLocalRandom.current().nextInt(100000), false, 2048);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void recordEightThreads() {
+    registry.record("GET /wishlist?display=full", ThreadLocalRandom.current().nextInt(100000), false, 2048);
+  }
+
+  @Benchmark
+  public void recordFullRequest() {
+    String route = RequestMetricsRegistry.buildRouteKey("GET", "/wishlist", "userid=12&display=full&token=abc");
+    registry.record(route, ThreadLocalRandom.current().nextInt(100000), false, 2048);
+  }
+}
@@ -0,0 +1,39 @@
+package com.ac.games.rest.loadtest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * A single request built by a {@link LoadEndpoint}.
+ *
+ * @author ac010168
+ */
+public class LoadCall {
+
+  final String method;
+  final String path;
+  /** The JSON body, or null for the GETs */
+  final Object body;
+
+  private LoadCall(String method, String path, Object body) {
+    this.method = method;
+    this.path   = path;
+    this.body   = body;
+  }
+
+  static LoadCall get(String path) {
+    return new LoadCall("GET", path, null);
+  }
+
+  static LoadCall send(String method, String path, Object body) {
+    return new LoadCall(method, path, body);
+  }
+
+  static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException uee) {
+      throw new IllegalStateException(uee);
+    }
+  }
+}
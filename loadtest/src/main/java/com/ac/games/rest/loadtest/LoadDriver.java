@@ -0,0 +1,261 @@
+package com.ac.games.rest.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.rest.metrics.LatencyHistogram;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sends the weighted request mix at the server from a fixed number of threads, as fast as each
+ * thread gets its answers back (a closed loop, so the server is never asked for more than it can
+ * take).
+ * <p>
+ * Every thread logs in as its own user first.  The run has a warm-up period, whose results are
+ * thrown away so the JIT and the caches have settled, followed by the measured period.  For each
+ * endpoint we keep a latency histogram plus two error counts: requests that failed at the HTTP
+ * level, and requests that came back 200 with a {@link com.ac.games.rest.message.SimpleErrorData}
+ * body, which is how most of the controllers report a failure.
+ *
+ * @author ac010168
+ */
+public class LoadDriver {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+
+  private final String baseURL;
+  private final List<LoadEndpoint> endpoints;
+  private final int[] cumulativeWeights;
+  private final int totalWeight;
+  private final int threadCount;
+  private final int gameCount;
+  private final int userCount;
+  private final long seed;
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private final Map<String, EndpointResults> results = new LinkedHashMap<String, EndpointResults>();
+  private volatile boolean measuring;
+  private volatile long measuredMillis;
+
+  public LoadDriver(String baseURL, List<LoadEndpoint> mix, int threadCount, int gameCount, int userCount, long seed) {
+    this.baseURL     = baseURL;
+    this.threadCount = threadCount;
+    this.gameCount   = gameCount;
+    this.userCount   = userCount;
+    this.seed        = seed;
+
+    endpoints = new ArrayList<LoadEndpoint>();
+    for (LoadEndpoint endpoint : mix) {
+      if (endpoint.weight > 0) endpoints.add(endpoint);
+    }
+    if (endpoints.isEmpty())
+      throw new IllegalArgumentException("Every endpoint in the mix has a weight of 0");
+
+    cumulativeWeights = new int[endpoints.size()];
+    int runningWeight = 0;
+    for (int i = 0; i < endpoints.size(); i++) {
+      runningWeight += endpoints.get(i).weight;
+      cumulativeWeights[i] = runningWeight;
+      results.put(endpoints.get(i).name, new EndpointResults(endpoints.get(i).weight));
+    }
+    totalWeight = runningWeight;
+  }
+
+  /**
+   * Run the load, blocking until it's done.
+   *
+   * @param warmupSeconds   How long to run before we start measuring
+   * @param durationSeconds How long to measure for
+   *
+   * @throws InterruptedException
+   */
+  public void run(long warmupSeconds, long durationSeconds) throws InterruptedException {
+    final long startTime   = System.currentTimeMillis();
+    final long measureFrom = startTime + (warmupSeconds * 1000L);
+    final long endTime     = measureFrom + (durationSeconds * 1000L);
+    final CountDownLatch finished = new CountDownLatch(threadCount);
+
+    for (int i = 0; i < threadCount; i++) {
+      final int threadNum = i;
+      Thread thread = new Thread(new Runnable() {
+        public void run() {
+          try {
+            runThread(threadNum, endTime);
+          } catch (Throwable t) {
+            logger.error("Load thread " + threadNum + " failed", t);
+          } finally {
+            finished.countDown();
+          }
+        }
+      }, "load-" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    logger.info("Warming up for {}s with {} threads", warmupSeconds, threadCount);
+    Thread.sleep(Math.max(0, measureFrom - System.currentTimeMillis()));
+    measuring = true;
+    logger.info("Measuring for {}s", durationSeconds);
+    finished.await();
+    measuredMillis = System.currentTimeMillis() - measureFrom;
+  }
+
+  /**
+   * @return The results for each endpoint, in mix order
+   */
+  public Map<String, EndpointResults> getResults() {
+    return results;
+  }
+
+  /**
+   * @return How long the measured part of the run actually took
+   */
+  public long getMeasuredMillis() {
+    return measuredMillis;
+  }
+
+  private void runThread(int threadNum, long endTime) throws IOException {
+    Random random = new Random(seed + threadNum);
+    LoadSession session = login(1 + (threadNum % userCount));
+
+    while (System.currentTimeMillis() < endTime) {
+      LoadEndpoint endpoint = pickEndpoint(random);
+      LoadCall call = endpoint.next(random, session, gameCount, userCount);
+
+      long startNanos = System.nanoTime();
+      Outcome outcome = send(call);
+      long micros = (System.nanoTime() - startNanos) / 1000L;
+
+      if (measuring) {
+        EndpointResults endpointResults = results.get(endpoint.name);
+        if (outcome == Outcome.HTTP_ERROR)          endpointResults.httpErrors.incrementAndGet();
+        else if (outcome == Outcome.ERROR_RESPONSE) endpointResults.errorResponses.incrementAndGet();
+        endpointResults.latency.record(micros);
+      }
+    }
+  }
+
+  private LoadEndpoint pickEndpoint(Random random) {
+    int pick = random.nextInt(totalWeight);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (pick < cumulativeWeights[i]) return endpoints.get(i);
+    }
+    return endpoints.get(endpoints.size() - 1);
+  }
+
+  private LoadSession login(long userID) throws IOException {
+    Map<String, Object> body = new LinkedHashMap<String, Object>();
+    body.put("userName", "loaduser" + userID);
+    body.put("password", SyntheticData.PASSWORD);
+    HttpURLConnection connection = open(LoadCall.send("POST", "/login", body));
+    try {
+      JsonNode response = mapper.readTree(readBody(connection));
+      if (!response.has("sessionToken"))
+        throw new IOException("Unable to log in loaduser" + userID + ": " + response);
+      return new LoadSession(response.path("userID").asLong(), response.path("collectionID").asLong(), response.path("sessionToken").asText());
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private Outcome send(LoadCall call) {
+    HttpURLConnection connection = null;
+    try {
+      connection = open(call);
+      if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        drain(connection.getErrorStream());
+        return Outcome.HTTP_ERROR;
+      }
+      byte[] body = readBody(connection);
+      return isErrorResponse(body) ? Outcome.ERROR_RESPONSE : Outcome.OK;
+    } catch (IOException ioe) {
+      return Outcome.HTTP_ERROR;
+    }
+  }
+
+  private HttpURLConnection open(LoadCall call) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection)new URL(baseURL + call.path).openConnection();
+    connection.setRequestMethod(call.method);
+    connection.setRequestProperty("Accept", "application/json");
+    connection.setConnectTimeout(5000);
+    connection.setReadTimeout(30000);
+    if (call.body != null) {
+      byte[] body = mapper.writeValueAsBytes(call.body);
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+      connection.setFixedLengthStreamingMode(body.length);
+      OutputStream out = connection.getOutputStream();
+      try {
+        out.write(body);
+      } finally {
+        out.close();
+      }
+    }
+    return connection;
+  }
+
+  private static byte[] readBody(HttpURLConnection connection) throws IOException {
+    InputStream in = connection.getInputStream();
+    try {
+      ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) body.write(buffer, 0, read);
+      return body.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void drain(InputStream in) {
+    if (in == null) return;
+    try {
+      byte[] buffer = new byte[8192];
+      while (in.read(buffer) != -1) { /** Discard */ }
+    } catch (IOException ioe) {
+      /** Ignore Errors */
+    } finally {
+      try { in.close(); } catch (IOException ioe2) { /** Ignore Errors */ }
+    }
+  }
+
+  /**
+   * A SimpleErrorData is a small object, so we only need to look at the front of the body.
+   */
+  private static boolean isErrorResponse(byte[] body) {
+    int length = Math.min(body.length, 64);
+    String head = new String(body, 0, length);
+    return head.startsWith("{\"errorType\"");
+  }
+
+  private enum Outcome { OK, ERROR_RESPONSE, HTTP_ERROR }
+
+  /**
+   * What we measured for one endpoint.
+   */
+  public static class EndpointResults {
+    final int weight;
+    final LatencyHistogram latency = new LatencyHistogram();
+    final AtomicLong httpErrors     = new AtomicLong();
+    final AtomicLong errorResponses = new AtomicLong();
+
+    EndpointResults(int weight) {
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.ac.games.rest.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One kind of request in the load mix, along with how often it should be sent.
+ * <p>
+ * Each endpoint builds its own randomized request: a gameID or userID from the seeded ranges, and
+ * a JSON body for the writes.  The ranges line up with {@link SyntheticData}, so nearly every
+ * request hits a record that exists.
+ *
+ * @author ac010168
+ */
+public abstract class LoadEndpoint {
+
+  /** The name the endpoint is reported (and overridden in <code>--mix</code>) under */
+  final String name;
+  /** The relative weight of this endpoint in the mix */
+  int weight;
+
+  LoadEndpoint(String name, int weight) {
+    this.name   = name;
+    this.weight = weight;
+  }
+
+  /**
+   * Build the next request for this endpoint.
+   *
+   * @param random   The calling thread's random source
+   * @param session  The calling thread's logged in user
+   * @param gameCount The number of seeded games
+   * @param userCount The number of seeded users
+   *
+   * @return The request to send
+   */
+  abstract LoadCall next(Random random, LoadSession session, int gameCount, int userCount);
+
+  /**
+   * @return The default mix, weighted towards the reads the web front end sends most
+   */
+  static List<LoadEndpoint> defaultMix() {
+    List<LoadEndpoint> mix = new ArrayList<LoadEndpoint>();
+    mix.add(new LoadEndpoint("game.get", 20) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/game?gameid=" + randomGameID(random, gameCount));
+      }
+    });
+    mix.add(new LoadEndpoint("collection.get", 8) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/collection?collectionid=" + randomUserID(random, userCount));
+      }
+    });
+    mix.add(new LoadEndpoint("collection.compact", 8) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/collection?collectionid=" + randomUserID(random, userCount) + "&compact=yes");
+      }
+    });
+    mix.add(new LoadEndpoint("collection.topx", 6) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/collection?collectionid=" + randomUserID(random, userCount) + "&topx=10");
+      }
+    });
+    mix.add(new LoadEndpoint("wishlist.full", 8) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/wishlist?userid=" + randomUserID(random, userCount) + "&display=full");
+      }
+    });
+    mix.add(new LoadEndpoint("gamereltn.csi", 6) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/gamereltn?gameid=" + randomGameID(random, gameCount) + "&vendor=csi");
+      }
+    });
+    mix.add(new LoadEndpoint("gamereltn.mm", 4) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/gamereltn?gameid=" + randomGameID(random, gameCount) + "&vendor=mm");
+      }
+    });
+    mix.add(new LoadEndpoint("bggdata.db", 4) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/external/bggdata?bggid=" + (100000 + randomGameID(random, gameCount)) + "&source=db");
+      }
+    });
+    mix.add(new LoadEndpoint("csidata.db", 3) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/external/csidata?csiid=" + (200000 + randomGameID(random, gameCount)) + "&source=db");
+      }
+    });
+    mix.add(new LoadEndpoint("mmdata.db", 3) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/external/mmdata?mmid=" + (300000 + randomGameID(random, gameCount)) + "&source=db");
+      }
+    });
+    mix.add(new LoadEndpoint("autocomplete.game", 10) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        String name = SyntheticData.gameName(randomGameID(random, gameCount));
+        return LoadCall.get("/auto?source=game&value=" + LoadCall.encode(name.substring(0, 3 + random.nextInt(4))));
+      }
+    });
+    mix.add(new LoadEndpoint("recommend.post", 4) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("userID", session.userID);
+        body.put("playerCount", 2 + random.nextInt(3));
+        body.put("gameLength", -1);
+        body.put("gameWeight", "Any");
+        body.put("recommendNum", 5);
+        return LoadCall.send("POST", "/recommend?token=" + session.token, body);
+      }
+    });
+    mix.add(new LoadEndpoint("login.post", 2) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("userName", "loaduser" + randomUserID(random, userCount));
+        body.put("password", SyntheticData.PASSWORD);
+        return LoadCall.send("POST", "/login", body);
+      }
+    });
+    mix.add(new LoadEndpoint("user.get", 4) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/user?userid=" + randomUserID(random, userCount));
+      }
+    });
+    mix.add(new LoadEndpoint("user.put", 1) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("userID", session.userID);
+        body.put("userName", "loaduser" + session.userID);
+        body.put("firstName", "Load");
+        body.put("lastName", "User " + session.userID + " " + random.nextInt(1000));
+        body.put("emailAddress", "loaduser" + session.userID + "@example.com");
+        body.put("collectionID", session.collectionID);
+        return LoadCall.send("PUT", "/user?userid=" + session.userID, body);
+      }
+    });
+    mix.add(new LoadEndpoint("wishlist.post", 2) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("userID", session.userID);
+        body.put("gameID", randomGameID(random, gameCount));
+        return LoadCall.send("POST", "/wishlist?token=" + session.token, body);
+      }
+    });
+    mix.add(new LoadEndpoint("stats.get", 2) {
+      LoadCall next(Random random, LoadSession session, int gameCount, int userCount) {
+        return LoadCall.get("/stats?type=user&userid=" + randomUserID(random, userCount));
+      }
+    });
+    return mix;
+  }
+
+  /**
+   * Apply a <code>name=weight,name=weight</code> override to the mix.  Endpoints can be switched
+   * off with a weight of 0.
+   *
+   * @param mix The mix to change
+   * @param overrides The override string
+   *
+   * @throws IllegalArgumentException if an endpoint name or weight isn't valid
+   */
+  static void applyOverrides(List<LoadEndpoint> mix, String overrides) {
+    for (String override : overrides.split(",")) {
+      String[] parts = override.split("=");
+      if (parts.length != 2)
+        throw new IllegalArgumentException("The mix override " + override + " is not of the form name=weight");
+      LoadEndpoint endpoint = null;
+      for (LoadEndpoint candidate : mix) {
+        if (candidate.name.equalsIgnoreCase(parts[0].trim())) endpoint = candidate;
+      }
+      if (endpoint == null)
+        throw new IllegalArgumentException("There is no endpoint named " + parts[0].trim() + " in the mix");
+      int weight = Integer.parseInt(parts[1].trim());
+      if (weight < 0)
+        throw new IllegalArgumentException("The weight for " + endpoint.name + " can't be negative");
+      endpoint.weight = weight;
+    }
+  }
+
+  static long randomGameID(Random random, int gameCount) {
+    return 1 + random.nextInt(gameCount);
+  }
+
+  static long randomUserID(Random random, int userCount) {
+    return 1 + random.nextInt(userCount);
+  }
+}
@@ -0,0 +1,96 @@
+package com.ac.games.rest.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ac.games.rest.loadtest.LoadDriver.EndpointResults;
+import com.ac.games.rest.metrics.LatencyHistogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes the results of a run as JSON, so runs can be diffed or charted against each other.
+ * Latencies are in milliseconds.
+ *
+ * @author ac010168
+ */
+public class LoadReport {
+
+  private static final double[] PERCENTILES = new double[] { 50.0, 90.0, 99.0, 99.9 };
+  private static final String[] PERCENTILE_NAMES = new String[] { "p50", "p90", "p99", "p999" };
+
+  private final Map<String, Object> report = new LinkedHashMap<String, Object>();
+
+  public LoadReport(Map<String, Object> settings, Map<String, Object> dataCounts, LoadDriver driver) {
+    double seconds = Math.max(1L, driver.getMeasuredMillis()) / 1000.0;
+
+    long totalCount  = 0;
+    long totalErrors = 0;
+    Map<String, Object> endpoints = new LinkedHashMap<String, Object>();
+    for (Map.Entry<String, EndpointResults> entry : driver.getResults().entrySet()) {
+      EndpointResults results = entry.getValue();
+      LatencyHistogram latency = results.latency;
+
+      Map<String, Object> endpoint = new LinkedHashMap<String, Object>();
+      endpoint.put("weight", results.weight);
+      endpoint.put("count", latency.getCount());
+      endpoint.put("throughput", round(latency.getCount() / seconds));
+      endpoint.put("httpErrors", results.httpErrors.get());
+      endpoint.put("errorResponses", results.errorResponses.get());
+      endpoint.put("mean", round(latency.getMean() / 1000.0));
+      for (int i = 0; i < PERCENTILES.length; i++)
+        endpoint.put(PERCENTILE_NAMES[i], round(latency.getValueAtPercentile(PERCENTILES[i]) / 1000.0));
+      endpoint.put("max", round(latency.getMax() / 1000.0));
+      endpoints.put(entry.getKey(), endpoint);
+
+      totalCount  += latency.getCount();
+      totalErrors += results.httpErrors.get() + results.errorResponses.get();
+    }
+
+    report.put("runDate", new Date().toString());
+    report.put("settings", settings);
+    report.put("data", dataCounts);
+    report.put("measuredSeconds", round(seconds));
+    report.put("totalCount", totalCount);
+    report.put("totalThroughput", round(totalCount / seconds));
+    report.put("totalErrors", totalErrors);
+    report.put("endpoints", endpoints);
+  }
+
+  /**
+   * @param file Where to write the report
+   *
+   * @throws IOException
+   */
+  public void write(File file) throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable(SerializationFeature.INDENT_OUTPUT);
+    mapper.writeValue(file, report);
+  }
+
+  /**
+   * @return A one line per endpoint summary for the console
+   */
+  @SuppressWarnings("unchecked")
+  public String toSummary() {
+    StringBuilder summary = new StringBuilder(2048);
+    summary.append(String.format("%-20s %9s %9s %8s %8s %8s %8s %7s%n", "endpoint", "count", "req/s", "p50", "p99", "p999", "max", "errors"));
+    Map<String, Object> endpoints = (Map<String, Object>)report.get("endpoints");
+    for (Map.Entry<String, Object> entry : endpoints.entrySet()) {
+      Map<String, Object> endpoint = (Map<String, Object>)entry.getValue();
+      summary.append(String.format("%-20s %9d %9.1f %8.2f %8.2f %8.2f %8.2f %7d%n", entry.getKey(),
+                                   endpoint.get("count"), endpoint.get("throughput"), endpoint.get("p50"),
+                                   endpoint.get("p99"), endpoint.get("p999"), endpoint.get("max"),
+                                   (Long)endpoint.get("httpErrors") + (Long)endpoint.get("errorResponses")));
+    }
+    summary.append(String.format("%-20s %9d %9.1f%n", "total", report.get("totalCount"), report.get("totalThroughput")));
+    return summary.toString();
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 1000.0) / 1000.0;
+  }
+}
@@ -0,0 +1,19 @@
+package com.ac.games.rest.loadtest;
+
+/**
+ * The user a load thread is logged in as, for the requests that need a session token.
+ *
+ * @author ac010168
+ */
+public class LoadSession {
+
+  final long userID;
+  final long collectionID;
+  final String token;
+
+  LoadSession(long userID, long collectionID, String token) {
+    this.userID       = userID;
+    this.collectionID = collectionID;
+    this.token        = token;
+  }
+}
@@ -0,0 +1,101 @@
+package com.ac.games.rest.loadtest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.ac.games.rest.Application;
+import com.ac.games.rest.database.DatabaseSettings;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+
+/**
+ * Boots the service in-process against a standalone {@link InMemoryGamesDatabase}, runs the load, and writes the
+ * report.
+ * <p>
+ * Options (all <code>--name=value</code>):
+ * <ul>
+ * <li><code>threads</code> - The number of load threads (default 16)</li>
+ * <li><code>warmup</code> - Seconds to run before measuring (default 15)</li>
+ * <li><code>duration</code> - Seconds to measure for (default 60)</li>
+ * <li><code>games</code> - The number of Games to seed (default 5000)</li>
+ * <li><code>users</code> - The number of Users to seed, each with a Collection and Wishlist (default 500)</li>
+ * <li><code>seed</code> - The random seed for the data and the request mix (default 42)</li>
+ * <li><code>mix</code> - Weight overrides, e.g. <code>game.get=50,user.put=0</code></li>
+ * <li><code>out</code> - The report file (default loadtest-results.json)</li></ul>
+ * Anything else is handed to Spring as it is.  The database pool is set up before Spring starts,
+ * so it always runs with the default {@link DatabaseSettings}.
+ *
+ * @author ac010168
+ */
+public class LoadTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<String, String>();
+    options.put("threads", "16");
+    options.put("warmup", "15");
+    options.put("duration", "60");
+    options.put("games", "5000");
+    options.put("users", "500");
+    options.put("seed", "42");
+    options.put("mix", "");
+    options.put("out", "loadtest-results.json");
+
+    List<String> springArgs = new ArrayList<String>();
+    springArgs.add("--server.port=0");
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      String name = (arg.startsWith("--") && (equals > 2)) ? arg.substring(2, equals) : null;
+      if ((name != null) && options.containsKey(name)) options.put(name, arg.substring(equals + 1));
+      else                                             springArgs.add(arg);
+    }
+
+    int threadCount = Integer.parseInt(options.get("threads"));
+    int gameCount   = Integer.parseInt(options.get("games"));
+    int userCount   = Integer.parseInt(options.get("users"));
+    long seed       = Long.parseLong(options.get("seed"));
+
+    List<LoadEndpoint> mix = LoadEndpoint.defaultMix();
+    if (options.get("mix").length() > 0)
+      LoadEndpoint.applyOverrides(mix, options.get("mix"));
+
+    logger.info("Seeding {} games and {} users", gameCount, userCount);
+    InMemoryGamesDatabase memoryStore = new InMemoryGamesDatabase(null);
+    new SyntheticData(gameCount, userCount, seed).seed(memoryStore);
+    Application.memoryStore = memoryStore;
+    Application.initializeDatabase(new DatabaseSettings(), memoryStore.asDatabase());
+
+    ConfigurableApplicationContext context = SpringApplication.run(Application.class, springArgs.toArray(new String[springArgs.size()]));
+    int exitCode = 0;
+    try {
+      int port = ((EmbeddedWebApplicationContext)context).getEmbeddedServletContainer().getPort();
+      logger.info("Service started on port {}", port);
+
+      LoadDriver driver = new LoadDriver("http://localhost:" + port, mix, threadCount, gameCount, userCount, seed);
+      driver.run(Long.parseLong(options.get("warmup")), Long.parseLong(options.get("duration")));
+
+      Map<String, Object> settings = new LinkedHashMap<String, Object>(options);
+      settings.remove("out");
+      LoadReport report = new LoadReport(settings, memoryStore.getSizes(), driver);
+      File outFile = new File(options.get("out"));
+      report.write(outFile);
+      System.out.print(report.toSummary());
+      logger.info("Wrote the load test report to {}", outFile.getAbsolutePath());
+    } catch (Throwable t) {
+      logger.error("The load test failed", t);
+      exitCode = 1;
+    } finally {
+      context.close();
+    }
+    System.exit(exitCode);
+  }
+}
@@ -0,0 +1,275 @@
+package com.ac.games.rest.loadtest;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.Collection;
+import com.ac.games.data.CollectionItem;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.GameType;
+import com.ac.games.data.GameWeight;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.data.ReviewState;
+import com.ac.games.data.User;
+import com.ac.games.data.UserDetail;
+import com.ac.games.data.UserRole;
+import com.ac.games.data.WishlistItem;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+
+/**
+ * Seeds an {@link InMemoryGamesDatabase} with a synthetic catalog and user base, from a fixed seed so
+ * runs can be compared with each other.
+ * <p>
+ * Game <i>n</i> has bggID <code>100000 + n</code>, csiID <code>200000 + n</code> and mmID
+ * <code>300000 + n</code> (about 70% of games have a CSI listing, 50% an MM one).  User <i>n</i>
+ * is <code>loaduser<i>n</i></code> with password <code>password</code>, and owns collection <i>n</i>.
+ *
+ * @author ac010168
+ */
+public class SyntheticData {
+
+  public static final String PASSWORD = "password";
+
+  private static final String[] MECHANICS = new String[] {
+    "Hand Management", "Worker Placement", "Deck / Pool Building", "Area Control / Area Influence",
+    "Dice Rolling", "Set Collection", "Tile Placement", "Variable Player Powers", "Cooperative Play",
+    "Auction/Bidding", "Route/Network Building", "Trading", "Simultaneous Action Selection"
+  };
+  private static final String[] PUBLISHERS = new String[] {
+    "Days of Wonder", "Rio Grande Games", "Z-Man Games", "Fantasy Flight Games", "Stronghold Games",
+    "Asmodee", "Mayfair Games", "Plaid Hat Games", "Czech Games Edition", "Stonemaier Games"
+  };
+  private static final String[] WORDS = new String[] {
+    "Castles", "Dragons", "Empire", "Harbor", "Kingdom", "Legends", "Merchants", "Orchard", "Railways",
+    "Settlers", "Shadows", "Spice", "Stars", "Temple", "Tribes", "Voyage", "Wizards", "Zombies"
+  };
+  private static final GameWeight[] WEIGHTS = GameWeight.values();
+
+  private final int gameCount;
+  private final int userCount;
+  private final Random random;
+
+  public SyntheticData(int gameCount, int userCount, long seed) {
+    this.gameCount = gameCount;
+    this.userCount = userCount;
+    this.random    = new Random(seed);
+  }
+
+  /**
+   * @return the gameCount
+   */
+  public int getGameCount() {
+    return gameCount;
+  }
+
+  /**
+   * @return the userCount
+   */
+  public int getUserCount() {
+    return userCount;
+  }
+
+  /**
+   * Fill the store.
+   *
+   * @param store The store to fill
+   */
+  public void seed(InMemoryGamesDatabase store) {
+    long csiCount = 0;
+    long mmCount  = 0;
+    for (long gameID = 1; gameID <= gameCount; gameID++) {
+      Game game = buildGame(gameID);
+      store.storeGame(game);
+      store.storeBGGGame(buildBGGGame(game));
+
+      GameReltn reltn = new GameReltn();
+      reltn.setReltnID(gameID);
+      reltn.setGameID(gameID);
+      List<Long> csiIDs = new ArrayList<Long>(1);
+      List<Long> mmIDs  = new ArrayList<Long>(1);
+      if (random.nextInt(10) < 7) {
+        CoolStuffIncPriceData data = buildCSIData(game);
+        store.storeCSIData(data);
+        csiIDs.add(data.getCsiID());
+        csiCount++;
+      }
+      if (random.nextInt(10) < 5) {
+        MiniatureMarketPriceData data = buildMMData(game);
+        store.storeMMData(data);
+        mmIDs.add(data.getMmID());
+        mmCount++;
+      }
+      reltn.setCsiIDs(csiIDs);
+      reltn.setMmIDs(mmIDs);
+      store.storeGameReltn(reltn);
+    }
+
+    long itemID = 0;
+    long wishID = 0;
+    for (long userID = 1; userID <= userCount; userID++) {
+      User user = new User();
+      user.setUserID(userID);
+      user.setUserName("loaduser" + userID);
+      user.setFirstName("Load");
+      user.setLastName("User " + userID);
+      user.setEmailAddress("loaduser" + userID + "@example.com");
+      user.setCollectionID(userID);
+      store.storeUser(user);
+
+      UserDetail detail = new UserDetail();
+      detail.setUserID(userID);
+      detail.setPass(PASSWORD);
+      detail.setUserRole(UserRole.USER);
+      detail.setCreatedOnDate(new Date());
+      store.storeUserDetail(detail);
+
+      Collection collection = new Collection();
+      collection.setCollectionID(userID);
+      int ownedCount = 20 + random.nextInt(180);
+      Set<Long> owned = new HashSet<Long>();
+      List<CollectionItem> items = new ArrayList<CollectionItem>(ownedCount);
+      for (int i = 0; i < ownedCount; i++) {
+        long gameID = 1 + random.nextInt(gameCount);
+        if (!owned.add(gameID)) continue;
+        CollectionItem item = new CollectionItem();
+        item.setItemID(++itemID);
+        item.setGameID(gameID);
+        item.setGame(store.getGame(gameID));
+        item.setDateAcquired(new Date(1400000000000L + (random.nextInt(1000) * 86400000L)));
+        item.setWhereAcquired("Load Test");
+        item.setOverrideMinPlayers(-1);
+        item.setOverrideMaxPlayers(-1);
+        item.setOverrideMinTime(-1);
+        item.setOverrideMaxTime(-1);
+        List<GameWeight> weights = new ArrayList<GameWeight>(1);
+        weights.add(WEIGHTS[random.nextInt(WEIGHTS.length)]);
+        item.setWeights(weights);
+        items.add(item);
+      }
+      collection.setGames(items);
+      store.storeCollection(collection);
+
+      int wishCount = 5 + random.nextInt(25);
+      for (int i = 0; i < wishCount; i++) {
+        WishlistItem item = new WishlistItem();
+        item.setWishID(++wishID);
+        item.setUserID(userID);
+        item.setGameID(1 + random.nextInt(gameCount));
+        item.setDateAdded(new Date());
+        store.storeWishlistItem(item);
+      }
+    }
+  }
+
+  /**
+   * @return The name game <i>gameID</i> was seeded with, as an autocomplete value
+   */
+  static String gameName(long gameID) {
+    return WORDS[(int)(gameID % WORDS.length)] + " of " + WORDS[(int)((gameID / WORDS.length) % WORDS.length)] + " " + gameID;
+  }
+
+  private Game buildGame(long gameID) {
+    Game game = new Game();
+    game.setGameID(gameID);
+    game.setBggID(100000 + gameID);
+    game.setName(gameName(gameID));
+    game.setYearPublished(1995 + random.nextInt(20));
+    game.setMinPlayers(1 + random.nextInt(2));
+    game.setMaxPlayers(2 + random.nextInt(5));
+    game.setMinPlayingTime(15 * (1 + random.nextInt(4)));
+    game.setMaxPlayingTime(30 * (1 + random.nextInt(6)));
+    game.setImageURL("http://cf.geekdo-images.com/images/pic" + gameID + ".jpg");
+    game.setImageThumbnailURL("http://cf.geekdo-images.com/images/pic" + gameID + "_t.jpg");
+    game.setDescription("Synthetic game " + gameID + " for the load test. " + WORDS[random.nextInt(WORDS.length)]);
+    game.setPrimaryPublisher(PUBLISHERS[random.nextInt(PUBLISHERS.length)]);
+    List<String> publishers = new ArrayList<String>(1);
+    publishers.add(game.getPrimaryPublisher());
+    game.setPublishers(publishers);
+    List<String> mechanics = new ArrayList<String>(3);
+    for (int i = 0; i < 1 + random.nextInt(3); i++)
+      mechanics.add(MECHANICS[random.nextInt(MECHANICS.length)]);
+    game.setMechanisms(mechanics);
+    //Every fifth game is an expansion for the game before it
+    if ((gameID % 5 == 0) && (gameID > 1)) {
+      game.setGameType(GameType.EXPANSION);
+      game.setParentGameID(gameID - 1);
+    } else {
+      game.setGameType(GameType.BASE);
+      game.setParentGameID(-1);
+    }
+    game.setAddDate(new Date());
+    return game;
+  }
+
+  private BGGGame buildBGGGame(Game game) {
+    BGGGame bggGame = new BGGGame();
+    bggGame.setBggID(game.getBggID());
+    bggGame.setName(game.getName());
+    bggGame.setYearPublished(game.getYearPublished());
+    bggGame.setMinPlayers(game.getMinPlayers());
+    bggGame.setMaxPlayers(game.getMaxPlayers());
+    bggGame.setMinPlayingTime(game.getMinPlayingTime());
+    bggGame.setMaxPlayingTime(game.getMaxPlayingTime());
+    bggGame.setImageURL(game.getImageURL());
+    bggGame.setImageThumbnailURL(game.getImageThumbnailURL());
+    bggGame.setDescription(game.getDescription());
+    bggGame.setPublishers(game.getPublishers());
+    bggGame.setMechanisms(game.getMechanisms());
+    bggGame.setGameType(game.getGameType());
+    bggGame.setParentGameID((game.getParentGameID() == -1) ? -1 : 100000 + game.getParentGameID());
+    bggGame.setBggRating(5.0 + random.nextInt(40) / 10.0);
+    bggGame.setBggRatingUsers(random.nextInt(20000));
+    bggGame.setBggRank(1 + random.nextInt(10000));
+    bggGame.setReviewState(ReviewState.REVIEWED);
+    bggGame.setAddDate(game.getAddDate());
+    return bggGame;
+  }
+
+  private CoolStuffIncPriceData buildCSIData(Game game) {
+    CoolStuffIncPriceData data = new CoolStuffIncPriceData();
+    data.setCsiID(200000 + game.getGameID());
+    data.setTitle(game.getName());
+    data.setCurPrice(19.99 + random.nextInt(60));
+    data.setMsrpValue(29.99 + random.nextInt(60));
+    data.setImageURL("http://www.coolstuffinc.com/images/" + data.getCsiID() + ".jpg");
+    data.setReviewState(ReviewState.REVIEWED);
+    setAvailability(data, random.nextBoolean() ? "INSTOCK" : "OUTOFSTOCK");
+    return data;
+  }
+
+  private MiniatureMarketPriceData buildMMData(Game game) {
+    MiniatureMarketPriceData data = new MiniatureMarketPriceData();
+    data.setMmID(300000 + game.getGameID());
+    data.setTitle(game.getName());
+    data.setSku("LT" + game.getGameID());
+    data.setCurPrice(random.nextBoolean() ? 17.99 + random.nextInt(60) : -1.0);
+    data.setMsrpValue(29.99 + random.nextInt(60));
+    data.setImageURL("http://www.miniaturemarket.com/media/" + data.getMmID() + ".jpg");
+    data.setReviewState(ReviewState.REVIEWED);
+    setAvailability(data, random.nextBoolean() ? "INSTOCK" : "PREORDER");
+    return data;
+  }
+
+  /**
+   * The availability enums live in the pojo jar, and differ between vendors, so look them up
+   * from the getter rather than tying the load test to their names.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static void setAvailability(Object data, String availability) {
+    try {
+      Class enumType = data.getClass().getMethod("getAvailability").getReturnType();
+      Method setter  = data.getClass().getMethod("setAvailability", enumType);
+      setter.invoke(data, Enum.valueOf(enumType, availability));
+    } catch (Exception e) {
+      throw new IllegalStateException("Unable to set the availability on " + data.getClass().getSimpleName(), e);
+    }
+  }
+}
@@ -2,6 +2,8 @@ package com.ac.games.rest;
 
 import javax.annotation.PreDestroy;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -11,6 +13,29 @@ import org.springframework.context.annotation.ComponentScan;
 import com.ac.games.db.GamesDatabase;
 import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.bulk.BulkExporter;
+import com.ac.games.rest.bulk.BulkImporter;
+import com.ac.games.rest.database.DatabaseConfiguration;
+import com.ac.games.rest.database.DatabasePool;
+import com.ac.games.rest.database.DatabaseSettings;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.history.PriceHistoryStore;
+import com.ac.games.rest.index.NameSearchIndex;
+import com.ac.games.rest.link.VendorLinkIndex;
+import com.ac.games.rest.metrics.InstrumentedDatabase;
+import com.ac.games.rest.metrics.RequestMetricsRegistry;
+import com.ac.games.rest.metrics.SlowOperationLog;
+import com.ac.games.rest.price.PriceCardStore;
+import com.ac.games.rest.price.VendorPriceFanout;
+import com.ac.games.rest.purge.CollectionPurger;
+import com.ac.games.rest.review.ApprovalService;
+import com.ac.games.rest.review.ReviewQueue;
+import com.ac.games.rest.session.SessionTokenService;
+import com.ac.games.rest.snapshot.CatalogSnapshotService;
+import com.ac.games.rest.stats.StatsCache;
+import com.ac.games.rest.warmup.StartupWarmup;
+import com.ac.games.rest.writebehind.WriteBehindQueue;
 
 /**
  * @author ac010168
@@ -20,8 +45,15 @@ import com.ac.games.db.exception.ConfigurationException;
 @ComponentScan
 @EnableAutoConfiguration
 public class Application extends SpringBootServletInitializer {
+
+  private static final Logger logger = LoggerFactory.getLogger(Application.class);
   
-  public static GamesDatabase database;
+  /** The shared database, created once at startup by {@link DatabaseConfiguration} */
+  public static volatile GamesDatabase database;
+  /** The checkout pool in front of the shared database */
+  public static DatabasePool databasePool;
+  /** The in-memory store, when the memory or tiered engine is configured; null with plain Mongo */
+  public static InMemoryGamesDatabase memoryStore;
   
   /** The Host URL for our Mongo Instance */
   //public static String databaseHost = "192.168.1.9";
@@ -31,6 +63,43 @@ public class Application extends SpringBootServletInitializer {
   /** The Host Database Name for our Mongo Database */
   public static String databaseName = "livedb";
   
+  /** The shared fuzzy name index across the Game, BGG, CSI and MM titles */
+  public static NameSearchIndex nameIndex = new NameSearchIndex();
+  /** The in-memory stats, refreshed in the background and flagged by the write paths */
+  public static StatsCache statsCache = new StatsCache();
+  /** The built vendor price cards, rebuilt by the CSI and MM write paths */
+  public static PriceCardStore priceCards = new PriceCardStore();
+  /** The Game to vendor listing links both ways, kept in step by the GameReltn write paths */
+  public static VendorLinkIndex vendorLinks = new VendorLinkIndex();
+  /** Reads every vendor's listings for a game at once */
+  public static VendorPriceFanout vendorPrices = new VendorPriceFanout(priceCards);
+  /** The price history of every vendor listing, fed by the CSI and MM write paths */
+  public static PriceHistoryStore priceHistory = new PriceHistoryStore();
+  /** Streams the NDJSON catalog imports into the database */
+  public static BulkImporter importer = new BulkImporter();
+  /** Streams the NDJSON and CSV exports out of the database */
+  public static BulkExporter exporter = new BulkExporter();
+  /** Reads the multi-ID GET requests */
+  public static BatchReader batchReader = new BatchReader();
+  /** Hands the pending BGG, CSI and MM records to the moderators on leases */
+  public static ReviewQueue reviewQueue = new ReviewQueue();
+  /** Runs the BGG approvals as a single unit of work */
+  public static ApprovalService approvals = new ApprovalService();
+  /** Issues and validates the signed session tokens handed out on login */
+  public static SessionTokenService sessionTokens = new SessionTokenService(SessionTokenService.loadSecret(), SessionTokenService.DEFAULT_TTL_MILLIS);
+  /** Low priority bookkeeping writes, flushed in the background */
+  public static WriteBehindQueue writeBehind = new WriteBehindQueue();
+  /** Runs the cascading user and collection deletes */
+  public static CollectionPurger purger = new CollectionPurger();
+  /** Loads the hot data after startup, and holds readiness until it's done */
+  public static StartupWarmup warmup = new StartupWarmup();
+  /** Per-route request latency and throughput */
+  public static RequestMetricsRegistry requestMetrics = new RequestMetricsRegistry();
+  /** The most recent slow requests and database calls */
+  public static SlowOperationLog slowOperations = new SlowOperationLog();
+  /** The memory-mapped catalog snapshot, used for cold starts and while Mongo is unreachable */
+  public static CatalogSnapshotService snapshots = new CatalogSnapshotService();
+  
   @Override
   protected SpringApplicationBuilder configure(SpringApplicationBuilder application) {
     return application.sources(Application.class);
@@ -38,28 +107,109 @@ public class Application extends SpringBootServletInitializer {
   
   /** Main method, which is starting point for service using Spring launcher */
   public static void main(String[] args) {
+    //The database is created and warmed by DatabaseConfiguration as the context starts
+    SpringApplication.run(Application.class, args);
+  }
+  
+  /**
+   * Create the shared database from the given settings (Mongo, in-memory, or in-memory in front
+   * of Mongo, as set by <code>games.db.engine</code>), connect it, and put the checkout pool
+   * and per-request instrumentation in front of it.  This only happens once; later calls hand
+   * back the existing database.
+   * 
+   * @param settings The connection and pool settings
+   * 
+   * @return The pooled database
+   * 
+   * @throws ConfigurationException if the database could not be reached
+   */
+  public static synchronized GamesDatabase initializeDatabase(DatabaseSettings settings) throws ConfigurationException {
+    if (databasePool != null) return database;
+    
+    databaseHost = settings.getHost();
+    databasePort = settings.getPort();
+    databaseName = settings.getName();
+    
+    String engine = settings.getEngine();
+    snapshots.openExisting();
+    if (DatabaseSettings.ENGINE_MEMORY.equalsIgnoreCase(engine)) {
+      logger.info("Using the standalone in-memory database; nothing will be persisted");
+      memoryStore = new InMemoryGamesDatabase(null);
+      //Nothing to fall back from, but the wrapper counts the catalog writes for the snapshot
+      return initializeDatabase(settings, snapshots.wrap(memoryStore.asDatabase()));
+    }
     
-    //TODO - Eventually decide on how to dynamically define the database parameters
+    GamesDatabase mongoDatabase = MongoDBFactory.createMongoGamesDatabase(databaseHost, databasePort, databaseName);
     try {
-      database = MongoDBFactory.createMongoGamesDatabase(databaseHost, databasePort, databaseName);
-      database.initializeDBConnection();
+      mongoDatabase.initializeDBConnection();
     } catch (ConfigurationException e) {
-      e.printStackTrace();
-      System.out.println ("Shutting down system!");
-      System.exit(1);
+      //With a snapshot to serve catalog reads from, come up read-only rather than not at all
+      if (snapshots.getSnapshot() == null) throw e;
+      logger.warn("Unable to reach Mongo at startup, serving the catalog from the snapshot until it can be connected", e);
+      snapshots.setPendingConnection(mongoDatabase, e);
+    }
+    databasePool = new DatabasePool(mongoDatabase, settings);
+    GamesDatabase served = snapshots.wrap(databasePool.getDatabase());
+    if (DatabaseSettings.ENGINE_TIERED.equalsIgnoreCase(engine)) {
+      //The pool and snapshot only need to guard the calls that make it through to Mongo
+      memoryStore = new InMemoryGamesDatabase(served);
+      served = memoryStore.asDatabase();
     }
+    database = InstrumentedDatabase.wrap(served);
+    return database;
+  }
+  
+  /**
+   * Use the given database as the shared database, with the same checkout pool and
+   * instrumentation in front of it as the Mongo one gets.  This lets the load test (or anything
+   * else that starts the service in-process) run against a database of its own.  It has to be
+   * called before the context starts; like the other version, it only happens once.
+   * 
+   * @param settings The pool settings
+   * @param rawDatabase The database to use
+   * 
+   * @return The pooled database
+   * 
+   * @throws ConfigurationException if the database could not be reached
+   */
+  public static synchronized GamesDatabase initializeDatabase(DatabaseSettings settings, GamesDatabase rawDatabase) throws ConfigurationException {
+    if (databasePool != null) return database;
     
-    SpringApplication.run(Application.class, args);
+    rawDatabase.initializeDBConnection();
+    databasePool = new DatabasePool(rawDatabase, settings);
+    database = InstrumentedDatabase.wrap(databasePool.getDatabase());
+    return database;
+  }
+  
+  /**
+   * @return The shared database.  This is normally created at startup, but is created here with
+   * the default settings if the context hasn't gotten to it yet.
+   * 
+   * @throws ConfigurationException if the database had to be created and could not be reached
+   */
+  public static GamesDatabase getDatabase() throws ConfigurationException {
+    GamesDatabase curDatabase = database;
+    if (curDatabase != null) return curDatabase;
+    return initializeDatabase(new DatabaseSettings());
   }
   
   @PreDestroy
   public static void shutdownHook() {
+    statsCache.stopRefresh();
+    snapshots.stop();
+    vendorPrices.shutdown();
+    priceHistory.close();
+    importer.shutdown();
+    batchReader.shutdown();
+    reviewQueue.shutdown();
+    approvals.shutdown();
+    purger.shutdown();
+    writeBehind.drain(10000);
     try {
-      database.closeDBConnection();
+      if (database != null) database.closeDBConnection();
     } catch (ConfigurationException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
+      logger.error("Unable to close the database connection", e);
     }
-    System.out.println (">>>  I'm inside the shutdownHook  <<");
+    logger.info(">>>  I'm inside the shutdownHook  <<");
   }
 }
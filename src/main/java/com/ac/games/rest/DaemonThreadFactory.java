@@ -0,0 +1,31 @@
+package com.ac.games.rest;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simple factory so our background threads never hold up shutdown.  Threads are named
+ * <code>name-1</code>, <code>name-2</code> and so on, so pools can be told apart in a
+ * thread dump.
+ *
+ * @author ac010168
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+  private final String name;
+  private final AtomicInteger count;
+
+  /**
+   * @param name The prefix for the thread names
+   */
+  public DaemonThreadFactory(String name) {
+    this.name  = name;
+    this.count = new AtomicInteger();
+  }
+
+  public Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,242 @@
+package com.ac.games.rest.bulk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.data.BatchItem;
+import com.ac.games.rest.metrics.RequestProfile;
+
+/**
+ * Resolves a list of IDs (<code>ids=12,15,20-24</code>) in one request, and hands the records
+ * back in the order they were asked for, with a notFound entry for each one we don't have.
+ * <p>
+ * GamesDatabase only reads one record at a time, so rather than one <code>$in</code> query the
+ * distinct IDs are read concurrently on a shared pool, each read going through the same pool,
+ * in-memory tier and snapshot fallback as a single read.  Repeated IDs are only read once, and
+ * each request only gets a few of the shared threads, so small batches aren't starved by big ones.
+ *
+ * @author ac010168
+ */
+public class BatchReader {
+
+  /** The most IDs a single request may ask for */
+  public static int  maxIDs        = Integer.getInteger("games.batch.maxIDs", 500);
+  /** The number of reads run at once, shared by all batch requests */
+  public static int  threadCount   = Integer.getInteger("games.batch.threads", 8);
+  /** The most reads a single request may have running at once */
+  public static int  maxReadsPerRequest = Integer.getInteger("games.batch.perRequest", 4);
+  /** How long a whole batch may take before the reads still outstanding are reported as errors */
+  public static long timeoutMillis = Long.getLong("games.batch.timeout", 5000L);
+
+  /**
+   * One kind of record that can be read by ID.
+   */
+  public static abstract class Source {
+    public abstract Object read(GamesDatabase database, long id) throws Exception;
+  }
+
+  public static final Source GAMES = new Source() {
+    public Object read(GamesDatabase database, long id) throws Exception {
+      return database.readGame(id);
+    }
+  };
+
+  public static final Source GAME_RELTNS = new Source() {
+    public Object read(GamesDatabase database, long id) throws Exception {
+      return database.readGameReltn(id);
+    }
+  };
+
+  public static final Source BGG = new Source() {
+    public Object read(GamesDatabase database, long id) throws Exception {
+      return database.readBGGGameData(id);
+    }
+  };
+
+  public static final Source CSI = new Source() {
+    public Object read(GamesDatabase database, long id) throws Exception {
+      return database.readCSIPriceData(id);
+    }
+  };
+
+  public static final Source MM = new Source() {
+    public Object read(GamesDatabase database, long id) throws Exception {
+      return database.readMMPriceData(id);
+    }
+  };
+
+  private final ExecutorService executor;
+
+  public BatchReader() {
+    executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "batch-read-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Parse a comma separated list of IDs and inclusive ranges, keeping the order given.
+   *
+   * @param ids Something like <code>12,15,20-24</code>
+   *
+   * @return The IDs
+   *
+   * @throws IllegalArgumentException if the list can't be parsed, or names more than {@link #maxIDs} IDs
+   */
+  public static List<Long> parseIDs(String ids) {
+    List<Long> parsed = new ArrayList<Long>();
+    for (String part : ids.split(",")) {
+      part = part.trim();
+      if (part.length() == 0) continue;
+      try {
+        int dash = part.indexOf('-', 1);
+        long first = Long.parseLong((dash < 0) ? part : part.substring(0, dash).trim());
+        long last  = (dash < 0) ? first : Long.parseLong(part.substring(dash + 1).trim());
+        if ((first <= 0) || (last < first))
+          throw new IllegalArgumentException("The ID range " + part + " is not valid");
+        if ((last - first) >= (maxIDs - parsed.size()))
+          throw new IllegalArgumentException("No more than " + maxIDs + " IDs can be read at once");
+        for (long id = first; id <= last; id++)
+          parsed.add(id);
+      } catch (NumberFormatException nfe) {
+        throw new IllegalArgumentException("The ID " + part + " is not a valid ID");
+      }
+    }
+    if (parsed.isEmpty())
+      throw new IllegalArgumentException("No IDs were provided");
+    return parsed;
+  }
+
+  /**
+   * @param first The first ID
+   * @param count The number of sequential IDs
+   *
+   * @return The IDs from first to first + count - 1
+   */
+  public static List<Long> range(long first, int count) {
+    if ((first <= 0) || (count <= 0) || (count > maxIDs))
+      throw new IllegalArgumentException("The batch must be between 1 and " + maxIDs + " IDs from a valid starting ID");
+    List<Long> ids = new ArrayList<Long>(count);
+    for (long id = first; id < first + count; id++)
+      ids.add(id);
+    return ids;
+  }
+
+  /**
+   * Read every ID.  The reads run on at most {@link #maxReadsPerRequest} of the shared threads,
+   * each working through the IDs in turn, so one big batch can't hold up everyone else's.
+   *
+   * @param database The database to read from
+   * @param source The kind of record
+   * @param ids The IDs, in the order the results should come back in
+   *
+   * @return One entry per ID, in the same order
+   */
+  public List<BatchItem> read(final GamesDatabase database, final Source source, List<Long> ids) {
+    Set<Long> distinct = new LinkedHashSet<Long>(ids);
+    final List<Long> order = new ArrayList<Long>(distinct);
+    final AtomicReferenceArray<BatchItem> read = new AtomicReferenceArray<BatchItem>(order.size());
+    final AtomicInteger nextIndex = new AtomicInteger();
+    //Picked up here on the request thread, so the reads are counted against the request
+    final RequestProfile profile = RequestProfile.current();
+
+    int laneCount = Math.min(Math.max(1, maxReadsPerRequest), order.size());
+    List<Future<Void>> lanes = new ArrayList<Future<Void>>(laneCount);
+    for (int lane = 0; lane < laneCount; lane++) {
+      lanes.add(executor.submit(new Callable<Void>() {
+        public Void call() {
+          RequestProfile previous = RequestProfile.attach(profile);
+          try {
+            for (int index = nextIndex.getAndIncrement(); index < order.size(); index = nextIndex.getAndIncrement()) {
+              if (Thread.currentThread().isInterrupted()) break;
+              read.set(index, readItem(database, source, order.get(index)));
+            }
+          } finally {
+            RequestProfile.attach(previous);
+          }
+          return null;
+        }
+      }));
+    }
+
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    String missingMessage = "The read timed out after " + timeoutMillis + "ms";
+    try {
+      for (Future<Void> lane : lanes)
+        lane.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      //Whatever hasn't been read yet is reported as timed out
+    } catch (ExecutionException ee) {
+      //readItem catches the read failures, so this won't happen
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      missingMessage = "The request was interrupted";
+    } finally {
+      for (Future<Void> lane : lanes)
+        lane.cancel(true);
+    }
+
+    Map<Long, BatchItem> resolved = new HashMap<Long, BatchItem>();
+    for (int i = 0; i < order.size(); i++) {
+      BatchItem item = read.get(i);
+      if (item == null) {
+        item = new BatchItem(order.get(i), BatchItem.STATUS_ERROR, null);
+        item.setMessage(missingMessage);
+      }
+      resolved.put(order.get(i), item);
+    }
+
+    List<BatchItem> items = new ArrayList<BatchItem>(ids.size());
+    for (long id : ids)
+      items.add(resolved.get(id));
+    return items;
+  }
+
+  /**
+   * @return Only the records that were found, in the order asked for
+   */
+  public static List<Object> foundOnly(List<BatchItem> items) {
+    List<Object> found = new ArrayList<Object>(items.size());
+    for (BatchItem item : items)
+      if (item.getData() != null) found.add(item.getData());
+    return found;
+  }
+
+  /**
+   * Stop the read threads.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static BatchItem readItem(GamesDatabase database, Source source, long id) {
+    BatchItem item;
+    try {
+      Object data = source.read(database, id);
+      item = new BatchItem(id, (data == null) ? BatchItem.STATUS_NOT_FOUND : BatchItem.STATUS_FOUND, data);
+    } catch (Exception e) {
+      item = new BatchItem(id, BatchItem.STATUS_ERROR, null);
+      item.setMessage("An error occurred running the request: " + e.getMessage());
+    }
+    return item;
+  }
+}
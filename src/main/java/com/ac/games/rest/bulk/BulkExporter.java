@@ -0,0 +1,154 @@
+package com.ac.games.rest.bulk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Writes the records from a {@link RecordCursor} to a stream as newline delimited JSON or CSV,
+ * one record at a time.
+ * <p>
+ * Each record goes out as soon as it's read, so the client starts getting data right away and
+ * we never build the whole result.  When fields are asked for, only those fields are written,
+ * in the order given.  A CSV without a field list takes its columns from the first record.
+ * Nested values (lists and objects) go into a CSV cell as JSON.
+ *
+ * @author ac010168
+ */
+public class BulkExporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkExporter.class);
+
+  public static final String FORMAT_NDJSON = "ndjson";
+  public static final String FORMAT_CSV    = "csv";
+
+  private final ObjectMapper mapper;
+
+  public BulkExporter() {
+    mapper = new ObjectMapper();
+    mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+  }
+
+  /**
+   * Write every record from the cursor.
+   *
+   * @param cursor The records
+   * @param out Where to write them; not closed
+   * @param format ndjson or csv
+   * @param fields The fields to write, or null for all of them
+   *
+   * @return The number of records written
+   *
+   * @throws IOException if the stream can't be written, which usually means the client went away
+   */
+  public long export(RecordCursor cursor, OutputStream out, String format, List<String> fields) throws IOException {
+    long startTime = System.currentTimeMillis();
+    boolean csv = FORMAT_CSV.equalsIgnoreCase(format);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 64 * 1024);
+    List<String> columns = fields;
+    long written = 0;
+    try {
+      Object record;
+      while ((record = cursor.next()) != null) {
+        ObjectNode node = select(mapper.<ObjectNode>valueToTree(record), fields);
+        if (csv) {
+          if (columns == null) columns = fieldNames(node);
+          if (written == 0) writeCSVRow(writer, columns, null);
+          writeCSVRow(writer, columns, node);
+        } else {
+          writer.write(mapper.writeValueAsString(node));
+          writer.write('\n');
+        }
+        written++;
+      }
+    } catch (IOException ioe) {
+      throw ioe;
+    } catch (Exception e) {
+      //The response is already under way, so all we can do is say so at the end of it
+      logger.error("Export stopped after " + written + " records", e);
+      if (!csv) {
+        ObjectNode error = mapper.createObjectNode();
+        error.put("exportError", "The export stopped after " + written + " records: " + e.getMessage());
+        writer.write(mapper.writeValueAsString(error));
+        writer.write('\n');
+      }
+    } finally {
+      writer.flush();
+    }
+    logger.debug("Exported {} records as {} in {}ms", written, (csv ? FORMAT_CSV : FORMAT_NDJSON), System.currentTimeMillis() - startTime);
+    return written;
+  }
+
+  private ObjectNode select(ObjectNode node, List<String> fields) {
+    if (fields == null) return node;
+    ObjectNode selected = mapper.createObjectNode();
+    for (String field : fields) {
+      JsonNode value = node.get(field);
+      if (value != null) selected.put(field, value);
+    }
+    return selected;
+  }
+
+  private static List<String> fieldNames(ObjectNode node) {
+    List<String> names = new ArrayList<String>(node.size());
+    Iterator<String> iterator = node.fieldNames();
+    while (iterator.hasNext())
+      names.add(iterator.next());
+    return names;
+  }
+
+  /**
+   * Write a CSV row, or the header row if there's no node.
+   */
+  private void writeCSVRow(Writer writer, List<String> columns, ObjectNode node) throws IOException {
+    for (int i = 0; i < columns.size(); i++) {
+      if (i > 0) writer.write(',');
+      String value;
+      if (node == null) value = columns.get(i);
+      else {
+        JsonNode cell = node.get(columns.get(i));
+        if ((cell == null) || cell.isNull()) value = "";
+        else if (cell.isContainerNode())      value = mapper.writeValueAsString(cell);
+        else                                  value = cell.asText();
+      }
+      writer.write(escapeCSV(value));
+    }
+    writer.write("\r\n");
+  }
+
+  static String escapeCSV(String value) {
+    boolean quote = false;
+    for (int i = 0; (i < value.length()) && !quote; i++) {
+      char c = value.charAt(i);
+      quote = (c == ',') || (c == '"') || (c == '\n') || (c == '\r');
+    }
+    if (!quote) return value;
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * @param fields A comma separated field list, or blank
+   *
+   * @return The field names, or null for all fields
+   */
+  public static List<String> parseFields(String fields) {
+    if ((fields == null) || (fields.trim().length() == 0)) return null;
+    List<String> names = new ArrayList<String>();
+    for (String field : fields.split(","))
+      if (field.trim().length() > 0) names.add(field.trim());
+    return names.isEmpty() ? null : names;
+  }
+}
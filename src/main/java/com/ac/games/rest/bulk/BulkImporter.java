@@ -0,0 +1,223 @@
+package com.ac.games.rest.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.data.ImportSummary;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Imports a stream of newline delimited JSON catalog records (one BGG, CSI or MM record per
+ * line), inserting the new ones and updating the ones we already have.
+ * <p>
+ * The request thread parses the stream a line at a time and hands the records over in batches
+ * to a writer thread, through a queue that only holds {@link #queuedBatches} batches.  When the
+ * writer falls behind the parser blocks, stops reading the request, and the client is slowed
+ * down by TCP, so however long the stream is we only ever hold a few batches in memory.  A bad
+ * line only fails that record.  If the database can't be reached, the import stops and says so.
+ *
+ * @author ac010168
+ */
+public class BulkImporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+
+  /** The number of records written per batch when the request doesn't say */
+  public static int defaultBatchSize = Integer.getInteger("games.import.batch", 500);
+  /** The most records a request may ask to write per batch */
+  public static int maxBatchSize     = Integer.getInteger("games.import.maxBatch", 5000);
+  /** The number of parsed batches that may wait on the writer before parsing stops */
+  public static int queuedBatches    = Integer.getInteger("games.import.queued", 2);
+
+  private final ObjectMapper mapper;
+  private final ExecutorService writers;
+
+  public BulkImporter() {
+    mapper = new ObjectMapper();
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    writers = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "bulk-import-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Read every record from the stream and write it to the database.
+   *
+   * @param database The database to write to
+   * @param type The kind of record on each line
+   * @param in The NDJSON stream, UTF-8
+   * @param batchSize The number of records per batch
+   *
+   * @return How many records were inserted, updated and failed
+   *
+   * @throws IOException if the stream can't be read
+   */
+  public <T> ImportSummary importRecords(GamesDatabase database, CatalogType<T> type, InputStream in, int batchSize) throws IOException {
+    long startTime = System.currentTimeMillis();
+    ImportSummary summary = new ImportSummary(type.getName());
+    ObjectReader reader = mapper.reader(type.getRecordClass());
+
+    BlockingQueue<List<Line<T>>> queue = new ArrayBlockingQueue<List<Line<T>>>(Math.max(1, queuedBatches));
+    BatchWriter<T> writer = new BatchWriter<T>(database, type, queue, summary);
+    Future<Void> writerFuture = writers.submit(writer);
+
+    BufferedReader lineReader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    long lineNumber = 0;
+    long lines = 0;
+    List<Line<T>> batch = new ArrayList<Line<T>>(batchSize);
+    try {
+      String text;
+      while (((text = lineReader.readLine()) != null) && !writer.aborted) {
+        lineNumber++;
+        if (text.trim().length() == 0) continue;
+        lines++;
+        try {
+          batch.add(new Line<T>(lineNumber, reader.<T>readValue(text)));
+        } catch (IOException ioe) {
+          summary.addFailure(lineNumber, "Unable to parse the " + type.getName() + " record: " + ioe.getMessage());
+          continue;
+        }
+        if (batch.size() >= batchSize) {
+          handOff(queue, batch, writerFuture);
+          batch = new ArrayList<Line<T>>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) handOff(queue, batch, writerFuture);
+    } finally {
+      //An empty batch tells the writer we're done
+      handOff(queue, new ArrayList<Line<T>>(0), writerFuture);
+    }
+
+    try {
+      writerFuture.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      writerFuture.cancel(true);
+    } catch (ExecutionException ee) {
+      logger.error("The " + type.getName() + " import writer failed", ee.getCause());
+      summary.setAborted(true);
+    }
+
+    summary.setLines(lines);
+    summary.setAborted(summary.isAborted() || writer.aborted);
+    summary.setElapsedMillis(System.currentTimeMillis() - startTime);
+    logger.info("Imported {} {} lines in {}ms: {} inserted, {} updated, {} failed{}", lines, type.getName(), summary.getElapsedMillis(),
+                summary.getInserted(), summary.getUpdated(), summary.getFailed(), (summary.isAborted() ? " (aborted)" : ""));
+    return summary;
+  }
+
+  /**
+   * Stop the writer threads.
+   */
+  public void shutdown() {
+    writers.shutdownNow();
+  }
+
+  /**
+   * Wait for room in the queue, unless the writer has stopped taking batches.
+   */
+  private static <T> void handOff(BlockingQueue<List<Line<T>>> queue, List<Line<T>> batch, Future<Void> writerFuture) {
+    try {
+      while (!writerFuture.isDone()) {
+        if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) return;
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A parsed record and the line it came from, so failures can be reported by line.
+   */
+  private static class Line<T> {
+    final long number;
+    final T record;
+
+    Line(long number, T record) {
+      this.number = number;
+      this.record = record;
+    }
+  }
+
+  /**
+   * Takes batches off the queue and writes them, until it gets an empty one.
+   */
+  private static class BatchWriter<T> implements Callable<Void> {
+    final GamesDatabase database;
+    final CatalogType<T> type;
+    final BlockingQueue<List<Line<T>>> queue;
+    final ImportSummary summary;
+    volatile boolean aborted;
+
+    BatchWriter(GamesDatabase database, CatalogType<T> type, BlockingQueue<List<Line<T>>> queue, ImportSummary summary) {
+      this.database = database;
+      this.type     = type;
+      this.queue    = queue;
+      this.summary  = summary;
+    }
+
+    public Void call() throws Exception {
+      while (true) {
+        List<Line<T>> batch = queue.take();
+        if (batch.isEmpty()) return null;
+        if (!aborted) write(batch);
+      }
+    }
+
+    private void write(List<Line<T>> batch) {
+      for (Line<T> line : batch) {
+        if (aborted) {
+          summary.addFailure(line.number, "Not written, the import was aborted");
+          continue;
+        }
+        long id = type.getID(line.record);
+        if (id <= 0) {
+          summary.addFailure(line.number, "The " + type.getName() + " record has no ID");
+          continue;
+        }
+        try {
+          T previous = type.read(database, id);
+          if (previous == null) {
+            type.insert(database, line.record);
+            summary.addInserted();
+          } else {
+            type.update(database, previous, line.record);
+            summary.addUpdated();
+          }
+        } catch (ConfigurationException ce) {
+          logger.error("Database configuration error during the " + type.getName() + " import", ce);
+          summary.addFailure(line.number, "An error occurred accessing the database: " + ce.getMessage());
+          aborted = true;
+        } catch (Exception e) {
+          summary.addFailure(line.number, "An error occurred writing the record: " + e.getMessage());
+        }
+      }
+    }
+  }
+}
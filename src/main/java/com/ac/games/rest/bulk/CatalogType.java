@@ -0,0 +1,156 @@
+package com.ac.games.rest.bulk;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.BGGGameStats;
+import com.ac.games.data.CSIDataStats;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.MMDataStats;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.writebehind.BGGSyncTask;
+
+/**
+ * One kind of external catalog record (BGG, CSI or MM) as the bulk endpoints see it: how to
+ * find its ID, read, insert and update it, and what else has to hear about the write.  The
+ * write side mirrors what the matching controller's PUT and POST do.
+ *
+ * @author ac010168
+ */
+public abstract class CatalogType<T> {
+
+  public static final CatalogType<BGGGame> BGG = new CatalogType<BGGGame>("bgg", BGGGame.class) {
+    public long getID(BGGGame record) {
+      return record.getBggID();
+    }
+    public BGGGame read(GamesDatabase database, long id) throws Exception {
+      return database.readBGGGameData(id);
+    }
+    public void insert(GamesDatabase database, BGGGame record) throws Exception {
+      //Make sure a pending sync write can't land on top of this one
+      Application.writeBehind.flushKey(BGGSyncTask.buildKey(record.getBggID()));
+      database.insertBGGGameData(record);
+      Application.nameIndex.indexBGGGame(record);
+      Application.statsCache.recordInsert(BGGGameStats.BGG_GAME_STATS);
+    }
+    public void update(GamesDatabase database, BGGGame previous, BGGGame record) throws Exception {
+      Application.writeBehind.flushKey(BGGSyncTask.buildKey(record.getBggID()));
+      database.updateBGGGameData(record);
+      Application.nameIndex.indexBGGGame(record);
+      recordUpdate(BGGGameStats.BGG_GAME_STATS, previous.getReviewState(), record.getReviewState());
+    }
+  };
+
+  public static final CatalogType<CoolStuffIncPriceData> CSI = new CatalogType<CoolStuffIncPriceData>("csi", CoolStuffIncPriceData.class) {
+    public long getID(CoolStuffIncPriceData record) {
+      return record.getCsiID();
+    }
+    public CoolStuffIncPriceData read(GamesDatabase database, long id) throws Exception {
+      return database.readCSIPriceData(id);
+    }
+    public void insert(GamesDatabase database, CoolStuffIncPriceData record) throws Exception {
+      database.insertCSIPriceData(record);
+      written(record);
+      Application.statsCache.recordInsert(CSIDataStats.CSI_DATA_STATS);
+    }
+    public void update(GamesDatabase database, CoolStuffIncPriceData previous, CoolStuffIncPriceData record) throws Exception {
+      database.updateCSIPriceData(record);
+      written(record);
+      recordUpdate(CSIDataStats.CSI_DATA_STATS, previous.getReviewState(), record.getReviewState());
+    }
+    private void written(CoolStuffIncPriceData record) {
+      Application.nameIndex.indexCSIData(record);
+      Application.priceCards.updateCSI(record);
+      Application.priceHistory.recordCSI(record);
+    }
+  };
+
+  public static final CatalogType<MiniatureMarketPriceData> MM = new CatalogType<MiniatureMarketPriceData>("mm", MiniatureMarketPriceData.class) {
+    public long getID(MiniatureMarketPriceData record) {
+      return record.getMmID();
+    }
+    public MiniatureMarketPriceData read(GamesDatabase database, long id) throws Exception {
+      return database.readMMPriceData(id);
+    }
+    public void insert(GamesDatabase database, MiniatureMarketPriceData record) throws Exception {
+      database.insertMMPriceData(record);
+      written(record);
+      Application.statsCache.recordInsert(MMDataStats.MM_DATA_STATS);
+    }
+    public void update(GamesDatabase database, MiniatureMarketPriceData previous, MiniatureMarketPriceData record) throws Exception {
+      database.updateMMPriceData(record);
+      written(record);
+      recordUpdate(MMDataStats.MM_DATA_STATS, previous.getReviewState(), record.getReviewState());
+    }
+    private void written(MiniatureMarketPriceData record) {
+      Application.nameIndex.indexMMData(record);
+      Application.priceCards.updateMM(record);
+      Application.priceHistory.recordMM(record);
+    }
+  };
+
+  private final String name;
+  private final Class<T> recordClass;
+
+  private CatalogType(String name, Class<T> recordClass) {
+    this.name        = name;
+    this.recordClass = recordClass;
+  }
+
+  /**
+   * @param name bgg, csi or mm
+   *
+   * @return The matching type, or null if there isn't one
+   */
+  public static CatalogType<?> forName(String name) {
+    if (BGG.name.equalsIgnoreCase(name)) return BGG;
+    if (CSI.name.equalsIgnoreCase(name)) return CSI;
+    if (MM.name.equalsIgnoreCase(name))  return MM;
+    return null;
+  }
+
+  /**
+   * @return bgg, csi or mm
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The record class, for parsing
+   */
+  public Class<T> getRecordClass() {
+    return recordClass;
+  }
+
+  /**
+   * @return The record's vendor ID, which must be positive
+   */
+  public abstract long getID(T record);
+
+  /**
+   * @return The stored record, or null if there isn't one
+   */
+  public abstract T read(GamesDatabase database, long id) throws Exception;
+
+  /**
+   * Insert a new record, and keep the indexes and stats in step.
+   */
+  public abstract void insert(GamesDatabase database, T record) throws Exception;
+
+  /**
+   * Replace a stored record, and keep the indexes and stats in step.
+   *
+   * @param previous The stored record being replaced, so a change of review state is counted as one
+   */
+  public abstract void update(GamesDatabase database, T previous, T record) throws Exception;
+
+  /**
+   * Count the update the way the controller PUTs do: as a review transition if the state moved.
+   */
+  private static void recordUpdate(String statsType, ReviewState oldState, ReviewState newState) {
+    if ((newState != null) && (newState != oldState)) Application.statsCache.recordReviewTransition(statsType, newState);
+    else                                              Application.statsCache.recordUpdate(statsType);
+  }
+}
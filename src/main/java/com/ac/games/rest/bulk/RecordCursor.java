@@ -0,0 +1,92 @@
+package com.ac.games.rest.bulk;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.Collection;
+import com.ac.games.data.Game;
+import com.ac.games.data.ReviewState;
+import com.ac.games.data.User;
+import com.ac.games.db.GamesDatabase;
+
+/**
+ * Hands out the records of an export one at a time, so nothing but the current record (or the
+ * one document it came from) is held in memory.
+ * <p>
+ * The GamesDatabase has no cursors, so the catalog cursors walk the ID space and read each
+ * record as they get to it.
+ *
+ * @author ac010168
+ */
+public abstract class RecordCursor {
+
+  /**
+   * @return The next record, or null once there are no more
+   */
+  public abstract Object next() throws Exception;
+
+  /**
+   * @return Every Game, in gameID order
+   */
+  public static RecordCursor games(final GamesDatabase database) throws Exception {
+    final long maxGameID = database.getMaxGameID();
+    return new RecordCursor() {
+      long gameID = 0;
+      public Object next() throws Exception {
+        while (gameID < maxGameID) {
+          Game game = database.readGame(++gameID);
+          if (game != null) return game;
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * @param fromID The first bggID to look at
+   * @param toID The last bggID to look at
+   * @param state Only return records in this review state, or null for all of them
+   *
+   * @return The BGG records in the range, in bggID order
+   */
+  public static RecordCursor bggGames(final GamesDatabase database, final long fromID, final long toID, final ReviewState state) {
+    return new RecordCursor() {
+      long bggID = fromID - 1;
+      public Object next() throws Exception {
+        while (bggID < toID) {
+          BGGGame game = database.readBGGGameData(++bggID);
+          if ((game != null) && ((state == null) || (game.getReviewState() == state))) return game;
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * @return The items in the user's collection, or null if there's no such user or collection
+   */
+  public static RecordCursor collection(GamesDatabase database, long userID) throws Exception {
+    User user = database.readUser(userID);
+    if (user == null) return null;
+    Collection collection = database.readCollection(user.getCollectionID());
+    if (collection == null) return null;
+    return of(collection.getGames());
+  }
+
+  /**
+   * @return The items on the user's wishlist
+   */
+  public static RecordCursor wishlist(GamesDatabase database, long userID) throws Exception {
+    return of(database.readWishlistForUser(userID));
+  }
+
+  private static RecordCursor of(final List<?> records) {
+    return new RecordCursor() {
+      final Iterator<?> iterator = (records == null) ? null : records.iterator();
+      public Object next() {
+        return ((iterator != null) && iterator.hasNext()) ? iterator.next() : null;
+      }
+    };
+  }
+}
@@ -3,6 +3,8 @@ package com.ac.games.rest.controller;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -16,13 +18,15 @@ import com.ac.games.data.CoolStuffIncPriceData;
 import com.ac.games.data.MiniatureMarketPriceData;
 import com.ac.games.data.User;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.data.NameMatch;
 import com.ac.games.rest.data.SplitList;
 import com.ac.games.rest.data.WrapList;
+import com.ac.games.rest.index.NameSearchIndex;
 import com.ac.games.rest.message.SimpleErrorData;
+import com.ac.games.rest.session.SessionToken;
 
 /**
  * This class should be the intercepter for REST service access for any Autocomplete
@@ -37,10 +41,38 @@ import com.ac.games.rest.message.SimpleErrorData;
 @RequestMapping("/auto")
 public class AutocompleteController {
 
+  private static final Logger logger = LoggerFactory.getLogger(AutocompleteController.class);
+
+  /**
+   * GET method designed to feed the autocomplete fields.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>source=&lt;game|bgg|csi|mm|item&gt;</code> - The data source.  This is required.</li>
+   * <li><code>value=&lt;full|selected value&gt;</code> - Either full, to get the full name list, or the selected
+   * autocomplete value to resolve.  Default is full.</li>
+   * <li><code>userid=&lt;userID&gt;</code> - The userID.  Required for source=item.</li>
+   * <li><code>fuzzy=&lt;text&gt;</code> - Typo-tolerant search text.  When provided, returns the best matching
+   * values for the source, in the same format as value=full.</li>
+   * <li><code>limit=n</code> - The maximum number of fuzzy matches to return.  Default is 10.</li>
+   * <li><code>token=&lt;sessionToken&gt;</code> - The session token from login.  Can be used in place of userid.</li>
+   * </ul>
+   * 
+   * @param source The source we want autocomplete data for
+   * @param value The value we want to resolve, or full
+   * @param userID The userID, only used for item requests
+   * @param fuzzy The fuzzy search text, if any
+   * @param limit The maximum number of fuzzy matches to return
+   * @param token The session token, if any
+   * 
+   * @return A {@link WrapList}, the resolved object, or {@link SimpleErrorData} message reporting what failed.
+   */
   @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
   public Object getAutoComplete(@RequestParam(value="source") String source,
                                 @RequestParam(value="value", defaultValue="full") String value,
-                                @RequestParam(value="userid", defaultValue="-1") long userID) {
+                                @RequestParam(value="userid", defaultValue="-1") long userID,
+                                @RequestParam(value="fuzzy", defaultValue="null") String fuzzy,
+                                @RequestParam(value="limit", defaultValue="10") int limit,
+                                @RequestParam(value="token", defaultValue="null") String token) {
     
     if (source == null)
       return new SimpleErrorData("Invalid Parameters", "The source parameter was not provided");
@@ -51,8 +83,22 @@ public class AutocompleteController {
         (!source.equalsIgnoreCase("mm")) && (!source.equalsIgnoreCase("item")))
       return new SimpleErrorData("Invalid Parameters", "The source parameter value of " + source + " is not a valid source value.");
     
+    SessionToken session = null;
+    if (!token.equalsIgnoreCase("null")) {
+      session = Application.sessionTokens.validate(token);
+      if (session == null)
+        return new SimpleErrorData("Invalid Session", "The session token is not valid or has expired");
+      if ((userID != -1) && (userID != session.getUserID()))
+        return new SimpleErrorData("Invalid Session", "The session token does not match the provided userID");
+      userID = session.getUserID();
+    }
+    
     if (source.equalsIgnoreCase("item") && (userID == -1))
       return new SimpleErrorData("Invalid Parameters", "Requests with source=item must provide a valid userid");
+    if ((!fuzzy.equalsIgnoreCase("null")) && source.equalsIgnoreCase("item"))
+      return new SimpleErrorData("Invalid Parameters", "Fuzzy searches are not supported for source=item");
+    if (limit <= 0)
+      return new SimpleErrorData("Invalid Parameters", "The limit parameter value of " + limit + " is not a valid limit");
     
     GamesDatabase database = null; 
     Object results = null;
@@ -61,12 +107,16 @@ public class AutocompleteController {
       return new ArrayList<CompactSearchData>();
     
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
-      if (value.equalsIgnoreCase("full")) {
+      if (!fuzzy.equalsIgnoreCase("null")) {
+        Application.nameIndex.ensureBuilt(database);
+        List<NameMatch> matches = Application.nameIndex.search(source, fuzzy, limit);
+        List<String> matchValues = new ArrayList<String>(matches.size());
+        for (NameMatch match : matches)
+          matchValues.add(match.getValue());
+        results = new WrapList(matchValues);
+      } else if (value.equalsIgnoreCase("full")) {
         if (source.equalsIgnoreCase("game"))
           results = new WrapList(database.readGameNamesForAutoComplete());
         else if (source.equalsIgnoreCase("bgg"))
@@ -76,7 +126,7 @@ public class AutocompleteController {
         else if (source.equalsIgnoreCase("mm"))
           results = new WrapList(database.readMMTitlesForAutoComplete());
       } else {
-        System.out.println ("The value I'm going to deconstruct is: " + value);
+        logger.debug("The value I'm going to deconstruct is: {}", value);
         
         if (source.equalsIgnoreCase("game")) {
           //The value format should be "gameName (<optional publisher> - <optional year published>)
@@ -88,37 +138,16 @@ public class AutocompleteController {
             
             results = database.readGamesCompact(value);
           } else {
-            String gameName   = null;
-            String primaryPub = null;
-            int yearPublished = -1;
+            CompactSearchData data = readGameFromAutoValue(database, value);
             
-            int openParen = value.lastIndexOf("(");
-            if (openParen == -1)
-              gameName = value.trim();
-            else {
-              gameName = value.substring(0, openParen - 1).trim();
-              String filterSubString = value.substring(openParen + 1, value.length() - 1);
-              int splitPos = filterSubString.indexOf(" - ");
-              if (splitPos != -1) {
-                //It has a publisher and a date
-                primaryPub = filterSubString.substring(0, splitPos).trim();
-                yearPublished = Integer.parseInt(filterSubString.substring(splitPos+3).trim());
-              } else {
-                //It is a publisher OR a date
-                try {
-                  yearPublished = Integer.parseInt(filterSubString);
-                } catch (NumberFormatException nfe) {
-                  primaryPub = filterSubString;
-                }
-              }
+            //If the exact lookup missed, the user probably mistyped the name.  Try the closest match instead.
+            if (data == null) {
+              Application.nameIndex.ensureBuilt(database);
+              List<NameMatch> matches = Application.nameIndex.search(NameSearchIndex.GAME_SOURCE, value, 1);
+              if ((matches.size() > 0) && (!matches.get(0).getValue().equals(value)))
+                data = readGameFromAutoValue(database, matches.get(0).getValue());
             }
             
-            System.out.println ("Game Name:     " + gameName);
-            System.out.println ("Primary Pub:   " + primaryPub);
-            System.out.println ("yearPublished: " + yearPublished);
-            
-            CompactSearchData data = database.readGameFromAutoName(gameName, primaryPub, yearPublished);
-            
             if (data == null)
               results =  new SimpleErrorData("No Game Found", "I could not find the requested game.");
             else 
@@ -137,11 +166,17 @@ public class AutocompleteController {
             results = splitList;
           else {
             //We've got a modest amount of work to do here.
-            User curUser = database.readUser(userID);
-            if (curUser == null)
-              return new SimpleErrorData("No User Found", "There is no User in the system matching this userid");
+            long collectionID = -1;
+            if (session != null)
+              collectionID = session.getCollectionID();
+            else {
+              User curUser = database.readUser(userID);
+              if (curUser == null)
+                return new SimpleErrorData("No User Found", "There is no User in the system matching this userid");
+              collectionID = curUser.getCollectionID();
+            }
             
-            Collection curCollection = database.readCollection(curUser.getCollectionID());
+            Collection curCollection = database.readCollection(collectionID);
             if (curCollection == null)
               return new SimpleErrorData("No Collection Found", "This user does not appear to have a collection yet");
             
@@ -172,20 +207,10 @@ public class AutocompleteController {
         } else if (source.equalsIgnoreCase("bgg")) {
           //The value format should be "gameName (bggID - <optional year published>)
           long bggID = -1;
-          int openParen = value.lastIndexOf("(");
-          
-          String filterSubString = value.substring(openParen + 1, value.length() - 1);
-          int splitPos = filterSubString.indexOf(" - ");
-          
-          //If we have the split pos, then substring again, otherwise just take the value
-          if (splitPos != -1)
-            filterSubString = filterSubString.substring(0, splitPos).trim();
-          else filterSubString = filterSubString.trim();
-          
           try {
-            bggID = Long.parseLong(filterSubString);
+            bggID = parseAutoValueID(value);
             
-            System.out.println ("bggID: " + bggID);
+            logger.debug("bggID: {}", bggID);
             
             
             BGGGame game = database.readBGGGameData(bggID);
@@ -195,23 +220,13 @@ public class AutocompleteController {
               results = game;
           } catch (Throwable t) {
             results = new SimpleErrorData("Processing Error", "Unable to retrieve BGGGame data from value " + value);
-            t.printStackTrace();
+            logger.error("Unable to retrieve BGGGame data from value " + value, t);
           }
         } else if (source.equalsIgnoreCase("csi")) {
           //The value format should be "title (csiID - category)
           long csiID = -1;
-          int openParen = value.lastIndexOf("(");
-          
-          String filterSubString = value.substring(openParen + 1, value.length() - 1);
-          int splitPos = filterSubString.indexOf(" - ");
-          
-          //If we have the split pos, then substring again, otherwise just take the value
-          if (splitPos != -1)
-            filterSubString = filterSubString.substring(0, splitPos).trim();
-          else filterSubString = filterSubString.trim();
-          
           try {
-            csiID = Long.parseLong(filterSubString);
+            csiID = parseAutoValueID(value);
             CoolStuffIncPriceData data = database.readCSIPriceData(csiID);
             if (data == null)
               results =  new SimpleErrorData("No Game Found", "I could not find the requested game.");
@@ -223,18 +238,8 @@ public class AutocompleteController {
         } else if (source.equalsIgnoreCase("mm")) {
           //The value format should be "title (mmID - category)
           long mmID = -1;
-          int openParen = value.lastIndexOf("(");
-          
-          String filterSubString = value.substring(openParen + 1, value.length() - 1);
-          int splitPos = filterSubString.indexOf(" - ");
-          
-          //If we have the split pos, then substring again, otherwise just take the value
-          if (splitPos != -1)
-            filterSubString = filterSubString.substring(0, splitPos).trim();
-          else filterSubString = filterSubString.trim();
-          
           try {
-            mmID = Long.parseLong(filterSubString);
+            mmID = parseAutoValueID(value);
             MiniatureMarketPriceData data = database.readMMPriceData(mmID);
             if (data == null)
               results =  new SimpleErrorData("No Game Found", "I could not find the requested game.");
@@ -246,11 +251,11 @@ public class AutocompleteController {
         }
       }
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -259,5 +264,102 @@ public class AutocompleteController {
     
     return results;
   }
-}
-
+  
+  /**
+   * Helper method to break down a game autocomplete value and look it up.  The value format should be
+   * "gameName (&lt;optional publisher&gt; - &lt;optional year published&gt;)".
+   * 
+   * @param database The database to read from
+   * @param value The autocomplete value
+   * 
+   * @return The matching {@link CompactSearchData}, or null if nothing matched
+   * 
+   * @throws DatabaseOperationException
+   * @throws ConfigurationException
+   */
+  private CompactSearchData readGameFromAutoValue(GamesDatabase database, String value) throws DatabaseOperationException, ConfigurationException {
+    GameAutoValue parsed = parseGameAutoValue(value);
+    
+    logger.debug("Game Name:     {}", parsed.gameName);
+    logger.debug("Primary Pub:   {}", parsed.primaryPub);
+    logger.debug("yearPublished: {}", parsed.yearPublished);
+    
+    return database.readGameFromAutoName(parsed.gameName, parsed.primaryPub, parsed.yearPublished);
+  }
+  
+  /**
+   * Break down a game autocomplete value.  The value format should be
+   * "gameName (&lt;optional publisher&gt; - &lt;optional year published&gt;)".
+   * 
+   * @param value The autocomplete value
+   * 
+   * @return The name, publisher and year from the value
+   */
+  public static GameAutoValue parseGameAutoValue(String value) {
+    String gameName   = null;
+    String primaryPub = null;
+    int yearPublished = -1;
+    
+    int openParen = value.lastIndexOf("(");
+    if (openParen == -1)
+      gameName = value.trim();
+    else {
+      gameName = value.substring(0, openParen - 1).trim();
+      String filterSubString = value.substring(openParen + 1, value.length() - 1);
+      int splitPos = filterSubString.indexOf(" - ");
+      if (splitPos != -1) {
+        //It has a publisher and a date
+        primaryPub = filterSubString.substring(0, splitPos).trim();
+        yearPublished = Integer.parseInt(filterSubString.substring(splitPos+3).trim());
+      } else {
+        //It is a publisher OR a date
+        try {
+          yearPublished = Integer.parseInt(filterSubString);
+        } catch (NumberFormatException nfe) {
+          primaryPub = filterSubString;
+        }
+      }
+    }
+    
+    return new GameAutoValue(gameName, primaryPub, yearPublished);
+  }
+  
+  /**
+   * Pull the ID out of a bgg, csi or mm autocomplete value.  The value format should be
+   * "title (ID - &lt;year published or category&gt;)".
+   * 
+   * @param value The autocomplete value
+   * 
+   * @return The ID
+   * 
+   * @throws NumberFormatException If there is no ID where we expect one
+   */
+  public static long parseAutoValueID(String value) {
+    int openParen = value.lastIndexOf("(");
+    
+    String filterSubString = value.substring(openParen + 1, value.length() - 1);
+    int splitPos = filterSubString.indexOf(" - ");
+    
+    //If we have the split pos, then substring again, otherwise just take the value
+    if (splitPos != -1)
+      filterSubString = filterSubString.substring(0, splitPos).trim();
+    else filterSubString = filterSubString.trim();
+    
+    return Long.parseLong(filterSubString);
+  }
+  
+  /**
+   * The pieces of a game autocomplete value.
+   */
+  public static class GameAutoValue {
+    public final String gameName;
+    public final String primaryPub;
+    public final int yearPublished;
+    
+    GameAutoValue(String gameName, String primaryPub, int yearPublished) {
+      this.gameName      = gameName;
+      this.primaryPub    = primaryPub;
+      this.yearPublished = yearPublished;
+    }
+  }
+}
\ No newline at end of file
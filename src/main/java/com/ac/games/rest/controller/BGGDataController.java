@@ -6,6 +6,8 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -21,19 +23,24 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.ac.games.data.BGGGame;
+import com.ac.games.data.BGGGameStats;
 import com.ac.games.data.Game;
-import com.ac.games.data.GameReltn;
 import com.ac.games.data.GameType;
 import com.ac.games.data.ReviewState;
 import com.ac.games.data.parser.BGGGameParser;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.exception.GameNotFoundException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.metrics.TimedRestTemplate;
+import com.ac.games.rest.review.ApprovalService;
+import com.ac.games.rest.review.ReviewSource;
+import com.ac.games.rest.writebehind.BGGSyncTask;
 
 /**
  * This class should be the intercepter for REST service access to the BoardGameGeek game
@@ -49,6 +56,8 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/external/bggdata")
 public class BGGDataController {
 
+  private static final Logger logger = LoggerFactory.getLogger(BGGDataController.class);
+
   /** The standard URI template by which games can be accessed by bggid */
   public final static String URL_TEMPLATE = "http://www.boardgamegeek.com/xmlapi/boardgame/<bggid>?stats=1";
   /** The replacement marker in the URL_TEMPLATE */
@@ -73,6 +82,8 @@ public class BGGDataController {
    * <li><code>batch=n</code> - This indicates whether to generate a batch on game requests including bggID and up
    * to 'n' additional sequential elements.  Default is 1.</li>
    * <li><code>sync=&lt;y|n&gt;</code> - Only useful on hybrid requests, once we build hybrid, automatically commit it back to database</li>
+   * <li><code>ids=&lt;list&gt;</code> - A comma separated list of bggIDs and ranges, like <code>12,15,20-24</code>.  Only
+   * with source db; returns a list of {@link BatchItem} entries in the order asked for.</li>
    * </ul>
    * 
    * @param bggID The bggID that we are using to base this request on.
@@ -82,6 +93,7 @@ public class BGGDataController {
    * @param batch The number of rows to retrieve in batch from the server
    * @param sync  A flag indicating whether we should automatically post an update if we determine that newly read content
    * has changed.  This simplifies front-end workflow.
+   * @param ids The list of bggIDs to read from the database
    * 
    * @return A {@link BGGGame} object or {@link SimpleErrorData} message reporting the failure
    */
@@ -93,7 +105,14 @@ public class BGGDataController {
                            @RequestParam(value="source", defaultValue="bgg") String source,
                            @RequestParam(value="batch", defaultValue="1") int batch,
                            @RequestParam(value="sync", defaultValue="n") String sync,
-                           @RequestParam(value="filter", defaultValue="null") String filter) {
+                           @RequestParam(value="filter", defaultValue="null") String filter,
+                           @RequestParam(value="ids", defaultValue="null") String ids) {
+    
+    if (!ids.equalsIgnoreCase("null")) {
+      if (!source.equalsIgnoreCase("db"))
+        return new SimpleErrorData("Invalid Parameters", "The ids parameter can only be used with source db");
+      return BatchRequests.read(BatchReader.BGG, ids);
+    }
     
     if ((!source.equalsIgnoreCase("bgg")) && (!source.equalsIgnoreCase("db")) && (!source.equalsIgnoreCase("hybrid")))
       return new SimpleErrorData("Invalid Parameters", "The source parameter value of " + source + " is not a valid source value.");
@@ -136,15 +155,15 @@ public class BGGDataController {
     List<BGGGame> dbSources  = new LinkedList<BGGGame>();
     
     //TODO - DEBUG
-    System.out.println ("bggID:    " + bggID);
-    System.out.println ("name:     " + name);
-    System.out.println ("review:   " + review);
-    System.out.println ("source:   " + source);
-    System.out.println ("batch:    " + batch);
-    System.out.println ("sync:     " + sync);
-    System.out.println ("filter:   " + filter);
+    logger.debug("bggID:    {}", bggID);
+    logger.debug("name:     {}", name);
+    logger.debug("review:   {}", review);
+    logger.debug("source:   {}", source);
+    logger.debug("batch:    {}", batch);
+    logger.debug("sync:     {}", sync);
+    logger.debug("filter:   {}", filter);
     
-    System.out.println ("execMode: " + execMode);
+    logger.debug("execMode: {}", execMode);
     
     if (source.equalsIgnoreCase("db") || source.equalsIgnoreCase("hybrid")) {
       GamesDatabase database = null; 
@@ -152,24 +171,20 @@ public class BGGDataController {
       List<BGGGame> allGames = new LinkedList<BGGGame>();
       
       try {
-        if (Application.database == null)
-          Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-        database = Application.database;
-        database.initializeDBConnection();
+        database = Application.getDatabase();
         
         if (execMode == BGGID_EXEC_MODE) {
-          System.out.println ("I'm running in BGGID Exec Mode");
+          logger.debug("I'm running in BGGID Exec Mode");
           if (batch == 1)
-            singleGame = database.readBGGGameData(bggID);
+            //Hybrid merges into what it reads, so only the plain database read can share the stored copy
+            singleGame = source.equalsIgnoreCase("db") ? HotReads.readBGGGame(database, bggID) : database.readBGGGameData(bggID);
           else {
-            for (long i = bggID; i < (bggID + batch); i++) {
-              singleGame = database.readBGGGameData(i);
-              if (singleGame != null) 
-                allGames.add(singleGame);
-            }
+            List<BatchItem> items = Application.batchReader.read(database, BatchReader.BGG, BatchReader.range(bggID, batch));
+            for (Object found : BatchReader.foundOnly(items))
+              allGames.add((BGGGame)found);
           }
         } else if (execMode == NAME_EXEC_MODE) {
-          System.out.println ("I'm running in Name Exec Mode");
+          logger.debug("I'm running in Name Exec Mode");
           
           GameType filterType = null;
           if (filter.equalsIgnoreCase("base"))    filterType = GameType.BASE;
@@ -178,22 +193,24 @@ public class BGGDataController {
           if (filter.equalsIgnoreCase("baseccg")) filterType = GameType.BASE_AND_COLLECTIBLE;
 
           List<BGGGame> results = database.readBGGGameByName(name, true, filterType);
-          System.out.println ("results.size(): " + results.size());
+          logger.debug("results.size(): {}", results.size());
           
           allGames.addAll(results);
         } else if ((execMode == REVIEW_NEW_EXEC_MODE) || (execMode == REVIEW_OLD_EXEC_MODE)) {
-          System.out.println ("I'm running in Review Exec Mode");
+          logger.debug("I'm running in Review Exec Mode");
 
-          singleGame = database.readBGGGameForReview(review);
+          singleGame = Application.reviewQueue.nextItem(database, ReviewSource.BGG, review);
         } 
       } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
+        logger.error("Database operation error", doe);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
       } catch (ConfigurationException ce) {
-        ce.printStackTrace();
+        logger.error("Database configuration error", ce);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+      } catch (IllegalArgumentException iae) {
+        return new SimpleErrorData("Invalid Parameters", iae.getMessage());
       } finally {
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       }
@@ -271,6 +288,44 @@ public class BGGDataController {
     //We need to keep all the Review States, and other fields that we made decisions about
     //otherwise prioritize new fields from BGG
     //Note, we need to check for nulls on any field that may have nulls.
+    List<BGGGame> finalList = mergeHybrid(dbSources, bggSources);
+    
+    if (sync.equalsIgnoreCase("y")) {
+      GamesDatabase database = null;
+      try {
+        database = Application.getDatabase();
+      } catch (ConfigurationException ce) {
+        logger.error("Database configuration error", ce);
+        return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+      }
+      
+      //We're handing the refreshed data straight back, so nobody is waiting on these writes.
+      //Let the write-behind queue batch them up.
+      for (BGGGame curGame : finalList) {
+        //BGG had no match for this one, so there's nothing to sync
+        if (curGame == null) continue;
+        Application.writeBehind.enqueue(new BGGSyncTask(curGame), database);
+        Application.nameIndex.indexBGGGame(curGame);
+        Application.statsCache.recordUpdate(BGGGameStats.BGG_GAME_STATS);
+      }
+    }
+    
+    if ((batch == 1) && (execMode != NAME_EXEC_MODE)) return finalList.get(0);
+    else                                              return finalList;
+  }  
+
+  /**
+   * Merge the fresh BGG copies of our games into the database copies, keeping the review
+   * states and other fields we made decisions about, but otherwise preferring what BGG says now.
+   * <p>
+   * Database games with no matching BGG game (BGG can be flaky) come back as null entries.
+   * 
+   * @param dbSources The games read from the database.  These are updated in place
+   * @param bggSources The games just read from BGG
+   * 
+   * @return The merged games, in the order of <code>dbSources</code>
+   */
+  public static List<BGGGame> mergeHybrid(List<BGGGame> dbSources, List<BGGGame> bggSources) {
     List<BGGGame> finalList = new ArrayList<BGGGame>(dbSources.size());
     for (BGGGame dbSource : dbSources) {
       BGGGame bggSource = null;
@@ -343,31 +398,8 @@ public class BGGDataController {
         finalList.add(dbSource);
       }
     }
-    
-    if (sync.equalsIgnoreCase("y")) {
-      GamesDatabase database = null; 
-      try {
-        database = Application.database;
-        database.initializeDBConnection();
-        
-        for (BGGGame curGame : finalList)
-          database.updateBGGGameData(curGame);
-      } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
-        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-        return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
-      } catch (ConfigurationException ce) {
-        ce.printStackTrace();
-        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-        return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
-      } finally {
-        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-      }
-    }
-    
-    if ((batch == 1) && (execMode != NAME_EXEC_MODE)) return finalList.get(0);
-    else                                              return finalList;
-  }  
+    return finalList;
+  }
 
   /**
    * PUT Method, which should update (or potentially upsert) the provided game object.
@@ -408,17 +440,28 @@ public class BGGDataController {
     if ((newState == ReviewState.REVIEWED) && (primaryPub.equalsIgnoreCase("null")))
       return new SimpleErrorData("Invalid Parameters", "This game cannot be reviewed without a primary publisher");
     
+    boolean stateChanged = false;
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
+      //Make sure a pending sync write can't land on top of this one
+      Application.writeBehind.flushKey(BGGSyncTask.buildKey(bggID));
       
       //No newState value means we're running a simple PUT, no other changes required.
       if (newState == null)
         database.updateBGGGameData(game);
-      else {
+      else if (newState == ReviewState.REVIEWED) {
+        //The reads and writes of an approval run as one unit of work, undone together on a failure
+        ApprovalService.Result result = Application.approvals.approveBGG(database, game, primaryPub);
+        if (result.getOutcome() == ApprovalService.Outcome.NOT_FOUND)
+          return new SimpleErrorData("Game Not Found", "The requested item could not be found in the database.");
+        if (result.getOutcome() == ApprovalService.Outcome.PARENT_NOT_FOUND)
+          return new SimpleErrorData("Parent Not Found", "The Parent Game for this Expansion could not be found");
+        if (result.getOutcome() == ApprovalService.Outcome.APPROVED) {
+          stateChanged = true;
+          Application.nameIndex.indexGame(result.getGame());
+        }
+      } else {
         //We now need to find out if the state is changing.
         BGGGame prevGame = database.readBGGGameData(bggID);
         //If the state isn't changing, then nothing else needed but to run the update
@@ -426,56 +469,16 @@ public class BGGDataController {
           database.updateBGGGameData(game);
         else {
           //The state of the game is changing, so we need to flex our actions based on what is was and what it will now be.
-          if (newState == ReviewState.REVIEWED) {
-            //Because we know the state is not the same, the previous state was either REJECTED or PENDING, meaning we need to
-            //create the new Game entry, as well as the GameReltn entry
-            
-            //First we have to figure out if this game is an expansion, what the actual gameID value of the parent game is.
-            long parentGameID = -1;
-            Game parentGame   = null;
-            if (game.getGameType() == GameType.EXPANSION) {
-              parentGame = database.readGameByBGGID(game.getParentGameID());
-              if (parentGame == null)
-                return new SimpleErrorData("Parent Not Found", "The Parent Game for this Expansion could not be found");
-              parentGameID = parentGame.getGameID();
-            }
-            
-            game.setReviewState(newState);
-            game.setReviewDate(new Date());
-            database.updateBGGGameData(game);
-            
-            //Now we need to create the new Game and GameReltn entries
-            long gameID      = database.getMaxGameID() + 1;
-            Game newGame = convertBGGGameToGame(game, gameID, parentGameID, primaryPub);
-            database.insertGame(newGame);
-            
-            long gameReltnID = database.getMaxGameReltnID() + 1;
-            GameReltn newReltn = new GameReltn();
-            newReltn.setReltnID(gameReltnID);
-            newReltn.setGameID(gameID);
-            newReltn.setBggID(game.getBggID());
-            newReltn.setCsiIDs(new ArrayList<Long>());
-            newReltn.setMmIDs(new ArrayList<Long>());
-            newReltn.setAsinKeys(new ArrayList<String>());
-            newReltn.setOtherSites(new ArrayList<Long>());
-            database.insertGameReltn(newReltn);
-            
-            //If we have a parent ID that needs updating to include this child, update it now
-            if (parentGame != null) {
-              List<Long> expansionIDs = parentGame.getExpansionIDs();
-              if (expansionIDs == null) expansionIDs = new ArrayList<Long>(1);
-              expansionIDs.add(gameID);
-              parentGame.setExpansionIDs(expansionIDs);
-              database.updateGame(parentGame);
-            }
-            
-          } else if ((newState == ReviewState.REJECTED) || (newState == ReviewState.PENDING)) {
+          stateChanged = true;
+          if ((newState == ReviewState.REJECTED) || (newState == ReviewState.PENDING)) {
             //This is only complicated if the game was previously approved
             if (prevGame.getReviewState() == ReviewState.REVIEWED) {
               //First, we need to find the actual Game entry for the game in the system
               Game convertedGame = database.readGameByBGGID(bggID);
-              if (convertedGame != null)
+              if (convertedGame != null) {
                 database.deleteGame(convertedGame.getGameID());
+                Application.nameIndex.removeGame(convertedGame);
+              }
               
               //Next we have to figure out if this game is an expansion, what the actual gameID value of the parent game is.
               if ((game.getGameType() == GameType.EXPANSION) && (convertedGame != null)) {
@@ -504,17 +507,21 @@ public class BGGDataController {
         
       }
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
     }
     
+    if (stateChanged) Application.statsCache.recordReviewTransition(BGGGameStats.BGG_GAME_STATS, newState);
+    else              Application.statsCache.recordUpdate(BGGGameStats.BGG_GAME_STATS);
+    if (newState != null) Application.reviewQueue.complete(ReviewSource.BGG, bggID);
+    Application.nameIndex.indexBGGGame(game);
     return new SimpleMessageData("Operation Successful", "The Put Request Completed Successfully");
   }
   
@@ -535,18 +542,19 @@ public class BGGDataController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
+      //Make sure a pending sync write can't land on top of this one
+      Application.writeBehind.flushKey(BGGSyncTask.buildKey(game.getBggID()));
       
       database.insertBGGGameData(game);
+      Application.nameIndex.indexBGGGame(game);
+      Application.statsCache.recordInsert(BGGGameStats.BGG_GAME_STATS);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -570,18 +578,20 @@ public class BGGDataController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
+      //Make sure a pending sync write can't land on top of this one
+      Application.writeBehind.flushKey(BGGSyncTask.buildKey(bggID));
       
       database.deleteBGGGameData(bggID);
+      Application.nameIndex.removeBGGGame(bggID);
+      Application.reviewQueue.complete(ReviewSource.BGG, bggID);
+      Application.statsCache.recordDelete(BGGGameStats.BGG_GAME_STATS);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -601,14 +611,14 @@ public class BGGDataController {
    */
   private Object processHTMLRequest(String bggIDs, int batch) {
     //Create the RestTemplate to access the external XML API
-    RestTemplate restTemplate = new RestTemplate();
+    RestTemplate restTemplate = new TimedRestTemplate();
     HttpHeaders headers = new HttpHeaders();
     headers.setAccept(Arrays.asList(MediaType.TEXT_XML));
     HttpEntity<String> entity = new HttpEntity<String>("parameters", headers);
     
     Object gameResult = null;
     try {
-      System.out.println ("Beginning to parse BGG ID(s): " + bggIDs + "...");
+      logger.debug("Beginning to parse BGG ID(s): {}...", bggIDs);
       
       //Run the GET command to retrieve the XML Body
       ResponseEntity<String> gameResponse = restTemplate.exchange(URL_TEMPLATE.replace(BGGID_MARKER, bggIDs), 
@@ -620,70 +630,27 @@ public class BGGDataController {
       
       return gameResult;
     } catch (GameNotFoundException gnfe) {
-      System.out.println ("I could not find this game.");
+      logger.debug("I could not find this game.");
       return new SimpleErrorData("Game Not Found", "The requested bggid of " + bggIDs + " could not be found.");
     } catch (HttpServerErrorException hsee) {
       if (hsee.getMessage().contains("503 Service Unavailable")) {
-        System.out.println ("The BGG server is icing me out again...");
+        logger.warn("The BGG server is icing me out again...");
         return new SimpleErrorData("Server Timeout 503", "The BGG server has stopped answering my requests");
       } else {
-        System.out.println ("Something probably wrong happened here...");
-        hsee.printStackTrace();
+        logger.error("Something probably wrong happened here...", hsee);
         return new SimpleErrorData("Operation Error", "An error has occurred: " + hsee.getMessage());
       }
     } catch (HttpClientErrorException hcee) {
       if (hcee.getMessage().contains("404 Not Found")) {
-        System.out.println ("I could not find this game.");
+        logger.debug("I could not find this game.");
         return new SimpleErrorData("Game Not Found", "The requested bggid of " + bggIDs + " could not be found.");
       } else {
-        System.out.println ("Something probably wrong happened here...");
-        hcee.printStackTrace();
+        logger.error("Something probably wrong happened here...", hcee);
         return new SimpleErrorData("Operation Error", "An error has occurred: " + hcee.getMessage());
       }
     } catch (Throwable t) {
-      System.out.println ("Something terribly wrong happened here...");
-      t.printStackTrace();
+      logger.error("Something terribly wrong happened here...", t);
       return new SimpleErrorData("Operation Error", "An error has occurred: " + t.getMessage());
     }
   }
-  
-  /**
-   * Helper method to convert a BGGGame object into a Game Object
-   * 
-   * @param bggGame The game we want to convert
-   * @param gameID  The new gameID sequence chosen for the game
-   * @param parentGameID The parentGameID (only required for expansion games)
-   * @param primaryPublisher The primary publisher chosen for this game
-   * 
-   * @return A completed Game object
-   */
-  private Game convertBGGGameToGame(BGGGame bggGame, long gameID, long parentGameID, String primaryPublisher) {
-    Game game = new Game();
-    game.setGameID(gameID);
-    game.setBggID(bggGame.getBggID());
-    game.setName(bggGame.getName());
-    game.setYearPublished(bggGame.getYearPublished());
-    game.setMinPlayers(bggGame.getMinPlayers());
-    game.setMaxPlayers(bggGame.getMaxPlayers());
-    game.setMinPlayingTime(bggGame.getMinPlayingTime());
-    game.setMaxPlayingTime(bggGame.getMaxPlayingTime());
-    game.setImageURL(bggGame.getImageURL());
-    game.setImageThumbnailURL(bggGame.getImageThumbnailURL());
-    game.setDescription(bggGame.getDescription());
-    game.setPrimaryPublisher(primaryPublisher);
-    game.setPublishers(bggGame.getPublishers());
-    game.setDesigners(bggGame.getDesigners());
-    game.setCategories(bggGame.getCategories());
-    game.setMechanisms(bggGame.getMechanisms());
-    game.setGameType(bggGame.getGameType());
-    game.setAddDate(new Date());
-    
-    //If it's a parent game, Let's set an empty list so we can make it easier to update later
-    if ((game.getGameType() == GameType.BASE) || (game.getGameType() == GameType.COLLECTIBLE))
-      game.setExpansionIDs(new LinkedList<Long>());
-    else
-      game.setParentGameID(parentGameID);
-    
-    return game;
-  }
 }
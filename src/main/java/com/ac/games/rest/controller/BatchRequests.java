@@ -0,0 +1,59 @@
+package com.ac.games.rest.controller;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
+import com.ac.games.rest.message.SimpleErrorData;
+
+/**
+ * The shared handling of the <code>ids=</code> parameter on the GET endpoints.
+ * 
+ * @author ac010168
+ */
+final class BatchRequests {
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchRequests.class);
+
+  private BatchRequests() {}
+
+  /**
+   * @param source The kind of record to read
+   * @param ids The IDs, in the order they should come back in
+   * 
+   * @return A List of {@link BatchItem} entries, or {@link SimpleErrorData} if the database can't be reached
+   */
+  static Object read(BatchReader.Source source, List<Long> ids) {
+    GamesDatabase database = null;
+    try {
+      database = Application.getDatabase();
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    }
+    List<BatchItem> items = Application.batchReader.read(database, source, ids);
+    logger.debug("Read {} batch IDs", items.size());
+    return items;
+  }
+
+  /**
+   * @param source The kind of record to read
+   * @param ids The <code>ids=</code> parameter, like <code>12,15,20-24</code>
+   * 
+   * @return A List of {@link BatchItem} entries, or {@link SimpleErrorData} if the IDs are invalid
+   * or the database can't be reached
+   */
+  static Object read(BatchReader.Source source, String ids) {
+    try {
+      return read(source, BatchReader.parseIDs(ids));
+    } catch (IllegalArgumentException iae) {
+      return new SimpleErrorData("Invalid Parameters", iae.getMessage());
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.ac.games.rest.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BulkExporter;
+import com.ac.games.rest.bulk.RecordCursor;
+import com.ac.games.rest.message.SimpleErrorData;
+
+/**
+ * This class should be the intercepter for REST service access to the bulk exports.
+ * <p>
+ * It should handle all request that come in under the /bulk/export entry.  At this time
+ * it will only support GET requests.
+ * 
+ * @author ac010168
+ */
+@RestController
+@RequestMapping("/bulk/export")
+public class BulkExportController {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkExportController.class);
+
+  /** The widest bggID range one BGG export may walk */
+  public static long maxBGGRange = Long.getLong("games.export.maxBGGRange", 1000000L);
+
+  /**
+   * GET method designed to stream a whole data set, one record per line.<p>
+   * The records are written as they're read, with chunked encoding, see {@link BulkExporter}.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>type=games|bgg|collection|wishlist</code> - What to export.  This is required.</li>
+   * <li><code>format=ndjson|csv</code> - The output format.  Defaults to ndjson.</li>
+   * <li><code>fields=&lt;field,field,...&gt;</code> - Only write these fields, in this order.</li>
+   * <li><code>gzip=y</code> - Compress the response.</li>
+   * <li><code>from=&lt;bggID&gt;</code>, <code>to=&lt;bggID&gt;</code> - The bggID range, required for bgg.</li>
+   * <li><code>review=pending|reviewed|rejected</code> - Only export BGG records in this review state.</li>
+   * <li><code>userid=&lt;userID&gt;</code> - The user, required for collection and wishlist.</li>
+   * </ul>
+   * 
+   * @return null once the export has been streamed, or a {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.GET)
+  public Object getExport(@RequestParam(value="type") String type,
+                          @RequestParam(value="format", defaultValue="ndjson") String format,
+                          @RequestParam(value="fields", defaultValue="") String fields,
+                          @RequestParam(value="gzip", defaultValue="n") String gzip,
+                          @RequestParam(value="from", defaultValue="-1") long fromID,
+                          @RequestParam(value="to", defaultValue="-1") long toID,
+                          @RequestParam(value="review", defaultValue="null") String review,
+                          @RequestParam(value="userid", defaultValue="-1") long userID,
+                          HttpServletResponse response) {
+    if ((!format.equalsIgnoreCase(BulkExporter.FORMAT_NDJSON)) && (!format.equalsIgnoreCase(BulkExporter.FORMAT_CSV)))
+      return new SimpleErrorData("Invalid Parameters", "The format parameter value of " + format + " is not a valid export format");
+
+    ReviewState state = null;
+    if (review.equalsIgnoreCase("pending"))  state = ReviewState.PENDING;
+    if (review.equalsIgnoreCase("reviewed")) state = ReviewState.REVIEWED;
+    if (review.equalsIgnoreCase("rejected")) state = ReviewState.REJECTED;
+    if ((state == null) && (!review.equalsIgnoreCase("null")))
+      return new SimpleErrorData("Invalid Parameters", "The review parameter value of " + review + " is not a valid review value");
+    
+    GamesDatabase database = null;
+    RecordCursor cursor = null;
+    try {
+      database = Application.getDatabase();
+      
+      if (type.equalsIgnoreCase("games"))
+        cursor = RecordCursor.games(database);
+      else if (type.equalsIgnoreCase("bgg")) {
+        if ((fromID <= 0) || (toID < fromID) || (toID - fromID >= maxBGGRange))
+          return new SimpleErrorData("Invalid Parameters", "The bgg export needs a from and to bggID range of at most " + maxBGGRange);
+        cursor = RecordCursor.bggGames(database, fromID, toID, state);
+      } else if (type.equalsIgnoreCase("collection") || type.equalsIgnoreCase("wishlist")) {
+        if (userID <= 0)
+          return new SimpleErrorData("Invalid Parameters", "The " + type + " export needs a userID");
+        if (type.equalsIgnoreCase("collection")) {
+          cursor = RecordCursor.collection(database, userID);
+          if (cursor == null)
+            return new SimpleErrorData("Collection Not Found", "No Collection could be found for this userID");
+        } else cursor = RecordCursor.wishlist(database, userID);
+      } else
+        return new SimpleErrorData("Invalid Parameters", "The type parameter value of " + type + " is not a valid export type");
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    } catch (Exception e) {
+      logger.error("Database operation error", e);
+      return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + e.getMessage());
+    }
+    
+    //No content length, so the container sends it chunked
+    boolean csv = format.equalsIgnoreCase(BulkExporter.FORMAT_CSV);
+    response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+    if (gzip.equalsIgnoreCase("y")) response.setHeader("Content-Encoding", "gzip");
+    try {
+      OutputStream out = response.getOutputStream();
+      if (gzip.equalsIgnoreCase("y")) out = new GZIPOutputStream(out, 64 * 1024);
+      Application.exporter.export(cursor, out, format, BulkExporter.parseFields(fields));
+      if (out instanceof GZIPOutputStream) ((GZIPOutputStream)out).finish();
+      out.flush();
+    } catch (IOException ioe) {
+      logger.warn("The {} export was cut off: {}", type, ioe.getMessage());
+    }
+    return null;
+  }
+}
@@ -0,0 +1,78 @@
+package com.ac.games.rest.controller;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BulkImporter;
+import com.ac.games.rest.bulk.CatalogType;
+import com.ac.games.rest.data.ImportSummary;
+import com.ac.games.rest.message.SimpleErrorData;
+
+/**
+ * This class should be the intercepter for REST service access to the bulk catalog import.
+ * <p>
+ * It should handle all request that come in under the /bulk/import entry.  At this time
+ * it will only support POST requests.
+ * 
+ * @author ac010168
+ */
+@RestController
+@RequestMapping("/bulk/import")
+public class BulkImportController {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkImportController.class);
+
+  /**
+   * POST method designed to load a stream of BGG, CSI or MM records in one request.<p>
+   * The body is newline delimited JSON, one record per line, in the same form the single record
+   * POSTs to /external/bggdata, /external/csidata and /external/mmdata take.  Records we already
+   * have are updated, the rest are inserted.  The body is read as it arrives, see {@link BulkImporter}.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>type=bgg|csi|mm</code> - The kind of record on each line.  This is required.</li>
+   * <li><code>batch=&lt;size&gt;</code> - The number of records written per batch.</li>
+   * </ul>
+   * 
+   * @param type The record type
+   * @param batchSize The batch size
+   * @param request The request, which we read the body from directly
+   * 
+   * @return An {@link ImportSummary} or {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.POST, produces="application/json;charset=UTF-8")
+  public Object postImport(@RequestParam(value="type") String type,
+                           @RequestParam(value="batch", defaultValue="-1") int batchSize,
+                           HttpServletRequest request) {
+    CatalogType<?> catalogType = CatalogType.forName(type);
+    if (catalogType == null)
+      return new SimpleErrorData("Invalid Parameters", "The type parameter value of " + type + " is not a valid import type");
+    
+    if (batchSize == -1) batchSize = BulkImporter.defaultBatchSize;
+    if ((batchSize <= 0) || (batchSize > BulkImporter.maxBatchSize))
+      return new SimpleErrorData("Invalid Parameters", "The batch size must be between 1 and " + BulkImporter.maxBatchSize);
+    
+    GamesDatabase database = null; 
+    try {
+      database = Application.getDatabase();
+      
+      return Application.importer.importRecords(database, catalogType, request.getInputStream(), batchSize);
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    } catch (IOException ioe) {
+      logger.error("Unable to read the import stream", ioe);
+      return new SimpleErrorData("Operation Error", "An error occurred reading the import: " + ioe.getMessage());
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.ac.games.rest.controller;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.data.BulkReviewSummary;
+import com.ac.games.rest.data.ReviewDecision;
+import com.ac.games.rest.message.SimpleErrorData;
+import com.ac.games.rest.review.ApprovalService;
+
+/**
+ * This class should be the intercepter for REST service access to the bulk review.
+ * <p>
+ * It should handle all request that come in under the /bulk/review entry.  At this time
+ * it will only support POST requests.
+ *
+ * @author ac010168
+ */
+@RestController
+@RequestMapping("/bulk/review")
+public class BulkReviewController {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkReviewController.class);
+
+  /**
+   * POST method designed to approve or reject many BGG, CSI and MM records in one request.<p>
+   * The body is a JSON array of decisions, each one like
+   * <code>{"source":"csi", "id":1234, "review":"approve", "gameID":56}</code>:
+   * <ul>
+   * <li><code>source=bgg|csi|mm</code> - The kind of record.</li>
+   * <li><code>id</code> - The bggID, csiID or mmID.</li>
+   * <li><code>review=approve|reject</code> - The decision.</li>
+   * <li><code>primaryPub</code> - The primary publisher, required to approve a bgg record.</li>
+   * <li><code>gameID</code> - The game to link to, required to approve a csi or mm record.</li>
+   * </ul>
+   * Each decision is run on its own, so some can fail while the rest go through.
+   *
+   * @param decisions The decisions
+   *
+   * @return A {@link BulkReviewSummary} with one outcome per decision, or {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.POST, consumes = "application/json;charset=UTF-8", produces="application/json;charset=UTF-8")
+  public Object postReview(@RequestBody List<ReviewDecision> decisions) {
+    if ((decisions == null) || (decisions.isEmpty()))
+      return new SimpleErrorData("Invalid Parameters", "No review decisions were provided");
+    if (decisions.size() > ApprovalService.maxBulkDecisions)
+      return new SimpleErrorData("Invalid Parameters", "No more than " + ApprovalService.maxBulkDecisions + " items can be reviewed at once");
+
+    GamesDatabase database = null;
+    try {
+      database = Application.getDatabase();
+
+      return Application.approvals.reviewAll(database, decisions);
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    }
+  }
+}
@@ -5,6 +5,8 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -19,18 +21,22 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import com.ac.games.data.CSIDataStats;
 import com.ac.games.data.CoolStuffIncPriceData;
 import com.ac.games.data.GameReltn;
 import com.ac.games.data.ReviewState;
 import com.ac.games.data.parser.CoolStuffIncParser;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.exception.GameNotFoundException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.metrics.TimedRestTemplate;
+import com.ac.games.rest.review.ReviewSource;
 
 /**
  * This class should be the intercepter for REST service access to the CoolStuffInc game
@@ -46,6 +52,8 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/external/csidata")
 public class CSIDataController {
 
+  private static final Logger logger = LoggerFactory.getLogger(CSIDataController.class);
+
   /** The standard URI template by which games can be accessed by csiid */
   public final static String URL_TEMPLATE = "http://www.coolstuffinc.com/p/<csiid>";
   /** The replacement marker in the URL_TEMPLATE */
@@ -59,7 +67,9 @@ public class CSIDataController {
    * <ul>
    * <li><code>csiid=&lt;gameid&gt;</code> - The gameID.  This is required.</li>
    * <li><code>source=&lt;csi|db&gt;</code> - This indicated whether to request the game from BoardGameGeek (bgg)
-   * or from our cached database (db).  Default is csi.</li></ul>
+   * or from our cached database (db).  Default is csi.</li>
+   * <li><code>ids=&lt;list&gt;</code> - A comma separated list of csiids and ranges, like <code>12,15,20-24</code>.  Only
+   * with source db; returns a list of {@link BatchItem} entries in the order asked for.</li></ul>
    * 
    * @param csiID
    * @return A {@link CoolStuffIncPriceData} object or {@link SimpleErrorData} message reporting the failure
@@ -68,7 +78,13 @@ public class CSIDataController {
   public Object getCSIData(@RequestParam(value="csiid", defaultValue="-1") long csiID, 
                            @RequestParam(value="source", defaultValue="csi") String source,
                            @RequestParam(value="sync", defaultValue="n") String sync,
-                           @RequestParam(value="review", defaultValue="null") String review) {
+                           @RequestParam(value="review", defaultValue="null") String review,
+                           @RequestParam(value="ids", defaultValue="null") String ids) {
+    if (!ids.equalsIgnoreCase("null")) {
+      if (!source.equalsIgnoreCase("db"))
+        return new SimpleErrorData("Invalid Parameters", "The ids parameter can only be used with source db");
+      return BatchRequests.read(BatchReader.CSI, ids);
+    }
     if ((!source.equalsIgnoreCase("csi")) && (!source.equalsIgnoreCase("db")) && (!source.equalsIgnoreCase("hybrid")))
       return new SimpleErrorData("Invalid Parameters", "The source parameter value of " + source + " is not a valid source value.");
     if ((!sync.equalsIgnoreCase("n")) && (!sync.equalsIgnoreCase("y")))
@@ -79,7 +95,7 @@ public class CSIDataController {
     if ((csiID == -1) && (review.equalsIgnoreCase("null")))
       return new SimpleErrorData("Invalid Parameters", "No CSI ID was provided for this request.");
     //DEBUG
-    System.out.println ("Processing csi request for csiid " + csiID + "...");
+    logger.debug("Processing csi request for csiid {}...", csiID);
     
     CoolStuffIncPriceData csiSource = null;
     CoolStuffIncPriceData dbSource  = null;
@@ -89,13 +105,11 @@ public class CSIDataController {
       CoolStuffIncPriceData data = null;
       
       try {
-        if (Application.database == null)
-          Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-        database = Application.database;
-        database.initializeDBConnection();
+        database = Application.getDatabase();
         
         if (!review.equalsIgnoreCase("null"))
-          data = database.readCSIDataForReview(review);
+          data = Application.reviewQueue.nextItem(database, ReviewSource.CSI, review);
+        else if (source.equalsIgnoreCase("db")) data = HotReads.readCSIData(database, csiID);
         else data = database.readCSIPriceData(csiID);
         
         //DEBUG
@@ -103,11 +117,11 @@ public class CSIDataController {
         //else              System.out.println ("I found game: " + data.getTitle());
         
       } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
+        logger.error("Database operation error", doe);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
       } catch (ConfigurationException ce) {
-        ce.printStackTrace();
+        logger.error("Database configuration error", ce);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
       } finally {
@@ -128,7 +142,7 @@ public class CSIDataController {
       //System.out.println ("Preparing to process csiID through remote call: " + csiID);
       
       //Create the RestTemplate to access the external HTML page
-      RestTemplate restTemplate = new RestTemplate();
+      RestTemplate restTemplate = new TimedRestTemplate();
       HttpHeaders headers = new HttpHeaders();
       headers.setAccept(Arrays.asList(MediaType.TEXT_HTML));
       HttpEntity<String> entity = new HttpEntity<String>("parameters", headers);
@@ -143,28 +157,25 @@ public class CSIDataController {
         data = CoolStuffIncParser.parseCSIHTML(htmlText, csiID);
       } catch (HttpServerErrorException hsee) {
         if (hsee.getMessage().contains("503 Service Unavailable")) {
-          System.out.println ("The CSI server is icing me out again...");
+          logger.warn("The CSI server is icing me out again...");
           return new SimpleErrorData("Server Timeout 503", "The CSI server has stopped answering my requests");
         } else {
-          System.out.println ("Something probably wrong happened here...");
-          hsee.printStackTrace();
+          logger.error("Something probably wrong happened here...", hsee);
           return new SimpleErrorData("Operation Error", "An error has occurred: " + hsee.getMessage());
         }
       } catch (HttpClientErrorException hcee) {
         if (hcee.getMessage().contains("404 Not Found")) {
-          System.out.println ("I could not find this game.");
+          logger.debug("I could not find this game.");
           return new SimpleErrorData("Game Not Found", "The requested csiid of " + csiID + " could not be found.");
         } else {
-          System.out.println ("Something probably wrong happened here...");
-          hcee.printStackTrace();
+          logger.error("Something probably wrong happened here...", hcee);
           return new SimpleErrorData("Operation Error", "An error has occurred: " + hcee.getMessage());
         }
       } catch (GameNotFoundException gnfe) {
-        System.out.println ("I could not find this game.");
+        logger.debug("I could not find this game.");
         return new SimpleErrorData("Game Not Found", "The requested csiid of " + csiID + " could not be found.");
       } catch (Throwable t) {
-        System.out.println ("Something terribly wrong happened here...");
-        t.printStackTrace();
+        logger.error("Something terribly wrong happened here...", t);
         return new SimpleErrorData("Operation Error", "An error has occurred: " + t.getMessage());
       }
 
@@ -201,16 +212,19 @@ public class CSIDataController {
     if (sync.equalsIgnoreCase("y")) {
       GamesDatabase database = null; 
       try {
-        database = Application.database;
-        database.initializeDBConnection();
+        database = Application.getDatabase();
         
         database.updateCSIPriceData(dbSource);
+        Application.nameIndex.indexCSIData(dbSource);
+        Application.priceCards.updateCSI(dbSource);
+        Application.priceHistory.recordCSI(dbSource);
+        Application.statsCache.recordUpdate(CSIDataStats.CSI_DATA_STATS);
       } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
+        logger.error("Database operation error", doe);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
       } catch (ConfigurationException ce) {
-        ce.printStackTrace();
+        logger.error("Database configuration error", ce);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
       } finally {
@@ -254,12 +268,10 @@ public class CSIDataController {
     if ((newState == ReviewState.REVIEWED) && (gameID == -1))
       return new SimpleErrorData("Invalid Parameters", "This game cannot be reviewed without a gameID provided");
 
+    boolean stateChanged = false;
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if (newState == null)
         database.updateCSIPriceData(data);
@@ -270,29 +282,34 @@ public class CSIDataController {
           database.updateCSIPriceData(data);
         else {
           //The state of the game is changing, so we need to flex what we do based on the new state
+          stateChanged = true;
           if (newState == ReviewState.REVIEWED) {
             //We know the previous state was not reviewed, so we need to link this game
             //to the GameReltn entry
-            GameReltn reltn = database.readGameReltn(gameID);
+            GameReltn reltn = Application.vendorLinks.readGameReltn(database, gameID);
             if (reltn == null)
               return new SimpleErrorData("No Game Relation Found", "Unable to link this CSI entry to a GameReltn");
             
             List<Long> csiIDs = reltn.getCsiIDs();
             if (csiIDs == null)
               csiIDs = new ArrayList<Long>();
-            csiIDs.add(csiID);
+            //The index has just been refreshed from this GameReltn, so it can tell us if the listing is already in it
+            if (Application.vendorLinks.getGameForCSI(csiID) != reltn.getGameID())
+              csiIDs.add(csiID);
             reltn.setCsiIDs(csiIDs);
             
             data.setReviewState(newState);
             data.setReviewDate(new Date());
             
             database.updateCSIPriceData(data);
-            database.updateGameReltn(reltn);
+            Application.vendorLinks.update(database, reltn);
           } else if ((newState == ReviewState.REJECTED) || (newState == ReviewState.PENDING)) {
             //This is only complicated if the game was previously approved
             if (prevData.getReviewState() == ReviewState.REVIEWED) {
               //All we really need to do in this case is remove the CSI ID from the List of CSI IDs
-              GameReltn reltn = database.readGameReltn(gameID);
+              //The index knows which game the listing is linked to, even when the caller doesn't
+              long linkedGameID = Application.vendorLinks.getGameForCSI(csiID);
+              GameReltn reltn = Application.vendorLinks.readGameReltn(database, (linkedGameID > 0) ? linkedGameID : gameID);
               if (reltn == null)
                 return new SimpleErrorData("No Game Relation Found", "Unable to link this CSI entry to a GameReltn");
               
@@ -312,7 +329,7 @@ public class CSIDataController {
               data.setReviewDate(new Date());
               
               database.updateCSIPriceData(data);
-              database.updateGameReltn(reltn);
+              Application.vendorLinks.update(database, reltn);
             } else {
               //Just adjust the actual record.
               data.setReviewState(newState);
@@ -325,17 +342,23 @@ public class CSIDataController {
         }//end else the reviewState changed
       }//end else we have a good state
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
     }
     
+    if (stateChanged) Application.statsCache.recordReviewTransition(CSIDataStats.CSI_DATA_STATS, newState);
+    else              Application.statsCache.recordUpdate(CSIDataStats.CSI_DATA_STATS);
+    if (newState != null) Application.reviewQueue.complete(ReviewSource.CSI, csiID);
+    Application.nameIndex.indexCSIData(data);
+    Application.priceCards.updateCSI(data);
+    Application.priceHistory.recordCSI(data);
     return new SimpleMessageData("Operation Successful", "The Put Request Completed Successfully");
   }
   
@@ -356,18 +379,19 @@ public class CSIDataController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.insertCSIPriceData(data);
+      Application.nameIndex.indexCSIData(data);
+      Application.priceCards.updateCSI(data);
+      Application.priceHistory.recordCSI(data);
+      Application.statsCache.recordInsert(CSIDataStats.CSI_DATA_STATS);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -391,18 +415,19 @@ public class CSIDataController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.deleteCSIPriceData(csiID);
+      Application.nameIndex.removeCSIData(csiID);
+      Application.priceCards.removeCSI(csiID);
+      Application.reviewQueue.complete(ReviewSource.CSI, csiID);
+      Application.statsCache.recordDelete(CSIDataStats.CSI_DATA_STATS);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
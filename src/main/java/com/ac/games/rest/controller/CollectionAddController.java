@@ -4,9 +4,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ac.games.data.Collection;
@@ -15,13 +18,13 @@ import com.ac.games.data.Game;
 import com.ac.games.data.GameWeight;
 import com.ac.games.data.User;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
 import com.ac.games.rest.data.GameToCollectionData;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.session.SessionToken;
 
 /**
  * @author ac010168
@@ -31,19 +34,33 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/collection/add")
 public class CollectionAddController {
 
+  private static final Logger logger = LoggerFactory.getLogger(CollectionAddController.class);
+
   /**
    * A simple POST command to add a new collection item to the users collection.
    * 
    * @param data   The collection data we want to insert.  This is required.
+   * @param token  The session token from login.  When provided, the User is not re-read.
    * 
    * @return a {@link SimpleMessageData} indicating the operation succeeded, or a {@link SimpleErrorData} 
    * indicating it failed.
    */
   @RequestMapping(method = RequestMethod.POST, consumes = "application/json;charset=UTF-8", produces="application/json;charset=UTF-8")
-  public Object postNewCollectionItem(@RequestBody GameToCollectionData data) {
+  public Object postNewCollectionItem(@RequestBody GameToCollectionData data,
+                                      @RequestParam(value="token", defaultValue="null") String token) {
     if (data == null)
       return new SimpleErrorData("Collection Data Error", "There was no valid Collection request data provided");
     
+    SessionToken session = null;
+    if (!token.equalsIgnoreCase("null")) {
+      session = Application.sessionTokens.validate(token);
+      if (session == null)
+        return new SimpleErrorData("Invalid Session", "The session token is not valid or has expired");
+      if ((data.getUserID() >= 0) && (data.getUserID() != session.getUserID()))
+        return new SimpleErrorData("Invalid Session", "The session token does not match the provided userID");
+      data.setUserID(session.getUserID());
+    }
+    
     if (data.getGameID() < 0)
       return new SimpleErrorData("Collection Data Error", "There was no GameID provided with this request");
     if (data.getUserID() < 0)
@@ -51,18 +68,20 @@ public class CollectionAddController {
     Game currentGame       = null;
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
-      User currentUser = database.readUser(data.getUserID());
-      if (currentUser == null) {
-        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-        return new SimpleErrorData("Invalid User Error", "This user could not be found in the system");
+      long collectionID = -1;
+      if (session != null)
+        collectionID = session.getCollectionID();
+      else {
+        User currentUser = database.readUser(data.getUserID());
+        if (currentUser == null) {
+          //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
+          return new SimpleErrorData("Invalid User Error", "This user could not be found in the system");
+        }
+        collectionID = currentUser.getCollectionID();
       }
       
-      long collectionID = currentUser.getCollectionID();
       Collection currentCollection = database.readCollection(collectionID);
       if (currentCollection == null) {
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
@@ -111,13 +130,14 @@ public class CollectionAddController {
         default : break;
       }
       database.updateCollection(currentCollection);
+      Application.statsCache.recordCollectionChange(data.getUserID());
     
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
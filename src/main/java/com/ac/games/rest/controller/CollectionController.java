@@ -1,11 +1,14 @@
 package com.ac.games.rest.controller;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -17,12 +20,14 @@ import com.ac.games.data.CollectionItem;
 import com.ac.games.data.CompactSearchData;
 import com.ac.games.data.GameType;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.data.PurgeStatus;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.purge.PurgeJob;
+import com.ac.games.rest.purge.PurgeJob.PurgeState;
 
 /**
  * This class should be the intercepter for REST service access to the core Game
@@ -38,7 +43,15 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/collection")
 public class CollectionController {
 
-  private final static SimpleDateFormat formatter = new SimpleDateFormat("MMM d, yyyy");
+  private static final Logger logger = LoggerFactory.getLogger(CollectionController.class);
+
+  /** SimpleDateFormat isn't thread-safe, so each thread gets its own */
+  private final static ThreadLocal<SimpleDateFormat> formatter = new ThreadLocal<SimpleDateFormat>() {
+    @Override
+    protected SimpleDateFormat initialValue() {
+      return new SimpleDateFormat("MMM d, yyyy");
+    }
+  };
   /**
    * GET method designed to handle retrieving {@link Collection} data from the database.
    * This method supports the following parameters:
@@ -64,10 +77,7 @@ public class CollectionController {
     GamesDatabase database = null; 
     Object results         = null;
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if ((topX == -1) && ((compact.equalsIgnoreCase("no") || compact.equalsIgnoreCase("n"))))
         results = database.readCollection(collectionID);
@@ -79,27 +89,7 @@ public class CollectionController {
           List<CollectionItem> allItems = collection.getGames();
           if ((allItems == null) || (allItems.size() == 0))
             results = new ArrayList<CompactSearchData>();
-          else {
-            //Now we need to sort and choose
-            Collections.sort(allItems);
-            List<CompactSearchData> resultList = new ArrayList<CompactSearchData>();
-            for (int i = 0; ((i < topX) && (i < allItems.size())); i++) {
-              CollectionItem item = allItems.get(i);
-              CompactSearchData data = new CompactSearchData();
-              String displayString = item.getGame().getName();
-              if (item.getGame().getYearPublished() != -1)
-                displayString += " (" + item.getGame().getYearPublished() + ")";
-              data.setDisplayString(displayString);
-              data.setSourceID(item.getItemID());
-              data.setThumbnailURL(item.getGame().getImageThumbnailURL());
-              //Overload the sourceField value to put displayable text
-              if (item.getDateAcquired() != null)
-                data.setSourceField("Game acquired on: " + formatter.format(item.getDateAcquired()));
-              else data.setSourceField("Game ID: " + item.getGameID());
-              resultList.add(data);
-            }
-            results = resultList;
-          }
+          else results = buildTopX(allItems, topX);
         }
       } else if (compact.equalsIgnoreCase("yes") || compact.equalsIgnoreCase("y")) {
         Collection collection = database.readCollection(collectionID);
@@ -109,57 +99,15 @@ public class CollectionController {
           List<CollectionItem> allItems = collection.getGames();
           if ((allItems == null) || (allItems.size() == 0))
             results = new ArrayList<CollectionItem>();
-          else {
-            List<CollectionItem> resultList = new LinkedList<CollectionItem>();
-            
-            //First Loop, pick out all Base and Collectible games
-            for (CollectionItem item : allItems) {
-              if ((item.getGame().getGameType() == GameType.BASE) || (item.getGame().getGameType() == GameType.COLLECTIBLE))
-                resultList.add(item);
-            }
-            
-            //Second Loop, pick out all Expansions, and link them to their parent game if possible.
-            for (CollectionItem item : allItems) {
-              if (item.getGame().getGameType() == GameType.EXPANSION) {
-                boolean found = false;
-                for (CollectionItem parentItem : resultList) {
-                  if (parentItem.getGameID() == item.getGame().getParentGameID()) {
-                    CompactSearchData data = new CompactSearchData();
-                    String displayString = item.getGame().getName();
-                    if (item.getGame().getYearPublished() != -1)
-                      displayString += " (" + item.getGame().getYearPublished() + ")";
-                    data.setDisplayString(displayString);
-                    data.setSourceID(item.getItemID());
-                    data.setThumbnailURL(item.getGame().getImageThumbnailURL());
-                    data.setSourceField("Game ID: " + item.getGameID());
-                    
-                    List<CompactSearchData> expansions = parentItem.getExpansionList();
-                    if (expansions == null) expansions = new ArrayList<CompactSearchData>();
-                    expansions.add(data);
-                    
-                    parentItem.setExpansionList(expansions);
-                    found = true;
-                    break;
-                  }
-                }
-                if (!found) {
-                  //If we somehow have an expansion with no parent, then just add it to the list
-                  resultList.add(item);
-                }
-              }
-            }//end for second loop
-            
-            Collections.sort(resultList);
-            results = resultList;
-          }
+          else results = buildCompact(allItems);
         }
       }
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -171,6 +119,88 @@ public class CollectionController {
     return results;
   }
   
+  /**
+   * Build the display rows for the first <code>topX</code> games of a collection, in sorted order.
+   * 
+   * @param allItems The collection's games.  This list is sorted in place
+   * @param topX The number of rows wanted
+   * 
+   * @return The display rows
+   */
+  public static List<CompactSearchData> buildTopX(List<CollectionItem> allItems, int topX) {
+    //Now we need to sort and choose
+    Collections.sort(allItems);
+    List<CompactSearchData> resultList = new ArrayList<CompactSearchData>();
+    for (int i = 0; ((i < topX) && (i < allItems.size())); i++) {
+      CollectionItem item = allItems.get(i);
+      CompactSearchData data = new CompactSearchData();
+      String displayString = item.getGame().getName();
+      if (item.getGame().getYearPublished() != -1)
+        displayString += " (" + item.getGame().getYearPublished() + ")";
+      data.setDisplayString(displayString);
+      data.setSourceID(item.getItemID());
+      data.setThumbnailURL(item.getGame().getImageThumbnailURL());
+      //Overload the sourceField value to put displayable text
+      if (item.getDateAcquired() != null)
+        data.setSourceField("Game acquired on: " + formatter.get().format(item.getDateAcquired()));
+      else data.setSourceField("Game ID: " + item.getGameID());
+      resultList.add(data);
+    }
+    return resultList;
+  }
+  
+  /**
+   * Fold a collection's expansions into their parent games' expansion lists.  Expansions whose
+   * parent isn't in the collection stay as top level items.
+   * 
+   * @param allItems The collection's games.  The parents' expansion lists are updated in place
+   * 
+   * @return The base and collectible games, plus any orphaned expansions, sorted
+   */
+  public static List<CollectionItem> buildCompact(List<CollectionItem> allItems) {
+    List<CollectionItem> resultList = new LinkedList<CollectionItem>();
+    
+    //First Loop, pick out all Base and Collectible games
+    for (CollectionItem item : allItems) {
+      if ((item.getGame().getGameType() == GameType.BASE) || (item.getGame().getGameType() == GameType.COLLECTIBLE))
+        resultList.add(item);
+    }
+    
+    //Second Loop, pick out all Expansions, and link them to their parent game if possible.
+    for (CollectionItem item : allItems) {
+      if (item.getGame().getGameType() == GameType.EXPANSION) {
+        boolean found = false;
+        for (CollectionItem parentItem : resultList) {
+          if (parentItem.getGameID() == item.getGame().getParentGameID()) {
+            CompactSearchData data = new CompactSearchData();
+            String displayString = item.getGame().getName();
+            if (item.getGame().getYearPublished() != -1)
+              displayString += " (" + item.getGame().getYearPublished() + ")";
+            data.setDisplayString(displayString);
+            data.setSourceID(item.getItemID());
+            data.setThumbnailURL(item.getGame().getImageThumbnailURL());
+            data.setSourceField("Game ID: " + item.getGameID());
+            
+            List<CompactSearchData> expansions = parentItem.getExpansionList();
+            if (expansions == null) expansions = new ArrayList<CompactSearchData>();
+            expansions.add(data);
+            
+            parentItem.setExpansionList(expansions);
+            found = true;
+            break;
+          }
+        }
+        if (!found) {
+          //If we somehow have an expansion with no parent, then just add it to the list
+          resultList.add(item);
+        }
+      }
+    }//end for second loop
+    
+    Collections.sort(resultList);
+    return resultList;
+  }
+  
   /**
    * A simple PUT command to update the user.  This will update all fields for a collection, but
    * the collectionID cannot be changed.  This value must match the param collectionID.
@@ -193,18 +223,16 @@ public class CollectionController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.updateCollection(collection);
+      Application.statsCache.recordCollectionChange(-1);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -229,21 +257,19 @@ public class CollectionController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if (collection.getCollectionID() == -1)
         collection.setCollectionID(database.getMaxCollectionID() + 1);
       
       database.insertCollection(collection);
+      Application.statsCache.recordCollectionChange(-1);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -254,23 +280,26 @@ public class CollectionController {
   }
   
   /**
-   * DELETE Method, which should delete the provided collection reference, if it exists
+   * DELETE Method, which should delete the provided collection reference, if it exists.<p>
+   * With <code>mode=async</code>, the collection is removed right away and its items are purged in the
+   * background.  Use the returned jobID with /purge to follow the progress.
    * 
    * @param collectionID
+   * @param mode sync or async.  Default is sync.
    * 
-   * @return A {@link SimpleMessageData} or {@link SimpleErrorData} message indicating the operation status
+   * @return A {@link SimpleMessageData}, a {@link PurgeStatus} for async requests, or {@link SimpleErrorData} message indicating the operation status
    */
   @RequestMapping(method = RequestMethod.DELETE, produces="application/json;charset=UTF-8")
-  public Object deleteCollection(@RequestParam(value="collectionid", defaultValue="-1") long collectionID) {
+  public Object deleteCollection(@RequestParam(value="collectionid", defaultValue="-1") long collectionID,
+                                 @RequestParam(value="mode", defaultValue="sync") String mode) {
     if (collectionID <= 0)
       return new SimpleErrorData("Collection Data Error", "There was no valid Collection request data provided");
+    if ((!mode.equalsIgnoreCase("sync")) && (!mode.equalsIgnoreCase("async")))
+      return new SimpleErrorData("Invalid Parameters", "The mode parameter value of " + mode + " is not a valid mode value");
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       //First we need to see if this user exists.  If it does, reject the request.
       Collection existCollection = database.readCollection(collectionID);
@@ -280,17 +309,26 @@ public class CollectionController {
       }
       
       //We need to then delete all the dependent items, including collection items.
-      List<CollectionItem> deleteItems = existCollection.getGames();
-      for (CollectionItem item : deleteItems) 
-        database.deleteCollectionItem(item.getItemID());
-      database.deleteCollection(existCollection.getCollectionID());
+      PurgeJob job = Application.purger.createJob(-1, existCollection);
+      if (mode.equalsIgnoreCase("async")) {
+        Application.purger.submitJob(database, job);
+        return job.toStatus();
+      }
+      
+      Application.purger.runJob(database, job);
+      if (job.getState() == PurgeState.FAILED)
+        return new SimpleErrorData("Delete Incomplete", "The collection was deleted, but some collection items could not be removed.  " +
+                                   "They will be retried on the next restart under job " + job.getJobID());
       
+    } catch (IOException ioe) {
+      logger.error("I/O error", ioe);
+      return new SimpleErrorData("Delete Error", "Unable to record the delete request: " + ioe.getMessage());
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -2,6 +2,8 @@ package com.ac.games.rest.controller;
 
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -13,7 +15,6 @@ import com.ac.games.data.CollectionItem;
 import com.ac.games.data.GameWeight;
 import com.ac.games.data.User;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
@@ -28,6 +29,9 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RestController
 @RequestMapping("/collectionitem")
 public class CollectionItemController {
+
+  private static final Logger logger = LoggerFactory.getLogger(CollectionItemController.class);
+
   /**
    * GET method designed to handle retrieving {@link CollectionItem} data from the database.
    * This method supports the following parameters:
@@ -48,18 +52,15 @@ public class CollectionItemController {
     GamesDatabase database = null; 
     CollectionItem collection  = null;
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       collection = database.readCollectionItem(itemID);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -92,10 +93,7 @@ public class CollectionItemController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       CollectionItem item = database.readCollectionItem(itemID);
       if (item == null)
@@ -233,6 +231,7 @@ public class CollectionItemController {
 
       if (hasChanged) {
         database.updateCollectionItem(item);
+        Application.statsCache.recordCollectionChange(-1);
         
         if (collectionID != -1) {
           Collection curCollection = database.readCollection(collectionID);
@@ -257,11 +256,11 @@ public class CollectionItemController {
         }
       }
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -286,21 +285,19 @@ public class CollectionItemController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if (item.getItemID() == -1)
         item.setItemID(database.getMaxCollectionItemID() + 1);
       
       database.insertCollectionItem(item);
+      Application.statsCache.recordCollectionChange(-1);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -328,10 +325,7 @@ public class CollectionItemController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       //First we need to see if this user exists.  If it does, reject the request.
       CollectionItem existCollectionItem = database.readCollectionItem(itemID);
@@ -403,12 +397,13 @@ public class CollectionItemController {
       //DEBUG
       //System.out.println ("I'm about to update the collection....");
       database.updateCollection(collection);
+      Application.statsCache.recordCollectionChange(userID);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
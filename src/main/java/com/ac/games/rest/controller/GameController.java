@@ -1,5 +1,7 @@
 package com.ac.games.rest.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -8,10 +10,11 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.ac.games.data.Game;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
 
@@ -28,41 +31,50 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RestController
 @RequestMapping("/game")
 public class GameController {
+
+  private static final Logger logger = LoggerFactory.getLogger(GameController.class);
   
   /**
    * GET method designed to handle retrieving {@link Game} data from the database.<p>
    * This method supports the following parameters:
    * <ul>
-   * <li><code>gameid=&lt;gameID&gt;</code> - The gameID.  This is required.</li>
-   * <li><code>batch=n</code> - This indicates whether to generate a batch on game requests including bggID and up
-   * to 'n' additional sequential elements.  Default is 1.</li></ul>
+   * <li><code>gameid=&lt;gameID&gt;</code> - The gameID.  This is required unless ids is used.</li>
+   * <li><code>batch=n</code> - This indicates whether to generate a batch on game requests including gameID and up
+   * to 'n' additional sequential elements.  Default is 1.</li>
+   * <li><code>ids=&lt;list&gt;</code> - A comma separated list of gameIDs and ranges, like <code>12,15,20-24</code>.</li></ul>
+   * Batch and ids requests return a list of {@link BatchItem} entries in the order asked for, with a notFound
+   * entry for each game we don't have.
    * 
    * @param gameID The gameID that we are using to base this request on.
    * @param batch The number of rows to retrieve in batch from the server.
+   * @param ids The list of gameIDs to read
    * 
-   * @return A {@link Game} object or {@link SimpleErrorData} message reporting what failed.
+   * @return A {@link Game} object, a List of {@link BatchItem} entries or {@link SimpleErrorData} message reporting what failed.
    */
   @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
-  public Object getGame(@RequestParam(value="gameid") long gameID,
-                        @RequestParam(value="batch", defaultValue="1") int batch) {
+  public Object getGame(@RequestParam(value="gameid", defaultValue="-1") long gameID,
+                        @RequestParam(value="batch", defaultValue="1") int batch,
+                        @RequestParam(value="ids", defaultValue="null") String ids) {
+    
+    if (!ids.equalsIgnoreCase("null"))
+      return BatchRequests.read(BatchReader.GAMES, ids);
+    if (gameID == -1)
+      return new SimpleErrorData("Invalid Parameters", "One of gameid or ids must be provided");
     
     GamesDatabase database = null; 
     
     if (batch == 1) {
       Game game = new Game();
       try {
-        if (Application.database == null)
-          Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-        database = Application.database;
-        database.initializeDBConnection();
+        database = Application.getDatabase();
         
-        game = database.readGame(gameID);
+        game = HotReads.readGame(database, gameID);
       } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
+        logger.error("Database operation error", doe);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
       } catch (ConfigurationException ce) {
-        ce.printStackTrace();
+        logger.error("Database configuration error", ce);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
       } finally {
@@ -73,8 +85,11 @@ public class GameController {
         return new SimpleErrorData("Game Not Found", "The requested item could not be found in the database.");
       return game;
     } else {
-      //I'm not really prepared to handle this option at this time.
-      return new SimpleErrorData("Operation Error", "This operation is not yet supported");
+      try {
+        return BatchRequests.read(BatchReader.GAMES, BatchReader.range(gameID, batch));
+      } catch (IllegalArgumentException iae) {
+        return new SimpleErrorData("Invalid Parameters", iae.getMessage());
+      }
     }
   }
 
@@ -99,18 +114,16 @@ public class GameController {
       
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.updateGame(game);
+      Application.nameIndex.indexGame(game);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -134,21 +147,19 @@ public class GameController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
 
       if (game.getGameID() == -1)
         game.setGameID(database.getMaxGameID() + 1);
       
       database.insertGame(game);
+      Application.nameIndex.indexGame(game);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -172,18 +183,19 @@ public class GameController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
+      //Grab the game first, so we know which name to drop from the name index
+      Game existGame = database.readGame(gameID);
       database.deleteGame(gameID);
+      if (existGame != null)
+        Application.nameIndex.removeGame(existGame);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -1,9 +1,10 @@
 package com.ac.games.rest.controller;
 
-import java.text.DecimalFormat;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -11,14 +12,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ac.games.data.CompactPriceData;
-import com.ac.games.data.CoolStuffIncPriceData;
 import com.ac.games.data.GameReltn;
-import com.ac.games.data.MiniatureMarketPriceData;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
+import com.ac.games.rest.data.MultiVendorPrices;
+import com.ac.games.rest.link.VendorLinks;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
 
@@ -36,22 +38,34 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/gamereltn")
 public class GameReltnController {
 
-  private final static DecimalFormat formatter = new DecimalFormat("'$'0.00");
-  
+  private static final Logger logger = LoggerFactory.getLogger(GameReltnController.class);
+
   /**
    * GET method designed to handle retrieving {@link GameReltn} data from the database.<p>
    * This method supports the following parameters:
    * <ul>
-   * <li><code>gameid=&lt;gameID&gt;</code> - The gameID.  This is required.</li>
+   * <li><code>gameid=&lt;gameID&gt;</code> - The gameID.  This is required unless ids is used.</li>
+   * <li><code>ids=&lt;list&gt;</code> - A comma separated list of gameIDs and ranges, like <code>12,15,20-24</code>,
+   * returned as a list of {@link BatchItem} entries in the order asked for.  Only with vendor none.</li>
+   * <li><code>vendor=none|csi|mm|amazon|all</code> - Return the vendor price cards instead of the
+   * {@link GameReltn}.  <code>all</code> reads every vendor at once and returns a {@link MultiVendorPrices},
+   * grouped by vendor and cheapest first, flagged as partial if a vendor timed out.</li>
    * </ul>
    * 
    * @param gameID The gameID that we are using to base this request on.
+   * @param ids The list of gameIDs to read
    * 
    * @return A {@link GameReltn} object or {@link SimpleErrorData} message reporting what failed.
    */
   @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
-  public Object getGameReltn(@RequestParam(value="gameid") long gameID,
-                             @RequestParam(value="vendor", defaultValue="none") String vendor) {
+  public Object getGameReltn(@RequestParam(value="gameid", defaultValue="-1") long gameID,
+                             @RequestParam(value="vendor", defaultValue="none") String vendor,
+                             @RequestParam(value="ids", defaultValue="null") String ids) {
+    if (!ids.equalsIgnoreCase("null")) {
+      if (!vendor.equalsIgnoreCase("none"))
+        return new SimpleErrorData("User Data Error", "The ids parameter can only be used with vendor none");
+      return BatchRequests.read(BatchReader.GAME_RELTNS, ids);
+    }
     if (gameID <= 0)
       return new SimpleErrorData("User Data Error", "There was no valid game request data provided");
     
@@ -63,14 +77,24 @@ public class GameReltnController {
     
     Object result = null;
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
-      GameReltn gameReltn = database.readGameReltn(gameID);
+      GameReltn gameReltn;
+      if (vendor.equalsIgnoreCase("none"))
+        gameReltn = Application.vendorLinks.readGameReltn(database, gameID);
+      else {
+        //The vendor lookups only need the links, which the index usually has without a read
+        VendorLinks links = Application.vendorLinks.getLinks(database, gameID);
+        gameReltn = (links == null) ? null : links.toGameReltn();
+      }
       if (vendor.equalsIgnoreCase("none"))
         result = gameReltn;
+      else if (gameReltn == null)
+        result = null;
+      else if (vendor.equalsIgnoreCase("all"))
+        result = Application.vendorPrices.fetchAll(database, gameReltn);
+      else if (vendor.equalsIgnoreCase("amazon"))
+        result = new LinkedList<CompactPriceData>();  //We don't track any Amazon listings yet
       else {
         //If we're here, we want game price information, which means we want price information.
         //Since we don't need a button, we just need to be able to build a link.
@@ -84,35 +108,9 @@ public class GameReltnController {
             result = priceData;
           else {
             for (long csiID : csiIDs) {
-              CoolStuffIncPriceData data = database.readCSIPriceData(csiID);
-              if (data != null) {
-                CompactPriceData price = new CompactPriceData();
-                price.setTitleDisplay(data.getTitle() + " (CSI ID: " + data.getCsiID() + ")");
-                
-                String availString = "";
-                switch (data.getAvailability()) {
-                  case INSTOCK            : availString = "[This Game is In Stock]"; break;
-                  case PREORDER           : availString = "[Accepting Pre-Orders]"; break;
-                  case OUTOFSTOCK         : availString = "[This Game is Out of Stock]"; break;
-                  case NOTYETTAKINGORDERS : availString = "[This Game is Not Yet Taking Orders]"; break;
-                  default                 : availString = "";
-                }
-                String priceString = "";
-                if (data.getCurPrice() < 0.0) {
-                  if (data.getMsrpValue() < 0.0)
-                    priceString = "";
-                  else 
-                    priceString = "MSRP " + formatter.format(data.getMsrpValue());
-                } else
-                  priceString = formatter.format(data.getCurPrice());
-                
-                String priceDisplayString = priceString + "  " + availString;
-                price.setPriceDisplay(priceDisplayString.trim());
-                
-                price.setLinkURL("http://www.coolstuffinc.com/p/" + data.getCsiID());
-                price.setThumbnailURL(data.getImageURL());
-                
-                priceData.add(price);
+              CompactPriceData card = Application.priceCards.getCSICard(database, csiID);
+              if (card != null) {
+                priceData.add(card);
               }
             }//end for each CSI ID
             result = priceData;
@@ -126,38 +124,9 @@ public class GameReltnController {
             result = priceData;
           else {
             for (long mmID : mmIDs) {
-              MiniatureMarketPriceData data = database.readMMPriceData(mmID);
-              if (data != null) {
-                CompactPriceData price = new CompactPriceData();
-                price.setTitleDisplay(data.getTitle() + " (MM ID: " + data.getMmID() + ")");
-                
-                String availString = "";
-                switch (data.getAvailability()) {
-                  case INSTOCK            : availString = "[This Game is In Stock]"; break;
-                  case PREORDER           : availString = "[Accepting Pre-Orders]"; break;
-                  case OUTOFSTOCK         : availString = "[This Game is Out of Stock]"; break;
-                  case NOTYETTAKINGORDERS : availString = "[This Game is Not Yet Taking Orders]"; break;
-                  default                 : availString = "";
-                }
-                String priceString = "";
-                if (data.getCurPrice() < 0.0) {
-                  if (data.getMsrpValue() < 0.0)
-                    priceString = "";
-                  else 
-                    priceString = "MSRP " + formatter.format(data.getMsrpValue());
-                } else
-                  priceString = formatter.format(data.getCurPrice());
-                
-                String priceDisplayString = priceString + "  " + availString;
-                price.setPriceDisplay(priceDisplayString.trim());
-                
-                if (data.getSku() != null)
-                  price.setLinkURL("http://www.miniaturemarket.com/" + data.getSku().toLowerCase() + ".html");
-                else price.setLinkURL("http://www.miniaturemarket.com/catalog/product/view/id/" + data.getMmID());
-                
-                price.setThumbnailURL(data.getImageURL());
-                
-                priceData.add(price);
+              CompactPriceData card = Application.priceCards.getMMCard(database, mmID);
+              if (card != null) {
+                priceData.add(card);
               }
             }//end for each MM ID
             result = priceData;
@@ -166,11 +135,11 @@ public class GameReltnController {
       }//end else we have a vendor option
       
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -207,18 +176,15 @@ public class GameReltnController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
-      database.updateGameReltn(gameReltn);
+      Application.vendorLinks.update(database, gameReltn);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -245,21 +211,18 @@ public class GameReltnController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if (gameReltn.getReltnID() == -1)
         gameReltn.setReltnID(database.getMaxGameReltnID());
       
-      database.insertGameReltn(gameReltn);
+      Application.vendorLinks.insert(database, gameReltn);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -283,18 +246,15 @@ public class GameReltnController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
-      database.deleteGameReltn(reltnID);
+      Application.vendorLinks.delete(database, reltnID);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -0,0 +1,50 @@
+package com.ac.games.rest.controller;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+
+/**
+ * The shared reads for the GET endpoints that hand the record straight back.
+ * <p>
+ * With an in-memory store, these take the stored record itself, with no copy, and only go
+ * through the database on a miss.  What comes back is shared with every other request, so it
+ * must only be serialized, never modified.  Anything that changes what it reads (the hybrid
+ * merges, the updates) reads through the database instead, which hands back a copy.
+ *
+ * @author ac010168
+ */
+final class HotReads {
+
+  private HotReads() {}
+
+  static Game readGame(GamesDatabase database, long gameID) throws ConfigurationException, DatabaseOperationException {
+    InMemoryGamesDatabase store = Application.memoryStore;
+    Game game = (store == null) ? null : store.getGame(gameID);
+    return (game != null) ? game : database.readGame(gameID);
+  }
+
+  static BGGGame readBGGGame(GamesDatabase database, long bggID) throws ConfigurationException, DatabaseOperationException {
+    InMemoryGamesDatabase store = Application.memoryStore;
+    BGGGame game = (store == null) ? null : store.getBGGGame(bggID);
+    return (game != null) ? game : database.readBGGGameData(bggID);
+  }
+
+  static CoolStuffIncPriceData readCSIData(GamesDatabase database, long csiID) throws ConfigurationException, DatabaseOperationException {
+    InMemoryGamesDatabase store = Application.memoryStore;
+    CoolStuffIncPriceData data = (store == null) ? null : store.getCSIData(csiID);
+    return (data != null) ? data : database.readCSIPriceData(csiID);
+  }
+
+  static MiniatureMarketPriceData readMMData(GamesDatabase database, long mmID) throws ConfigurationException, DatabaseOperationException {
+    InMemoryGamesDatabase store = Application.memoryStore;
+    MiniatureMarketPriceData data = (store == null) ? null : store.getMMData(mmID);
+    return (data != null) ? data : database.readMMPriceData(mmID);
+  }
+}
@@ -2,6 +2,8 @@ package com.ac.games.rest.controller;
 
 import java.util.Date;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -11,7 +13,6 @@ import org.springframework.web.bind.annotation.RestController;
 import com.ac.games.data.User;
 import com.ac.games.data.UserDetail;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
@@ -20,6 +21,8 @@ import com.ac.games.rest.data.LoginSuccessData;
 import com.ac.games.rest.data.NewUserData;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.session.SessionToken;
+import com.ac.games.rest.writebehind.LastLoginTask;
 
 /**
  * @author ac010168
@@ -29,6 +32,17 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/login")
 public class LoginController {
 
+  private static final Logger logger = LoggerFactory.getLogger(LoginController.class);
+
+  /**
+   * POST method to validate a login.  On success, the returned {@link LoginSuccessData} carries a
+   * signed session token, which can be passed as the <code>token</code> parameter on later requests
+   * in place of the raw userid, so those requests don't need to re-read the User.
+   * 
+   * @param loginData The user name and password
+   * 
+   * @return {@link LoginSuccessData} or a {@link SimpleErrorData} message reporting what failed.
+   */
   @RequestMapping(method = RequestMethod.POST, consumes = "application/json;charset=UTF-8", produces="application/json;charset=UTF-8")
   public Object doLogin(@RequestBody LoginData loginData) {
     if (loginData == null)
@@ -42,10 +56,7 @@ public class LoginController {
     LoginSuccessData successData = new LoginSuccessData();
     
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       User user = database.readUser(loginData.getUserName());
       if (user == null) {
@@ -60,9 +71,9 @@ public class LoginController {
       }
       
       if (userDetail.getPass().equals(loginData.getPassword())) {
-        //Update the UserDetail record to reflect the current login date
-        userDetail.setLastLoginDate(new Date());
-        database.updateUserDetail(userDetail);
+        //Update the UserDetail record to reflect the current login date.  Nobody reads this
+        //on the login path, so let the write-behind queue take care of it.
+        Application.writeBehind.enqueue(new LastLoginTask(user.getUserID(), new Date()), database);
       } else {
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Login Error", "The provided password does not match.");
@@ -71,18 +82,19 @@ public class LoginController {
       successData.setUserID(user.getUserID());
       successData.setUserFirstName(user.getFirstName());
       switch (userDetail.getUserRole()) {
-        case USER  : successData.setUserRole("User"); break;
-        case ADMIN : successData.setUserRole("Admin"); break;
-        default    : successData.setUserRole("None");
+        case USER  : successData.setUserRole(SessionToken.ROLE_USER); break;
+        case ADMIN : successData.setUserRole(SessionToken.ROLE_ADMIN); break;
+        default    : successData.setUserRole(SessionToken.ROLE_NONE);
       }
       successData.setCollectionID(user.getCollectionID());
+      successData.setSessionToken(Application.sessionTokens.issue(user.getUserID(), user.getCollectionID(), successData.getUserRole()));
       
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -112,10 +124,7 @@ public class LoginController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       //First we need to see if this user exists.  If it does, reject the request.
       User existUser = database.readUser(userID);
@@ -128,6 +137,8 @@ public class LoginController {
         return new SimpleErrorData("Invalid Change Request", "The User Name Cannot Be Changed");
       }
       
+      //Make sure a pending login stamp can't land on top of this update
+      Application.writeBehind.flushKey(LastLoginTask.buildKey(userID));
       UserDetail userDetail = database.readUserDetail(userID);
       if (userDetail == null) {
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
@@ -141,11 +152,11 @@ public class LoginController {
       existUser.setEmailAddress(userData.getEmailAddress());
       database.updateUser(existUser);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
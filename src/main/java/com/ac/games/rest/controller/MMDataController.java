@@ -5,6 +5,8 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -21,18 +23,22 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.ac.games.data.GameReltn;
+import com.ac.games.data.MMDataStats;
 import com.ac.games.data.MiniatureMarketCategory;
 import com.ac.games.data.MiniatureMarketPriceData;
 import com.ac.games.data.ReviewState;
 import com.ac.games.data.parser.MiniatureMarketParser;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.exception.GameNotFoundException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.metrics.TimedRestTemplate;
+import com.ac.games.rest.review.ReviewSource;
 
 /**
  * This class should be the intercepter for REST service access to the MiniatureMarket game
@@ -48,6 +54,8 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/external/mmdata")
 public class MMDataController {
 
+  private static final Logger logger = LoggerFactory.getLogger(MMDataController.class);
+
   /** The standard URI template by which games can be accessed by csiid */
   public final static String URL_TEMPLATE = "http://www.miniaturemarket.com/catalog/product/view/id/<mmid>";
   /** The replacement marker in the URL_TEMPLATE */
@@ -61,7 +69,9 @@ public class MMDataController {
    * <ul>
    * <li><code>mmid=&lt;gameid&gt;</code> - The gameID.  This is required.</li>
    * <li><code>source=&lt;mm|db|hybrid&gt;</code> - This indicated whether to request the game from BoardGameGeek (bgg)
-   * or from our cached database (db).  Default is mm.</li></ul>
+   * or from our cached database (db).  Default is mm.</li>
+   * <li><code>ids=&lt;list&gt;</code> - A comma separated list of mmids and ranges, like <code>12,15,20-24</code>.  Only
+   * with source db; returns a list of {@link BatchItem} entries in the order asked for.</li></ul>
    * 
    * @param mmID
    * @return A {@link MiniatureMarketPriceData} object or {@link SimpleErrorData} message reporting the failure
@@ -70,7 +80,13 @@ public class MMDataController {
   public Object getMMData(@RequestParam(value="mmid", defaultValue="-1") long mmID, 
                           @RequestParam(value="source", defaultValue="mm") String source,
                           @RequestParam(value="sync", defaultValue="n") String sync,
-                          @RequestParam(value="review", defaultValue="null") String review) {
+                          @RequestParam(value="review", defaultValue="null") String review,
+                          @RequestParam(value="ids", defaultValue="null") String ids) {
+    if (!ids.equalsIgnoreCase("null")) {
+      if (!source.equalsIgnoreCase("db"))
+        return new SimpleErrorData("Invalid Parameters", "The ids parameter can only be used with source db");
+      return BatchRequests.read(BatchReader.MM, ids);
+    }
     if ((!source.equalsIgnoreCase("mm")) && (!source.equalsIgnoreCase("db")) && (!source.equalsIgnoreCase("hybrid")))
       return new SimpleErrorData("Invalid Parameters", "The source parameter value of " + source + " is not a valid source value.");
     if ((!sync.equalsIgnoreCase("n")) && (!sync.equalsIgnoreCase("y")))
@@ -82,31 +98,29 @@ public class MMDataController {
       return new SimpleErrorData("Invalid Parameters", "No MM ID was provided for this request.");
 
     //DEBUG
-    System.out.println ("Processing mm request for mmID " + mmID + "...");
+    logger.debug("Processing mm request for mmID {}...", mmID);
 
     MiniatureMarketPriceData mmSource = null;
     MiniatureMarketPriceData dbSource = null;
     
     if ((source.equalsIgnoreCase("db")) || (source.equalsIgnoreCase("hybrid"))) {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
       GamesDatabase database = null; 
       MiniatureMarketPriceData data = null;
       
       try {
-        database = Application.database;
-        database.initializeDBConnection();
+        database = Application.getDatabase();
         
         if (!review.equalsIgnoreCase("null"))
-          data = database.readMMDataForReview(review);
+          data = Application.reviewQueue.nextItem(database, ReviewSource.MM, review);
+        else if (source.equalsIgnoreCase("db")) data = HotReads.readMMData(database, mmID);
         else data = database.readMMPriceData(mmID);
         
       } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
+        logger.error("Database operation error", doe);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
       } catch (ConfigurationException ce) {
-        ce.printStackTrace();
+        logger.error("Database configuration error", ce);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
       } finally {
@@ -125,7 +139,7 @@ public class MMDataController {
         mmID = dbSource.getMmID();
 
       //Create the RestTemplate to access the external HTML page
-      RestTemplate restTemplate = new RestTemplate();
+      RestTemplate restTemplate = new TimedRestTemplate();
       HttpHeaders headers = new HttpHeaders();
       headers.setAccept(Arrays.asList(MediaType.TEXT_HTML));
       HttpEntity<String> entity = new HttpEntity<String>("parameters", headers);
@@ -225,29 +239,26 @@ public class MMDataController {
           }
         }
       } catch (GameNotFoundException gnfe) {
-        System.out.println ("I could not find this game.");
+        logger.debug("I could not find this game.");
         return new SimpleErrorData("Game Not Found", "The requested csiid of " + mmID + " could not be found.");
       } catch (HttpServerErrorException hsee) {
         if (hsee.getMessage().contains("503 Service Unavailable")) {
-          System.out.println ("The MM server is icing me out again...");
+          logger.warn("The MM server is icing me out again...");
           return new SimpleErrorData("Server Timeout 503", "The MM server has stopped answering my requests");
         } else {
-          System.out.println ("Something probably wrong happened here...");
-          hsee.printStackTrace();
+          logger.error("Something probably wrong happened here...", hsee);
           return new SimpleErrorData("Operation Error", "An error has occurred: " + hsee.getMessage());
         }
       } catch (HttpClientErrorException hcee) {
         if (hcee.getMessage().contains("404 Not Found")) {
-          System.out.println ("I could not find this game.");
+          logger.debug("I could not find this game.");
           return new SimpleErrorData("Game Not Found", "The requested mmid of " + mmID + " could not be found.");
         } else {
-          System.out.println ("Something probably wrong happened here...");
-          hcee.printStackTrace();
+          logger.error("Something probably wrong happened here...", hcee);
           return new SimpleErrorData("Operation Error", "An error has occurred: " + hcee.getMessage());
         }
       } catch (Throwable t) {
-        System.out.println ("Something terribly wrong happened here...");
-        t.printStackTrace();
+        logger.error("Something terribly wrong happened here...", t);
         return new SimpleErrorData("Operation Error", "An error has occurred: " + t.getMessage());
       }
 
@@ -279,16 +290,19 @@ public class MMDataController {
     if (sync.equalsIgnoreCase("y")) {
       GamesDatabase database = null; 
       try {
-        database = Application.database;
-        database.initializeDBConnection();
+        database = Application.getDatabase();
         
         database.updateMMPriceData(dbSource);
+        Application.nameIndex.indexMMData(dbSource);
+        Application.priceCards.updateMM(dbSource);
+        Application.priceHistory.recordMM(dbSource);
+        Application.statsCache.recordUpdate(MMDataStats.MM_DATA_STATS);
       } catch (DatabaseOperationException doe) {
-        doe.printStackTrace();
+        logger.error("Database operation error", doe);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
       } catch (ConfigurationException ce) {
-        ce.printStackTrace();
+        logger.error("Database configuration error", ce);
         //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
         return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
       } finally {
@@ -331,12 +345,10 @@ public class MMDataController {
     if ((newState == ReviewState.REVIEWED) && (gameID == -1))
       return new SimpleErrorData("Invalid Parameters", "This game cannot be reviewed without a gameID provided");
 
+    boolean stateChanged = false;
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if (newState == null)
         database.updateMMPriceData(data);
@@ -347,29 +359,34 @@ public class MMDataController {
           database.updateMMPriceData(data);
         else {
           //The state of the game is changing, so we need to flex what we do based on the new state
+          stateChanged = true;
           if (newState == ReviewState.REVIEWED) {
             //We know the previous state was not reviewed, so we need to link this game
             //to the GameReltn entry
-            GameReltn reltn = database.readGameReltn(gameID);
+            GameReltn reltn = Application.vendorLinks.readGameReltn(database, gameID);
             if (reltn == null)
               return new SimpleErrorData("No Game Relation Found", "Unable to link this CSI entry to a GameReltn");
             
             List<Long> mmIDs = reltn.getMmIDs();
             if (mmIDs == null)
               mmIDs = new ArrayList<Long>();
-            mmIDs.add(mmID);
+            //The index has just been refreshed from this GameReltn, so it can tell us if the listing is already in it
+            if (Application.vendorLinks.getGameForMM(mmID) != reltn.getGameID())
+              mmIDs.add(mmID);
             reltn.setMmIDs(mmIDs);
             
             data.setReviewState(newState);
             data.setReviewDate(new Date());
             
             database.updateMMPriceData(data);
-            database.updateGameReltn(reltn);
+            Application.vendorLinks.update(database, reltn);
           } else if ((newState == ReviewState.REJECTED) || (newState == ReviewState.PENDING)) {
             //This is only complicated if the game was previously approved
             if (prevData.getReviewState() == ReviewState.REVIEWED) {
               //All we really need to do in this case is remove the CSI ID from the List of CSI IDs
-              GameReltn reltn = database.readGameReltn(gameID);
+              //The index knows which game the listing is linked to, even when the caller doesn't
+              long linkedGameID = Application.vendorLinks.getGameForMM(mmID);
+              GameReltn reltn = Application.vendorLinks.readGameReltn(database, (linkedGameID > 0) ? linkedGameID : gameID);
               if (reltn == null)
                 return new SimpleErrorData("No Game Relation Found", "Unable to link this CSI entry to a GameReltn");
               
@@ -389,7 +406,7 @@ public class MMDataController {
               data.setReviewDate(new Date());
               
               database.updateMMPriceData(data);
-              database.updateGameReltn(reltn);
+              Application.vendorLinks.update(database, reltn);
             } else {
               //Just adjust the actual record.
               data.setReviewState(newState);
@@ -402,17 +419,23 @@ public class MMDataController {
         }//end else the reviewState changed
       }//end else we have a good state
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
     }
     
+    if (stateChanged) Application.statsCache.recordReviewTransition(MMDataStats.MM_DATA_STATS, newState);
+    else              Application.statsCache.recordUpdate(MMDataStats.MM_DATA_STATS);
+    if (newState != null) Application.reviewQueue.complete(ReviewSource.MM, mmID);
+    Application.nameIndex.indexMMData(data);
+    Application.priceCards.updateMM(data);
+    Application.priceHistory.recordMM(data);
     return new SimpleMessageData("Operation Successful", "The Put Request Completed Successfully");
   }
   
@@ -433,18 +456,19 @@ public class MMDataController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.insertMMPriceData(data);
+      Application.nameIndex.indexMMData(data);
+      Application.priceCards.updateMM(data);
+      Application.priceHistory.recordMM(data);
+      Application.statsCache.recordInsert(MMDataStats.MM_DATA_STATS);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -468,18 +492,19 @@ public class MMDataController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.deleteMMPriceData(mmID);
+      Application.nameIndex.removeMMData(mmID);
+      Application.priceCards.removeMM(mmID);
+      Application.reviewQueue.complete(ReviewSource.MM, mmID);
+      Application.statsCache.recordDelete(MMDataStats.MM_DATA_STATS);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
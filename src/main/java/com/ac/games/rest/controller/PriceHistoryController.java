@@ -0,0 +1,90 @@
+package com.ac.games.rest.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.data.PriceHistoryData;
+import com.ac.games.rest.history.PriceHistoryStore;
+import com.ac.games.rest.link.VendorLinks;
+import com.ac.games.rest.message.SimpleErrorData;
+
+/**
+ * This class should be the intercepter for REST service access to the vendor price history.
+ * <p>
+ * It should handle all request that come in under the /pricehistory entry.  At this time
+ * it will only support GET requests.
+ * 
+ * @author ac010168
+ */
+@RestController
+@RequestMapping("/pricehistory")
+public class PriceHistoryController {
+
+  private static final Logger logger = LoggerFactory.getLogger(PriceHistoryController.class);
+
+  /** The longest window we'll summarize */
+  private static final int MAX_DAYS = 3650;
+
+  /**
+   * GET method designed to summarize the price history of a game's vendor listings.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>gameid=&lt;gameID&gt;</code> - The gameID.  This is required.</li>
+   * <li><code>days=&lt;days,days,...&gt;</code> - The windows to summarize, in days.  Defaults to 30,90,365.</li>
+   * </ul>
+   * The history is served from memory, see {@link PriceHistoryStore}.
+   * 
+   * @param gameID The game
+   * @param days The comma separated window lengths
+   * 
+   * @return A {@link PriceHistoryData} object or {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
+  public Object getPriceHistory(@RequestParam(value="gameid") long gameID,
+                                @RequestParam(value="days", defaultValue="") String days) {
+    if (gameID <= 0)
+      return new SimpleErrorData("User Data Error", "There was no valid game request data provided");
+    
+    int[] windows = PriceHistoryStore.DEFAULT_WINDOWS;
+    if (days.trim().length() > 0) {
+      String[] values = days.split(",");
+      windows = new int[values.length];
+      try {
+        for (int i = 0; i < values.length; i++) {
+          windows[i] = Integer.parseInt(values[i].trim());
+          if ((windows[i] <= 0) || (windows[i] > MAX_DAYS))
+            return new SimpleErrorData("Invalid Parameters", "The days value of " + windows[i] + " must be between 1 and " + MAX_DAYS);
+        }
+      } catch (NumberFormatException nfe) {
+        return new SimpleErrorData("Invalid Parameters", "The days parameter value of " + days + " is not a valid list of days");
+      }
+    }
+    
+    GamesDatabase database = null; 
+    VendorLinks links = null;
+    try {
+      database = Application.getDatabase();
+      
+      links = Application.vendorLinks.getLinks(database, gameID);
+    } catch (DatabaseOperationException doe) {
+      logger.error("Database operation error", doe);
+      return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    }
+    
+    if (links == null)
+      return new SimpleErrorData("Game Not Found", "The requested item could not be found in the database.");
+
+    return new PriceHistoryData(gameID, Application.priceHistory.summarize(links.toGameReltn(), windows));
+  }
+}
@@ -0,0 +1,47 @@
+package com.ac.games.rest.controller;
+
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ac.games.rest.Application;
+import com.ac.games.rest.data.PurgeStatus;
+import com.ac.games.rest.message.SimpleErrorData;
+
+/**
+ * This class should be the intercepter for REST service access to the progress of the
+ * cascading user and collection deletes.
+ * <p>
+ * It should handle all request that come in under the /purge entry.  At this time
+ * it will only support GET requests.
+ *
+ * @author ac010168
+ */
+@RestController
+@RequestMapping("/purge")
+public class PurgeController {
+
+  /**
+   * GET method designed to report the progress of delete jobs.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>jobid=&lt;jobID&gt;</code> - The jobID returned from an async delete.  If not provided,
+   * every job we know about is returned.</li>
+   * </ul>
+   *
+   * @param jobID The jobID we want the status of
+   *
+   * @return A {@link PurgeStatus}, a list of them, or {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
+  public Object getPurgeStatus(@RequestParam(value="jobid", defaultValue="null") String jobID) {
+    if (jobID.equalsIgnoreCase("null"))
+      return Application.purger.getAllStatus();
+
+    PurgeStatus status = Application.purger.getStatus(jobID);
+    if (status == null)
+      return new SimpleErrorData("Job Not Found", "There is no purge job with the jobID " + jobID);
+    return status;
+  }
+}
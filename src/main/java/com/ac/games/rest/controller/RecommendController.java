@@ -4,6 +4,8 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -16,7 +18,6 @@ import com.ac.games.data.GameType;
 import com.ac.games.data.GameWeight;
 import com.ac.games.data.User;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
@@ -24,6 +25,7 @@ import com.ac.games.rest.data.RecommendValues;
 import com.ac.games.rest.data.WrapList;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.session.SessionToken;
 
 /**
  * @author ac010168
@@ -33,10 +35,23 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/recommend")
 public class RecommendController {
 
+  private static final Logger logger = LoggerFactory.getLogger(RecommendController.class);
+
   @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
-  public Object getRecommend(@RequestParam(value="userid") long userID,
+  public Object getRecommend(@RequestParam(value="userid", defaultValue="-1") long userID,
                              @RequestParam(value="mode") String mode,
-                             @RequestParam(value="recnum", defaultValue="-1") int recommendNumber) {
+                             @RequestParam(value="recnum", defaultValue="-1") int recommendNumber,
+                             @RequestParam(value="token", defaultValue="null") String token) {
+    SessionToken session = null;
+    if (!token.equalsIgnoreCase("null")) {
+      session = Application.sessionTokens.validate(token);
+      if (session == null)
+        return new SimpleErrorData("Invalid Session", "The session token is not valid or has expired");
+      if ((userID != -1) && (userID != session.getUserID()))
+        return new SimpleErrorData("Invalid Session", "The session token does not match the provided userID");
+      userID = session.getUserID();
+    }
+    
     if (userID < 0)
       return new SimpleErrorData("Recommend Data Error", "The provided userID was not valid");
     if ((!mode.equalsIgnoreCase("mechanics")) && (!mode.equalsIgnoreCase("random")))
@@ -46,16 +61,20 @@ public class RecommendController {
     Object result = null;
     
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
     
-      User user = database.readUser(userID);
-      if (user == null)
-        return new SimpleErrorData("User Not Found", "No User could be found with the provided userID");
+      //A valid session already tells us the collectionID, so we can skip the User read
+      long collectionID = -1;
+      if (session != null)
+        collectionID = session.getCollectionID();
+      else {
+        User user = database.readUser(userID);
+        if (user == null)
+          return new SimpleErrorData("User Not Found", "No User could be found with the provided userID");
+        collectionID = user.getCollectionID();
+      }
       
-      Collection curCollection = database.readCollection(user.getCollectionID());
+      Collection curCollection = database.readCollection(collectionID);
       if (curCollection == null)
         return new SimpleErrorData("Collection Not Found", "No Collection could be found for this userID");
       
@@ -118,11 +137,11 @@ public class RecommendController {
         
       }
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -143,10 +162,21 @@ public class RecommendController {
    * @return A {@link SimpleMessageData} or {@link SimpleErrorData} message indicating the operation status
    */
   @RequestMapping(method = RequestMethod.POST, consumes = "application/json;charset=UTF-8", produces="application/json;charset=UTF-8")
-  public Object postWishlist(@RequestBody RecommendValues values) {
+  public Object postWishlist(@RequestBody RecommendValues values,
+                             @RequestParam(value="token", defaultValue="null") String token) {
     if (values == null)
       return new SimpleErrorData("Recommend Data Error", "There was no recommend data provided");
     
+    SessionToken session = null;
+    if (!token.equalsIgnoreCase("null")) {
+      session = Application.sessionTokens.validate(token);
+      if (session == null)
+        return new SimpleErrorData("Invalid Session", "The session token is not valid or has expired");
+      if ((values.getUserID() >= 0) && (values.getUserID() != session.getUserID()))
+        return new SimpleErrorData("Invalid Session", "The session token does not match the provided userID");
+      values.setUserID(session.getUserID());
+    }
+    
     if (values.getUserID() < 0)
       return new SimpleErrorData("Recommend Data Error", "There was no userID data provided");
     
@@ -164,163 +194,182 @@ public class RecommendController {
     GamesDatabase database = null;
     Object result = null;
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
     
-      User user = database.readUser(values.getUserID());
-      if (user == null)
-        return new SimpleErrorData("User Not Found", "No User could be found with the provided userID");
+      long collectionID = -1;
+      if (session != null)
+        collectionID = session.getCollectionID();
+      else {
+        User user = database.readUser(values.getUserID());
+        if (user == null)
+          return new SimpleErrorData("User Not Found", "No User could be found with the provided userID");
+        collectionID = user.getCollectionID();
+      }
       
-      Collection curCollection = database.readCollection(user.getCollectionID());
+      Collection curCollection = database.readCollection(collectionID);
       if (curCollection == null)
         return new SimpleErrorData("Collection Not Found", "No Collection could be found for this userID");
       
-      List<CollectionItem> games = curCollection.getGames();
-      Collections.sort(games);
+      result = findMatchingGames(curCollection.getGames(), values, findWeight);
+    } catch (DatabaseOperationException doe) {
+      logger.error("Database operation error", doe);
+      //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
+      return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    } finally {
+      //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
+    }
 
-      if (values.getRecommendNum() == -1)
-        values.setRecommendNum(games.size() + 1);
+    return result;
+  }
+  
+  /**
+   * Run the recommend filters over a collection.  Base and collectible games are checked first,
+   * and expansions whose parent isn't owned are only considered if we're still short of
+   * <code>recommendNum</code> matches.
+   * <p>
+   * This is the CPU side of {@link #postWishlist(RecommendValues, String)}, kept apart from the
+   * database reads so it can be benchmarked on its own.
+   * 
+   * @param games The collection's games.  This list is sorted in place
+   * @param values The filters to apply
+   * @param findWeight The converted weight filter, or null for any weight
+   * 
+   * @return The matching games, in collection order
+   */
+  public static List<CollectionItem> findMatchingGames(List<CollectionItem> games, RecommendValues values, GameWeight findWeight) {
+    Collections.sort(games);
 
-      //This will be our result list
-      List<CollectionItem> matchingGames = new LinkedList<CollectionItem>();
+    if (values.getRecommendNum() == -1)
+      values.setRecommendNum(games.size() + 1);
+
+    //This will be our result list
+    List<CollectionItem> matchingGames = new LinkedList<CollectionItem>();
+    
+    List<Long> parentGameIDs = new LinkedList<Long>();
+    //First loop, only consider parent games (no expansions)
+    for (CollectionItem item : games) {
+      if ((item.getGame().getGameType() == GameType.BASE) || (item.getGame().getGameType() == GameType.COLLECTIBLE)) {
+        parentGameIDs.add(item.getGameID());
+        
+        boolean isPlayerCountMatch = false;
+        if (values.getPlayerCount() != -1) {
+          int trueMinPlayer = item.getGame().getMinPlayers();
+          if (item.getOverrideMinPlayers() != -1) trueMinPlayer = item.getOverrideMinPlayers();
+          int trueMaxPlayer = item.getGame().getMaxPlayers();
+          if (item.getOverrideMaxPlayers() != -1) trueMaxPlayer = item.getOverrideMaxPlayers();
+          
+          if ((trueMinPlayer <= values.getPlayerCount()) && (trueMaxPlayer >= values.getPlayerCount()))
+            isPlayerCountMatch = true;
+        } else isPlayerCountMatch = true;
       
-      List<Long> parentGameIDs = new LinkedList<Long>();
-      //First loop, only consider parent games (no expansions)
-      for (CollectionItem item : games) {
-        if ((item.getGame().getGameType() == GameType.BASE) || (item.getGame().getGameType() == GameType.COLLECTIBLE)) {
-          parentGameIDs.add(item.getGameID());
+        boolean isGameLengthMatch = false;
+        if (values.getGameLength() != -1) {
+          int trueMinTime = item.getGame().getMinPlayingTime();
+          if (item.getOverrideMinTime() != -1) trueMinTime = item.getOverrideMinTime();
+          int trueMaxTime = item.getGame().getMaxPlayingTime();
+          if (item.getOverrideMaxTime() != -1) trueMaxTime = item.getOverrideMaxTime();
           
-          boolean isPlayerCountMatch = false;
-          if (values.getPlayerCount() != -1) {
-            int trueMinPlayer = item.getGame().getMinPlayers();
-            if (item.getOverrideMinPlayers() != -1) trueMinPlayer = item.getOverrideMinPlayers();
-            int trueMaxPlayer = item.getGame().getMaxPlayers();
-            if (item.getOverrideMaxPlayers() != -1) trueMaxPlayer = item.getOverrideMaxPlayers();
-            
-            if ((trueMinPlayer <= values.getPlayerCount()) && (trueMaxPlayer >= values.getPlayerCount()))
-              isPlayerCountMatch = true;
-          } else isPlayerCountMatch = true;
-        
-          boolean isGameLengthMatch = false;
-          if (values.getGameLength() != -1) {
-            int trueMinTime = item.getGame().getMinPlayingTime();
-            if (item.getOverrideMinTime() != -1) trueMinTime = item.getOverrideMinTime();
-            int trueMaxTime = item.getGame().getMaxPlayingTime();
-            if (item.getOverrideMaxTime() != -1) trueMaxTime = item.getOverrideMaxTime();
-            
-            //Add in margin of error
-            trueMinTime -= 15;
-            trueMaxTime += 15;
-            if ((trueMinTime <= values.getGameLength()) && (trueMaxTime >= values.getGameLength()))
-              isGameLengthMatch = true;
-          } else isGameLengthMatch = true;
+          //Add in margin of error
+          trueMinTime -= 15;
+          trueMaxTime += 15;
+          if ((trueMinTime <= values.getGameLength()) && (trueMaxTime >= values.getGameLength()))
+            isGameLengthMatch = true;
+        } else isGameLengthMatch = true;
+      
+        boolean isGameWeightMatch = false;
+        if (findWeight != null) {
+          List<GameWeight> weights = item.getWeights();
+          if (weights != null) {
+            if (weights.contains(findWeight))
+              isGameWeightMatch = true;
+          }
+        } else isGameWeightMatch = true;
         
-          boolean isGameWeightMatch = false;
-          if (findWeight != null) {
-            List<GameWeight> weights = item.getWeights();
-            if (weights != null) {
-              if (weights.contains(findWeight))
-                isGameWeightMatch = true;
-            }
-          } else isGameWeightMatch = true;
-          
-          boolean isMechanismMatch = false;
-          if ((values.getMechanic() != null) && (!values.getMechanic().equalsIgnoreCase("Any"))) {
-            List<String> mechanisms = item.getGame().getMechanisms();
-            if (mechanisms != null) {
-              for (String curMechanic : mechanisms) {
-                if (curMechanic.equalsIgnoreCase(values.getMechanic())) {
-                  isMechanismMatch = true;
-                  break;
-                }
+        boolean isMechanismMatch = false;
+        if ((values.getMechanic() != null) && (!values.getMechanic().equalsIgnoreCase("Any"))) {
+          List<String> mechanisms = item.getGame().getMechanisms();
+          if (mechanisms != null) {
+            for (String curMechanic : mechanisms) {
+              if (curMechanic.equalsIgnoreCase(values.getMechanic())) {
+                isMechanismMatch = true;
+                break;
               }
             }
-          } else isMechanismMatch = true;
-          
-          if (isPlayerCountMatch && isGameLengthMatch && isGameWeightMatch && isMechanismMatch) {
-            matchingGames.add(item);
           }
+        } else isMechanismMatch = true;
+        
+        if (isPlayerCountMatch && isGameLengthMatch && isGameWeightMatch && isMechanismMatch) {
+          matchingGames.add(item);
         }
-        if (matchingGames.size() >= values.getRecommendNum())
-          break;
       }
-      
-      //Now, if there's a need, check through expansion titles
-      if (matchingGames.size() < values.getRecommendNum()) {
-        for (CollectionItem item : games) {
-          if (item.getGame().getGameType() == GameType.EXPANSION) {
-            if ((item.getGame().getParentGameID() != -1) && (!parentGameIDs.contains(item.getGame().getParentGameID()))) {
-              boolean isPlayerCountMatch = false;
-              if (values.getPlayerCount() != -1) {
-                int trueMinPlayer = item.getGame().getMinPlayers();
-                if (item.getOverrideMinPlayers() != -1) trueMinPlayer = item.getOverrideMinPlayers();
-                int trueMaxPlayer = item.getGame().getMaxPlayers();
-                if (item.getOverrideMaxPlayers() != -1) trueMaxPlayer = item.getOverrideMaxPlayers();
-                
-                if ((trueMinPlayer <= values.getPlayerCount()) && (trueMaxPlayer >= values.getPlayerCount()))
-                  isPlayerCountMatch = true;
-              } else isPlayerCountMatch = true;
-            
-              boolean isGameLengthMatch = false;
-              if (values.getGameLength() != -1) {
-                int trueMinTime = item.getGame().getMinPlayingTime();
-                if (item.getOverrideMinTime() != -1) trueMinTime = item.getOverrideMinTime();
-                int trueMaxTime = item.getGame().getMaxPlayingTime();
-                if (item.getOverrideMaxTime() != -1) trueMaxTime = item.getOverrideMaxTime();
-                
-                //Add in margin of error
-                trueMinTime -= 15;
-                trueMaxTime += 15;
-                if ((trueMinTime <= values.getGameLength()) && (trueMaxTime >= values.getGameLength()))
-                  isGameLengthMatch = true;
-              } else isGameLengthMatch = true;
-            
-              boolean isGameWeightMatch = false;
-              if (findWeight != null) {
-                List<GameWeight> weights = item.getWeights();
-                if (weights != null) {
-                  if (weights.contains(findWeight))
-                    isGameWeightMatch = true;
-                }
-              } else isGameWeightMatch = true;
+      if (matchingGames.size() >= values.getRecommendNum())
+        break;
+    }
+    
+    //Now, if there's a need, check through expansion titles
+    if (matchingGames.size() < values.getRecommendNum()) {
+      for (CollectionItem item : games) {
+        if (item.getGame().getGameType() == GameType.EXPANSION) {
+          if ((item.getGame().getParentGameID() != -1) && (!parentGameIDs.contains(item.getGame().getParentGameID()))) {
+            boolean isPlayerCountMatch = false;
+            if (values.getPlayerCount() != -1) {
+              int trueMinPlayer = item.getGame().getMinPlayers();
+              if (item.getOverrideMinPlayers() != -1) trueMinPlayer = item.getOverrideMinPlayers();
+              int trueMaxPlayer = item.getGame().getMaxPlayers();
+              if (item.getOverrideMaxPlayers() != -1) trueMaxPlayer = item.getOverrideMaxPlayers();
               
-              boolean isMechanismMatch = false;
-              if ((values.getMechanic() != null) && (!values.getMechanic().equalsIgnoreCase("Any"))) {
-                List<String> mechanisms = item.getGame().getMechanisms();
-                if (mechanisms != null) {
-                  for (String curMechanic : mechanisms) {
-                    if (curMechanic.equalsIgnoreCase(values.getMechanic())) {
-                      isMechanismMatch = true;
-                      break;
-                    }
+              if ((trueMinPlayer <= values.getPlayerCount()) && (trueMaxPlayer >= values.getPlayerCount()))
+                isPlayerCountMatch = true;
+            } else isPlayerCountMatch = true;
+          
+            boolean isGameLengthMatch = false;
+            if (values.getGameLength() != -1) {
+              int trueMinTime = item.getGame().getMinPlayingTime();
+              if (item.getOverrideMinTime() != -1) trueMinTime = item.getOverrideMinTime();
+              int trueMaxTime = item.getGame().getMaxPlayingTime();
+              if (item.getOverrideMaxTime() != -1) trueMaxTime = item.getOverrideMaxTime();
+              
+              //Add in margin of error
+              trueMinTime -= 15;
+              trueMaxTime += 15;
+              if ((trueMinTime <= values.getGameLength()) && (trueMaxTime >= values.getGameLength()))
+                isGameLengthMatch = true;
+            } else isGameLengthMatch = true;
+          
+            boolean isGameWeightMatch = false;
+            if (findWeight != null) {
+              List<GameWeight> weights = item.getWeights();
+              if (weights != null) {
+                if (weights.contains(findWeight))
+                  isGameWeightMatch = true;
+              }
+            } else isGameWeightMatch = true;
+            
+            boolean isMechanismMatch = false;
+            if ((values.getMechanic() != null) && (!values.getMechanic().equalsIgnoreCase("Any"))) {
+              List<String> mechanisms = item.getGame().getMechanisms();
+              if (mechanisms != null) {
+                for (String curMechanic : mechanisms) {
+                  if (curMechanic.equalsIgnoreCase(values.getMechanic())) {
+                    isMechanismMatch = true;
+                    break;
                   }
                 }
-              } else isMechanismMatch = true;
-              
-              if (isPlayerCountMatch && isGameLengthMatch && isGameWeightMatch && isMechanismMatch) {
-                matchingGames.add(item);
               }
+            } else isMechanismMatch = true;
+            
+            if (isPlayerCountMatch && isGameLengthMatch && isGameWeightMatch && isMechanismMatch) {
+              matchingGames.add(item);
             }
           }
         }
       }
-    
-      result = matchingGames;
-    } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
-      //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-      return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
-    } catch (ConfigurationException ce) {
-      ce.printStackTrace();
-      //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
-    } finally {
-      //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
     }
-
-    return result;
+    return matchingGames;
   }
   
   private GameWeight convertWeight(String weight) {
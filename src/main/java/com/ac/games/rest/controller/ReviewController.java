@@ -0,0 +1,108 @@
+package com.ac.games.rest.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.data.ReviewLease;
+import com.ac.games.rest.message.SimpleErrorData;
+import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.review.ReviewQueue;
+import com.ac.games.rest.review.ReviewSource;
+
+/**
+ * This class should be the intercepter for REST service access to the moderation review queue.
+ * <p>
+ * It should handle all request that come in under the /review entry.  A reviewer GETs the next
+ * pending record on a lease, finishes it with the usual review PUT on /external/bggdata,
+ * /external/csidata or /external/mmdata, and can renew (PUT) or hand back (DELETE) the lease.
+ * 
+ * @author ac010168
+ */
+@RestController
+@RequestMapping("/review")
+public class ReviewController {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReviewController.class);
+
+  /**
+   * GET method designed to lease the next pending record to a reviewer.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>source=&lt;bgg|csi|mm&gt;</code> - The records to review.  This is required.</li>
+   * <li><code>order=&lt;new|old&gt;</code> - Newest or oldest pending first.  Default is old.</li>
+   * <li><code>reviewer=&lt;name&gt;</code> - Who the lease is for.</li>
+   * <li><code>status=y</code> - Report the queued and leased counts instead.</li>
+   * </ul>
+   * 
+   * @return A {@link ReviewLease} object or {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
+  public Object getNextReview(@RequestParam(value="source", defaultValue="null") String source,
+                              @RequestParam(value="order", defaultValue="old") String order,
+                              @RequestParam(value="reviewer", defaultValue="null") String reviewer,
+                              @RequestParam(value="status", defaultValue="n") String status) {
+    if (status.equalsIgnoreCase("y"))
+      return Application.reviewQueue.getStatus();
+    
+    ReviewSource<?> reviewSource = ReviewSource.forName(source);
+    if (reviewSource == null)
+      return new SimpleErrorData("Invalid Parameters", "The source parameter value of " + source + " is not a valid source value");
+    if ((!order.equalsIgnoreCase(ReviewQueue.ORDER_NEW)) && (!order.equalsIgnoreCase(ReviewQueue.ORDER_OLD)))
+      return new SimpleErrorData("Invalid Parameters", "The order parameter value of " + order + " is not a valid order value");
+    
+    GamesDatabase database = null;
+    ReviewLease lease = null;
+    try {
+      database = Application.getDatabase();
+      
+      lease = Application.reviewQueue.next(database, reviewSource, order, reviewer.equalsIgnoreCase("null") ? null : reviewer);
+    } catch (DatabaseOperationException doe) {
+      logger.error("Database operation error", doe);
+      return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    }
+    
+    if (lease == null)
+      return new SimpleErrorData("Game Not Found", "There are no " + reviewSource.getName() + " items waiting on a review.");
+    return lease;
+  }
+
+  /**
+   * PUT method, which renews a lease for another lease period.
+   * 
+   * @param leaseID The lease
+   * 
+   * @return The renewed {@link ReviewLease} or {@link SimpleErrorData} if the lease is no longer held
+   */
+  @RequestMapping(method = RequestMethod.PUT, produces="application/json;charset=UTF-8")
+  public Object putReviewLease(@RequestParam(value="leaseid") String leaseID) {
+    ReviewLease lease = Application.reviewQueue.renew(leaseID);
+    if (lease == null)
+      return new SimpleErrorData("Lease Not Found", "The lease " + leaseID + " has expired or been completed");
+    return lease;
+  }
+
+  /**
+   * DELETE method, which hands a leased record back to the front of the queue.
+   * 
+   * @param leaseID The lease
+   * 
+   * @return A {@link SimpleMessageData} or {@link SimpleErrorData} message indicating the operation status
+   */
+  @RequestMapping(method = RequestMethod.DELETE, produces="application/json;charset=UTF-8")
+  public Object deleteReviewLease(@RequestParam(value="leaseid") String leaseID) {
+    if (!Application.reviewQueue.release(leaseID))
+      return new SimpleErrorData("Lease Not Found", "The lease " + leaseID + " has expired or been completed");
+    return new SimpleMessageData("Operation Successful", "The Delete Request Completed Successfully");
+  }
+}
@@ -4,7 +4,10 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -12,10 +15,12 @@ import com.ac.games.data.BGGGame;
 import com.ac.games.data.GameType;
 import com.ac.games.data.ReviewState;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.NameMatch;
+import com.ac.games.rest.index.NameSearchIndex;
 import com.ac.games.rest.message.SimpleErrorData;
 
 /**
@@ -32,6 +37,21 @@ import com.ac.games.rest.message.SimpleErrorData;
 @RequestMapping("/search")
 public class SearchController {
 
+  private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
+
+  /**
+   * GET method designed to run dynamic queries against one of our indexes.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>index=&lt;bgg|names&gt;</code> - The index we want to search.  This is required.  The names index
+   * runs a typo-tolerant search against the Game, BGG, CSI and MM titles, and requires the name parameter.</li>
+   * <li><code>limit=n</code> - The maximum number of results to return.</li>
+   * </ul>
+   * Refer to {@link #processBGGQuery} for the remaining bgg parameters.
+   * 
+   * @return The query results, or {@link SimpleErrorData} message reporting what failed.
+   */
+  @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
   public Object searchData(@RequestParam(value="index", defaultValue="none") String index,
                            @RequestParam(value="gameid", defaultValue="-1") long gameID,
                            @RequestParam(value="name", defaultValue="none") String name,
@@ -74,6 +94,9 @@ public class SearchController {
     //TODO - Develop a date format for parsing dates.  Might be better to go with hourly increments, like 12, 24, 48, etc
     Date trueAddDate = new Date();
     
+    if (index.equalsIgnoreCase("names"))
+      return processNameQuery(name, limit);
+    
     if (index.equalsIgnoreCase("bgg")) 
       return processBGGQuery(gameID, name, players, publisher, designer, category, mechanism, 
           parentID, trueGameType, trueReviewState, trueAddDate, limit);
@@ -167,18 +190,33 @@ public class SearchController {
     List<BGGGame> games = null;
     
     try {
-      database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       games = database.readBGGGameByName(name, true, null);
-      if (games == null)
+      
+      //Nothing matched the name exactly, so fall back to the closest names in the index
+      if (((games == null) || (games.size() == 0)) && (name != null)) {
+        Application.nameIndex.ensureBuilt(database);
+        List<NameMatch> matches = Application.nameIndex.search(NameSearchIndex.BGG_SOURCE, name, 
+            (limit > 0) ? limit : NameSearchIndex.DEFAULT_LIMIT);
+        List<Long> matchBggIDs = new ArrayList<Long>(matches.size());
+        for (NameMatch match : matches) {
+          long matchBggID = NameSearchIndex.parseSourceID(match.getValue());
+          if (matchBggID != -1)
+            matchBggIDs.add(matchBggID);
+        }
+        games = new ArrayList<BGGGame>(matchBggIDs.size());
+        for (Object found : BatchReader.foundOnly(Application.batchReader.read(database, BatchReader.BGG, matchBggIDs)))
+          games.add((BGGGame)found);
+      }
+      if ((games == null) || (games.size() == 0))
         return new SimpleErrorData("Game Not Found", "The requested item(s) could not be found in the database.");
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -190,6 +228,31 @@ public class SearchController {
     return games;
   }
   
+  /**
+   * Run a typo-tolerant name search across all four title sources.
+   * 
+   * @param name The name to search for
+   * @param limit The maximum number of matches to return
+   * 
+   * @return A List of {@link NameMatch} results, best first, or an error message
+   */
+  private Object processNameQuery(String name, int limit) {
+    if (name == null)
+      return new SimpleErrorData("Incomplete Query Specification", "The names index requires a name parameter");
+    
+    GamesDatabase database = null;
+    try {
+      database = Application.getDatabase();
+      
+      Application.nameIndex.ensureBuilt(database);
+    } catch (ConfigurationException ce) {
+      logger.error("Database configuration error", ce);
+      return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
+    }
+    
+    return Application.nameIndex.searchAll(name, (limit > 0) ? limit : NameSearchIndex.DEFAULT_LIMIT);
+  }
+  
   private ReviewState mapReviewState(String reviewState) throws RuntimeException {
     if (reviewState.equalsIgnoreCase("none"))     return null;
     if (reviewState.equalsIgnoreCase("pending"))  return ReviewState.PENDING;
@@ -1,5 +1,7 @@
 package com.ac.games.rest.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -9,11 +11,12 @@ import com.ac.games.data.BGGGameStats;
 import com.ac.games.data.CSIDataStats;
 import com.ac.games.data.MMDataStats;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
+import com.ac.games.rest.data.StatsSnapshot;
 import com.ac.games.rest.message.SimpleErrorData;
+import com.ac.games.rest.stats.StatsCache;
 
 /**
  * This class should be the intercepter for REST service access to the stats
@@ -31,54 +34,53 @@ import com.ac.games.rest.message.SimpleErrorData;
 @RequestMapping("/stats")
 public class StatsController {
 
+  private static final Logger logger = LoggerFactory.getLogger(StatsController.class);
+
   /**
    * GET method designed to handle retrieving Stats data from the database.<p>
    * This method supports the following parameters:
    * <ul>
    * <li><code>type=&lt;statType&gt;</code> - The type of stats we want.  This is required.</li>
+   * <li><code>userid=&lt;userID&gt;</code> - The userID, required for the user stat type.</li>
+   * <li><code>refresh=y</code> - Recompute the stats from the database before returning them.</li>
    * </ul>
+   * The stats are served from memory, see {@link StatsCache}.  The wrapper reports when they were
+   * computed and how many changes have been made since, so stale numbers can be identified.
    * 
    * @param type The type of stats that we are requesting
+   * @param userID The userID for user stats
+   * @param refresh y to force a recompute
    * 
-   * @return One of the Stat family of objects or {@link SimpleErrorData} message reporting what failed.
+   * @return A {@link StatsSnapshot} wrapping one of the Stat family of objects or {@link SimpleErrorData} message reporting what failed.
    */
   @RequestMapping(method = RequestMethod.GET, produces="application/json;charset=UTF-8")
   public Object getStats(@RequestParam(value="type") String type,
-                         @RequestParam(value="userid", defaultValue="-1") long userID) {
+                         @RequestParam(value="userid", defaultValue="-1") long userID,
+                         @RequestParam(value="refresh", defaultValue="n") String refresh) {
     if (type == null)
       return new SimpleErrorData("Stats Request Error", "There was no valid stat type request data provided");
     
     if ((!type.equalsIgnoreCase(BGGGameStats.BGG_GAME_STATS)) && 
         (!type.equalsIgnoreCase(CSIDataStats.CSI_DATA_STATS)) &&
         (!type.equalsIgnoreCase(MMDataStats.MM_DATA_STATS)) &&
-        (!type.equalsIgnoreCase("user")))
+        (!type.equalsIgnoreCase(StatsCache.USER_STATS)))
       return new SimpleErrorData("Stats Request Error", "The Stats Type " + type + " is unknown and cannot be retrieved.");
     
-    if (type.equalsIgnoreCase("user") && (userID == -1))
+    if (type.equalsIgnoreCase(StatsCache.USER_STATS) && (userID == -1))
       return new SimpleErrorData("Stats Request Error", "The Stats Type collection requires a userID");
     
     GamesDatabase database = null; 
-    Object statResult = null;
+    StatsSnapshot statResult = null;
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
-      if (type.equalsIgnoreCase(BGGGameStats.BGG_GAME_STATS))
-        statResult = database.readBGGGameStats();
-      else if (type.equalsIgnoreCase(CSIDataStats.CSI_DATA_STATS))
-        statResult = database.readCSIDataStats();
-      else if (type.equalsIgnoreCase(MMDataStats.MM_DATA_STATS))
-        statResult = database.readMMDataStats();
-      else if (type.equalsIgnoreCase("user"))
-        statResult = database.readCollectionStats(userID);
+      statResult = Application.statsCache.getStats(database, type, userID, refresh.equalsIgnoreCase("y"));
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
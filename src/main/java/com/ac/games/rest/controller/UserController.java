@@ -1,8 +1,10 @@
 package com.ac.games.rest.controller;
 
+import java.io.IOException;
 import java.util.Date;
-import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -10,18 +12,19 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ac.games.data.Collection;
-import com.ac.games.data.CollectionItem;
 import com.ac.games.data.User;
 import com.ac.games.data.UserDetail;
 import com.ac.games.data.UserRole;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
 import com.ac.games.rest.data.NewUserData;
+import com.ac.games.rest.data.PurgeStatus;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.purge.PurgeJob;
+import com.ac.games.rest.purge.PurgeJob.PurgeState;
 
 /**
  * @author ac010168
@@ -30,6 +33,8 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RestController
 @RequestMapping("/user")
 public class UserController {
+
+  private static final Logger logger = LoggerFactory.getLogger(UserController.class);
   
   /**
    * Simple GET Request for a User.  This request can use either the userID or userName, but will
@@ -49,19 +54,16 @@ public class UserController {
     GamesDatabase database = null; 
     User user              = null;
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       if (userID > 0) user = database.readUser(userID);
       else user = database.readUser(userName);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -95,18 +97,15 @@ public class UserController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       database.updateUser(user);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -141,10 +140,7 @@ public class UserController {
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       //First we need to see if this user exists.  If it does, reject the request.
       User existUser = database.readUser(userData.getUserName());
@@ -179,11 +175,11 @@ public class UserController {
       database.insertUser(newUser);
       database.insertCollection(newCollection);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -193,17 +189,31 @@ public class UserController {
     return new SimpleMessageData("Operation Successful", "The New User " + userData.getUserName() + " was created.");
   }
 
+  /**
+   * DELETE Method, which deletes the user, their details, and their full collection.<p>
+   * This method supports the following parameters:
+   * <ul>
+   * <li><code>userid=&lt;userID&gt;</code> - The userID.  This is required.</li>
+   * <li><code>mode=&lt;sync|async&gt;</code> - With async, the user is removed right away and the collection
+   * items are purged in the background.  Use the returned jobID with /purge to follow the progress.  Default is sync.</li>
+   * </ul>
+   * 
+   * @param userID The userID to delete
+   * @param mode sync or async
+   * 
+   * @return A {@link SimpleMessageData}, a {@link PurgeStatus} for async requests, or {@link SimpleErrorData} message indicating the operation status
+   */
   @RequestMapping(method = RequestMethod.DELETE, produces="application/json;charset=UTF-8")
-  public Object deleteUser(@RequestParam(value="userid", defaultValue="-1") long userID) {
+  public Object deleteUser(@RequestParam(value="userid", defaultValue="-1") long userID,
+                           @RequestParam(value="mode", defaultValue="sync") String mode) {
     if (userID <= 0)
       return new SimpleErrorData("User Data Error", "There was no valid User request data provided");
+    if ((!mode.equalsIgnoreCase("sync")) && (!mode.equalsIgnoreCase("async")))
+      return new SimpleErrorData("Invalid Parameters", "The mode parameter value of " + mode + " is not a valid mode value");
 
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       //First we need to see if this user exists.  If it does, reject the request.
       User existUser = database.readUser(userID);
@@ -214,19 +224,31 @@ public class UserController {
       
       //We need to then delete all the dependent items, including collections and collection items.
       Collection deleteCollection = database.readCollection(existUser.getCollectionID());
-      List<CollectionItem> deleteItems = deleteCollection.getGames();
-      for (CollectionItem item : deleteItems) 
-        database.deleteCollectionItem(item.getItemID());
-      database.deleteCollection(deleteCollection.getCollectionID());
-      database.deleteUserDetail(userID);
-      database.deleteUser(userID);
+      if (deleteCollection == null) {
+        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
+        return new SimpleErrorData("Invalid Collection Error", "This user has corrupted collection information");
+      }
+      
+      PurgeJob job = Application.purger.createJob(userID, deleteCollection);
+      if (mode.equalsIgnoreCase("async")) {
+        Application.purger.submitJob(database, job);
+        return job.toStatus();
+      }
+      
+      Application.purger.runJob(database, job);
+      if (job.getState() == PurgeState.FAILED)
+        return new SimpleErrorData("Delete Incomplete", "The user was deleted, but some collection items could not be removed.  " +
+                                   "They will be retried on the next restart under job " + job.getJobID());
       
+    } catch (IOException ioe) {
+      logger.error("I/O error", ioe);
+      return new SimpleErrorData("Delete Error", "Unable to record the delete request: " + ioe.getMessage());
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
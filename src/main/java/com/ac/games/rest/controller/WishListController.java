@@ -1,12 +1,13 @@
 package com.ac.games.rest.controller;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -15,22 +16,20 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.ac.games.data.CompactPriceData;
 import com.ac.games.data.CompactSearchData;
-import com.ac.games.data.CoolStuffIncPriceData;
 import com.ac.games.data.Game;
-import com.ac.games.data.GameReltn;
-import com.ac.games.data.MiniatureMarketPriceData;
 import com.ac.games.data.User;
 import com.ac.games.data.WishlistItem;
 import com.ac.games.db.GamesDatabase;
-import com.ac.games.db.MongoDBFactory;
 import com.ac.games.db.exception.ConfigurationException;
 import com.ac.games.db.exception.DatabaseOperationException;
 import com.ac.games.rest.Application;
 import com.ac.games.rest.data.WishPlusFullList;
 import com.ac.games.rest.data.WishPlusGameList;
 import com.ac.games.rest.data.WishPost;
+import com.ac.games.rest.link.VendorLinks;
 import com.ac.games.rest.message.SimpleErrorData;
 import com.ac.games.rest.message.SimpleMessageData;
+import com.ac.games.rest.session.SessionToken;
 
 /**
  * This class should be the intercepter for REST service access to the wishlist information
@@ -46,7 +45,7 @@ import com.ac.games.rest.message.SimpleMessageData;
 @RequestMapping("/wishlist")
 public class WishListController {
 
-  private final static DecimalFormat formatter = new DecimalFormat("'$'0.00");
+  private static final Logger logger = LoggerFactory.getLogger(WishListController.class);
 
   /**
    * GET method designed to handle retrieving various incarnations of wishlist data.
@@ -72,10 +71,7 @@ public class WishListController {
      Object result = null;
      
      try {
-       if (Application.database == null)
-         Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-       database = Application.database;
-       database.initializeDBConnection();
+       database = Application.getDatabase();
        
        if ((gameID == -1) && (display.equalsIgnoreCase("none"))) {
          //This is the get simple list of all by user
@@ -107,7 +103,7 @@ public class WishListController {
            List<WishPlusGameList> gameList = new LinkedList<WishPlusGameList>();
            
            for (WishlistItem item : wishlist) {
-             Game game = database.readGame(item.getGameID());
+             Game game = HotReads.readGame(database, item.getGameID());
              if (game != null) {
                WishPlusGameList gameItem = new WishPlusGameList(item);
                gameItem.setGame(game);
@@ -124,85 +120,30 @@ public class WishListController {
            List<WishPlusFullList> gameList = new LinkedList<WishPlusFullList>();
            
            for (WishlistItem item : wishlist) {
-             Game game = database.readGame(item.getGameID());
+             Game game = HotReads.readGame(database, item.getGameID());
              if (game != null) {
                WishPlusFullList gameItem = new WishPlusFullList(item);
                gameItem.setGame(game);
                
-               GameReltn gameReltn = database.readGameReltn(item.getGameID());
-               if (gameReltn != null) {
+               VendorLinks links = Application.vendorLinks.getLinks(database, item.getGameID());
+               if (links != null) {
                  
-                 List<Long> csiIDs = gameReltn.getCsiIDs();
+                 List<Long> csiIDs = links.getCsiIDs();
                  if ((csiIDs != null) && (csiIDs.size() >= 0)) {
                    for (long csiID : csiIDs) {
-                     CoolStuffIncPriceData data = database.readCSIPriceData(csiID);
-                     if (data != null) {
-                       CompactPriceData price = new CompactPriceData();
-                       price.setTitleDisplay(data.getTitle() + " (CSI ID: " + data.getCsiID() + ")");
-                       
-                       String availString = "";
-                       switch (data.getAvailability()) {
-                         case INSTOCK            : availString = "[This Game is In Stock]"; break;
-                         case PREORDER           : availString = "[Accepting Pre-Orders]"; break;
-                         case OUTOFSTOCK         : availString = "[This Game is Out of Stock]"; break;
-                         case NOTYETTAKINGORDERS : availString = "[This Game is Not Yet Taking Orders]"; break;
-                         default                 : availString = "";
-                       }
-                       String priceString = "";
-                       if (data.getCurPrice() < 0.0) {
-                         if (data.getMsrpValue() < 0.0)
-                           priceString = "";
-                         else 
-                           priceString = "MSRP " + formatter.format(data.getMsrpValue());
-                       } else
-                         priceString = formatter.format(data.getCurPrice());
-                       
-                       String priceDisplayString = priceString + "  " + availString;
-                       price.setPriceDisplay(priceDisplayString.trim());
-                       
-                       price.setLinkURL("http://www.coolstuffinc.com/p/" + data.getCsiID());
-                       price.setThumbnailURL(data.getImageURL());
-                       
-                       gameItem.addCSIData(price);
+                     CompactPriceData card = Application.priceCards.getCSICard(database, csiID);
+                     if (card != null) {
+                       gameItem.addCSIData(card);
                      }
                    }//end for each CSI ID
                  }//end if we have csi data to investigate
                  
-                 List<Long> mmIDs = gameReltn.getMmIDs();
+                 List<Long> mmIDs = links.getMmIDs();
                  if ((mmIDs != null) && (mmIDs.size() >= 0)) {
                    for (long mmID : mmIDs) {
-                     MiniatureMarketPriceData data = database.readMMPriceData(mmID);
-                     if (data != null) {
-                       CompactPriceData price = new CompactPriceData();
-                       price.setTitleDisplay(data.getTitle() + " (MM ID: " + data.getMmID() + ")");
-                       
-                       String availString = "";
-                       switch (data.getAvailability()) {
-                         case INSTOCK            : availString = "[This Game is In Stock]"; break;
-                         case PREORDER           : availString = "[Accepting Pre-Orders]"; break;
-                         case OUTOFSTOCK         : availString = "[This Game is Out of Stock]"; break;
-                         case NOTYETTAKINGORDERS : availString = "[This Game is Not Yet Taking Orders]"; break;
-                         default                 : availString = "";
-                       }
-                       String priceString = "";
-                       if (data.getCurPrice() < 0.0) {
-                         if (data.getMsrpValue() < 0.0)
-                           priceString = "";
-                         else 
-                           priceString = "MSRP " + formatter.format(data.getMsrpValue());
-                       } else
-                         priceString = formatter.format(data.getCurPrice());
-                       
-                       String priceDisplayString = priceString + "  " + availString;
-                       price.setPriceDisplay(priceDisplayString.trim());
-                       
-                       if (data.getSku() != null)
-                         price.setLinkURL("http://www.miniaturemarket.com/" + data.getSku().toLowerCase() + ".html");
-                       else price.setLinkURL("http://www.miniaturemarket.com/catalog/product/view/id/" + data.getMmID());
-                       
-                       price.setThumbnailURL(data.getImageURL());
-                       
-                       gameItem.addMMData(price);
+                     CompactPriceData card = Application.priceCards.getMMCard(database, mmID);
+                     if (card != null) {
+                       gameItem.addMMData(card);
                      }
                    }//end for each CSI ID
                  }//end if we have mm data to investigate
@@ -214,11 +155,11 @@ public class WishListController {
          }//end if display = full
        }
      } catch (DatabaseOperationException doe) {
-       doe.printStackTrace();
+       logger.error("Database operation error", doe);
        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
        return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
      } catch (ConfigurationException ce) {
-       ce.printStackTrace();
+       logger.error("Database configuration error", ce);
        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
        return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
      } finally {
@@ -235,14 +176,26 @@ public class WishListController {
    * POST method, which should insert (no upserting)
    * 
    * @param wish 
+   * @param token The session token from login.  When provided, the User is not re-read.
    * 
    * @return A {@link SimpleMessageData} or {@link SimpleErrorData} message indicating the operation status
    */
   @RequestMapping(method = RequestMethod.POST, consumes = "application/json;charset=UTF-8", produces="application/json;charset=UTF-8")
-  public Object postWishlist(@RequestBody WishPost wish) {
+  public Object postWishlist(@RequestBody WishPost wish,
+                             @RequestParam(value="token", defaultValue="null") String token) {
     if (wish == null)
       return new SimpleErrorData("Wishlist Data Error", "There was no wishlist data provided");
     
+    SessionToken session = null;
+    if (!token.equalsIgnoreCase("null")) {
+      session = Application.sessionTokens.validate(token);
+      if (session == null)
+        return new SimpleErrorData("Invalid Session", "The session token is not valid or has expired");
+      if ((wish.getUserID() >= 0) && (wish.getUserID() != session.getUserID()))
+        return new SimpleErrorData("Invalid Session", "The session token does not match the provided userID");
+      wish.setUserID(session.getUserID());
+    }
+    
     if (wish.getGameID() < 0)
       return new SimpleErrorData("Wishlist Data Error", "There was no gameID data provided");
     if (wish.getUserID() < 0)
@@ -251,10 +204,7 @@ public class WishListController {
     GamesDatabase database = null; 
     
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       //We need to make sure the user and the game are both valid, and that this item isn't already on wishlist
       WishlistItem item = database.readWishlistItem(wish.getUserID(), wish.getGameID());
@@ -263,10 +213,13 @@ public class WishListController {
         return new SimpleMessageData("Operation Successful", "This Game is already in your Wishlist!");
       }
       
-      User user = database.readUser(wish.getUserID());
-      if (user == null) {
-        //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
-        return new SimpleErrorData("Invalid User Error", "There was no User matching the provided userID value");
+      //A valid session token has already proven the user exists
+      if (session == null) {
+        User user = database.readUser(wish.getUserID());
+        if (user == null) {
+          //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
+          return new SimpleErrorData("Invalid User Error", "There was no User matching the provided userID value");
+        }
       }
       
       Game game = database.readGame(wish.getGameID());
@@ -286,11 +239,11 @@ public class WishListController {
       
       database.insertWishlistItem(item);
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -317,20 +270,17 @@ public class WishListController {
     
     GamesDatabase database = null; 
     try {
-      if (Application.database == null)
-        Application.database = MongoDBFactory.createMongoGamesDatabase(Application.databaseHost, Application.databasePort, Application.databaseName);
-      database = Application.database;
-      database.initializeDBConnection();
+      database = Application.getDatabase();
       
       WishlistItem item = database.readWishlistItem(userID, gameID);
       if (item != null)
         database.deleteWishlistItem(item.getWishID());
     } catch (DatabaseOperationException doe) {
-      doe.printStackTrace();
+      logger.error("Database operation error", doe);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Operation Error", "An error occurred running the request: " + doe.getMessage());
     } catch (ConfigurationException ce) {
-      ce.printStackTrace();
+      logger.error("Database configuration error", ce);
       //try { if (database != null) database.closeDBConnection(); } catch (Throwable t2) { /** Ignore Errors */ }
       return new SimpleErrorData("Database Configuration Error", "An error occurred accessing the database: " + ce.getMessage());
     } finally {
@@ -0,0 +1,93 @@
+package com.ac.games.rest.data;
+
+/**
+ * One entry of a multi-ID read, in the position its ID was asked for.  Missing records get an
+ * entry too, with a status of notFound, so the response always lines up with the request.
+ * 
+ * @author ac010168
+ */
+public class BatchItem {
+
+  public static final String STATUS_FOUND     = "found";
+  public static final String STATUS_NOT_FOUND = "notFound";
+  public static final String STATUS_ERROR     = "error";
+
+  private long id;
+  private String status;
+  private Object data;
+  private String message;
+
+  public BatchItem() {
+    id      = -1;
+    status  = null;
+    data    = null;
+    message = null;
+  }
+
+  /**
+   * @param id
+   * @param status
+   * @param data
+   */
+  public BatchItem(long id, String status, Object data) {
+    this.id     = id;
+    this.status = status;
+    this.data   = data;
+  }
+
+  /**
+   * @return the id
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @param id the id to set
+   */
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the status: found, notFound or error
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * @param status the status to set
+   */
+  public void setStatus(String status) {
+    this.status = status;
+  }
+
+  /**
+   * @return the record, when it was found
+   */
+  public Object getData() {
+    return data;
+  }
+
+  /**
+   * @param data the data to set
+   */
+  public void setData(Object data) {
+    this.data = data;
+  }
+
+  /**
+   * @return what went wrong, when the status is error
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * @param message the message to set
+   */
+  public void setMessage(String message) {
+    this.message = message;
+  }
+}
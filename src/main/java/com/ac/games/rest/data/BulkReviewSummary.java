@@ -0,0 +1,94 @@
+package com.ac.games.rest.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a bulk review, as reported by the /bulk/review requests, with one
+ * {@link ReviewOutcome} per decision in the order they were sent.
+ * 
+ * @author ac010168
+ */
+public class BulkReviewSummary {
+
+  private long succeeded;
+  private long failed;
+  private long elapsedMillis;
+  private List<ReviewOutcome> outcomes;
+
+  public BulkReviewSummary() {
+    succeeded     = 0;
+    failed        = 0;
+    elapsedMillis = 0;
+    outcomes      = new ArrayList<ReviewOutcome>();
+  }
+
+  /**
+   * @param outcomes
+   * @param elapsedMillis
+   */
+  public BulkReviewSummary(List<ReviewOutcome> outcomes, long elapsedMillis) {
+    this.outcomes      = outcomes;
+    this.elapsedMillis = elapsedMillis;
+    for (ReviewOutcome outcome : outcomes) {
+      if (outcome.succeeded()) succeeded++;
+      else                     failed++;
+    }
+  }
+
+  /**
+   * @return the succeeded
+   */
+  public long getSucceeded() {
+    return succeeded;
+  }
+
+  /**
+   * @param succeeded the succeeded to set
+   */
+  public void setSucceeded(long succeeded) {
+    this.succeeded = succeeded;
+  }
+
+  /**
+   * @return the failed
+   */
+  public long getFailed() {
+    return failed;
+  }
+
+  /**
+   * @param failed the failed to set
+   */
+  public void setFailed(long failed) {
+    this.failed = failed;
+  }
+
+  /**
+   * @return the elapsedMillis
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * @param elapsedMillis the elapsedMillis to set
+   */
+  public void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * @return the outcomes
+   */
+  public List<ReviewOutcome> getOutcomes() {
+    return outcomes;
+  }
+
+  /**
+   * @param outcomes the outcomes to set
+   */
+  public void setOutcomes(List<ReviewOutcome> outcomes) {
+    this.outcomes = outcomes;
+  }
+}
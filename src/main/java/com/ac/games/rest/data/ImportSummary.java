@@ -0,0 +1,175 @@
+package com.ac.games.rest.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a bulk import, as reported by the /bulk/import requests.
+ * 
+ * @author ac010168
+ */
+public class ImportSummary {
+
+  /** Only the first few failures are listed, so a bad file can't blow up the response */
+  public static final int MAX_ERRORS = 100;
+
+  private String type;
+  private long lines;
+  private long inserted;
+  private long updated;
+  private long failed;
+  private long elapsedMillis;
+  private boolean aborted;
+  private List<String> errors;
+
+  public ImportSummary() {
+    type          = null;
+    lines         = 0;
+    inserted      = 0;
+    updated       = 0;
+    failed        = 0;
+    elapsedMillis = 0;
+    aborted       = false;
+    errors        = new ArrayList<String>();
+  }
+
+  /**
+   * @param type
+   */
+  public ImportSummary(String type) {
+    this();
+    this.type = type;
+  }
+
+  /**
+   * Count a failed record.
+   * 
+   * @param lineNumber The line it came from
+   * @param message What went wrong
+   */
+  public synchronized void addFailure(long lineNumber, String message) {
+    failed++;
+    if (errors.size() < MAX_ERRORS)
+      errors.add("Line " + lineNumber + ": " + message);
+  }
+
+  public synchronized void addInserted() {
+    inserted++;
+  }
+
+  public synchronized void addUpdated() {
+    updated++;
+  }
+
+  /**
+   * @return the type
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * @param type the type to set
+   */
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  /**
+   * @return the number of non-blank lines read
+   */
+  public long getLines() {
+    return lines;
+  }
+
+  /**
+   * @param lines the lines to set
+   */
+  public void setLines(long lines) {
+    this.lines = lines;
+  }
+
+  /**
+   * @return the inserted
+   */
+  public synchronized long getInserted() {
+    return inserted;
+  }
+
+  /**
+   * @param inserted the inserted to set
+   */
+  public synchronized void setInserted(long inserted) {
+    this.inserted = inserted;
+  }
+
+  /**
+   * @return the updated
+   */
+  public synchronized long getUpdated() {
+    return updated;
+  }
+
+  /**
+   * @param updated the updated to set
+   */
+  public synchronized void setUpdated(long updated) {
+    this.updated = updated;
+  }
+
+  /**
+   * @return the failed
+   */
+  public synchronized long getFailed() {
+    return failed;
+  }
+
+  /**
+   * @param failed the failed to set
+   */
+  public synchronized void setFailed(long failed) {
+    this.failed = failed;
+  }
+
+  /**
+   * @return the elapsedMillis
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * @param elapsedMillis the elapsedMillis to set
+   */
+  public void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * @return true if the import stopped early, because the database could not be reached
+   */
+  public boolean isAborted() {
+    return aborted;
+  }
+
+  /**
+   * @param aborted the aborted to set
+   */
+  public void setAborted(boolean aborted) {
+    this.aborted = aborted;
+  }
+
+  /**
+   * @return the first {@link #MAX_ERRORS} failures
+   */
+  public synchronized List<String> getErrors() {
+    return new ArrayList<String>(errors);
+  }
+
+  /**
+   * @param errors the errors to set
+   */
+  public synchronized void setErrors(List<String> errors) {
+    this.errors = errors;
+  }
+}
@@ -13,6 +13,7 @@ public class LoginSuccessData extends SimpleMessageData {
   private String userFirstName;
   private String userRole;
   private long collectionID;
+  private String sessionToken;
   
   public LoginSuccessData() {
     super("Login Successful", "The Login Validated Successfully");  
@@ -20,6 +21,7 @@ public class LoginSuccessData extends SimpleMessageData {
     userFirstName = null;
     userRole      = null;
     setCollectionID(-1);
+    sessionToken  = null;
   }
 
   /**
@@ -77,4 +79,18 @@ public class LoginSuccessData extends SimpleMessageData {
   public void setCollectionID(long collectionID) {
     this.collectionID = collectionID;
   }
+
+  /**
+   * @return the sessionToken
+   */
+  public String getSessionToken() {
+    return sessionToken;
+  }
+
+  /**
+   * @param sessionToken the sessionToken to set
+   */
+  public void setSessionToken(String sessionToken) {
+    this.sessionToken = sessionToken;
+  }
 }
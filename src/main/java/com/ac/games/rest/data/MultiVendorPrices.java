@@ -0,0 +1,81 @@
+package com.ac.games.rest.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every vendor's listings for a game, returned by <code>/gamereltn?vendor=all</code>.
+ * <p>
+ * If any vendor timed out or failed, <code>partial</code> is set and that vendor's entry says why.
+ * 
+ * @author ac010168
+ */
+public class MultiVendorPrices {
+
+  private long gameID;
+  private boolean partial;
+  private List<VendorPrices> vendors;
+  
+  public MultiVendorPrices() {
+    vendors = new ArrayList<VendorPrices>();
+  }
+  
+  /**
+   * @param gameID
+   */
+  public MultiVendorPrices(long gameID) {
+    this();
+    this.gameID = gameID;
+  }
+
+  /**
+   * @param prices
+   */
+  public void addVendor(VendorPrices prices) {
+    vendors.add(prices);
+    if (!VendorPrices.STATUS_COMPLETE.equals(prices.getStatus()))
+      partial = true;
+  }
+
+  /**
+   * @return the gameID
+   */
+  public long getGameID() {
+    return gameID;
+  }
+
+  /**
+   * @param gameID the gameID to set
+   */
+  public void setGameID(long gameID) {
+    this.gameID = gameID;
+  }
+
+  /**
+   * @return true if any vendor's listings are missing or incomplete
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * @param partial the partial to set
+   */
+  public void setPartial(boolean partial) {
+    this.partial = partial;
+  }
+
+  /**
+   * @return the vendors
+   */
+  public List<VendorPrices> getVendors() {
+    return vendors;
+  }
+
+  /**
+   * @param vendors the vendors to set
+   */
+  public void setVendors(List<VendorPrices> vendors) {
+    this.vendors = vendors;
+  }
+}
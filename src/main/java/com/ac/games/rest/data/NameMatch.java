@@ -0,0 +1,77 @@
+package com.ac.games.rest.data;
+
+/**
+ * A single result from a fuzzy name search.  The value is in the same format we hand out for
+ * autocomplete, so it can be passed straight back into the /auto value parameter.
+ *
+ * @author ac010168
+ */
+public class NameMatch implements Comparable<NameMatch> {
+
+  private String source;
+  private String value;
+  private double score;
+
+  public NameMatch() {
+    source = null;
+    value  = null;
+    score  = 0.0;
+  }
+
+  public NameMatch(String source, String value, double score) {
+    this.source = source;
+    this.value  = value;
+    this.score  = score;
+  }
+
+  /**
+   * Sorts best score first, then alphabetically by value.
+   */
+  public int compareTo(NameMatch other) {
+    if (score > other.score) return -1;
+    if (score < other.score) return 1;
+    return value.compareToIgnoreCase(other.value);
+  }
+
+  /**
+   * @return the source
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * @param source the source to set
+   */
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  /**
+   * @return the value
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @param value the value to set
+   */
+  public void setValue(String value) {
+    this.value = value;
+  }
+
+  /**
+   * @return the score
+   */
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * @param score the score to set
+   */
+  public void setScore(double score) {
+    this.score = score;
+  }
+}
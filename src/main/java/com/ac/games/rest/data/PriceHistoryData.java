@@ -0,0 +1,60 @@
+package com.ac.games.rest.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ac.games.rest.history.PriceWindow;
+
+/**
+ * The price history of a game's vendor listings, one {@link PriceWindow} per window asked for.
+ * 
+ * @author ac010168
+ */
+public class PriceHistoryData {
+
+  private long gameID;
+  private List<PriceWindow> windows;
+  
+  public PriceHistoryData() {
+    windows = new ArrayList<PriceWindow>();
+  }
+  
+  /**
+   * @param gameID
+   * @param windows
+   */
+  public PriceHistoryData(long gameID, PriceWindow[] windows) {
+    this();
+    this.gameID = gameID;
+    for (PriceWindow window : windows)
+      this.windows.add(window);
+  }
+
+  /**
+   * @return the gameID
+   */
+  public long getGameID() {
+    return gameID;
+  }
+
+  /**
+   * @param gameID the gameID to set
+   */
+  public void setGameID(long gameID) {
+    this.gameID = gameID;
+  }
+
+  /**
+   * @return the windows
+   */
+  public List<PriceWindow> getWindows() {
+    return windows;
+  }
+
+  /**
+   * @param windows the windows to set
+   */
+  public void setWindows(List<PriceWindow> windows) {
+    this.windows = windows;
+  }
+}
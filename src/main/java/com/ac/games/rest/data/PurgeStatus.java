@@ -0,0 +1,175 @@
+package com.ac.games.rest.data;
+
+import java.util.Date;
+
+/**
+ * The progress of a cascading collection delete, as reported by the /purge requests.
+ * 
+ * @author ac010168
+ */
+public class PurgeStatus {
+
+  private String jobID;
+  private long userID;
+  private long collectionID;
+  private String state;
+  private int totalItems;
+  private int deletedItems;
+  private int failedItems;
+  private Date createdDate;
+  private Date finishedDate;
+  private String lastError;
+
+  public PurgeStatus() {
+    jobID        = null;
+    userID       = -1;
+    collectionID = -1;
+    state        = null;
+    totalItems   = 0;
+    deletedItems = 0;
+    failedItems  = 0;
+    createdDate  = null;
+    finishedDate = null;
+    lastError    = null;
+  }
+
+  /**
+   * @return the jobID
+   */
+  public String getJobID() {
+    return jobID;
+  }
+
+  /**
+   * @param jobID the jobID to set
+   */
+  public void setJobID(String jobID) {
+    this.jobID = jobID;
+  }
+
+  /**
+   * @return the userID
+   */
+  public long getUserID() {
+    return userID;
+  }
+
+  /**
+   * @param userID the userID to set
+   */
+  public void setUserID(long userID) {
+    this.userID = userID;
+  }
+
+  /**
+   * @return the collectionID
+   */
+  public long getCollectionID() {
+    return collectionID;
+  }
+
+  /**
+   * @param collectionID the collectionID to set
+   */
+  public void setCollectionID(long collectionID) {
+    this.collectionID = collectionID;
+  }
+
+  /**
+   * @return the state
+   */
+  public String getState() {
+    return state;
+  }
+
+  /**
+   * @param state the state to set
+   */
+  public void setState(String state) {
+    this.state = state;
+  }
+
+  /**
+   * @return the totalItems
+   */
+  public int getTotalItems() {
+    return totalItems;
+  }
+
+  /**
+   * @param totalItems the totalItems to set
+   */
+  public void setTotalItems(int totalItems) {
+    this.totalItems = totalItems;
+  }
+
+  /**
+   * @return the deletedItems
+   */
+  public int getDeletedItems() {
+    return deletedItems;
+  }
+
+  /**
+   * @param deletedItems the deletedItems to set
+   */
+  public void setDeletedItems(int deletedItems) {
+    this.deletedItems = deletedItems;
+  }
+
+  /**
+   * @return the failedItems
+   */
+  public int getFailedItems() {
+    return failedItems;
+  }
+
+  /**
+   * @param failedItems the failedItems to set
+   */
+  public void setFailedItems(int failedItems) {
+    this.failedItems = failedItems;
+  }
+
+  /**
+   * @return the createdDate
+   */
+  public Date getCreatedDate() {
+    return createdDate;
+  }
+
+  /**
+   * @param createdDate the createdDate to set
+   */
+  public void setCreatedDate(Date createdDate) {
+    this.createdDate = createdDate;
+  }
+
+  /**
+   * @return the finishedDate
+   */
+  public Date getFinishedDate() {
+    return finishedDate;
+  }
+
+  /**
+   * @param finishedDate the finishedDate to set
+   */
+  public void setFinishedDate(Date finishedDate) {
+    this.finishedDate = finishedDate;
+  }
+
+  /**
+   * @return the lastError
+   */
+  public String getLastError() {
+    return lastError;
+  }
+
+  /**
+   * @param lastError the lastError to set
+   */
+  public void setLastError(String lastError) {
+    this.lastError = lastError;
+  }
+}
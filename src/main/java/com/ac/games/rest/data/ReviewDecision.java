@@ -0,0 +1,108 @@
+package com.ac.games.rest.data;
+
+/**
+ * One entry of a bulk review request: approve or reject a single BGG, CSI or MM record.
+ * <p>
+ * CSI and MM approvals need the gameID to link the listing to, and BGG approvals need the
+ * primary publisher for the new Game, the same as the single review PUTs.
+ * 
+ * @author ac010168
+ */
+public class ReviewDecision {
+
+  private String source;
+  private long id;
+  private String review;
+  private long gameID;
+  private String primaryPub;
+
+  public ReviewDecision() {
+    source     = null;
+    id         = -1;
+    review     = null;
+    gameID     = -1;
+    primaryPub = null;
+  }
+
+  /**
+   * @param source
+   * @param id
+   * @param review
+   */
+  public ReviewDecision(String source, long id, String review) {
+    this();
+    this.source = source;
+    this.id     = id;
+    this.review = review;
+  }
+
+  /**
+   * @return the source
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * @param source the source to set
+   */
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  /**
+   * @return the id
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @param id the id to set
+   */
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the review
+   */
+  public String getReview() {
+    return review;
+  }
+
+  /**
+   * @param review the review to set
+   */
+  public void setReview(String review) {
+    this.review = review;
+  }
+
+  /**
+   * @return the gameID
+   */
+  public long getGameID() {
+    return gameID;
+  }
+
+  /**
+   * @param gameID the gameID to set
+   */
+  public void setGameID(long gameID) {
+    this.gameID = gameID;
+  }
+
+  /**
+   * @return the primaryPub
+   */
+  public String getPrimaryPub() {
+    return primaryPub;
+  }
+
+  /**
+   * @param primaryPub the primaryPub to set
+   */
+  public void setPrimaryPub(String primaryPub) {
+    this.primaryPub = primaryPub;
+  }
+}
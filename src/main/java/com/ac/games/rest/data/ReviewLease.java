@@ -0,0 +1,128 @@
+package com.ac.games.rest.data;
+
+/**
+ * A pending record handed to one reviewer by the review queue.  Until the lease expires nobody
+ * else is given the same record; the reviewer finishes it by PUTting the review, hands it back
+ * with a DELETE, or renews the lease if they need longer.
+ * 
+ * @author ac010168
+ */
+public class ReviewLease {
+
+  private String leaseID;
+  private String source;
+  private long id;
+  private String reviewer;
+  private long expiresAt;
+  private Object item;
+
+  public ReviewLease() {
+    leaseID   = null;
+    source    = null;
+    id        = -1;
+    reviewer  = null;
+    expiresAt = 0;
+    item      = null;
+  }
+
+  /**
+   * @param leaseID
+   * @param source
+   * @param id
+   * @param reviewer
+   * @param expiresAt
+   * @param item
+   */
+  public ReviewLease(String leaseID, String source, long id, String reviewer, long expiresAt, Object item) {
+    this.leaseID   = leaseID;
+    this.source    = source;
+    this.id        = id;
+    this.reviewer  = reviewer;
+    this.expiresAt = expiresAt;
+    this.item      = item;
+  }
+
+  /**
+   * @return the leaseID
+   */
+  public String getLeaseID() {
+    return leaseID;
+  }
+
+  /**
+   * @param leaseID the leaseID to set
+   */
+  public void setLeaseID(String leaseID) {
+    this.leaseID = leaseID;
+  }
+
+  /**
+   * @return the source
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * @param source the source to set
+   */
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  /**
+   * @return the id
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @param id the id to set
+   */
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the reviewer
+   */
+  public String getReviewer() {
+    return reviewer;
+  }
+
+  /**
+   * @param reviewer the reviewer to set
+   */
+  public void setReviewer(String reviewer) {
+    this.reviewer = reviewer;
+  }
+
+  /**
+   * @return the expiresAt
+   */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  /**
+   * @param expiresAt the expiresAt to set
+   */
+  public void setExpiresAt(long expiresAt) {
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * @return the item
+   */
+  public Object getItem() {
+    return item;
+  }
+
+  /**
+   * @param item the item to set
+   */
+  public void setItem(Object item) {
+    this.item = item;
+  }
+}
@@ -0,0 +1,140 @@
+package com.ac.games.rest.data;
+
+/**
+ * What happened to one entry of a bulk review request.
+ * 
+ * @author ac010168
+ */
+public class ReviewOutcome {
+
+  public static final String STATUS_OK        = "ok";
+  public static final String STATUS_UNCHANGED = "unchanged";
+  public static final String STATUS_NOT_FOUND = "notFound";
+  public static final String STATUS_INVALID   = "invalid";
+  public static final String STATUS_ERROR     = "error";
+
+  private String source;
+  private long id;
+  private String review;
+  private String status;
+  private String message;
+  private long gameID;
+
+  public ReviewOutcome() {
+    source  = null;
+    id      = -1;
+    review  = null;
+    status  = null;
+    message = null;
+    gameID  = -1;
+  }
+
+  /**
+   * @param decision The entry this is the outcome of
+   */
+  public ReviewOutcome(ReviewDecision decision) {
+    this();
+    this.source = decision.getSource();
+    this.id     = decision.getId();
+    this.review = decision.getReview();
+  }
+
+  /**
+   * Set the status and its message.
+   */
+  public void finish(String status, String message) {
+    this.status  = status;
+    this.message = message;
+  }
+
+  /**
+   * @return true if the record ended up in the state asked for
+   */
+  public boolean succeeded() {
+    return STATUS_OK.equals(status) || STATUS_UNCHANGED.equals(status);
+  }
+
+  /**
+   * @return the source
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * @param source the source to set
+   */
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  /**
+   * @return the id
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @param id the id to set
+   */
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the review
+   */
+  public String getReview() {
+    return review;
+  }
+
+  /**
+   * @param review the review to set
+   */
+  public void setReview(String review) {
+    this.review = review;
+  }
+
+  /**
+   * @return the status
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * @param status the status to set
+   */
+  public void setStatus(String status) {
+    this.status = status;
+  }
+
+  /**
+   * @return the message
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * @param message the message to set
+   */
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  /**
+   * @return the gameID
+   */
+  public long getGameID() {
+    return gameID;
+  }
+
+  /**
+   * @param gameID the gameID to set
+   */
+  public void setGameID(long gameID) {
+    this.gameID = gameID;
+  }
+}
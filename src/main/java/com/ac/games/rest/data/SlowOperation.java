@@ -0,0 +1,81 @@
+package com.ac.games.rest.data;
+
+import java.util.Date;
+
+/**
+ * A single request or database call that ran past its slow threshold, as reported by /slowops.
+ * 
+ * @author ac010168
+ */
+public class SlowOperation {
+
+  public static final String REQUEST_TYPE  = "request";
+  public static final String DATABASE_TYPE = "db";
+
+  private final long sequence;
+  private final String type;
+  private final String operation;
+  private final String parameters;
+  private final double durationMillis;
+  private final String thread;
+  private final Date timestamp;
+
+  public SlowOperation(long sequence, String type, String operation, String parameters, double durationMillis, String thread, Date timestamp) {
+    this.sequence       = sequence;
+    this.type           = type;
+    this.operation      = operation;
+    this.parameters     = parameters;
+    this.durationMillis = durationMillis;
+    this.thread         = thread;
+    this.timestamp      = timestamp;
+  }
+
+  /**
+   * @return the sequence, which only ever goes up
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return the type, either request or db
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * @return the operation, either the route or the GamesDatabase method
+   */
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return the parameters
+   */
+  public String getParameters() {
+    return parameters;
+  }
+
+  /**
+   * @return the durationMillis
+   */
+  public double getDurationMillis() {
+    return durationMillis;
+  }
+
+  /**
+   * @return the thread
+   */
+  public String getThread() {
+    return thread;
+  }
+
+  /**
+   * @return the timestamp
+   */
+  public Date getTimestamp() {
+    return timestamp;
+  }
+}
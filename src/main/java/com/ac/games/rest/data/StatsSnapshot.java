@@ -0,0 +1,229 @@
+package com.ac.games.rest.data;
+
+import java.util.Date;
+
+/**
+ * Wrapper around one of the Stat family of objects, as served from the in-memory stats cache.
+ * The counts are the changes the service has seen since the stats were last computed, so the
+ * dashboard can tell how far the numbers may have drifted.  The stats and the counts are taken
+ * together, so every change is either in the stats or in the counts, never both or neither.
+ * The two net counts are kept up to date between recomputes: add them to the stats' record
+ * and pending totals for the current numbers.
+ * 
+ * @author ac010168
+ */
+public class StatsSnapshot {
+
+  private String type;
+  private Object stats;
+  private Date computedDate;
+  private long ageSeconds;
+  private long insertCount;
+  private long updateCount;
+  private long deleteCount;
+  private long approveCount;
+  private long rejectCount;
+  private long resetCount;
+  private long recordCountChange;
+  private long pendingCountChange;
+  private boolean stale;
+
+  public StatsSnapshot() {
+    type         = null;
+    stats        = null;
+    computedDate = null;
+    ageSeconds   = 0;
+    insertCount  = 0;
+    updateCount  = 0;
+    deleteCount  = 0;
+    approveCount = 0;
+    rejectCount  = 0;
+    resetCount   = 0;
+    recordCountChange  = 0;
+    pendingCountChange = 0;
+    stale        = false;
+  }
+
+  /**
+   * @return the type
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * @param type the type to set
+   */
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  /**
+   * @return the stats
+   */
+  public Object getStats() {
+    return stats;
+  }
+
+  /**
+   * @param stats the stats to set
+   */
+  public void setStats(Object stats) {
+    this.stats = stats;
+  }
+
+  /**
+   * @return the computedDate
+   */
+  public Date getComputedDate() {
+    return computedDate;
+  }
+
+  /**
+   * @param computedDate the computedDate to set
+   */
+  public void setComputedDate(Date computedDate) {
+    this.computedDate = computedDate;
+  }
+
+  /**
+   * @return the ageSeconds
+   */
+  public long getAgeSeconds() {
+    return ageSeconds;
+  }
+
+  /**
+   * @param ageSeconds the ageSeconds to set
+   */
+  public void setAgeSeconds(long ageSeconds) {
+    this.ageSeconds = ageSeconds;
+  }
+
+  /**
+   * @return the insertCount
+   */
+  public long getInsertCount() {
+    return insertCount;
+  }
+
+  /**
+   * @param insertCount the insertCount to set
+   */
+  public void setInsertCount(long insertCount) {
+    this.insertCount = insertCount;
+  }
+
+  /**
+   * @return the updateCount
+   */
+  public long getUpdateCount() {
+    return updateCount;
+  }
+
+  /**
+   * @param updateCount the updateCount to set
+   */
+  public void setUpdateCount(long updateCount) {
+    this.updateCount = updateCount;
+  }
+
+  /**
+   * @return the deleteCount
+   */
+  public long getDeleteCount() {
+    return deleteCount;
+  }
+
+  /**
+   * @param deleteCount the deleteCount to set
+   */
+  public void setDeleteCount(long deleteCount) {
+    this.deleteCount = deleteCount;
+  }
+
+  /**
+   * @return the approveCount
+   */
+  public long getApproveCount() {
+    return approveCount;
+  }
+
+  /**
+   * @param approveCount the approveCount to set
+   */
+  public void setApproveCount(long approveCount) {
+    this.approveCount = approveCount;
+  }
+
+  /**
+   * @return the rejectCount
+   */
+  public long getRejectCount() {
+    return rejectCount;
+  }
+
+  /**
+   * @param rejectCount the rejectCount to set
+   */
+  public void setRejectCount(long rejectCount) {
+    this.rejectCount = rejectCount;
+  }
+
+  /**
+   * @return the resetCount
+   */
+  public long getResetCount() {
+    return resetCount;
+  }
+
+  /**
+   * @param resetCount the resetCount to set
+   */
+  public void setResetCount(long resetCount) {
+    this.resetCount = resetCount;
+  }
+
+  /**
+   * @return The records inserted less the records deleted since the stats were computed
+   */
+  public long getRecordCountChange() {
+    return recordCountChange;
+  }
+
+  /**
+   * @param recordCountChange the recordCountChange to set
+   */
+  public void setRecordCountChange(long recordCountChange) {
+    this.recordCountChange = recordCountChange;
+  }
+
+  /**
+   * @return The records put back to pending less the records approved or rejected since the
+   * stats were computed
+   */
+  public long getPendingCountChange() {
+    return pendingCountChange;
+  }
+
+  /**
+   * @param pendingCountChange the pendingCountChange to set
+   */
+  public void setPendingCountChange(long pendingCountChange) {
+    this.pendingCountChange = pendingCountChange;
+  }
+
+  /**
+   * @return the stale
+   */
+  public boolean isStale() {
+    return stale;
+  }
+
+  /**
+   * @param stale the stale to set
+   */
+  public void setStale(boolean stale) {
+    this.stale = stale;
+  }
+}
@@ -0,0 +1,93 @@
+package com.ac.games.rest.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ac.games.data.CompactPriceData;
+
+/**
+ * One vendor's listings for a game, cheapest first, as part of a {@link MultiVendorPrices} response.
+ * 
+ * @author ac010168
+ */
+public class VendorPrices {
+
+  public static final String STATUS_COMPLETE = "complete";
+  public static final String STATUS_TIMEOUT  = "timeout";
+  public static final String STATUS_FAILED   = "failed";
+
+  private String vendor;
+  private String status;
+  private String message;
+  private List<CompactPriceData> prices;
+  
+  public VendorPrices() {
+    prices = new ArrayList<CompactPriceData>();
+  }
+  
+  /**
+   * @param vendor
+   * @param status
+   */
+  public VendorPrices(String vendor, String status) {
+    this();
+    this.vendor = vendor;
+    this.status = status;
+  }
+
+  /**
+   * @return the vendor
+   */
+  public String getVendor() {
+    return vendor;
+  }
+
+  /**
+   * @param vendor the vendor to set
+   */
+  public void setVendor(String vendor) {
+    this.vendor = vendor;
+  }
+
+  /**
+   * @return the status: complete, timeout or failed
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * @param status the status to set
+   */
+  public void setStatus(String status) {
+    this.status = status;
+  }
+
+  /**
+   * @return what went wrong, when the status isn't complete
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * @param message the message to set
+   */
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  /**
+   * @return the prices
+   */
+  public List<CompactPriceData> getPrices() {
+    return prices;
+  }
+
+  /**
+   * @param prices the prices to set
+   */
+  public void setPrices(List<CompactPriceData> prices) {
+    this.prices = prices;
+  }
+}
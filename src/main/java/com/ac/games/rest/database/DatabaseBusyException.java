@@ -0,0 +1,26 @@
+package com.ac.games.rest.database;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.ac.games.db.exception.DatabaseOperationException;
+
+/**
+ * Thrown when a database call could not get a slot in the {@link DatabasePool}, either because
+ * the wait queue was full or the checkout timed out.
+ * <p>
+ * It's a {@link DatabaseOperationException}, so the controllers' existing catch blocks report it
+ * as a SimpleErrorData, and the multi-write paths undo what they'd written the same way they do
+ * for any other failed write.  Anything that lets it escape still answers with a 503.
+ *
+ * @author ac010168
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DatabaseBusyException extends DatabaseOperationException {
+
+  private static final long serialVersionUID = 4418021867403561265L;
+
+  public DatabaseBusyException(String message) {
+    super(message);
+  }
+}
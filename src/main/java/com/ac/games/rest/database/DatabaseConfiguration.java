@@ -0,0 +1,41 @@
+package com.ac.games.rest.database;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.purge.CollectionPurger;
+
+/**
+ * Creates the single shared {@link GamesDatabase} when the context starts, whether we were
+ * launched from {@link Application#main(String[])} or deployed as a war, and warms up its pool
+ * before the first request comes in.  The data warm-up then carries on in the background.
+ * <p>
+ * The purge journal directory has to be set (<code>games.db.purgeJournalDir</code>), or we
+ * refuse to start; a purge interrupted by a crash is only finished if its journal is still
+ * there when we come back up.
+ *
+ * @author ac010168
+ */
+@Configuration
+public class DatabaseConfiguration {
+
+  @Bean
+  public GamesDatabase gamesDatabase(DatabaseSettings settings) throws ConfigurationException {
+    String journalDir = settings.getPurgeJournalDir();
+    if ((journalDir == null) || (journalDir.trim().length() == 0))
+      throw new IllegalStateException("games.db.purgeJournalDir must be set to a directory that survives a restart");
+    CollectionPurger.journalDirectory = journalDir.trim();
+
+    GamesDatabase database = Application.initializeDatabase(settings);
+    Application.databasePool.warmUp(settings.getWarmupTimeoutMillis());
+
+    Application.warmup.start(database);
+    Application.statsCache.startRefresh(database);
+    Application.purger.resumePending(database);
+    Application.snapshots.start();
+    return database;
+  }
+}
@@ -0,0 +1,225 @@
+package com.ac.games.rest.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.db.GamesDatabase;
+
+/**
+ * A bounded checkout pool in front of the shared {@link GamesDatabase}.
+ * <p>
+ * The Mongo driver keeps its own connection pool behind the database, but doesn't let us size it
+ * from here, so every call through {@link #getDatabase()} has to check out one of
+ * <code>maxPoolSize</code> slots first.  Callers queue for a slot up to <code>checkoutTimeoutMillis</code>,
+ * and once <code>maxWaitQueue</code> callers are already waiting, new calls are turned away right
+ * away with a {@link DatabaseBusyException} rather than piling up behind a slow database.
+ * <p>
+ * The checkout wait times and in-use counts are tracked so the pool can be sized against real load.
+ *
+ * @author ac010168
+ */
+public class DatabasePool implements InvocationHandler {
+
+  private static final Logger logger = LoggerFactory.getLogger(DatabasePool.class);
+
+  /** Connection lifecycle calls, which never need a slot */
+  private static final Set<String> UNPOOLED_METHODS = new HashSet<String>();
+  static {
+    UNPOOLED_METHODS.add("initializeDBConnection");
+    UNPOOLED_METHODS.add("closeDBConnection");
+    UNPOOLED_METHODS.add("equals");
+    UNPOOLED_METHODS.add("hashCode");
+    UNPOOLED_METHODS.add("toString");
+  }
+
+  private final GamesDatabase target;
+  private final GamesDatabase proxy;
+  private final Semaphore slots;
+  private final int maxPoolSize;
+  private final int minPoolSize;
+  private final int maxWaitQueue;
+  private final long checkoutTimeoutMillis;
+
+  private final AtomicInteger waiting      = new AtomicInteger();
+  private final AtomicInteger peakInUse    = new AtomicInteger();
+  private final AtomicInteger peakWaiting  = new AtomicInteger();
+  private final AtomicLong checkouts       = new AtomicLong();
+  private final AtomicLong totalWaitNanos  = new AtomicLong();
+  private final AtomicLong maxWaitNanos    = new AtomicLong();
+  private final AtomicLong timeouts        = new AtomicLong();
+  private final AtomicLong rejections      = new AtomicLong();
+
+  public DatabasePool(GamesDatabase target, DatabaseSettings settings) {
+    this.target                = target;
+    this.maxPoolSize           = Math.max(1, settings.getMaxPoolSize());
+    this.minPoolSize           = Math.max(0, Math.min(settings.getMinPoolSize(), maxPoolSize));
+    this.maxWaitQueue          = Math.max(0, settings.getMaxWaitQueue());
+    this.checkoutTimeoutMillis = settings.getCheckoutTimeoutMillis();
+    this.slots                 = new Semaphore(maxPoolSize, true);
+    this.proxy                 = (GamesDatabase)Proxy.newProxyInstance(GamesDatabase.class.getClassLoader(),
+                                                                       new Class<?>[] { GamesDatabase.class }, this);
+  }
+
+  /**
+   * @return The pooled database everyone should be calling through
+   */
+  public GamesDatabase getDatabase() {
+    return proxy;
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (UNPOOLED_METHODS.contains(method.getName()))
+      return callTarget(method, args);
+
+    checkout();
+    try {
+      return callTarget(method, args);
+    } finally {
+      slots.release();
+    }
+  }
+
+  /**
+   * Open up to <code>minPoolSize</code> connections by running that many cheap reads at the same time,
+   * so the first real requests don't pay for the connection setup.
+   *
+   * @param timeoutMillis How long to wait for the reads
+   *
+   * @return The number of warm-up reads that finished in time
+   */
+  public int warmUp(long timeoutMillis) {
+    if (minPoolSize == 0) return 0;
+
+    long startTime = System.currentTimeMillis();
+    ExecutorService warmupExecutor = Executors.newFixedThreadPool(minPoolSize);
+    List<Future<Long>> results = new ArrayList<Future<Long>>(minPoolSize);
+    for (int i = 0; i < minPoolSize; i++) {
+      results.add(warmupExecutor.submit(new Callable<Long>() {
+        public Long call() throws Exception {
+          return proxy.getMaxGameID();
+        }
+      }));
+    }
+
+    int warmed = 0;
+    try {
+      for (Future<Long> result : results) {
+        long remaining = timeoutMillis - (System.currentTimeMillis() - startTime);
+        try {
+          result.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+          warmed++;
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          break;
+        } catch (Throwable t) {
+          //Keep going, a slow or failed warm-up read just means a colder pool
+        }
+      }
+    } finally {
+      warmupExecutor.shutdownNow();
+    }
+
+    logger.info("Database pool warmed {} of {} connections in {}ms", warmed, minPoolSize, (System.currentTimeMillis() - startTime));
+    return warmed;
+  }
+
+  /**
+   * @return The current pool counters
+   */
+  public Map<String, Object> getMetrics() {
+    long checkoutCount = checkouts.get();
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put("maxPoolSize", maxPoolSize);
+    metrics.put("minPoolSize", minPoolSize);
+    metrics.put("maxWaitQueue", maxWaitQueue);
+    metrics.put("checkoutTimeoutMillis", checkoutTimeoutMillis);
+    metrics.put("inUse", maxPoolSize - slots.availablePermits());
+    metrics.put("peakInUse", peakInUse.get());
+    metrics.put("waiting", waiting.get());
+    metrics.put("peakWaiting", peakWaiting.get());
+    metrics.put("checkouts", checkoutCount);
+    metrics.put("avgWaitMillis", (checkoutCount == 0) ? 0.0 : (totalWaitNanos.get() / (double)checkoutCount) / 1000000.0);
+    metrics.put("maxWaitMillis", maxWaitNanos.get() / 1000000.0);
+    metrics.put("timeouts", timeouts.get());
+    metrics.put("rejections", rejections.get());
+    return metrics;
+  }
+
+  /**
+   * Take a slot, or throw a {@link DatabaseBusyException}.  Every pooled {@link GamesDatabase}
+   * method declares DatabaseOperationException, so the proxy can hand it straight back.
+   */
+  private void checkout() throws DatabaseBusyException {
+    long startTime = System.nanoTime();
+    if (!slots.tryAcquire()) {
+      int curWaiting = waiting.incrementAndGet();
+      try {
+        if (curWaiting > maxWaitQueue) {
+          rejections.incrementAndGet();
+          throw new DatabaseBusyException("The database wait queue is full (" + maxWaitQueue + " waiting)");
+        }
+        updateMax(peakWaiting, curWaiting);
+        boolean acquired;
+        try {
+          acquired = slots.tryAcquire(checkoutTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+          //Keep the interrupt for the caller, and fail the call the way a busy pool does
+          Thread.currentThread().interrupt();
+          throw new DatabaseBusyException("Interrupted waiting for a database connection");
+        }
+        if (!acquired) {
+          timeouts.incrementAndGet();
+          throw new DatabaseBusyException("Timed out after " + checkoutTimeoutMillis + "ms waiting for a database connection");
+        }
+      } finally {
+        waiting.decrementAndGet();
+      }
+    }
+
+    long waitNanos = System.nanoTime() - startTime;
+    checkouts.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    updateMax(maxWaitNanos, waitNanos);
+    updateMax(peakInUse, maxPoolSize - slots.availablePermits());
+  }
+
+  private Object callTarget(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException ite) {
+      //Hand back the real DatabaseOperationException/ConfigurationException
+      throw ite.getCause();
+    }
+  }
+
+  private static void updateMax(AtomicInteger max, int value) {
+    int curMax = max.get();
+    while ((value > curMax) && !max.compareAndSet(curMax, value))
+      curMax = max.get();
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long curMax = max.get();
+    while ((value > curMax) && !max.compareAndSet(curMax, value))
+      curMax = max.get();
+  }
+}
@@ -0,0 +1,190 @@
+package com.ac.games.rest.database;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The connection settings for our Mongo instance, and the limits for the checkout pool in
+ * front of it.
+ * <p>
+ * Everything can be overridden with the usual Spring Boot property sources, under the
+ * <code>games.db</code> prefix (e.g. <code>-Dgames.db.host=192.168.1.9</code>, or
+ * <code>GAMES_DB_MAX_POOL_SIZE=50</code> in the environment).
+ *
+ * @author ac010168
+ */
+@Component
+@ConfigurationProperties(prefix="games.db")
+public class DatabaseSettings {
+
+  public static final String ENGINE_MONGO  = "mongo";
+  public static final String ENGINE_MEMORY = "memory";
+  public static final String ENGINE_TIERED = "tiered";
+
+  /** Where the data lives: mongo, memory (standalone, nothing persisted), or tiered (memory in front of mongo) */
+  private String engine = ENGINE_MONGO;
+  /** The Host URL for our Mongo Instance */
+  private String host = "localhost";
+  /** The Host Port for our Mongo Instance */
+  private int    port = 27017;
+  /** The Host Database Name for our Mongo Database */
+  private String name = "livedb";
+
+  /** The number of connections opened during warm-up */
+  private int  minPoolSize           = 10;
+  /** The number of database calls allowed to run at the same time */
+  private int  maxPoolSize           = 100;
+  /** The number of requests allowed to wait for a free slot before we start turning them away */
+  private int  maxWaitQueue          = 500;
+  /** How long a request waits for a free slot before giving up */
+  private long checkoutTimeoutMillis = 2000;
+  /** How long startup waits for the warm-up reads */
+  private long warmupTimeoutMillis   = 10000;
+
+  /**
+   * Where the purge jobs are journaled, so an interrupted purge picks up again after a restart.
+   * There's no default; it has to be somewhere that survives a reboot, which rules out the temp
+   * directory.
+   */
+  private String purgeJournalDir     = null;
+
+  /**
+   * @return the engine
+   */
+  public String getEngine() {
+    return engine;
+  }
+
+  /**
+   * @param engine the engine to set
+   */
+  public void setEngine(String engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * @return the host
+   */
+  public String getHost() {
+    return host;
+  }
+
+  /**
+   * @param host the host to set
+   */
+  public void setHost(String host) {
+    this.host = host;
+  }
+
+  /**
+   * @return the port
+   */
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * @param port the port to set
+   */
+  public void setPort(int port) {
+    this.port = port;
+  }
+
+  /**
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @param name the name to set
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return the minPoolSize
+   */
+  public int getMinPoolSize() {
+    return minPoolSize;
+  }
+
+  /**
+   * @param minPoolSize the minPoolSize to set
+   */
+  public void setMinPoolSize(int minPoolSize) {
+    this.minPoolSize = minPoolSize;
+  }
+
+  /**
+   * @return the maxPoolSize
+   */
+  public int getMaxPoolSize() {
+    return maxPoolSize;
+  }
+
+  /**
+   * @param maxPoolSize the maxPoolSize to set
+   */
+  public void setMaxPoolSize(int maxPoolSize) {
+    this.maxPoolSize = maxPoolSize;
+  }
+
+  /**
+   * @return the maxWaitQueue
+   */
+  public int getMaxWaitQueue() {
+    return maxWaitQueue;
+  }
+
+  /**
+   * @param maxWaitQueue the maxWaitQueue to set
+   */
+  public void setMaxWaitQueue(int maxWaitQueue) {
+    this.maxWaitQueue = maxWaitQueue;
+  }
+
+  /**
+   * @return the checkoutTimeoutMillis
+   */
+  public long getCheckoutTimeoutMillis() {
+    return checkoutTimeoutMillis;
+  }
+
+  /**
+   * @param checkoutTimeoutMillis the checkoutTimeoutMillis to set
+   */
+  public void setCheckoutTimeoutMillis(long checkoutTimeoutMillis) {
+    this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+  }
+
+  /**
+   * @return the warmupTimeoutMillis
+   */
+  public long getWarmupTimeoutMillis() {
+    return warmupTimeoutMillis;
+  }
+
+  /**
+   * @param warmupTimeoutMillis the warmupTimeoutMillis to set
+   */
+  public void setWarmupTimeoutMillis(long warmupTimeoutMillis) {
+    this.warmupTimeoutMillis = warmupTimeoutMillis;
+  }
+
+  /**
+   * @return the purgeJournalDir
+   */
+  public String getPurgeJournalDir() {
+    return purgeJournalDir;
+  }
+
+  /**
+   * @param purgeJournalDir the purgeJournalDir to set
+   */
+  public void setPurgeJournalDir(String purgeJournalDir) {
+    this.purgeJournalDir = purgeJournalDir;
+  }
+}
@@ -0,0 +1,884 @@
+package com.ac.games.rest.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.Collection;
+import com.ac.games.data.CollectionItem;
+import com.ac.games.data.CompactSearchData;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.GameType;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.data.ReviewState;
+import com.ac.games.data.User;
+import com.ac.games.data.UserDetail;
+import com.ac.games.data.WishlistItem;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.index.NameSearchIndex;
+import com.ac.games.rest.snapshot.SnapshotFallbackDatabase;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A {@link GamesDatabase} that keeps its records in memory, either on its own or as a hot tier
+ * in front of the Mongo database.
+ * <p>
+ * Records are held in {@link LongObjectMap}s keyed by their IDs, with secondary indexes for
+ * bggID to Game, reltnID to GameReltn, lower cased Game and BGG names, lower cased user names,
+ * and userID to wishlist.  A stored record is never changed in place; a write swaps in a new copy.
+ * So the typed getters ({@link #getGame(long)} and friends) hand back the stored record itself,
+ * with no locking or allocation, for the read-only paths (the controllers' GETs) to serialize
+ * as is, and they must be treated as read-only.  Reads through the {@link GamesDatabase}
+ * interface hand back a copy instead, because the read-modify-write paths change what they read.
+ * <p>
+ * With no backing database this is the whole store, suitable for small deployments and tests.
+ * The stats reads come back empty, as those are aggregations only Mongo runs for us.
+ * <p>
+ * With a backing database, ID reads (and the user name and wishlist reads) are served from
+ * memory and read through to the backing database on a miss.  Writes go to the backing
+ * database first, and only reach memory once it has accepted them, so a failed write leaves
+ * both untouched.  Everything else (searches, review queues, autocomplete lists, stats and the
+ * max IDs) goes straight to the backing database, since the hot tier only holds part of the data.
+ * A read the backing database answered from the catalog snapshot during an outage is handed back
+ * but not kept, so the hot tier goes back to Mongo for it once Mongo returns.
+ * <p>
+ * The hot tier holds at most {@link #maxHotRecords} records.  Past that, the records that came
+ * in first are dropped (a wishlist goes as a whole), and read back through if they're asked for
+ * again.  A Collection missing any of its items is read back through in full.  Anything else the
+ * interface asks for goes to the backing database, or, standalone, gets an empty answer.
+ *
+ * @author ac010168
+ */
+public class InMemoryGamesDatabase implements InvocationHandler {
+
+  private static final Logger logger = LoggerFactory.getLogger(InMemoryGamesDatabase.class);
+
+  /*
+   * What each interface method does here, looked up by name once per call and switched on.
+   * Anything not listed is handed to the backing database, or answered empty standalone.
+   */
+  private static final int OP_OTHER                  = 0;
+  private static final int OP_CONNECTION             = 1;
+  private static final int OP_EQUALS                 = 2;
+  private static final int OP_HASH_CODE              = 3;
+  private static final int OP_TO_STRING              = 4;
+  private static final int OP_MAX_GAME_ID            = 5;
+  private static final int OP_MAX_GAME_RELTN_ID      = 6;
+  private static final int OP_MAX_USER_ID            = 7;
+  private static final int OP_MAX_COLLECTION_ID      = 8;
+  private static final int OP_MAX_COLLECTION_ITEM_ID = 9;
+  private static final int OP_MAX_WISHLIST_ITEM_ID   = 10;
+  private static final int OP_READ_GAME              = 11;
+  private static final int OP_READ_GAME_BY_BGG_ID    = 12;
+  private static final int OP_READ_BGG_GAME          = 13;
+  private static final int OP_READ_GAME_RELTN        = 14;
+  private static final int OP_READ_CSI_DATA          = 15;
+  private static final int OP_READ_MM_DATA           = 16;
+  private static final int OP_READ_USER_DETAIL       = 17;
+  private static final int OP_READ_COLLECTION_ITEM   = 18;
+  private static final int OP_READ_USER              = 19;
+  private static final int OP_READ_COLLECTION        = 20;
+  private static final int OP_READ_WISHLIST          = 21;
+  private static final int OP_READ_WISHLIST_ITEM     = 22;
+  private static final int OP_WRITE                  = 23;
+  private static final int OP_DELETE                 = 24;
+  //Only answered here when standalone
+  private static final int OP_READ_GAMES_COMPACT     = 25;
+  private static final int OP_READ_GAME_FROM_AUTO    = 26;
+  private static final int OP_READ_BGG_BY_NAME       = 27;
+  private static final int OP_READ_BGG_FOR_REVIEW    = 28;
+  private static final int OP_READ_CSI_FOR_REVIEW    = 29;
+  private static final int OP_READ_MM_FOR_REVIEW     = 30;
+  private static final int OP_GAME_NAMES             = 31;
+  private static final int OP_BGG_NAMES              = 32;
+  private static final int OP_CSI_TITLES             = 33;
+  private static final int OP_MM_TITLES              = 34;
+  private static final int OP_STATS                  = 35;
+
+  private static final Map<String, Integer> OPS          = new HashMap<String, Integer>();
+  /** The delete methods, to the kind of record they take out */
+  private static final Map<String, Integer> DELETE_KINDS = new HashMap<String, Integer>();
+
+  static {
+    addOps(OP_CONNECTION, "initializeDBConnection", "closeDBConnection");
+    addOps(OP_EQUALS, "equals");
+    addOps(OP_HASH_CODE, "hashCode");
+    addOps(OP_TO_STRING, "toString");
+    addOps(OP_MAX_GAME_ID, "getMaxGameID");
+    addOps(OP_MAX_GAME_RELTN_ID, "getMaxGameReltnID");
+    addOps(OP_MAX_USER_ID, "getMaxUserID");
+    addOps(OP_MAX_COLLECTION_ID, "getMaxCollectionID");
+    addOps(OP_MAX_COLLECTION_ITEM_ID, "getMaxCollectionItemID");
+    addOps(OP_MAX_WISHLIST_ITEM_ID, "getMaxWishlistItemID");
+    addOps(OP_READ_GAME, "readGame");
+    addOps(OP_READ_GAME_BY_BGG_ID, "readGameByBGGID");
+    addOps(OP_READ_BGG_GAME, "readBGGGameData");
+    addOps(OP_READ_GAME_RELTN, "readGameReltn");
+    addOps(OP_READ_CSI_DATA, "readCSIPriceData");
+    addOps(OP_READ_MM_DATA, "readMMPriceData");
+    addOps(OP_READ_USER_DETAIL, "readUserDetail");
+    addOps(OP_READ_COLLECTION_ITEM, "readCollectionItem");
+    addOps(OP_READ_USER, "readUser");
+    addOps(OP_READ_COLLECTION, "readCollection");
+    addOps(OP_READ_WISHLIST, "readWishlistForUser");
+    addOps(OP_READ_WISHLIST_ITEM, "readWishlistItem");
+    addOps(OP_WRITE, "insertGame", "updateGame", "insertBGGGameData", "updateBGGGameData",
+           "insertGameReltn", "updateGameReltn", "insertCSIPriceData", "updateCSIPriceData",
+           "insertMMPriceData", "updateMMPriceData", "insertUser", "updateUser",
+           "insertUserDetail", "updateUserDetail", "insertCollection", "updateCollection",
+           "insertCollectionItem", "updateCollectionItem", "insertWishlistItem");
+    addDelete("deleteGame", HotEntry.GAME);
+    addDelete("deleteBGGGameData", HotEntry.BGG_GAME);
+    addDelete("deleteGameReltn", HotEntry.GAME_RELTN);
+    addDelete("deleteCSIPriceData", HotEntry.CSI_DATA);
+    addDelete("deleteMMPriceData", HotEntry.MM_DATA);
+    addDelete("deleteUser", HotEntry.USER);
+    addDelete("deleteUserDetail", HotEntry.USER_DETAIL);
+    addDelete("deleteCollection", HotEntry.COLLECTION);
+    addDelete("deleteCollectionItem", HotEntry.COLLECTION_ITEM);
+    addDelete("deleteWishlistItem", HotEntry.WISHLIST_ITEM);
+    addOps(OP_READ_GAMES_COMPACT, "readGamesCompact");
+    addOps(OP_READ_GAME_FROM_AUTO, "readGameFromAutoName");
+    addOps(OP_READ_BGG_BY_NAME, "readBGGGameByName");
+    addOps(OP_READ_BGG_FOR_REVIEW, "readBGGGameForReview");
+    addOps(OP_READ_CSI_FOR_REVIEW, "readCSIDataForReview");
+    addOps(OP_READ_MM_FOR_REVIEW, "readMMDataForReview");
+    addOps(OP_GAME_NAMES, "readGameNamesForAutoComplete");
+    addOps(OP_BGG_NAMES, "readBGGGameNamesForAutoComplete");
+    addOps(OP_CSI_TITLES, "readCSITitlesForAutoComplete");
+    addOps(OP_MM_TITLES, "readMMTitlesForAutoComplete");
+    addOps(OP_STATS, "readBGGGameStats", "readCSIDataStats", "readMMDataStats", "readCollectionStats");
+  }
+
+  private static void addOps(int op, String... names) {
+    for (String name : names) OPS.put(name, op);
+  }
+
+  private static void addDelete(String name, int kind) {
+    OPS.put(name, OP_DELETE);
+    DELETE_KINDS.put(name, kind);
+  }
+
+  /** The most records the hot tier holds in front of a backing database.  Standalone is unbounded. */
+  public static int maxHotRecords = Integer.getInteger("games.memory.maxRecords", 250000);
+
+  private final GamesDatabase backing;
+  private final GamesDatabase proxy;
+  private final ObjectMapper mapper;
+
+  private final LongObjectMap<Game> games                     = new LongObjectMap<Game>();
+  private final LongObjectMap<Game> gamesByBGGID              = new LongObjectMap<Game>();
+  private final LongObjectMap<BGGGame> bggGames               = new LongObjectMap<BGGGame>();
+  private final LongObjectMap<GameReltn> reltnsByGameID       = new LongObjectMap<GameReltn>();
+  private final LongObjectMap<GameReltn> reltnsByID           = new LongObjectMap<GameReltn>();
+  private final LongObjectMap<CoolStuffIncPriceData> csiData  = new LongObjectMap<CoolStuffIncPriceData>();
+  private final LongObjectMap<MiniatureMarketPriceData> mmData = new LongObjectMap<MiniatureMarketPriceData>();
+  private final LongObjectMap<User> users                     = new LongObjectMap<User>();
+  private final LongObjectMap<UserDetail> userDetails         = new LongObjectMap<UserDetail>();
+  private final LongObjectMap<Collection> collections         = new LongObjectMap<Collection>();
+  private final LongObjectMap<long[]> collectionItemIDs       = new LongObjectMap<long[]>();
+  private final LongObjectMap<CollectionItem> collectionItems = new LongObjectMap<CollectionItem>();
+  private final LongObjectMap<WishlistItem> wishlistItems     = new LongObjectMap<WishlistItem>();
+  /** Each user's whole wishlist.  With a backing database, only users whose wishlist has been read have an entry. */
+  private final LongObjectMap<WishlistItem[]> wishlistsByUser = new LongObjectMap<WishlistItem[]>();
+
+  private final Map<String, long[]> gameIDsByName = new ConcurrentHashMap<String, long[]>();
+  private final Map<String, long[]> bggIDsByName  = new ConcurrentHashMap<String, long[]>();
+  private final Map<String, Long> userIDsByName   = new ConcurrentHashMap<String, Long>();
+
+  private final AtomicLong maxGameID           = new AtomicLong();
+  private final AtomicLong maxGameReltnID      = new AtomicLong();
+  private final AtomicLong maxUserID           = new AtomicLong();
+  private final AtomicLong maxCollectionID     = new AtomicLong();
+  private final AtomicLong maxCollectionItemID = new AtomicLong();
+  private final AtomicLong maxWishlistItemID   = new AtomicLong();
+
+  /** Bumped by every write, so a read-through that raced a write doesn't cache what it read */
+  private final AtomicLong writeCount = new AtomicLong();
+
+  /** The order records came into the hot tier in, oldest first.  Only kept with a backing database. */
+  private final ArrayDeque<HotEntry> hotOrder = new ArrayDeque<HotEntry>();
+  /** The interface methods we've already warned about answering empty */
+  private final Map<String, Boolean> unsupported = new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * @param backing The database to read and write through to, or null to run standalone
+   */
+  public InMemoryGamesDatabase(GamesDatabase backing) {
+    this.backing = backing;
+    this.proxy   = (GamesDatabase)Proxy.newProxyInstance(GamesDatabase.class.getClassLoader(),
+                                                         new Class<?>[] { GamesDatabase.class }, this);
+    this.mapper  = new ObjectMapper();
+    this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  }
+
+  /**
+   * @return The {@link GamesDatabase} view of this store
+   */
+  public GamesDatabase asDatabase() {
+    return proxy;
+  }
+
+  /**
+   * @return true if there is no backing database
+   */
+  public boolean isStandalone() {
+    return backing == null;
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    Integer op = OPS.get(name);
+    switch ((op == null) ? OP_OTHER : op) {
+      case OP_CONNECTION              : return (backing == null) ? null : callBacking(method, args);
+      case OP_EQUALS                  : return proxy == args[0];
+      case OP_HASH_CODE               : return System.identityHashCode(proxy);
+      case OP_TO_STRING               : return (backing == null) ? "InMemoryGamesDatabase" : "InMemoryGamesDatabase(" + backing + ")";
+
+      case OP_MAX_GAME_ID             : return (backing == null) ? maxGameID.get()           : callBacking(method, args);
+      case OP_MAX_GAME_RELTN_ID       : return (backing == null) ? maxGameReltnID.get()      : callBacking(method, args);
+      case OP_MAX_USER_ID             : return (backing == null) ? maxUserID.get()           : callBacking(method, args);
+      case OP_MAX_COLLECTION_ID       : return (backing == null) ? maxCollectionID.get()     : callBacking(method, args);
+      case OP_MAX_COLLECTION_ITEM_ID  : return (backing == null) ? maxCollectionItemID.get() : callBacking(method, args);
+      case OP_MAX_WISHLIST_ITEM_ID    : return (backing == null) ? maxWishlistItemID.get()   : callBacking(method, args);
+
+      case OP_READ_GAME               : return readThrough(method, args, games.get((Long)args[0]));
+      case OP_READ_GAME_BY_BGG_ID     : return readThrough(method, args, gamesByBGGID.get((Long)args[0]));
+      case OP_READ_BGG_GAME           : return readThrough(method, args, bggGames.get((Long)args[0]));
+      case OP_READ_GAME_RELTN         : return readThrough(method, args, reltnsByGameID.get((Long)args[0]));
+      case OP_READ_CSI_DATA           : return readThrough(method, args, csiData.get((Long)args[0]));
+      case OP_READ_MM_DATA            : return readThrough(method, args, mmData.get((Long)args[0]));
+      case OP_READ_USER_DETAIL        : return readThrough(method, args, userDetails.get((Long)args[0]));
+      case OP_READ_COLLECTION_ITEM    : return readThrough(method, args, collectionItems.get((Long)args[0]));
+      case OP_READ_USER               : {
+        if (args[0] instanceof String) {
+          Long userID = userIDsByName.get(((String)args[0]).toLowerCase());
+          return readThrough(method, args, (userID == null) ? null : users.get(userID));
+        }
+        return readThrough(method, args, users.get((Long)args[0]));
+      }
+      case OP_READ_COLLECTION         : {
+        long collectionID = (Long)args[0];
+        Collection collection = collections.get(collectionID);
+        Collection assembled = (collection == null) ? null : assembleCollection(collection, collectionItemIDs.get(collectionID));
+        if (assembled != null) return assembled;
+        return readThrough(method, args, null);
+      }
+      case OP_READ_WISHLIST           : return readWishlistForUser(method, args, (Long)args[0]);
+      case OP_READ_WISHLIST_ITEM      : return readWishlistItem(method, args, (Long)args[0], (Long)args[1]);
+
+      case OP_WRITE                   : writeThrough(method, args); return null;
+      case OP_DELETE                  : deleteThrough(method, args, DELETE_KINDS.get(name)); return null;
+
+      default :
+        if (backing != null) return callBacking(method, args);
+        return readStandalone(method, args, (op == null) ? OP_OTHER : op);
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+  // Typed access.  These hand back the stored record, so don't modify it.
+  /////////////////////////////////////////////////////////////////////////////
+
+  public Game getGame(long gameID) {
+    return games.get(gameID);
+  }
+
+  public Game getGameByBGGID(long bggID) {
+    return gamesByBGGID.get(bggID);
+  }
+
+  public BGGGame getBGGGame(long bggID) {
+    return bggGames.get(bggID);
+  }
+
+  public GameReltn getGameReltn(long gameID) {
+    return reltnsByGameID.get(gameID);
+  }
+
+  public CoolStuffIncPriceData getCSIData(long csiID) {
+    return csiData.get(csiID);
+  }
+
+  public MiniatureMarketPriceData getMMData(long mmID) {
+    return mmData.get(mmID);
+  }
+
+  public User getUser(long userID) {
+    return users.get(userID);
+  }
+
+  public UserDetail getUserDetail(long userID) {
+    return userDetails.get(userID);
+  }
+
+  public CollectionItem getCollectionItem(long itemID) {
+    return collectionItems.get(itemID);
+  }
+
+  /**
+   * @param userID The userID
+   *
+   * @return The user's wishlist, or null if it isn't held in memory
+   */
+  public WishlistItem[] getWishlist(long userID) {
+    WishlistItem[] wishlist = wishlistsByUser.get(userID);
+    if ((wishlist == null) && (backing == null)) return new WishlistItem[0];
+    return wishlist;
+  }
+
+  /**
+   * @return The number of records of each kind held in memory
+   */
+  public Map<String, Object> getSizes() {
+    Map<String, Object> sizes = new LinkedHashMap<String, Object>();
+    sizes.put("games", games.size());
+    sizes.put("bggGames", bggGames.size());
+    sizes.put("gameReltns", reltnsByGameID.size());
+    sizes.put("csiData", csiData.size());
+    sizes.put("mmData", mmData.size());
+    sizes.put("users", users.size());
+    sizes.put("collections", collections.size());
+    sizes.put("collectionItems", collectionItems.size());
+    sizes.put("wishlistItems", wishlistItems.size());
+    return sizes;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+  // Loading.  These store a copy of the record in memory only, never in the
+  // backing database; use them to seed the store.
+  /////////////////////////////////////////////////////////////////////////////
+
+  public synchronized void storeGame(Game game) {
+    Game oldGame = games.get(game.getGameID());
+    Game newGame = copy(game);
+    if (oldGame != null) {
+      unindexName(gameIDsByName, oldGame.getName(), oldGame.getGameID());
+      if (oldGame.getBggID() != newGame.getBggID()) gamesByBGGID.remove(oldGame.getBggID());
+    }
+    games.put(newGame.getGameID(), newGame);
+    if (newGame.getBggID() > 0) gamesByBGGID.put(newGame.getBggID(), newGame);
+    indexName(gameIDsByName, newGame.getName(), newGame.getGameID());
+    updateMax(maxGameID, newGame.getGameID());
+    if (oldGame == null) track(HotEntry.GAME, newGame.getGameID());
+  }
+
+  public synchronized void storeBGGGame(BGGGame bggGame) {
+    BGGGame oldGame = bggGames.get(bggGame.getBggID());
+    BGGGame newGame = copy(bggGame);
+    if (oldGame != null) unindexName(bggIDsByName, oldGame.getName(), oldGame.getBggID());
+    bggGames.put(newGame.getBggID(), newGame);
+    indexName(bggIDsByName, newGame.getName(), newGame.getBggID());
+    if (oldGame == null) track(HotEntry.BGG_GAME, newGame.getBggID());
+  }
+
+  public synchronized void storeGameReltn(GameReltn reltn) {
+    GameReltn oldReltn = reltnsByID.get(reltn.getReltnID());
+    if ((oldReltn != null) && (oldReltn.getGameID() != reltn.getGameID())) reltnsByGameID.remove(oldReltn.getGameID());
+    GameReltn newReltn = copy(reltn);
+    reltnsByGameID.put(newReltn.getGameID(), newReltn);
+    reltnsByID.put(newReltn.getReltnID(), newReltn);
+    updateMax(maxGameReltnID, newReltn.getReltnID());
+    if (oldReltn == null) track(HotEntry.GAME_RELTN, newReltn.getReltnID());
+  }
+
+  public synchronized void storeCSIData(CoolStuffIncPriceData data) {
+    if (csiData.put(data.getCsiID(), copy(data)) == null) track(HotEntry.CSI_DATA, data.getCsiID());
+  }
+
+  public synchronized void storeMMData(MiniatureMarketPriceData data) {
+    if (mmData.put(data.getMmID(), copy(data)) == null) track(HotEntry.MM_DATA, data.getMmID());
+  }
+
+  public synchronized void storeUser(User user) {
+    User oldUser = users.get(user.getUserID());
+    if ((oldUser != null) && (oldUser.getUserName() != null)) userIDsByName.remove(oldUser.getUserName().toLowerCase());
+    User newUser = copy(user);
+    users.put(newUser.getUserID(), newUser);
+    if (newUser.getUserName() != null) userIDsByName.put(newUser.getUserName().toLowerCase(), newUser.getUserID());
+    updateMax(maxUserID, newUser.getUserID());
+    if (oldUser == null) track(HotEntry.USER, newUser.getUserID());
+  }
+
+  public synchronized void storeUserDetail(UserDetail detail) {
+    if (userDetails.put(detail.getUserID(), copy(detail)) == null) track(HotEntry.USER_DETAIL, detail.getUserID());
+  }
+
+  /**
+   * Store the collection, along with every item in it.  The items are held separately and joined
+   * back in on read, so an item update is seen by the collection without rewriting it.
+   */
+  public synchronized void storeCollection(Collection collection) {
+    List<CollectionItem> items = collection.getGames();
+    long[] itemIDs = new long[(items == null) ? 0 : items.size()];
+    for (int i = 0; i < itemIDs.length; i++) {
+      CollectionItem item = items.get(i);
+      itemIDs[i] = item.getItemID();
+      storeCollectionItem(item);
+    }
+    Collection newCollection = copy(collection);
+    newCollection.setGames(null);
+    Collection oldCollection = collections.put(newCollection.getCollectionID(), newCollection);
+    collectionItemIDs.put(newCollection.getCollectionID(), itemIDs);
+    updateMax(maxCollectionID, newCollection.getCollectionID());
+    if (oldCollection == null) track(HotEntry.COLLECTION, newCollection.getCollectionID());
+  }
+
+  public synchronized void storeCollectionItem(CollectionItem item) {
+    if (collectionItems.put(item.getItemID(), copy(item)) == null) track(HotEntry.COLLECTION_ITEM, item.getItemID());
+    updateMax(maxCollectionItemID, item.getItemID());
+  }
+
+  public synchronized void storeWishlistItem(WishlistItem item) {
+    WishlistItem newItem = copy(item);
+    if (wishlistItems.put(newItem.getWishID(), newItem) == null) track(HotEntry.WISHLIST_ITEM, newItem.getWishID());
+    updateMax(maxWishlistItemID, newItem.getWishID());
+
+    //With a backing database, only add to wishlists we already hold in full
+    WishlistItem[] wishlist = wishlistsByUser.get(newItem.getUserID());
+    if ((wishlist == null) && (backing != null)) return;
+    List<WishlistItem> newWishlist = new ArrayList<WishlistItem>();
+    if (wishlist != null) {
+      for (WishlistItem curItem : wishlist)
+        if (curItem.getWishID() != newItem.getWishID()) newWishlist.add(curItem);
+    }
+    newWishlist.add(newItem);
+    wishlistsByUser.put(newItem.getUserID(), newWishlist.toArray(new WishlistItem[newWishlist.size()]));
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+  // Interface plumbing
+  /////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Hand back a copy of what we hold, or read it from the backing database and keep it.
+   */
+  private Object readThrough(Method method, Object[] args, Object found) throws Throwable {
+    if (found != null)   return copy(found);
+    if (backing == null) return null;
+
+    long writesBefore = writeCount.get();
+    SnapshotFallbackDatabase.takeSnapshotRead();
+    Object loaded = callBacking(method, args);
+    if (SnapshotFallbackDatabase.takeSnapshotRead()) return loaded;
+    if (loaded != null) {
+      synchronized (this) {
+        if (writeCount.get() == writesBefore) store(loaded);
+      }
+    }
+    return loaded;
+  }
+
+  private void writeThrough(Method method, Object[] args) throws Throwable {
+    if (backing != null) callBacking(method, args);
+    synchronized (this) {
+      writeCount.incrementAndGet();
+      store(args[0]);
+    }
+  }
+
+  private void deleteThrough(Method method, Object[] args, int kind) throws Throwable {
+    if (backing != null) callBacking(method, args);
+    long id = (Long)args[0];
+    synchronized (this) {
+      writeCount.incrementAndGet();
+      //A deleted wishlist item leaves the rest of the user's wishlist in place
+      if (kind == HotEntry.WISHLIST_ITEM) removeWishlistItem(id);
+      else                                remove(kind, id);
+    }
+  }
+
+  /**
+   * Take the record out of memory only.  Callers hold the lock.
+   */
+  private void remove(int kind, long id) {
+    switch (kind) {
+      case HotEntry.GAME            : {
+        Game game = games.remove(id);
+        if (game != null) {
+          gamesByBGGID.remove(game.getBggID());
+          unindexName(gameIDsByName, game.getName(), id);
+        }
+        break;
+      }
+      case HotEntry.BGG_GAME        : {
+        BGGGame bggGame = bggGames.remove(id);
+        if (bggGame != null) unindexName(bggIDsByName, bggGame.getName(), id);
+        break;
+      }
+      case HotEntry.GAME_RELTN      : {
+        GameReltn reltn = reltnsByID.remove(id);
+        if (reltn != null) reltnsByGameID.remove(reltn.getGameID());
+        break;
+      }
+      case HotEntry.CSI_DATA        : csiData.remove(id); break;
+      case HotEntry.MM_DATA         : mmData.remove(id); break;
+      case HotEntry.USER            : {
+        User user = users.remove(id);
+        if ((user != null) && (user.getUserName() != null)) userIDsByName.remove(user.getUserName().toLowerCase());
+        break;
+      }
+      case HotEntry.USER_DETAIL     : userDetails.remove(id); break;
+      case HotEntry.COLLECTION      : collections.remove(id); collectionItemIDs.remove(id); break;
+      case HotEntry.COLLECTION_ITEM : collectionItems.remove(id); break;
+      case HotEntry.WISHLIST_ITEM   : {
+        //Don't leave a held wishlist with a hole in it; drop the whole thing instead
+        WishlistItem item = wishlistItems.get(id);
+        if ((item != null) && (wishlistsByUser.get(item.getUserID()) != null)) remove(HotEntry.WISHLIST, item.getUserID());
+        else wishlistItems.remove(id);
+        break;
+      }
+      case HotEntry.WISHLIST        : {
+        WishlistItem[] wishlist = wishlistsByUser.remove(id);
+        if (wishlist != null)
+          for (WishlistItem item : wishlist) wishlistItems.remove(item.getWishID());
+        break;
+      }
+    }
+  }
+
+  /**
+   * Note a record new to the hot tier, and drop the oldest ones if that takes us over
+   * {@link #maxHotRecords}.  Callers hold the lock.
+   */
+  private void track(int kind, long id) {
+    if (backing == null) return;
+    hotOrder.addLast(new HotEntry(kind, id));
+    //Entries for records that have since been deleted are still counted, which errs on the side of holding less
+    while (hotOrder.size() > Math.max(1, maxHotRecords)) {
+      HotEntry oldest = hotOrder.pollFirst();
+      remove(oldest.kind, oldest.id);
+    }
+  }
+
+  private void store(Object record) {
+    if      (record instanceof Game)                     storeGame((Game)record);
+    else if (record instanceof BGGGame)                  storeBGGGame((BGGGame)record);
+    else if (record instanceof GameReltn)                storeGameReltn((GameReltn)record);
+    else if (record instanceof CoolStuffIncPriceData)    storeCSIData((CoolStuffIncPriceData)record);
+    else if (record instanceof MiniatureMarketPriceData) storeMMData((MiniatureMarketPriceData)record);
+    else if (record instanceof User)                     storeUser((User)record);
+    else if (record instanceof UserDetail)               storeUserDetail((UserDetail)record);
+    else if (record instanceof Collection)               storeCollection((Collection)record);
+    else if (record instanceof CollectionItem)           storeCollectionItem((CollectionItem)record);
+    else if (record instanceof WishlistItem)             storeWishlistItem((WishlistItem)record);
+  }
+
+  private void removeWishlistItem(long wishID) {
+    WishlistItem item = wishlistItems.remove(wishID);
+    if (item == null) return;
+    WishlistItem[] wishlist = wishlistsByUser.get(item.getUserID());
+    if (wishlist == null) return;
+    List<WishlistItem> newWishlist = new ArrayList<WishlistItem>(wishlist.length);
+    for (WishlistItem curItem : wishlist)
+      if (curItem.getWishID() != wishID) newWishlist.add(curItem);
+    wishlistsByUser.put(item.getUserID(), newWishlist.toArray(new WishlistItem[newWishlist.size()]));
+  }
+
+  /**
+   * Join the current items (and their current Games, where we hold them) back into the collection.
+   *
+   * @return The collection, or null if some of its items have been dropped from the hot tier
+   */
+  private Collection assembleCollection(Collection collection, long[] itemIDs) {
+    Collection result = copy(collection);
+    List<CollectionItem> items = new ArrayList<CollectionItem>((itemIDs == null) ? 0 : itemIDs.length);
+    if (itemIDs != null) {
+      for (long itemID : itemIDs) {
+        CollectionItem item = collectionItems.get(itemID);
+        if ((item == null) && (backing != null)) return null;
+        if (item == null) continue;
+        CollectionItem itemCopy = copy(item);
+        Game game = games.get(item.getGameID());
+        if (game != null) itemCopy.setGame(copy(game));
+        items.add(itemCopy);
+      }
+    }
+    result.setGames(items);
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object readWishlistForUser(Method method, Object[] args, long userID) throws Throwable {
+    WishlistItem[] wishlist = getWishlist(userID);
+    if (wishlist != null) {
+      List<WishlistItem> result = new ArrayList<WishlistItem>(wishlist.length);
+      for (WishlistItem item : wishlist) result.add(copy(item));
+      return result;
+    }
+
+    long writesBefore = writeCount.get();
+    List<WishlistItem> loaded = (List<WishlistItem>)callBacking(method, args);
+    synchronized (this) {
+      if ((writeCount.get() == writesBefore) && (wishlistsByUser.get(userID) == null)) {
+        List<WishlistItem> items = new ArrayList<WishlistItem>();
+        if (loaded != null) {
+          for (WishlistItem item : loaded) {
+            WishlistItem itemCopy = copy(item);
+            wishlistItems.put(itemCopy.getWishID(), itemCopy);
+            items.add(itemCopy);
+          }
+        }
+        wishlistsByUser.put(userID, items.toArray(new WishlistItem[items.size()]));
+        track(HotEntry.WISHLIST, userID);
+      }
+    }
+    return loaded;
+  }
+
+  private Object readWishlistItem(Method method, Object[] args, long userID, long gameID) throws Throwable {
+    WishlistItem[] wishlist = getWishlist(userID);
+    if (wishlist == null) return callBacking(method, args);
+    for (WishlistItem item : wishlist)
+      if (item.getGameID() == gameID) return copy(item);
+    return null;
+  }
+
+  /**
+   * The reads that aren't by ID, when we're the whole store.
+   */
+  private Object readStandalone(Method method, Object[] args, int op) {
+    switch (op) {
+      case OP_READ_GAMES_COMPACT      : return readGamesCompact((String)args[0]);
+      case OP_READ_GAME_FROM_AUTO     : return readGameFromAutoName((String)args[0], (String)args[1], (Integer)args[2]);
+      case OP_READ_BGG_BY_NAME        : return readBGGGameByName((String)args[0], (Boolean)args[1], (GameType)args[2]);
+      case OP_READ_BGG_FOR_REVIEW     : return copy(findForReview(bggGames.values(), (String)args[0]));
+      case OP_READ_CSI_FOR_REVIEW     : return copy(findForReview(csiData.values(), (String)args[0]));
+      case OP_READ_MM_FOR_REVIEW      : return copy(findForReview(mmData.values(), (String)args[0]));
+      case OP_GAME_NAMES              : {
+        List<String> names = new ArrayList<String>(games.size());
+        for (Game game : games.values()) names.add(NameSearchIndex.formatGameValue(game));
+        return names;
+      }
+      case OP_BGG_NAMES               : {
+        List<String> names = new ArrayList<String>(bggGames.size());
+        for (BGGGame game : bggGames.values()) names.add(NameSearchIndex.formatBGGValue(game));
+        return names;
+      }
+      case OP_CSI_TITLES              : {
+        List<String> names = new ArrayList<String>(csiData.size());
+        for (CoolStuffIncPriceData data : csiData.values()) names.add(NameSearchIndex.formatCSIValue(data));
+        return names;
+      }
+      case OP_MM_TITLES               : {
+        List<String> names = new ArrayList<String>(mmData.size());
+        for (MiniatureMarketPriceData data : mmData.values()) names.add(NameSearchIndex.formatMMValue(data));
+        return names;
+      }
+      case OP_STATS                   : return null;
+      default :
+        //There's nothing behind us to hand it to, so answer the way an empty database would
+        if (unsupported.put(method.getName(), Boolean.TRUE) == null)
+          logger.warn("The standalone in-memory database has nothing for {}, answering empty", method.getName());
+        Class<?> type = method.getReturnType();
+        if (List.class.isAssignableFrom(type))            return new ArrayList<Object>();
+        if (type == long.class)                           return 0L;
+        if (type == int.class)                            return 0;
+        if (type == boolean.class)                        return false;
+        return null;
+    }
+  }
+
+  /**
+   * The value is a gameID, a comma separated list of them, or a <code>low-high</code> range.
+   */
+  private List<CompactSearchData> readGamesCompact(String value) {
+    List<CompactSearchData> results = new ArrayList<CompactSearchData>();
+    for (String part : value.split(",")) {
+      part = part.trim();
+      try {
+        int dash = part.indexOf('-', 1);
+        long lowID  = Long.parseLong((dash == -1) ? part : part.substring(0, dash).trim());
+        long highID = (dash == -1) ? lowID : Long.parseLong(part.substring(dash + 1).trim());
+        for (long gameID = lowID; gameID <= highID; gameID++) {
+          Game game = games.get(gameID);
+          if (game != null) results.add(toCompact(game));
+        }
+      } catch (NumberFormatException nfe) {
+        //Skip anything that isn't an ID
+      }
+    }
+    return results;
+  }
+
+  private CompactSearchData readGameFromAutoName(String gameName, String primaryPub, int yearPublished) {
+    long[] gameIDs = (gameName == null) ? null : gameIDsByName.get(gameName.toLowerCase());
+    if (gameIDs == null) return null;
+    for (long gameID : gameIDs) {
+      Game game = games.get(gameID);
+      if (game == null) continue;
+      if ((primaryPub != null) && (!primaryPub.equalsIgnoreCase(game.getPrimaryPublisher()))) continue;
+      if ((yearPublished > 0) && (yearPublished != game.getYearPublished())) continue;
+      return toCompact(game);
+    }
+    return null;
+  }
+
+  /**
+   * @param partial true for a contains match on the name, false for an exact (case insensitive) match
+   */
+  private List<BGGGame> readBGGGameByName(String name, boolean partial, GameType filterType) {
+    List<BGGGame> results = new ArrayList<BGGGame>();
+    if (name == null) return results;
+    String lowerName = name.toLowerCase();
+
+    List<BGGGame> candidates;
+    if (partial) {
+      candidates = bggGames.values();
+    } else {
+      candidates = new ArrayList<BGGGame>();
+      long[] bggIDs = bggIDsByName.get(lowerName);
+      if (bggIDs != null) {
+        for (long bggID : bggIDs) {
+          BGGGame game = bggGames.get(bggID);
+          if (game != null) candidates.add(game);
+        }
+      }
+    }
+
+    for (BGGGame game : candidates) {
+      if ((game.getName() == null) || (!game.getName().toLowerCase().contains(lowerName))) continue;
+      if (!matchesType(game.getGameType(), filterType)) continue;
+      results.add(copy(game));
+    }
+    return results;
+  }
+
+  private static boolean matchesType(GameType gameType, GameType filterType) {
+    if (filterType == null) return true;
+    if (filterType == GameType.BASE_AND_COLLECTIBLE)
+      return (gameType == GameType.BASE) || (gameType == GameType.COLLECTIBLE);
+    return gameType == filterType;
+  }
+
+  /**
+   * Pick the newest (<code>new</code>) or oldest (<code>old</code>) record waiting on review.
+   */
+  private static <T> T findForReview(List<T> candidates, String review) {
+    boolean newest = "new".equalsIgnoreCase(review);
+    T found = null;
+    long foundID = newest ? Long.MIN_VALUE : Long.MAX_VALUE;
+    for (T candidate : candidates) {
+      ReviewState state;
+      long id;
+      if (candidate instanceof BGGGame) {
+        state = ((BGGGame)candidate).getReviewState();
+        id    = ((BGGGame)candidate).getBggID();
+      } else if (candidate instanceof CoolStuffIncPriceData) {
+        state = ((CoolStuffIncPriceData)candidate).getReviewState();
+        id    = ((CoolStuffIncPriceData)candidate).getCsiID();
+      } else {
+        state = ((MiniatureMarketPriceData)candidate).getReviewState();
+        id    = ((MiniatureMarketPriceData)candidate).getMmID();
+      }
+      if (state != ReviewState.PENDING) continue;
+      if (newest ? (id > foundID) : (id < foundID)) {
+        found   = candidate;
+        foundID = id;
+      }
+    }
+    return found;
+  }
+
+  private static CompactSearchData toCompact(Game game) {
+    CompactSearchData data = new CompactSearchData();
+    data.setDisplayString(NameSearchIndex.formatGameValue(game));
+    data.setSourceID(game.getGameID());
+    data.setThumbnailURL(game.getImageThumbnailURL());
+    data.setSourceField("Game ID: " + game.getGameID());
+    return data;
+  }
+
+  private static void indexName(Map<String, long[]> index, String name, long id) {
+    if (name == null) return;
+    String key = name.toLowerCase();
+    long[] ids = index.get(key);
+    if (ids == null) {
+      index.put(key, new long[] { id });
+      return;
+    }
+    for (long curID : ids) if (curID == id) return;
+    long[] newIDs = new long[ids.length + 1];
+    System.arraycopy(ids, 0, newIDs, 0, ids.length);
+    newIDs[ids.length] = id;
+    index.put(key, newIDs);
+  }
+
+  private static void unindexName(Map<String, long[]> index, String name, long id) {
+    if (name == null) return;
+    String key = name.toLowerCase();
+    long[] ids = index.get(key);
+    if (ids == null) return;
+    int count = 0;
+    long[] newIDs = new long[ids.length];
+    for (long curID : ids) if (curID != id) newIDs[count++] = curID;
+    if (count == 0)               index.remove(key);
+    else if (count < ids.length) {
+      long[] trimmed = new long[count];
+      System.arraycopy(newIDs, 0, trimmed, 0, count);
+      index.put(key, trimmed);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T copy(T value) {
+    if (value == null) return null;
+    return (T)mapper.convertValue(value, value.getClass());
+  }
+
+  private Object callBacking(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(backing, args);
+    } catch (InvocationTargetException ite) {
+      //Hand back the real DatabaseOperationException/ConfigurationException
+      throw ite.getCause();
+    }
+  }
+
+  /**
+   * One record in the hot tier, in the order they came in.
+   */
+  private static final class HotEntry {
+    static final int GAME            = 0;
+    static final int BGG_GAME        = 1;
+    static final int GAME_RELTN      = 2;
+    static final int CSI_DATA        = 3;
+    static final int MM_DATA         = 4;
+    static final int USER            = 5;
+    static final int USER_DETAIL     = 6;
+    static final int COLLECTION      = 7;
+    static final int COLLECTION_ITEM = 8;
+    static final int WISHLIST_ITEM   = 9;
+    static final int WISHLIST        = 10;
+
+    final int kind;
+    final long id;
+
+    HotEntry(int kind, long id) {
+      this.kind = kind;
+      this.id   = id;
+    }
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long curMax = max.get();
+    while ((value > curMax) && !max.compareAndSet(curMax, value))
+      curMax = max.get();
+  }
+}
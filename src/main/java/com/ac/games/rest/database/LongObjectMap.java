@@ -0,0 +1,204 @@
+package com.ac.games.rest.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent map from primitive <code>long</code> keys to objects.
+ * <p>
+ * Lookups are lock-free and don't allocate: no boxing of the key, no entry objects, just a
+ * linear probe through a <code>long[]</code>.  Writes are serialized on the map, which suits the
+ * read-mostly data we keep in here.  Removed keys stay in the table with an empty value until the
+ * next resize, so a later put of the same key reuses its slot.
+ * <p>
+ * <code>Long.MIN_VALUE</code> marks an empty slot, so it can't be used as a key.
+ *
+ * @author ac010168
+ */
+public class LongObjectMap<V> {
+
+  private static final long EMPTY_KEY        = Long.MIN_VALUE;
+  private static final int  DEFAULT_CAPACITY = 64;
+
+  private volatile Table table;
+  private volatile int size;
+
+  public LongObjectMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize The number of entries to size the table for
+   */
+  public LongObjectMap(int expectedSize) {
+    table = new Table(tableSizeFor(expectedSize));
+  }
+
+  /**
+   * @param key The key
+   *
+   * @return The value for the key, or null if there isn't one
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    Table curTable = table;
+    int index = hash(key) & curTable.mask;
+    while (true) {
+      long curKey = curTable.keys.get(index);
+      if (curKey == key)       return (V)curTable.values.get(index);
+      if (curKey == EMPTY_KEY) return null;
+      index = (index + 1) & curTable.mask;
+    }
+  }
+
+  /**
+   * @param key The key
+   * @param value The value, which can't be null
+   *
+   * @return The previous value for the key, or null if there wasn't one
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized V put(long key, V value) {
+    if (key == EMPTY_KEY) throw new IllegalArgumentException("Long.MIN_VALUE can't be used as a key");
+    if (value == null)    throw new NullPointerException("The value can't be null");
+
+    Table curTable = table;
+    int index = findSlot(curTable, key);
+    if (curTable.keys.get(index) == key) {
+      V oldValue = (V)curTable.values.getAndSet(index, value);
+      if (oldValue == null) size++;
+      return oldValue;
+    }
+
+    if ((curTable.used + 1) * 2 > curTable.capacity) {
+      curTable = resize(curTable);
+      index = findSlot(curTable, key);
+    }
+    //The value goes in first, so a reader that sees the key always sees its value
+    curTable.values.set(index, value);
+    curTable.keys.set(index, key);
+    curTable.used++;
+    size++;
+    return null;
+  }
+
+  /**
+   * @param key The key to remove
+   *
+   * @return The removed value, or null if there wasn't one
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized V remove(long key) {
+    Table curTable = table;
+    int index = findSlot(curTable, key);
+    if (curTable.keys.get(index) != key) return null;
+    V oldValue = (V)curTable.values.getAndSet(index, null);
+    if (oldValue != null) size--;
+    return oldValue;
+  }
+
+  /**
+   * @return The number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return A snapshot of the values, in no particular order
+   */
+  @SuppressWarnings("unchecked")
+  public List<V> values() {
+    Table curTable = table;
+    List<V> values = new ArrayList<V>(size);
+    for (int i = 0; i < curTable.capacity; i++) {
+      Object value = curTable.values.get(i);
+      if (value != null) values.add((V)value);
+    }
+    return values;
+  }
+
+  /**
+   * @return A snapshot of the keys that have a value, in no particular order
+   */
+  public long[] keys() {
+    Table curTable = table;
+    long[] keys = new long[curTable.capacity];
+    int count = 0;
+    for (int i = 0; i < curTable.capacity; i++) {
+      //The key goes in after the value, so a slot can briefly have a value but no key yet
+      long key = curTable.keys.get(i);
+      if ((key != EMPTY_KEY) && (curTable.values.get(i) != null)) keys[count++] = key;
+    }
+    return Arrays.copyOf(keys, count);
+  }
+
+  /**
+   * Remove everything.
+   */
+  public synchronized void clear() {
+    table = new Table(DEFAULT_CAPACITY);
+    size  = 0;
+  }
+
+  /**
+   * @return The slot holding the key, or the empty slot it would go in
+   */
+  private static int findSlot(Table curTable, long key) {
+    int index = hash(key) & curTable.mask;
+    while (true) {
+      long curKey = curTable.keys.get(index);
+      if ((curKey == key) || (curKey == EMPTY_KEY)) return index;
+      index = (index + 1) & curTable.mask;
+    }
+  }
+
+  /**
+   * Rebuild the table at a size that leaves it at most a quarter full, dropping removed keys.
+   */
+  private Table resize(Table oldTable) {
+    Table newTable = new Table(tableSizeFor(size + 1));
+    for (int i = 0; i < oldTable.capacity; i++) {
+      Object value = oldTable.values.get(i);
+      if (value == null) continue;
+      long key  = oldTable.keys.get(i);
+      int index = findSlot(newTable, key);
+      newTable.values.set(index, value);
+      newTable.keys.set(index, key);
+      newTable.used++;
+    }
+    table = newTable;
+    return newTable;
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int capacity = DEFAULT_CAPACITY;
+    while ((capacity < (1 << 30)) && (capacity < expectedSize * 4)) capacity <<= 1;
+    return capacity;
+  }
+
+  private static int hash(long key) {
+    int hash = (int)(key ^ (key >>> 32)) * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static final class Table {
+    final int capacity;
+    final int mask;
+    final AtomicLongArray keys;
+    final AtomicReferenceArray<Object> values;
+    /** Slots holding a key, including removed ones */
+    int used;
+
+    Table(int capacity) {
+      this.capacity = capacity;
+      this.mask     = capacity - 1;
+      this.keys     = new AtomicLongArray(capacity);
+      this.values   = new AtomicReferenceArray<Object>(capacity);
+      for (int i = 0; i < capacity; i++) keys.set(i, EMPTY_KEY);
+    }
+  }
+}
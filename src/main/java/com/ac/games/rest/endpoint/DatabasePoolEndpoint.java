@@ -0,0 +1,28 @@
+package com.ac.games.rest.endpoint;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+
+/**
+ * Actuator endpoint exposing the database checkout pool counters under /dbpool.
+ *
+ * @author ac010168
+ */
+@Component
+public class DatabasePoolEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  public DatabasePoolEndpoint() {
+    super("dbpool");
+  }
+
+  public Map<String, Object> invoke() {
+    if (Application.databasePool == null)
+      return Collections.<String, Object>singletonMap("status", "not started");
+    return Application.databasePool.getMetrics();
+  }
+}
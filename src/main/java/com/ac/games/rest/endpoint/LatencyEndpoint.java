@@ -0,0 +1,25 @@
+package com.ac.games.rest.endpoint;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+
+/**
+ * Actuator endpoint exposing the per-route request counters and latency percentiles under /latency.
+ *
+ * @author ac010168
+ */
+@Component
+public class LatencyEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  public LatencyEndpoint() {
+    super("latency");
+  }
+
+  public Map<String, Object> invoke() {
+    return Application.requestMetrics.getSnapshot();
+  }
+}
@@ -0,0 +1,25 @@
+package com.ac.games.rest.endpoint;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+
+/**
+ * Actuator endpoint exposing the most recent slow requests and database calls under /slowops.
+ *
+ * @author ac010168
+ */
+@Component
+public class SlowOperationEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  public SlowOperationEndpoint() {
+    super("slowops");
+  }
+
+  public Map<String, Object> invoke() {
+    return Application.slowOperations.getSnapshot();
+  }
+}
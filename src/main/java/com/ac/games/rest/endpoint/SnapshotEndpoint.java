@@ -0,0 +1,25 @@
+package com.ac.games.rest.endpoint;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+
+/**
+ * Actuator endpoint exposing the catalog snapshot and database outage state under /snapshot.
+ *
+ * @author ac010168
+ */
+@Component
+public class SnapshotEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  public SnapshotEndpoint() {
+    super("snapshot");
+  }
+
+  public Map<String, Object> invoke() {
+    return Application.snapshots.getMetrics();
+  }
+}
@@ -0,0 +1,29 @@
+package com.ac.games.rest.endpoint;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+
+/**
+ * Keeps /health DOWN until the startup warm-up is over, so the load balancer doesn't send
+ * traffic to a cold instance.  The per-part warm-up timings are included in the details.
+ *
+ * @author ac010168
+ */
+@Component
+public class WarmupHealthIndicator extends AbstractHealthIndicator {
+
+  @Override
+  protected void doHealthCheck(Health.Builder builder) throws Exception {
+    if (Application.warmup.isReady())
+      builder.up();
+    else builder.down();
+
+    for (Map.Entry<String, Object> detail : Application.warmup.getDetails().entrySet())
+      builder.withDetail(detail.getKey(), detail.getValue());
+  }
+}
@@ -0,0 +1,25 @@
+package com.ac.games.rest.endpoint;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+
+/**
+ * Actuator endpoint exposing the write-behind queue counters under /writebehind.
+ *
+ * @author ac010168
+ */
+@Component
+public class WriteBehindEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  public WriteBehindEndpoint() {
+    super("writebehind");
+  }
+
+  public Map<String, Object> invoke() {
+    return Application.writeBehind.getMetrics();
+  }
+}
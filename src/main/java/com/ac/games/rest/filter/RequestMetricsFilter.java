@@ -0,0 +1,74 @@
+package com.ac.games.rest.filter;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.ac.games.rest.Application;
+import com.ac.games.rest.metrics.RequestMetricsRegistry;
+import com.ac.games.rest.metrics.RequestProfile;
+import com.ac.games.rest.metrics.SlowOperationLog;
+
+/**
+ * Times every request, and records it against its route in {@link Application#requestMetrics}.
+ * Requests that make more database calls than {@link RequestProfile#dbCallWarnThreshold} are logged,
+ * and slow requests are kept in {@link Application#slowOperations}.
+ * <p>
+ * A request counts as an error if it threw, came back with a 4xx/5xx status, or the controller
+ * handed back a SimpleErrorData.
+ *
+ * @author ac010168
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestMetricsFilter implements Filter {
+
+  private static final Logger logger = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+  public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) req;
+    HttpServletResponse response = (HttpServletResponse) res;
+
+    long startTime = System.nanoTime();
+    RequestProfile profile = RequestProfile.begin();
+    boolean completed = false;
+    try {
+      chain.doFilter(req, res);
+      completed = true;
+    } finally {
+      long nanos = System.nanoTime() - startTime;
+      RequestProfile.end();
+      //Responses the JSON converter didn't write still get their timings, as long as we're not too late
+      if (!response.isCommitted() && !response.containsHeader(RequestProfile.SERVER_TIMING_HEADER))
+        response.setHeader(RequestProfile.SERVER_TIMING_HEADER, profile.toServerTiming());
+
+      String path = request.getRequestURI().substring(request.getContextPath().length());
+      String route = RequestMetricsRegistry.buildRouteKey(request.getMethod(), path, request.getQueryString());
+      boolean error = !completed || (response.getStatus() >= 400) || profile.isErrorResponse();
+      Application.requestMetrics.record(route, nanos / 1000, error, profile.getBytesOut());
+      if (Application.slowOperations.isEnabled())
+        Application.slowOperations.recordRequest(route, request.getQueryString(), nanos);
+
+      if (profile.isOverDatabaseCallThreshold()) {
+        //Some endpoints take the session token as a parameter, so it can't go into the log as is
+        String query = request.getQueryString();
+        logger.warn("Request {} {}{} made {} database calls in {}ms: {}", request.getMethod(), path, ((query == null) ? "" : "?" + SlowOperationLog.redactQuery(query)), profile.getDbCalls(), (profile.getDbNanos() / 1000000), profile.describeDatabaseCalls());
+      }
+    }
+  }
+
+  public void init(FilterConfig filterConfig) {}
+
+  public void destroy() {}
+}
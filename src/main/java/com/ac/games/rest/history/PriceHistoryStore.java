@@ -0,0 +1,502 @@
+package com.ac.games.rest.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.rest.DaemonThreadFactory;
+import com.ac.games.rest.database.LongObjectMap;
+
+/**
+ * Keeps the price history of every CSI and MM listing, so we can tell whether today's price
+ * is a good one.
+ * <p>
+ * The CSI and MM write paths hand every listing they write to {@link #recordCSI} or
+ * {@link #recordMM}, and a point is added whenever the price or availability has changed.  The
+ * history is held in memory as one {@link PriceSeries} per listing.  New points are also
+ * buffered, and the buffer is appended to the current segment file in {@link #historyDir} by a
+ * background thread, every {@link #flushMillis} or once it reaches {@link #flushBytes}, so the
+ * write paths never wait on the disk.  A crash loses at most the points still in the buffer.
+ * Segments roll over once they reach {@link #segmentMaxBytes}.
+ * <p>
+ * The history is kept for {@link #retentionDays}, and to at most {@link #maxPointsPerListing}
+ * points a listing.  At startup, and every {@link #compactMillis} after that, the series are
+ * trimmed to those limits and written out as a single base file, and the older files are
+ * deleted.  At startup the newest base and the segments after it are replayed in order to
+ * rebuild the series; a point cut short by a crash is dropped, and a new segment is started so
+ * nothing is ever appended after it.
+ *
+ * @author ac010168
+ */
+public class PriceHistoryStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(PriceHistoryStore.class);
+
+  /** Where the segment files go */
+  public static String historyDir          = System.getProperty("games.history.dir", "price-history");
+  /** The size a segment grows to before the next one is started */
+  public static long   segmentMaxBytes     = Long.getLong("games.history.segmentBytes", 16L * 1024L * 1024L);
+  /** How often the buffered points are written out */
+  public static long   flushMillis         = Long.getLong("games.history.flushMillis", 1000L);
+  /** The buffer size that triggers a write without waiting for the next flush */
+  public static int    flushBytes          = Integer.getInteger("games.history.flushBytes", 64 * 1024);
+  /** How long points are kept; the default matches the longest window the endpoint allows */
+  public static int    retentionDays       = Integer.getInteger("games.history.retentionDays", 3650);
+  /** The most points kept for a single listing */
+  public static int    maxPointsPerListing = Integer.getInteger("games.history.maxPoints", 4096);
+  /** How often the history is trimmed and compacted while running */
+  public static long   compactMillis       = Long.getLong("games.history.compactMillis", 24L * 60L * 60L * 1000L);
+
+  /** The windows reported when none are asked for */
+  public static final int[] DEFAULT_WINDOWS = new int[] { 30, 90, 365 };
+
+  private static final int VENDOR_CSI = 0;
+  private static final int VENDOR_MM  = 1;
+
+  private static final String SEGMENT_PREFIX = "prices-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final String BASE_SUFFIX    = ".base";
+  private static final String TEMP_SUFFIX    = ".tmp";
+
+  private final LongObjectMap<PriceSeries> csiSeries;
+  private final LongObjectMap<PriceSeries> mmSeries;
+
+  /** Held shared while a point is added and buffered, and exclusively while compacting */
+  private final ReentrantReadWriteLock appendLock;
+  /** Guards the pending buffer; the file work is all done holding the store's own lock */
+  private final Object pendingLock;
+  private final ByteArrayOutputStream pending;
+  private final AtomicBoolean flushQueued;
+  private final ScheduledExecutorService writer;
+
+  private volatile boolean loaded;
+  private int segmentNumber;
+  private int segmentCount;
+  private long segmentBytes;
+  private OutputStream segmentOut;
+
+  private volatile long points;
+  private volatile long pointBytes;
+  private volatile long pointsTrimmed;
+  private volatile long writeFailures;
+  private volatile long compactions;
+
+  public PriceHistoryStore() {
+    csiSeries   = new LongObjectMap<PriceSeries>(4096);
+    mmSeries    = new LongObjectMap<PriceSeries>(4096);
+    appendLock  = new ReentrantReadWriteLock();
+    pendingLock = new Object();
+    pending     = new ByteArrayOutputStream(flushBytes + 1024);
+    flushQueued = new AtomicBoolean(false);
+    writer      = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("price-history"));
+    writer.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        flush();
+      }
+    }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    writer.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        compact();
+      }
+    }, compactMillis, compactMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Replay the newest base file and the segments after it, if that hasn't been done yet, then
+   * compact what was replayed.
+   *
+   * @return The number of points replayed
+   */
+  public synchronized long load() {
+    if (loaded) return 0;
+    long startTime = System.currentTimeMillis();
+    long replayed  = 0;
+
+    File[] files = listFiles(new File(historyDir));
+    if (files != null) {
+      int baseNumber = 0;
+      for (File file : files) {
+        if (file.getName().endsWith(BASE_SUFFIX))
+          baseNumber = Math.max(baseNumber, segmentNumber(file));
+      }
+      //The numbers are zero padded, so the names sort in the order they were written
+      Arrays.sort(files);
+      for (File file : files) {
+        //Anything before the newest base is already in it; a compaction was cut short
+        if (file.getName().endsWith(TEMP_SUFFIX) || (segmentNumber(file) < baseNumber)) {
+          file.delete();
+          continue;
+        }
+        replayed += file.getName().endsWith(BASE_SUFFIX) ? replayBase(file) : replay(file);
+        segmentNumber = Math.max(segmentNumber, segmentNumber(file));
+        segmentCount++;
+      }
+    }
+    loaded = true;
+    logger.info("Replayed {} price history points from {} files in {}ms", replayed, segmentCount, System.currentTimeMillis() - startTime);
+    if (segmentCount > 1) compact();
+    return replayed;
+  }
+
+  /**
+   * Add a point for the CSI listing, if its price or availability changed.
+   *
+   * @param data The listing as just written
+   */
+  public void recordCSI(CoolStuffIncPriceData data) {
+    Enum<?> availability = data.getAvailability();
+    record(VENDOR_CSI, csiSeries, data.getCsiID(), data.getCurPrice(), (availability == null) ? 0 : availability.ordinal() + 1);
+  }
+
+  /**
+   * Add a point for the MM listing, if its price or availability changed.
+   *
+   * @param data The listing as just written
+   */
+  public void recordMM(MiniatureMarketPriceData data) {
+    Enum<?> availability = data.getAvailability();
+    record(VENDOR_MM, mmSeries, data.getMmID(), data.getCurPrice(), (availability == null) ? 0 : availability.ordinal() + 1);
+  }
+
+  private void record(int vendor, LongObjectMap<PriceSeries> series, long id, double price, int availability) {
+    if (!loaded) load();
+
+    long cents = (price < 0.0) ? -1 : Math.round(price * 100.0);
+    PriceSeries listing = series.get(id);
+    if (listing == null) listing = addSeries(series, id);
+
+    boolean flushDue = false;
+    appendLock.readLock().lock();
+    try {
+      //The listing stays locked until its point is buffered, so its points go out in order
+      synchronized (listing) {
+        if (!listing.isChange(cents, availability)) return;
+        byte[] encoded = listing.append(System.currentTimeMillis() / 1000L, cents, availability);
+        synchronized (pendingLock) {
+          pending.write(vendor);
+          PriceSeries.writeVarLong(pending, id);
+          pending.write(encoded, 0, encoded.length);
+          points++;
+          pointBytes += encoded.length;
+          flushDue = (pending.size() >= flushBytes);
+        }
+      }
+    } catch (IOException ioe) {
+      //Can't happen writing to memory
+      throw new IllegalStateException(ioe);
+    } finally {
+      appendLock.readLock().unlock();
+    }
+
+    if (flushDue && flushQueued.compareAndSet(false, true)) {
+      try {
+        writer.execute(new Runnable() {
+          public void run() {
+            flushQueued.set(false);
+            flush();
+          }
+        });
+      } catch (RejectedExecutionException ree) {
+        //We've been closed, so there's no one else to do it
+        flushQueued.set(false);
+        flush();
+      }
+    }
+  }
+
+  private static PriceSeries addSeries(LongObjectMap<PriceSeries> series, long id) {
+    synchronized (series) {
+      PriceSeries listing = series.get(id);
+      if (listing == null) {
+        listing = new PriceSeries();
+        series.put(id, listing);
+      }
+      return listing;
+    }
+  }
+
+  /**
+   * Append the buffered points to the current segment.
+   */
+  public synchronized void flush() {
+    byte[] buffered;
+    synchronized (pendingLock) {
+      if (pending.size() == 0) return;
+      buffered = pending.toByteArray();
+      pending.reset();
+    }
+    try {
+      OutputStream out = getSegment();
+      out.write(buffered);
+      out.flush();
+      segmentBytes += buffered.length;
+    } catch (IOException ioe) {
+      //The points are still in memory; they just won't survive a restart
+      writeFailures++;
+      logger.error("Unable to append to the price history", ioe);
+      closeSegment();
+    }
+  }
+
+  /**
+   * Trim every series to the retention limits, write them all out as a new base file, and
+   * delete the files it replaces.  Points are only held up while the series are trimmed and
+   * copied, not while the base is written.
+   */
+  public synchronized void compact() {
+    if (!loaded) return;
+    long startTime     = System.currentTimeMillis();
+    long cutoffSeconds = (startTime / 1000L) - (retentionDays * 86400L);
+
+    int baseNumber;
+    long[][] ids = new long[2][];
+    byte[][][] series = new byte[2][][];
+    long trimmed = 0;
+    appendLock.writeLock().lock();
+    try {
+      //Everything buffered so far is in the series we're about to copy
+      flush();
+      closeSegment();
+      baseNumber = ++segmentNumber;
+      for (int vendor = VENDOR_CSI; vendor <= VENDOR_MM; vendor++) {
+        LongObjectMap<PriceSeries> vendorSeries = (vendor == VENDOR_CSI) ? csiSeries : mmSeries;
+        ids[vendor]    = vendorSeries.keys();
+        series[vendor] = new byte[ids[vendor].length][];
+        for (int i = 0; i < ids[vendor].length; i++) {
+          PriceSeries listing = vendorSeries.get(ids[vendor][i]);
+          if (listing == null) continue;
+          trimmed += listing.trim(cutoffSeconds, maxPointsPerListing);
+          series[vendor][i] = listing.getPoints();
+        }
+      }
+    } finally {
+      appendLock.writeLock().unlock();
+    }
+    pointsTrimmed += trimmed;
+
+    File dir  = new File(historyDir);
+    File temp = new File(dir, String.format("%s%08d%s", SEGMENT_PREFIX, baseNumber, TEMP_SUFFIX));
+    File base = new File(dir, String.format("%s%08d%s", SEGMENT_PREFIX, baseNumber, BASE_SUFFIX));
+    OutputStream out = null;
+    try {
+      if (!dir.exists() && !dir.mkdirs())
+        throw new IOException("Unable to create the price history directory " + dir.getAbsolutePath());
+      out = new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024);
+      for (int vendor = VENDOR_CSI; vendor <= VENDOR_MM; vendor++) {
+        for (int i = 0; i < ids[vendor].length; i++) {
+          byte[] encoded = series[vendor][i];
+          if ((encoded == null) || (encoded.length == 0)) continue;
+          out.write(vendor);
+          PriceSeries.writeVarLong(out, ids[vendor][i]);
+          PriceSeries.writeVarLong(out, encoded.length);
+          out.write(encoded);
+        }
+      }
+      out.close();
+      out = null;
+      if (!temp.renameTo(base))
+        throw new IOException("Unable to rename " + temp.getName() + " to " + base.getName());
+    } catch (IOException ioe) {
+      //The old files are all still there, so nothing is lost
+      writeFailures++;
+      logger.error("Unable to compact the price history", ioe);
+      try { if (out != null) out.close(); } catch (Throwable t) { /** Ignore Errors */ }
+      temp.delete();
+      return;
+    }
+
+    File[] files = listFiles(dir);
+    int removed = 0;
+    for (int i = 0; (files != null) && (i < files.length); i++) {
+      if ((segmentNumber(files[i]) < baseNumber) && files[i].delete()) removed++;
+    }
+    segmentCount = (files == null) ? 1 : files.length - removed;
+    compactions++;
+    logger.info("Compacted the price history into {} in {}ms, dropping {} old points and {} files", base.getName(), System.currentTimeMillis() - startTime, trimmed, removed);
+  }
+
+  /**
+   * Summarize a game's listings over each window.
+   *
+   * @param gameReltn The game's vendor listings
+   * @param windows The window lengths, in days
+   *
+   * @return One summary per window, in the order asked for
+   */
+  public PriceWindow[] summarize(GameReltn gameReltn, int[] windows) {
+    if (!loaded) load();
+
+    long nowSeconds = System.currentTimeMillis() / 1000L;
+    PriceWindow[] summaries = new PriceWindow[windows.length];
+    for (int i = 0; i < windows.length; i++) {
+      summaries[i] = new PriceWindow(windows[i]);
+      long sinceSeconds = nowSeconds - (windows[i] * 86400L);
+      summarize(csiSeries, gameReltn.getCsiIDs(), sinceSeconds, nowSeconds, summaries[i]);
+      summarize(mmSeries,  gameReltn.getMmIDs(),  sinceSeconds, nowSeconds, summaries[i]);
+    }
+    return summaries;
+  }
+
+  private static void summarize(LongObjectMap<PriceSeries> series, List<Long> ids, long sinceSeconds, long nowSeconds, PriceWindow summary) {
+    if (ids == null) return;
+    for (long id : ids) {
+      PriceSeries listing = series.get(id);
+      if (listing != null) listing.summarize(sinceSeconds, nowSeconds, summary);
+    }
+  }
+
+  /**
+   * @return The listing, point and segment counts
+   */
+  public Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put("loaded", loaded);
+    metrics.put("csiListings", csiSeries.size());
+    metrics.put("mmListings", mmSeries.size());
+    metrics.put("pointsAdded", points);
+    metrics.put("pointBytesAdded", pointBytes);
+    metrics.put("pointsTrimmed", pointsTrimmed);
+    metrics.put("writeFailures", writeFailures);
+    metrics.put("compactions", compactions);
+    synchronized (pendingLock) {
+      metrics.put("pendingBytes", pending.size());
+    }
+    synchronized (this) {
+      metrics.put("segments", segmentCount);
+      metrics.put("currentSegmentBytes", segmentBytes);
+    }
+    return metrics;
+  }
+
+  /**
+   * Stop the background writes, then write out what's buffered and close the current segment.
+   */
+  public synchronized void close() {
+    writer.shutdown();
+    flush();
+    closeSegment();
+  }
+
+  private OutputStream getSegment() throws IOException {
+    if ((segmentOut != null) && (segmentBytes < segmentMaxBytes)) return segmentOut;
+    closeSegment();
+
+    File dir = new File(historyDir);
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Unable to create the price history directory " + dir.getAbsolutePath());
+    segmentNumber++;
+    File segment = new File(dir, String.format("%s%08d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+    segmentOut   = new BufferedOutputStream(new FileOutputStream(segment), 4096);
+    segmentBytes = 0;
+    segmentCount++;
+    return segmentOut;
+  }
+
+  private void closeSegment() {
+    if (segmentOut == null) return;
+    try { segmentOut.close(); } catch (Throwable t) { /** Ignore Errors */ }
+    segmentOut = null;
+  }
+
+  private long replay(File segment) {
+    long replayed = 0;
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(segment), 64 * 1024);
+      int vendor;
+      while ((vendor = in.read()) >= 0) {
+        long id = PriceSeries.readVarLong(in);
+        LongObjectMap<PriceSeries> series = (vendor == VENDOR_CSI) ? csiSeries : mmSeries;
+        PriceSeries listing = series.get(id);
+        if (listing == null) {
+          listing = new PriceSeries();
+          series.put(id, listing);
+        }
+        listing.replay(in);
+        replayed++;
+      }
+    } catch (EOFException eofe) {
+      logger.warn("Price history segment {} ends with a partial point, which was dropped", segment.getName());
+    } catch (IOException ioe) {
+      logger.error("Unable to replay price history segment " + segment.getName(), ioe);
+    } finally {
+      try { if (in != null) in.close(); } catch (Throwable t) { /** Ignore Errors */ }
+    }
+    return replayed;
+  }
+
+  private long replayBase(File base) {
+    long replayed = 0;
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(base), 64 * 1024);
+      int vendor;
+      while ((vendor = in.read()) >= 0) {
+        long id = PriceSeries.readVarLong(in);
+        byte[] encoded = new byte[(int)PriceSeries.readVarLong(in)];
+        for (int read = 0; read < encoded.length; ) {
+          int count = in.read(encoded, read, encoded.length - read);
+          if (count < 0) throw new EOFException("The price history base was cut short");
+          read += count;
+        }
+        LongObjectMap<PriceSeries> series = (vendor == VENDOR_CSI) ? csiSeries : mmSeries;
+        PriceSeries listing = new PriceSeries();
+        series.put(id, listing);
+        ByteArrayInputStream points = new ByteArrayInputStream(encoded);
+        while (points.available() > 0) {
+          listing.replay(points);
+          replayed++;
+        }
+      }
+    } catch (EOFException eofe) {
+      logger.warn("Price history base {} ends with a partial listing, which was dropped", base.getName());
+    } catch (IOException ioe) {
+      logger.error("Unable to replay price history base " + base.getName(), ioe);
+    } finally {
+      try { if (in != null) in.close(); } catch (Throwable t) { /** Ignore Errors */ }
+    }
+    return replayed;
+  }
+
+  private static File[] listFiles(File dir) {
+    return dir.listFiles(new FilenameFilter() {
+      public boolean accept(File parent, String name) {
+        return name.startsWith(SEGMENT_PREFIX) && (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(BASE_SUFFIX) || name.endsWith(TEMP_SUFFIX));
+      }
+    });
+  }
+
+  private static int segmentNumber(File segment) {
+    String name = segment.getName();
+    try {
+      return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.lastIndexOf('.')));
+    } catch (NumberFormatException nfe) {
+      return 0;
+    }
+  }
+}
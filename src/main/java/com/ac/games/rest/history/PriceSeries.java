@@ -0,0 +1,252 @@
+package com.ac.games.rest.history;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The price history of one vendor listing, kept as delta and varint encoded points.
+ * <p>
+ * Each point is the change since the point before it: seconds since the last point, the price
+ * change in cents (zigzag encoded, since prices go down as well as up), and the availability.
+ * A listing whose price moves by a few dollars every few days costs around 5 bytes a point.
+ * The same bytes are what {@link PriceHistoryStore} appends to its segment files.
+ *
+ * @author ac010168
+ */
+public class PriceSeries {
+
+  private byte[] points;
+  private int length;
+  private int count;
+  private long firstSeconds;
+  private long lastSeconds;
+  private long lastCents;
+  private int lastAvailability;
+
+  public PriceSeries() {
+    points = new byte[32];
+  }
+
+  /**
+   * @return true if a point with this price and availability would be a change
+   */
+  synchronized boolean isChange(long cents, int availability) {
+    return (count == 0) || (cents != lastCents) || (availability != lastAvailability);
+  }
+
+  /**
+   * Encode a point against the last one, and append it.
+   *
+   * @param seconds When the point was observed, in epoch seconds
+   * @param cents The price in cents, negative if unknown
+   * @param availability The availability code, 0 if unknown
+   *
+   * @return The encoded point
+   */
+  synchronized byte[] append(long seconds, long cents, int availability) {
+    //The clock can step backwards; keep the series in order
+    if ((count > 0) && (seconds < lastSeconds)) seconds = lastSeconds;
+
+    byte[] encoded = new byte[30];
+    int pos = 0;
+    pos = writeVarLong(encoded, pos, seconds - lastSeconds);
+    pos = writeVarLong(encoded, pos, zigzag(cents - lastCents));
+    pos = writeVarLong(encoded, pos, availability);
+    encoded = Arrays.copyOf(encoded, pos);
+    apply(encoded, seconds, cents, availability);
+    return encoded;
+  }
+
+  /**
+   * Read one encoded point from a segment file and append it.
+   *
+   * @throws IOException if the point is cut short
+   */
+  synchronized void replay(InputStream in) throws IOException {
+    long deltaSeconds = readVarLong(in);
+    long deltaCents   = unzigzag(readVarLong(in));
+    int  availability = (int)readVarLong(in);
+
+    byte[] encoded = new byte[30];
+    int pos = 0;
+    pos = writeVarLong(encoded, pos, deltaSeconds);
+    pos = writeVarLong(encoded, pos, zigzag(deltaCents));
+    pos = writeVarLong(encoded, pos, availability);
+    apply(Arrays.copyOf(encoded, pos), lastSeconds + deltaSeconds, lastCents + deltaCents, availability);
+  }
+
+  private void apply(byte[] encoded, long seconds, long cents, int availability) {
+    if (length + encoded.length > points.length)
+      points = Arrays.copyOf(points, Math.max(points.length * 2, length + encoded.length));
+    System.arraycopy(encoded, 0, points, length, encoded.length);
+    length += encoded.length;
+    if (count == 0) firstSeconds = seconds;
+    count++;
+    lastSeconds      = seconds;
+    lastCents        = cents;
+    lastAvailability = availability;
+  }
+
+  /**
+   * Drop the points from before the cutoff, keeping the last of them as the price the series
+   * starts from, and anything older than the newest maxPoints points.  The first point left is
+   * re-encoded against zero, the same as the first point of a new series.
+   *
+   * @param cutoffSeconds The oldest time to keep, in epoch seconds
+   * @param maxPoints The most points to keep
+   *
+   * @return The number of points dropped
+   */
+  synchronized int trim(long cutoffSeconds, int maxPoints) {
+    if (count == 0) return 0;
+
+    long[] seconds      = new long[count];
+    long[] cents        = new long[count];
+    int[]  availability = new int[count];
+    int[] position = new int[] { 0 };
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      seconds[i]      = ((i == 0) ? 0 : seconds[i - 1]) + readVarLong(points, position);
+      cents[i]        = ((i == 0) ? 0 : cents[i - 1]) + unzigzag(readVarLong(points, position));
+      availability[i] = (int)readVarLong(points, position);
+      if (seconds[i] <= cutoffSeconds) start = i;
+    }
+    start = Math.max(start, count - maxPoints);
+    if (start <= 0) return 0;
+
+    //A new array, so a summary reading the old one isn't disturbed
+    int oldCount = count;
+    points = new byte[32];
+    length = 0;
+    count  = 0;
+    lastSeconds      = 0;
+    lastCents        = 0;
+    lastAvailability = 0;
+    for (int i = start; i < oldCount; i++)
+      append(seconds[i], cents[i], availability[i]);
+    return start;
+  }
+
+  /**
+   * @return A copy of the encoded points
+   */
+  synchronized byte[] getPoints() {
+    return Arrays.copyOf(points, length);
+  }
+
+  /**
+   * Summarize the series from the given time to now.
+   *
+   * @param sinceSeconds The start of the window, in epoch seconds
+   * @param nowSeconds The end of the window, in epoch seconds
+   * @param summary The summary to add this listing to
+   */
+  public void summarize(long sinceSeconds, long nowSeconds, PriceWindow summary) {
+    byte[] curPoints;
+    int curLength;
+    synchronized (this) {
+      if (count == 0) return;
+      curPoints = points;
+      curLength = length;
+    }
+
+    long seconds = 0;
+    long cents   = 0;
+    long prevSeconds = -1;
+    long prevCents   = -1;
+    int[] position = new int[] { 0 };
+    while (position[0] < curLength) {
+      seconds += readVarLong(curPoints, position);
+      cents   += unzigzag(readVarLong(curPoints, position));
+      readVarLong(curPoints, position);
+
+      if (seconds > sinceSeconds) {
+        //The price in effect before this point counts for the part of the window it covered
+        if (prevSeconds >= 0) summary.addSpan(prevCents, Math.max(prevSeconds, sinceSeconds), seconds);
+        summary.addPoint(seconds, cents, prevSeconds >= 0 ? prevCents : cents);
+      }
+      prevSeconds = seconds;
+      prevCents   = cents;
+    }
+    summary.addSpan(prevCents, Math.max(prevSeconds, sinceSeconds), nowSeconds);
+    summary.addCurrent(prevCents);
+  }
+
+  /**
+   * @return The number of points
+   */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * @return The encoded size in bytes
+   */
+  public synchronized int getLength() {
+    return length;
+  }
+
+  /**
+   * @return When the first point was observed, in epoch seconds
+   */
+  public synchronized long getFirstSeconds() {
+    return firstSeconds;
+  }
+
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static int writeVarLong(byte[] buffer, int pos, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer[pos++] = (byte)((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[pos++] = (byte)value;
+    return pos;
+  }
+
+  /**
+   * @return The number of bytes written
+   */
+  static int writeVarLong(OutputStream out, long value) throws IOException {
+    int written = 1;
+    while ((value & ~0x7FL) != 0) {
+      out.write((int)((value & 0x7F) | 0x80));
+      value >>>= 7;
+      written++;
+    }
+    out.write((int)value);
+    return written;
+  }
+
+  private static long readVarLong(byte[] buffer, int[] position) {
+    long value = 0;
+    int shift = 0;
+    while (true) {
+      byte next = buffer[position[0]++];
+      value |= (long)(next & 0x7F) << shift;
+      if ((next & 0x80) == 0) return value;
+      shift += 7;
+    }
+  }
+
+  static long readVarLong(InputStream in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    while (true) {
+      int next = in.read();
+      if (next < 0) throw new EOFException("The price history point was cut short");
+      value |= (long)(next & 0x7F) << shift;
+      if ((next & 0x80) == 0) return value;
+      if ((shift += 7) > 63) throw new IOException("The price history point is corrupt");
+    }
+  }
+}
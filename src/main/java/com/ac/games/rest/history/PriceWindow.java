@@ -0,0 +1,105 @@
+package com.ac.games.rest.history;
+
+/**
+ * The price history of a game's vendor listings over one window (the last 30 days, say),
+ * summarized across every listing.
+ * <p>
+ * The average is weighted by how long each price was in effect, so a price that held for a month
+ * counts for more than one that lasted an afternoon.  Prices are in dollars, and -1.0 when no
+ * listing had a known price in the window.
+ *
+ * @author ac010168
+ */
+public class PriceWindow {
+
+  private int days;
+  private long minCents       = -1;
+  private long currentCents   = -1;
+  private long lastChangeSeconds;
+  private int  changes;
+  private double weightedCents;
+  private long weightSeconds;
+
+  public PriceWindow() {
+  }
+
+  /**
+   * @param days The length of the window
+   */
+  public PriceWindow(int days) {
+    this.days = days;
+  }
+
+  void addSpan(long cents, long startSeconds, long endSeconds) {
+    if ((cents < 0) || (endSeconds <= startSeconds)) return;
+    if ((minCents < 0) || (cents < minCents)) minCents = cents;
+    weightedCents += (double)cents * (endSeconds - startSeconds);
+    weightSeconds += endSeconds - startSeconds;
+  }
+
+  void addPoint(long seconds, long cents, long prevCents) {
+    if ((cents >= 0) && ((minCents < 0) || (cents < minCents))) minCents = cents;
+    if (cents != prevCents) {
+      changes++;
+      if (seconds > lastChangeSeconds) lastChangeSeconds = seconds;
+    }
+  }
+
+  void addCurrent(long cents) {
+    if ((cents >= 0) && ((currentCents < 0) || (cents < currentCents))) currentCents = cents;
+  }
+
+  /**
+   * @return the length of the window in days
+   */
+  public int getDays() {
+    return days;
+  }
+
+  /**
+   * @return the lowest price seen in the window
+   */
+  public double getMinPrice() {
+    return toDollars(minCents);
+  }
+
+  /**
+   * @return the time weighted average price over the window
+   */
+  public double getAvgPrice() {
+    if (weightSeconds == 0) return -1.0;
+    return Math.round(weightedCents / weightSeconds) / 100.0;
+  }
+
+  /**
+   * @return the lowest price across the listings right now
+   */
+  public double getCurrentPrice() {
+    return toDollars(currentCents);
+  }
+
+  /**
+   * @return when a listing's price last changed in the window, in epoch millis, or 0 if it didn't
+   */
+  public long getLastChangeMillis() {
+    return lastChangeSeconds * 1000L;
+  }
+
+  /**
+   * @return the number of price changes in the window
+   */
+  public int getChanges() {
+    return changes;
+  }
+
+  /**
+   * @return true if the current price is at or below the window's average, a fair hint it's a good price
+   */
+  public boolean isGoodPrice() {
+    return (currentCents >= 0) && (weightSeconds > 0) && (currentCents <= Math.round(weightedCents / weightSeconds));
+  }
+
+  private static double toDollars(long cents) {
+    return (cents < 0) ? -1.0 : cents / 100.0;
+  }
+}
@@ -0,0 +1,410 @@
+package com.ac.games.rest.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CompactSearchData;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.data.NameMatch;
+
+/**
+ * This class holds the shared {@link TrigramIndex} instances for the four title sources
+ * (Game, BGG, CSI and MM) and keeps them current as records are written.
+ * <p>
+ * The indexes are built from the same name lists that back the autocomplete requests, with
+ * all four sources loaded in parallel.  The Game values don't carry their gameID, so that source
+ * is loaded as compact records instead, which lets a rename drop the old value.  After that, the controllers push individual changes
+ * through the index* and remove* methods so we never need to reload the full lists.  The
+ * build itself always runs in the background, and the request threads never wait on it.
+ *
+ * @author ac010168
+ */
+public class NameSearchIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(NameSearchIndex.class);
+
+  public static final String GAME_SOURCE = "game";
+  public static final String BGG_SOURCE  = "bgg";
+  public static final String CSI_SOURCE  = "csi";
+  public static final String MM_SOURCE   = "mm";
+
+  /** The default number of matches returned from a search */
+  public static final int DEFAULT_LIMIT = 10;
+
+  /** How long after a failed build before a request can start another one */
+  public static long retryMillis = Long.getLong("games.index.retryMillis", 30000L);
+
+  private volatile TrigramIndex gameIndex;
+  private volatile TrigramIndex bggIndex;
+  private volatile TrigramIndex csiIndex;
+  private volatile TrigramIndex mmIndex;
+
+  /** id -> current display value, so we can drop the old value when a record is renamed */
+  private final Map<Long, String> gameValues;
+  private final Map<Long, String> bggValues;
+  private final Map<Long, String> csiValues;
+  private final Map<Long, String> mmValues;
+
+  private volatile boolean built;
+  private volatile long lastAttempt;
+  private final AtomicBoolean building;
+
+  public NameSearchIndex() {
+    gameIndex   = new TrigramIndex(GAME_SOURCE);
+    bggIndex    = new TrigramIndex(BGG_SOURCE);
+    csiIndex    = new TrigramIndex(CSI_SOURCE);
+    mmIndex     = new TrigramIndex(MM_SOURCE);
+    gameValues  = new ConcurrentHashMap<Long, String>();
+    bggValues   = new ConcurrentHashMap<Long, String>();
+    csiValues   = new ConcurrentHashMap<Long, String>();
+    mmValues    = new ConcurrentHashMap<Long, String>();
+    built       = false;
+    lastAttempt = 0;
+    building    = new AtomicBoolean(false);
+  }
+
+  /**
+   * @return true if the indexes have been loaded from the database
+   */
+  public boolean isBuilt() {
+    return built;
+  }
+
+  /**
+   * Start a background build if the index has not been built yet.  Safe to call on every
+   * request; it never waits for the build, so until it finishes searches run against whatever
+   * the indexes hold now (just the records written since startup).  Only one build runs at a
+   * time, and after a failed build the next one waits {@link #retryMillis}.
+   *
+   * @param database The database to load the name lists from
+   */
+  public void ensureBuilt(GamesDatabase database) {
+    if (!built && (System.currentTimeMillis() - lastAttempt >= retryMillis))
+      startBuild(database);
+  }
+
+  /**
+   * Kick off the index build on a background thread, so neither startup nor the request
+   * that noticed the missing index is held up by it.
+   *
+   * @param database The database to load the name lists from
+   */
+  public void startBuild(final GamesDatabase database) {
+    if (!building.compareAndSet(false, true)) return;
+    Thread buildThread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          build(database);
+        } finally {
+          building.set(false);
+        }
+      }
+    }, "name-index-build");
+    buildThread.setDaemon(true);
+    buildThread.start();
+  }
+
+  /**
+   * Load all four name sources from the database in parallel, and replace the current indexes.
+   * <p>
+   * Writes that land while the build is running may be missed, but they will be picked up
+   * the next time the record is written.
+   *
+   * @param database The database to load the name lists from
+   *
+   * @return true if every source loaded successfully
+   */
+  public synchronized boolean build(final GamesDatabase database) {
+    if (built) return true;
+    if (database == null) return false;
+    lastAttempt = System.currentTimeMillis();
+
+    long startTime = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<TrigramIndex> gameFuture = executor.submit(new Callable<TrigramIndex>() {
+        public TrigramIndex call() throws Exception {
+          return buildGameIndex(database);
+        }
+      });
+      Future<TrigramIndex> bggFuture = executor.submit(new Callable<TrigramIndex>() {
+        public TrigramIndex call() throws Exception {
+          return buildIndex(BGG_SOURCE, database.readBGGGameNamesForAutoComplete(), bggValues);
+        }
+      });
+      Future<TrigramIndex> csiFuture = executor.submit(new Callable<TrigramIndex>() {
+        public TrigramIndex call() throws Exception {
+          return buildIndex(CSI_SOURCE, database.readCSITitlesForAutoComplete(), csiValues);
+        }
+      });
+      Future<TrigramIndex> mmFuture = executor.submit(new Callable<TrigramIndex>() {
+        public TrigramIndex call() throws Exception {
+          return buildIndex(MM_SOURCE, database.readMMTitlesForAutoComplete(), mmValues);
+        }
+      });
+
+      gameIndex = gameFuture.get();
+      bggIndex  = bggFuture.get();
+      csiIndex  = csiFuture.get();
+      mmIndex   = mmFuture.get();
+      built     = true;
+
+      logger.info("Name index built in {}ms (game={}, bgg={}, csi={}, mm={})", (System.currentTimeMillis() - startTime), gameIndex.size(), bggIndex.size(), csiIndex.size(), mmIndex.size());
+      return true;
+    } catch (Throwable t) {
+      logger.error("Unable to build the name index...", t);
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Run a fuzzy search against a single source.
+   *
+   * @param source One of game, bgg, csi or mm
+   * @param query The text to search for
+   * @param limit The maximum number of matches to return
+   *
+   * @return The list of matches, best first.  Never null.
+   */
+  public List<NameMatch> search(String source, String query, int limit) {
+    TrigramIndex index = getIndex(source);
+    if (index == null)
+      return new ArrayList<NameMatch>(0);
+    return index.search(query, limit, TrigramIndex.DEFAULT_MIN_SCORE);
+  }
+
+  /**
+   * Run a fuzzy search against all four sources, and merge the results.
+   *
+   * @param query The text to search for
+   * @param limit The maximum number of matches to return
+   *
+   * @return The list of matches, best first.  Never null.
+   */
+  public List<NameMatch> searchAll(String query, int limit) {
+    List<NameMatch> matches = new ArrayList<NameMatch>();
+    matches.addAll(gameIndex.search(query, limit, TrigramIndex.DEFAULT_MIN_SCORE));
+    matches.addAll(bggIndex.search(query, limit, TrigramIndex.DEFAULT_MIN_SCORE));
+    matches.addAll(csiIndex.search(query, limit, TrigramIndex.DEFAULT_MIN_SCORE));
+    matches.addAll(mmIndex.search(query, limit, TrigramIndex.DEFAULT_MIN_SCORE));
+    Collections.sort(matches);
+    if (matches.size() > limit)
+      return new ArrayList<NameMatch>(matches.subList(0, limit));
+    return matches;
+  }
+
+  /**
+   * @param game The game to add or refresh in the index
+   */
+  public void indexGame(Game game) {
+    if ((game == null) || (game.getName() == null)) return;
+    replaceValue(gameIndex, gameValues, game.getGameID(), formatGameValue(game));
+  }
+
+  /**
+   * @param game The game to remove from the index
+   */
+  public void removeGame(Game game) {
+    if (game == null) return;
+    String oldValue = gameValues.remove(game.getGameID());
+    if (oldValue != null) gameIndex.remove(oldValue);
+    if (game.getName() != null) gameIndex.remove(formatGameValue(game));
+  }
+
+  /**
+   * @param game The BGG game to add or refresh in the index
+   */
+  public void indexBGGGame(BGGGame game) {
+    if ((game == null) || (game.getName() == null)) return;
+    replaceValue(bggIndex, bggValues, game.getBggID(), formatBGGValue(game));
+  }
+
+  /**
+   * @param bggID The bggID to remove from the index
+   */
+  public void removeBGGGame(long bggID) {
+    String oldValue = bggValues.remove(bggID);
+    if (oldValue != null) bggIndex.remove(oldValue);
+  }
+
+  /**
+   * @param data The CSI listing to add or refresh in the index
+   */
+  public void indexCSIData(CoolStuffIncPriceData data) {
+    if ((data == null) || (data.getTitle() == null)) return;
+    replaceValue(csiIndex, csiValues, data.getCsiID(), formatCSIValue(data));
+  }
+
+  /**
+   * @param csiID The csiID to remove from the index
+   */
+  public void removeCSIData(long csiID) {
+    String oldValue = csiValues.remove(csiID);
+    if (oldValue != null) csiIndex.remove(oldValue);
+  }
+
+  /**
+   * @param data The MM listing to add or refresh in the index
+   */
+  public void indexMMData(MiniatureMarketPriceData data) {
+    if ((data == null) || (data.getTitle() == null)) return;
+    replaceValue(mmIndex, mmValues, data.getMmID(), formatMMValue(data));
+  }
+
+  /**
+   * @param mmID The mmID to remove from the index
+   */
+  public void removeMMData(long mmID) {
+    String oldValue = mmValues.remove(mmID);
+    if (oldValue != null) mmIndex.remove(oldValue);
+  }
+
+  /**
+   * Helper method to build the autocomplete display value for a Game, in the
+   * "gameName (&lt;optional publisher&gt; - &lt;optional year published&gt;)" format.
+   *
+   * @param game The game to format
+   *
+   * @return The display value
+   */
+  public static String formatGameValue(Game game) {
+    String primaryPub = game.getPrimaryPublisher();
+    int yearPublished = game.getYearPublished();
+    if ((primaryPub != null) && (yearPublished > 0))
+      return game.getName() + " (" + primaryPub + " - " + yearPublished + ")";
+    if (primaryPub != null)
+      return game.getName() + " (" + primaryPub + ")";
+    if (yearPublished > 0)
+      return game.getName() + " (" + yearPublished + ")";
+    return game.getName();
+  }
+
+  /**
+   * Helper method to build the autocomplete display value for a BGGGame, in the
+   * "gameName (bggID - &lt;optional year published&gt;)" format.
+   *
+   * @param game The game to format
+   *
+   * @return The display value
+   */
+  public static String formatBGGValue(BGGGame game) {
+    if (game.getYearPublished() > 0)
+      return game.getName() + " (" + game.getBggID() + " - " + game.getYearPublished() + ")";
+    return game.getName() + " (" + game.getBggID() + ")";
+  }
+
+  /**
+   * Helper method to build the autocomplete display value for a CSI listing, in the
+   * "title (csiID - category)" format the database uses.
+   *
+   * @param data The listing to format
+   *
+   * @return The display value
+   */
+  public static String formatCSIValue(CoolStuffIncPriceData data) {
+    if (data.getCategory() != null)
+      return data.getTitle() + " (" + data.getCsiID() + " - " + data.getCategory() + ")";
+    return data.getTitle() + " (" + data.getCsiID() + ")";
+  }
+
+  /**
+   * Helper method to build the autocomplete display value for an MM listing, in the
+   * "title (mmID - category)" format the database uses.
+   *
+   * @param data The listing to format
+   *
+   * @return The display value
+   */
+  public static String formatMMValue(MiniatureMarketPriceData data) {
+    if (data.getCategory() != null)
+      return data.getTitle() + " (" + data.getMmID() + " - " + data.getCategory() + ")";
+    return data.getTitle() + " (" + data.getMmID() + ")";
+  }
+
+  /**
+   * Helper method to pull the source ID out of a "title (id - extra)" display value.
+   *
+   * @param value The display value
+   *
+   * @return The id, or -1 if the value does not carry one.
+   */
+  public static long parseSourceID(String value) {
+    int openParen = value.lastIndexOf("(");
+    if ((openParen == -1) || (!value.endsWith(")")))
+      return -1;
+
+    String filterSubString = value.substring(openParen + 1, value.length() - 1);
+    int splitPos = filterSubString.indexOf(" - ");
+    if (splitPos != -1)
+      filterSubString = filterSubString.substring(0, splitPos);
+    try {
+      return Long.parseLong(filterSubString.trim());
+    } catch (NumberFormatException nfe) {
+      return -1;
+    }
+  }
+
+  private TrigramIndex getIndex(String source) {
+    if (source.equalsIgnoreCase(GAME_SOURCE)) return gameIndex;
+    if (source.equalsIgnoreCase(BGG_SOURCE))  return bggIndex;
+    if (source.equalsIgnoreCase(CSI_SOURCE))  return csiIndex;
+    if (source.equalsIgnoreCase(MM_SOURCE))   return mmIndex;
+    return null;
+  }
+
+  private TrigramIndex buildGameIndex(GamesDatabase database) throws Exception {
+    long maxGameID = database.getMaxGameID();
+    List<CompactSearchData> games = (maxGameID > 0) ? database.readGamesCompact("1-" + maxGameID) : null;
+    TrigramIndex index = new TrigramIndex(GAME_SOURCE);
+    if (games == null) return index;
+
+    List<String> names = new ArrayList<String>(games.size());
+    for (CompactSearchData game : games) {
+      if ((game == null) || (game.getDisplayString() == null)) continue;
+      names.add(game.getDisplayString());
+      gameValues.put(game.getSourceID(), game.getDisplayString());
+    }
+    index.addAll(names);
+    return index;
+  }
+
+  private static TrigramIndex buildIndex(String source, List<String> names, Map<Long, String> idValues) {
+    TrigramIndex index = new TrigramIndex(source);
+    if (names == null) return index;
+
+    index.addAll(names);
+    if (idValues != null) {
+      for (String value : names) {
+        if (value == null) continue;
+        long sourceID = parseSourceID(value);
+        if (sourceID != -1)
+          idValues.put(sourceID, value);
+      }
+    }
+    return index;
+  }
+
+  private static void replaceValue(TrigramIndex index, Map<Long, String> idValues, long id, String newValue) {
+    String oldValue = idValues.put(id, newValue);
+    if ((oldValue != null) && (!oldValue.equals(newValue)))
+      index.remove(oldValue);
+    index.add(newValue);
+  }
+}
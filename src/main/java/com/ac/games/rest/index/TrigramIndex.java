@@ -0,0 +1,330 @@
+package com.ac.games.rest.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.ac.games.rest.data.NameMatch;
+
+/**
+ * A simple in-memory trigram index used to perform typo-tolerant lookups against a list of
+ * display values (the same values we hand out for autocomplete).
+ * <p>
+ * Each value is broken down into padded, lower-cased 3 character grams.  Queries are scored
+ * using the Dice coefficient between the query grams and the value grams, so "Twilght Imperium"
+ * still finds "Twilight Imperium".
+ * <p>
+ * Reads are done under a shared lock, so any number of requests can search at once.  Writes
+ * (add/remove) take the exclusive lock, but they only touch the postings for a single value.
+ *
+ * @author ac010168
+ */
+public class TrigramIndex {
+
+  /** The maximum number of candidate values we will score for a single query */
+  public static final int MAX_CANDIDATES = 2048;
+  /** Queries longer than this are truncated before we break them into grams */
+  public static final int MAX_QUERY_LENGTH = 64;
+  /** The default minimum Dice score a value needs to be considered a match */
+  public static final double DEFAULT_MIN_SCORE = 0.35;
+
+  /** Hash table size for the candidate counters.  Must be a power of 2, and at least 2x MAX_CANDIDATES */
+  private static final int CANDIDATE_TABLE_SIZE = 4096;
+
+  private final String source;
+  private final ReentrantReadWriteLock lock;
+
+  /** docID -> display value, null if the value has been removed */
+  private final List<String> values;
+  /** docID -> number of distinct grams in the value */
+  private int[] gramCounts;
+  /** display value -> docID */
+  private final Map<String, Integer> docIDs;
+  /** packed gram -> postings list of docIDs */
+  private final Map<Long, IntList> postings;
+
+  private int removedCount;
+
+  public TrigramIndex(String source) {
+    this.source  = source;
+    lock         = new ReentrantReadWriteLock();
+    values       = new ArrayList<String>();
+    gramCounts   = new int[1024];
+    docIDs       = new HashMap<String, Integer>();
+    postings     = new HashMap<Long, IntList>();
+    removedCount = 0;
+  }
+
+  /**
+   * Add a display value to the index.  Values already in the index are ignored.
+   *
+   * @param value The display value, typically in the form "name (id - extra)"
+   */
+  public void add(String value) {
+    if (value == null) return;
+    lock.writeLock().lock();
+    try {
+      addInternal(value);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Add a full list of display values to the index in one pass.
+   *
+   * @param newValues The list of values to add.
+   */
+  public void addAll(List<String> newValues) {
+    if (newValues == null) return;
+    lock.writeLock().lock();
+    try {
+      for (String value : newValues)
+        if (value != null) addInternal(value);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a display value from the index, if it exists.
+   *
+   * @param value The display value to remove
+   */
+  public void remove(String value) {
+    if (value == null) return;
+    lock.writeLock().lock();
+    try {
+      Integer docID = docIDs.remove(value);
+      if (docID == null) return;
+      values.set(docID, null);
+      removedCount++;
+
+      //Postings are cleaned lazily.  Once enough dead entries pile up, rebuild them.
+      if ((removedCount > 1024) && (removedCount > (values.size() / 4)))
+        compact();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return the number of live values currently in the index
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return docIDs.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Run a similarity search against this index.
+   *
+   * @param query The text the user typed in
+   * @param limit The maximum number of matches to return
+   * @param minScore The minimum similarity score (0.0 - 1.0) a value must have to be returned
+   *
+   * @return The list of matches, best first.  Never null.
+   */
+  public List<NameMatch> search(String query, int limit, double minScore) {
+    long[] queryGrams = extractGrams(query, MAX_QUERY_LENGTH);
+    if ((queryGrams.length == 0) || (limit <= 0))
+      return new ArrayList<NameMatch>(0);
+
+    int[] candDocs   = new int[CANDIDATE_TABLE_SIZE];
+    int[] candCounts = new int[CANDIDATE_TABLE_SIZE];
+    Arrays.fill(candDocs, -1);
+    int candidateCount = 0;
+
+    List<NameMatch> matches = new ArrayList<NameMatch>();
+    lock.readLock().lock();
+    try {
+      //Walk the rarest grams first, so if we hit the candidate cap the candidates we kept
+      //are the most selective ones.
+      IntList[] lists = new IntList[queryGrams.length];
+      for (int i = 0; i < queryGrams.length; i++)
+        lists[i] = postings.get(queryGrams[i]);
+      sortBySize(lists);
+
+      for (IntList list : lists) {
+        if (list == null) continue;
+        for (int p = 0; p < list.size; p++) {
+          int docID = list.data[p];
+          int slot  = (docID * 0x9E3779B1) & (CANDIDATE_TABLE_SIZE - 1);
+          while ((candDocs[slot] != -1) && (candDocs[slot] != docID))
+            slot = (slot + 1) & (CANDIDATE_TABLE_SIZE - 1);
+
+          if (candDocs[slot] == docID)
+            candCounts[slot]++;
+          else if (candidateCount < MAX_CANDIDATES) {
+            candDocs[slot]   = docID;
+            candCounts[slot] = 1;
+            candidateCount++;
+          }
+        }
+      }
+
+      for (int slot = 0; slot < CANDIDATE_TABLE_SIZE; slot++) {
+        int docID = candDocs[slot];
+        if (docID == -1) continue;
+        String value = values.get(docID);
+        if (value == null) continue;
+
+        double score = (2.0 * candCounts[slot]) / (queryGrams.length + gramCounts[docID]);
+        if (score >= minScore)
+          matches.add(new NameMatch(source, value, score));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    Collections.sort(matches);
+    if (matches.size() > limit)
+      return new ArrayList<NameMatch>(matches.subList(0, limit));
+    return matches;
+  }
+
+  /**
+   * Helper method to strip a display value down to the name part that we actually want to
+   * match against.  The "(id - extra)" suffix only adds noise to the grams.
+   *
+   * @param value The display value
+   *
+   * @return The name portion of the value
+   */
+  public static String extractName(String value) {
+    int openParen = value.lastIndexOf(" (");
+    if ((openParen > 0) && value.endsWith(")"))
+      return value.substring(0, openParen);
+    return value;
+  }
+
+  /**
+   * Break the provided text into a sorted, distinct array of packed trigrams.  Each word is
+   * padded with two leading spaces and one trailing space, so short words and word starts
+   * still produce grams.
+   *
+   * @param text The text to break down
+   * @param maxLength The maximum number of characters to consider, or -1 for no limit
+   *
+   * @return The packed grams
+   */
+  static long[] extractGrams(String text, int maxLength) {
+    if (text == null) return new long[0];
+    int length = text.length();
+    if ((maxLength > 0) && (length > maxLength)) length = maxLength;
+
+    long[] grams = new long[(length * 2) + 4];
+    int gramCount = 0;
+
+    //c0, c1 are the two previous characters in the current word, using ' ' as the pad
+    char c0 = ' ';
+    char c1 = ' ';
+    boolean inWord = false;
+    for (int i = 0; i <= length; i++) {
+      char c = (i < length) ? Character.toLowerCase(text.charAt(i)) : ' ';
+      boolean isWordChar = Character.isLetterOrDigit(c);
+      if (isWordChar) {
+        if (!inWord) {
+          c0 = ' ';
+          c1 = ' ';
+          inWord = true;
+        }
+        grams[gramCount++] = packGram(c0, c1, c);
+        c0 = c1;
+        c1 = c;
+      } else if (inWord) {
+        grams[gramCount++] = packGram(c0, c1, ' ');
+        inWord = false;
+      }
+    }
+
+    if (gramCount == 0) return new long[0];
+    Arrays.sort(grams, 0, gramCount);
+    int distinct = 1;
+    for (int i = 1; i < gramCount; i++) {
+      if (grams[i] != grams[distinct - 1])
+        grams[distinct++] = grams[i];
+    }
+    return Arrays.copyOf(grams, distinct);
+  }
+
+  private static long packGram(char c0, char c1, char c2) {
+    return (((long)c0) << 32) | (((long)c1) << 16) | ((long)c2);
+  }
+
+  private void addInternal(String value) {
+    if (docIDs.containsKey(value)) return;
+
+    int docID = values.size();
+    long[] grams = extractGrams(extractName(value), -1);
+
+    values.add(value);
+    docIDs.put(value, docID);
+    if (docID >= gramCounts.length)
+      gramCounts = Arrays.copyOf(gramCounts, gramCounts.length * 2);
+    gramCounts[docID] = grams.length;
+
+    for (long gram : grams) {
+      IntList list = postings.get(gram);
+      if (list == null) {
+        list = new IntList();
+        postings.put(gram, list);
+      }
+      list.add(docID);
+    }
+  }
+
+  /**
+   * Rebuild the postings with only the live values.  Must be called under the write lock.
+   */
+  private void compact() {
+    List<String> liveValues = new ArrayList<String>(docIDs.size());
+    for (String value : values)
+      if (value != null) liveValues.add(value);
+
+    values.clear();
+    docIDs.clear();
+    postings.clear();
+    gramCounts   = new int[Math.max(1024, liveValues.size())];
+    removedCount = 0;
+
+    for (String value : liveValues)
+      addInternal(value);
+  }
+
+  private static void sortBySize(IntList[] lists) {
+    //Simple insertion sort, the query never has more than a few dozen grams
+    for (int i = 1; i < lists.length; i++) {
+      IntList cur = lists[i];
+      int curSize = (cur == null) ? 0 : cur.size;
+      int j = i - 1;
+      while ((j >= 0) && (((lists[j] == null) ? 0 : lists[j].size) > curSize)) {
+        lists[j + 1] = lists[j];
+        j--;
+      }
+      lists[j + 1] = cur;
+    }
+  }
+
+  /**
+   * Minimal growable int array, so postings don't box every docID.
+   */
+  private static class IntList {
+    int[] data = new int[4];
+    int size   = 0;
+
+    void add(int value) {
+      if (size == data.length)
+        data = Arrays.copyOf(data, size * 2);
+      data[size++] = value;
+    }
+  }
+}
@@ -0,0 +1,313 @@
+package com.ac.games.rest.link;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.GameReltn;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.database.LongObjectMap;
+
+/**
+ * The links between Games and their vendor listings, held both ways: gameID to the
+ * {@link VendorLinks} of its GameReltn, and csiID, mmID and asin back to the gameID.
+ * <p>
+ * The GameReltn writes go through here ({@link #insert}, {@link #update} and {@link #delete}).
+ * Each one writes to the database first, with no lock held, and then changes the index under the
+ * index's lock.  If another write ran alongside it, the two may have landed in either order, so
+ * the game is dropped from the index instead and read back from the database when it's next
+ * asked for.  Reads are lock-free.  A Game we haven't seen yet is read through from the database,
+ * and kept unless a write raced the read.
+ * <p>
+ * The listing to Game lookups only know about the GameReltns we've seen, so a miss is only
+ * final once {@link #load} has been through every Game ({@link #isComplete()}).
+ *
+ * @author ac010168
+ */
+public class VendorLinkIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(VendorLinkIndex.class);
+
+  /** How many times a load retries a read that raced a write */
+  private static final int LOAD_ATTEMPTS = 3;
+
+  private final LongObjectMap<VendorLinks> linksByGame;
+  private final LongObjectMap<Long> gameByReltn;
+  private final LongObjectMap<Long> gameByCSI;
+  private final LongObjectMap<Long> gameByMM;
+  private final ConcurrentHashMap<String, Long> gameByASIN;
+  /** Bumped before and after every write, so links read from the database while a write ran aren't kept */
+  private final AtomicLong writeCount;
+  /** How many games were dropped after overlapping writes.  Guarded by the lock */
+  private long dropCount;
+  private volatile boolean complete;
+
+  public VendorLinkIndex() {
+    linksByGame = new LongObjectMap<VendorLinks>(4096);
+    gameByReltn = new LongObjectMap<Long>(4096);
+    gameByCSI   = new LongObjectMap<Long>(4096);
+    gameByMM    = new LongObjectMap<Long>(4096);
+    gameByASIN  = new ConcurrentHashMap<String, Long>();
+    writeCount  = new AtomicLong();
+  }
+
+  /**
+   * @param database The database to read the GameReltn from if we haven't seen it yet
+   * @param gameID The game
+   *
+   * @return The game's vendor links, or null if it has no GameReltn
+   */
+  public VendorLinks getLinks(GamesDatabase database, long gameID) throws ConfigurationException, DatabaseOperationException {
+    VendorLinks links = linksByGame.get(gameID);
+    if (links != null) return links;
+
+    long writesBefore = getWriteCount();
+    GameReltn reltn = database.readGameReltn(gameID);
+    if (reltn == null) return null;
+    links = new VendorLinks(reltn);
+    keep(links, writesBefore);
+    return links;
+  }
+
+  /**
+   * Read the whole GameReltn from the database, refreshing its links on the way.
+   *
+   * @param database The database
+   * @param gameID The game
+   *
+   * @return The GameReltn, or null if there isn't one
+   */
+  public GameReltn readGameReltn(GamesDatabase database, long gameID) throws ConfigurationException, DatabaseOperationException {
+    long writesBefore = getWriteCount();
+    GameReltn reltn = database.readGameReltn(gameID);
+    if (reltn != null) keep(new VendorLinks(reltn), writesBefore);
+    return reltn;
+  }
+
+  /**
+   * @param csiID The CSI listing
+   *
+   * @return The gameID it's linked to, or -1 if it isn't linked to one we know of
+   */
+  public long getGameForCSI(long csiID) {
+    return toGameID(gameByCSI.get(csiID));
+  }
+
+  /**
+   * @param mmID The MM listing
+   *
+   * @return The gameID it's linked to, or -1 if it isn't linked to one we know of
+   */
+  public long getGameForMM(long mmID) {
+    return toGameID(gameByMM.get(mmID));
+  }
+
+  /**
+   * @param asin The Amazon key
+   *
+   * @return The gameID it's linked to, or -1 if it isn't linked to one we know of
+   */
+  public long getGameForASIN(String asin) {
+    return (asin == null) ? -1 : toGameID(gameByASIN.get(asin));
+  }
+
+  /**
+   * @return true once every GameReltn has been loaded, so a lookup miss means the listing isn't linked
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * @return The number of Games held
+   */
+  public int size() {
+    return linksByGame.size();
+  }
+
+  /**
+   * Insert the GameReltn, and index its links once the insert has landed.
+   */
+  public void insert(GamesDatabase database, GameReltn reltn) throws ConfigurationException, DatabaseOperationException {
+    long started = writeCount.incrementAndGet();
+    database.insertGameReltn(reltn);
+    written(new VendorLinks(reltn), started);
+  }
+
+  /**
+   * Update the GameReltn, and index its links once the update has landed.
+   */
+  public void update(GamesDatabase database, GameReltn reltn) throws ConfigurationException, DatabaseOperationException {
+    long started = writeCount.incrementAndGet();
+    database.updateGameReltn(reltn);
+    written(new VendorLinks(reltn), started);
+  }
+
+  /**
+   * Delete the GameReltn, and drop its links once the delete has landed.
+   */
+  public void delete(GamesDatabase database, long reltnID) throws ConfigurationException, DatabaseOperationException {
+    long started = writeCount.incrementAndGet();
+    database.deleteGameReltn(reltnID);
+    deleted(reltnID, started);
+  }
+
+  /**
+   * Read every GameReltn, newest Game first, so the listing lookups are complete.
+   *
+   * @param database The database
+   * @param deadline When to stop, as a currentTimeMillis
+   *
+   * @return The number of GameReltns loaded
+   */
+  public int load(GamesDatabase database, long deadline) throws ConfigurationException, DatabaseOperationException {
+    long startTime = System.currentTimeMillis();
+    long dropsBefore = getDropCount();
+    boolean missed = false;
+    int loaded = 0;
+    long gameID;
+    for (gameID = database.getMaxGameID(); (gameID > 0) && (System.currentTimeMillis() <= deadline); gameID--) {
+      if (linksByGame.get(gameID) != null) { loaded++; continue; }
+      boolean kept = false;
+      GameReltn reltn = null;
+      for (int attempt = 0; (attempt < LOAD_ATTEMPTS) && !kept; attempt++) {
+        long writesBefore = getWriteCount();
+        reltn = database.readGameReltn(gameID);
+        kept = (reltn == null) || keep(new VendorLinks(reltn), writesBefore);
+      }
+      if (!kept) missed = true;
+      else if (reltn != null) loaded++;
+    }
+    synchronized (this) {
+      //A game dropped after overlapping writes could be one we had already been through
+      complete = (gameID == 0) && !missed && (dropCount == dropsBefore);
+    }
+    logger.info("Loaded the vendor links of {} games in {}ms{}", loaded, System.currentTimeMillis() - startTime,
+                (complete ? "" : ", not all of them"));
+    return loaded;
+  }
+
+  /**
+   * Drop everything, so it's read back from the database as it's asked for.
+   */
+  public synchronized void clear() {
+    writeCount.incrementAndGet();
+    complete = false;
+    linksByGame.clear();
+    gameByReltn.clear();
+    gameByCSI.clear();
+    gameByMM.clear();
+    gameByASIN.clear();
+  }
+
+  private long getWriteCount() {
+    return writeCount.get();
+  }
+
+  private synchronized long getDropCount() {
+    return dropCount;
+  }
+
+  private synchronized boolean keep(VendorLinks links, long writesBefore) {
+    if (writeCount.get() != writesBefore) return false;
+    replace(links);
+    return true;
+  }
+
+  /**
+   * Index the links of an insert or update that has landed, unless another write ran alongside it.
+   *
+   * @param links The links that were written
+   * @param started The write count taken as the write started
+   */
+  private synchronized void written(VendorLinks links, long started) {
+    if (writeCount.incrementAndGet() == started + 1) {
+      replace(links);
+    } else {
+      unlink(linksByGame.remove(links.getGameID()), null);
+      dropped();
+    }
+  }
+
+  /**
+   * Drop the links of a delete that has landed.
+   *
+   * @param reltnID The GameReltn that was deleted
+   * @param started The write count taken as the delete started
+   */
+  private synchronized void deleted(long reltnID, long started) {
+    boolean alone = (writeCount.incrementAndGet() == started + 1);
+    Long gameID = gameByReltn.remove(reltnID);
+    if (gameID != null) unlink(linksByGame.remove(gameID), null);
+    if (!alone) dropped();
+  }
+
+  /**
+   * A game's links were dropped rather than indexed, so a listing lookup miss isn't final any more.
+   * Callers hold the lock.
+   */
+  private void dropped() {
+    dropCount++;
+    complete = false;
+  }
+
+  /**
+   * Swap in the game's links, and repoint the listings at it.  Callers hold the lock.
+   */
+  private void replace(VendorLinks links) {
+    //One boxed gameID shared by every listing of the game
+    Long gameID = Long.valueOf(links.getGameID());
+    VendorLinks oldLinks = linksByGame.put(gameID, links);
+    gameByReltn.put(links.getReltnID(), gameID);
+    for (long csiID : links.csiIDArray())    gameByCSI.put(csiID, gameID);
+    for (long mmID : links.mmIDArray())      gameByMM.put(mmID, gameID);
+    for (String asin : links.asinKeyArray()) gameByASIN.put(asin, gameID);
+    //Only now drop the listings that went away, so the ones that stayed are never missing
+    unlink(oldLinks, links);
+  }
+
+  /**
+   * Take away the listings that still point at the old links' game, other than the ones it
+   * keeps.  Callers hold the lock.
+   *
+   * @param oldLinks The links being dropped, or null
+   * @param newLinks The links replacing them, or null if the game has none now
+   */
+  private void unlink(VendorLinks oldLinks, VendorLinks newLinks) {
+    if (oldLinks == null) return;
+    long gameID = oldLinks.getGameID();
+    if ((newLinks == null) || (newLinks.getReltnID() != oldLinks.getReltnID())) {
+      Long reltnGameID = gameByReltn.get(oldLinks.getReltnID());
+      if ((reltnGameID != null) && (reltnGameID == gameID)) gameByReltn.remove(oldLinks.getReltnID());
+    }
+    for (long csiID : oldLinks.csiIDArray())
+      if ((getGameForCSI(csiID) == gameID) && ((newLinks == null) || !contains(newLinks.csiIDArray(), csiID)))
+        gameByCSI.remove(csiID);
+    for (long mmID : oldLinks.mmIDArray())
+      if ((getGameForMM(mmID) == gameID) && ((newLinks == null) || !contains(newLinks.mmIDArray(), mmID)))
+        gameByMM.remove(mmID);
+    for (String asin : oldLinks.asinKeyArray())
+      if ((getGameForASIN(asin) == gameID) && ((newLinks == null) || !contains(newLinks.asinKeyArray(), asin)))
+        gameByASIN.remove(asin);
+  }
+
+  private static boolean contains(long[] ids, long id) {
+    for (long curID : ids)
+      if (curID == id) return true;
+    return false;
+  }
+
+  private static boolean contains(String[] keys, String key) {
+    for (String curKey : keys)
+      if (curKey.equals(key)) return true;
+    return false;
+  }
+
+  private static long toGameID(Long gameID) {
+    return (gameID == null) ? -1 : gameID;
+  }
+}
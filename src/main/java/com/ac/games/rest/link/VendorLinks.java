@@ -0,0 +1,110 @@
+package com.ac.games.rest.link;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ac.games.data.GameReltn;
+
+/**
+ * The vendor listings one Game is linked to, as held by the {@link VendorLinkIndex}.
+ * <p>
+ * This is a fixed copy of the GameReltn's csiIDs, mmIDs and asinKeys, so it can be shared by
+ * every request without anyone changing it underneath the others.
+ *
+ * @author ac010168
+ */
+public class VendorLinks {
+
+  private static final long[]   NO_IDS  = new long[0];
+  private static final String[] NO_KEYS = new String[0];
+
+  private final long gameID;
+  private final long reltnID;
+  private final long[] csiIDs;
+  private final long[] mmIDs;
+  private final String[] asinKeys;
+
+  VendorLinks(GameReltn reltn) {
+    gameID   = reltn.getGameID();
+    reltnID  = reltn.getReltnID();
+    csiIDs   = toArray(reltn.getCsiIDs());
+    mmIDs    = toArray(reltn.getMmIDs());
+    asinKeys = (reltn.getAsinKeys() == null) ? NO_KEYS : reltn.getAsinKeys().toArray(new String[reltn.getAsinKeys().size()]);
+  }
+
+  /**
+   * @return the gameID
+   */
+  public long getGameID() {
+    return gameID;
+  }
+
+  /**
+   * @return the reltnID
+   */
+  public long getReltnID() {
+    return reltnID;
+  }
+
+  /**
+   * @return A copy of the linked csiIDs
+   */
+  public List<Long> getCsiIDs() {
+    return toList(csiIDs);
+  }
+
+  /**
+   * @return A copy of the linked mmIDs
+   */
+  public List<Long> getMmIDs() {
+    return toList(mmIDs);
+  }
+
+  /**
+   * @return A copy of the linked asinKeys
+   */
+  public List<String> getAsinKeys() {
+    List<String> keys = new ArrayList<String>(asinKeys.length);
+    for (String key : asinKeys) keys.add(key);
+    return keys;
+  }
+
+  /**
+   * @return A GameReltn holding just the IDs and vendor links, for the code that reads listings
+   * from one
+   */
+  public GameReltn toGameReltn() {
+    GameReltn reltn = new GameReltn();
+    reltn.setGameID(gameID);
+    reltn.setReltnID(reltnID);
+    reltn.setCsiIDs(getCsiIDs());
+    reltn.setMmIDs(getMmIDs());
+    reltn.setAsinKeys(getAsinKeys());
+    return reltn;
+  }
+
+  long[] csiIDArray() {
+    return csiIDs;
+  }
+
+  long[] mmIDArray() {
+    return mmIDs;
+  }
+
+  String[] asinKeyArray() {
+    return asinKeys;
+  }
+
+  private static long[] toArray(List<Long> ids) {
+    if ((ids == null) || ids.isEmpty()) return NO_IDS;
+    long[] array = new long[ids.size()];
+    for (int i = 0; i < array.length; i++) array[i] = ids.get(i);
+    return array;
+  }
+
+  private static List<Long> toList(long[] ids) {
+    List<Long> list = new ArrayList<Long>(ids.length);
+    for (long id : ids) list.add(id);
+    return list;
+  }
+}
@@ -0,0 +1,139 @@
+package com.ac.games.rest.logging;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+/**
+ * An asynchronous appender that never makes the logging thread wait.
+ * <p>
+ * Events go onto a bounded queue, and a single background thread hands them to the attached
+ * appenders.  Unlike logback's AsyncAppender, when the queue is full the event is dropped
+ * (and counted) instead of blocking the request thread until the console catches up.
+ *
+ * @author ac010168
+ */
+public class DroppingAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+  public static final int DEFAULT_QUEUE_SIZE = 8192;
+
+  /** Events dropped across every instance, for anyone who wants to report it */
+  private static final AtomicLong totalDropped = new AtomicLong();
+
+  private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<ILoggingEvent>();
+  private int queueSize = DEFAULT_QUEUE_SIZE;
+  private BlockingQueue<ILoggingEvent> queue;
+  private Thread worker;
+
+  @Override
+  public void start() {
+    if (queueSize < 1) {
+      addError("Invalid queueSize " + queueSize);
+      return;
+    }
+    queue = new ArrayBlockingQueue<ILoggingEvent>(queueSize);
+    worker = new Thread(new Runnable() {
+      public void run() {
+        drain();
+      }
+    }, "async-log-" + getName());
+    worker.setDaemon(true);
+    super.start();
+    worker.start();
+  }
+
+  @Override
+  public void stop() {
+    if (!isStarted()) return;
+    super.stop();
+    worker.interrupt();
+    try {
+      worker.join(1000);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    //Flush whatever the worker didn't get to
+    ILoggingEvent event;
+    while ((event = queue.poll()) != null)
+      appenders.appendLoopOnAppenders(event);
+    appenders.detachAndStopAllAppenders();
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    //Capture the thread name and message now, since they are read later on the worker thread
+    event.prepareForDeferredProcessing();
+    if (!queue.offer(event)) {
+      //Only complain occasionally, the whole point is to not add more work while we're overloaded
+      if (totalDropped.incrementAndGet() % 1000 == 1)
+        addWarn("Log queue full, dropped " + totalDropped.get() + " events so far");
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      try {
+        appenders.appendLoopOnAppenders(queue.take());
+      } catch (InterruptedException ie) {
+        //Stopping, stop() flushes whatever is left
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return The number of events dropped because the queue was full
+   */
+  public static long getTotalDropped() {
+    return totalDropped.get();
+  }
+
+  /**
+   * @return the queueSize
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+   * @param queueSize the queueSize to set
+   */
+  public void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  public void addAppender(Appender<ILoggingEvent> newAppender) {
+    appenders.addAppender(newAppender);
+  }
+
+  public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+    return appenders.iteratorForAppenders();
+  }
+
+  public Appender<ILoggingEvent> getAppender(String name) {
+    return appenders.getAppender(name);
+  }
+
+  public boolean isAttached(Appender<ILoggingEvent> appender) {
+    return appenders.isAttached(appender);
+  }
+
+  public void detachAndStopAllAppenders() {
+    appenders.detachAndStopAllAppenders();
+  }
+
+  public boolean detachAppender(Appender<ILoggingEvent> appender) {
+    return appenders.detachAppender(appender);
+  }
+
+  public boolean detachAppender(String name) {
+    return appenders.detachAppender(name);
+  }
+}
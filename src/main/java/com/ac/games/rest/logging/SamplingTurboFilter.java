@@ -0,0 +1,92 @@
+package com.ac.games.rest.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Keeps only one in every N debug and info events from the configured loggers, so a chatty
+ * request path can stay at debug under load without flooding the log.  Warnings and errors
+ * are never sampled.
+ * <p>
+ * Configured in logback.xml with one <code>&lt;sample&gt;</code> per logger (or package prefix):
+ * <pre>
+ * &lt;turboFilter class="com.ac.games.rest.logging.SamplingTurboFilter"&gt;
+ *   &lt;sample&gt;com.ac.games.rest.controller.BGGDataController=100&lt;/sample&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ * The longest matching prefix wins.
+ *
+ * @author ac010168
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+  /** Marks loggers with no sampling in the lookup cache */
+  private static final Sampler NO_SAMPLER = new Sampler(1);
+
+  private final Map<String, Integer> rates    = new ConcurrentHashMap<String, Integer>();
+  private final Map<String, Sampler> samplers = new ConcurrentHashMap<String, Sampler>();
+
+  /**
+   * @param sample A <code>loggerPrefix=N</code> pair, keeping one in every N events
+   */
+  public void addSample(String sample) {
+    int split = sample.lastIndexOf('=');
+    if (split <= 0) {
+      addError("Invalid sample " + sample + ", expected loggerPrefix=N");
+      return;
+    }
+    try {
+      rates.put(sample.substring(0, split).trim(), Integer.parseInt(sample.substring(split + 1).trim()));
+      samplers.clear();
+    } catch (NumberFormatException nfe) {
+      addError("Invalid sample rate in " + sample);
+    }
+  }
+
+  @Override
+  public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+    //Leave isDebugEnabled() style checks, warnings and errors alone
+    if ((format == null) || (level == null) || level.isGreaterOrEqual(Level.WARN))
+      return FilterReply.NEUTRAL;
+    //Don't count events the logger would have thrown away anyway
+    if (!level.isGreaterOrEqual(logger.getEffectiveLevel()))
+      return FilterReply.NEUTRAL;
+
+    Sampler sampler = samplers.get(logger.getName());
+    if (sampler == null) {
+      sampler = findSampler(logger.getName());
+      samplers.put(logger.getName(), sampler);
+    }
+    if (sampler == NO_SAMPLER)
+      return FilterReply.NEUTRAL;
+    return ((sampler.count.getAndIncrement() % sampler.rate) == 0) ? FilterReply.NEUTRAL : FilterReply.DENY;
+  }
+
+  private Sampler findSampler(String loggerName) {
+    String bestPrefix = null;
+    for (String prefix : rates.keySet()) {
+      if (loggerName.startsWith(prefix) && ((bestPrefix == null) || (prefix.length() > bestPrefix.length())))
+        bestPrefix = prefix;
+    }
+    if (bestPrefix == null) return NO_SAMPLER;
+    int rate = rates.get(bestPrefix);
+    return (rate <= 1) ? NO_SAMPLER : new Sampler(rate);
+  }
+
+  private static class Sampler {
+    final int rate;
+    final AtomicLong count = new AtomicLong();
+
+    Sampler(int rate) {
+      this.rate = rate;
+    }
+  }
+}
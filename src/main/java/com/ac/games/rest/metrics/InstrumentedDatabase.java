@@ -0,0 +1,60 @@
+package com.ac.games.rest.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.Application;
+
+/**
+ * Wraps a {@link GamesDatabase} so every call made on a request thread is counted and timed
+ * on that request's {@link RequestProfile}, and any slow call (from any thread) lands in the
+ * {@link SlowOperationLog}.
+ *
+ * @author ac010168
+ */
+public class InstrumentedDatabase implements InvocationHandler {
+
+  private final GamesDatabase target;
+
+  private InstrumentedDatabase(GamesDatabase target) {
+    this.target = target;
+  }
+
+  /**
+   * @param target The database to wrap
+   *
+   * @return The instrumented database
+   */
+  public static GamesDatabase wrap(GamesDatabase target) {
+    return (GamesDatabase)Proxy.newProxyInstance(GamesDatabase.class.getClassLoader(),
+                                                 new Class<?>[] { GamesDatabase.class }, new InstrumentedDatabase(target));
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    RequestProfile profile = RequestProfile.current();
+    boolean slowLogEnabled = Application.slowOperations.isEnabled();
+    if ((profile == null) && !slowLogEnabled) {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException ite) {
+        throw ite.getCause();
+      }
+    }
+
+    long startTime = System.nanoTime();
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException ite) {
+      throw ite.getCause();
+    } finally {
+      long nanos = System.nanoTime() - startTime;
+      if (profile != null)
+        profile.recordDatabaseCall(method.getName(), nanos);
+      if (slowLogEnabled)
+        Application.slowOperations.recordDatabaseCall(method.getName(), args, nanos);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.ac.games.rest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, log-linear latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values are recorded in microseconds.  Every power of two is split into 32 linear sub-buckets,
+ * so any percentile we report is within about 3% of the true value, and recording is just an
+ * index calculation and one atomic increment.  Values over about 12 days are clamped.
+ *
+ * @author ac010168
+ */
+public class LatencyHistogram {
+
+  private static final int  SUB_BUCKET_BITS = 5;
+  private static final int  SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+  private static final int  MAX_MAGNITUDE   = 40;
+  private static final long MAX_VALUE       = (1L << MAX_MAGNITUDE) - 1;
+  private static final int  BUCKET_COUNT    = SUB_BUCKETS + ((MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+  private final AtomicLongArray counts;
+  private final AtomicLong totalCount;
+  private final AtomicLong totalValue;
+  private final AtomicLong maxValue;
+
+  public LatencyHistogram() {
+    counts     = new AtomicLongArray(BUCKET_COUNT);
+    totalCount = new AtomicLong();
+    totalValue = new AtomicLong();
+    maxValue   = new AtomicLong();
+  }
+
+  /**
+   * @param micros The latency to record, in microseconds
+   */
+  public void record(long micros) {
+    if (micros < 0) micros = 0;
+    if (micros > MAX_VALUE) micros = MAX_VALUE;
+
+    counts.incrementAndGet(bucketIndex(micros));
+    totalCount.incrementAndGet();
+    totalValue.addAndGet(micros);
+
+    long curMax = maxValue.get();
+    while ((micros > curMax) && !maxValue.compareAndSet(curMax, micros))
+      curMax = maxValue.get();
+  }
+
+  /**
+   * @return The number of values recorded
+   */
+  public long getCount() {
+    return totalCount.get();
+  }
+
+  /**
+   * @return The largest value recorded, in microseconds
+   */
+  public long getMax() {
+    return maxValue.get();
+  }
+
+  /**
+   * @return The mean of the recorded values, in microseconds
+   */
+  public double getMean() {
+    long count = totalCount.get();
+    return (count == 0) ? 0.0 : totalValue.get() / (double)count;
+  }
+
+  /**
+   * The value at the given percentile.  Values recorded while this runs may or may not be
+   * included, which is fine for reporting.
+   *
+   * @param percentile The percentile, from 0 to 100
+   *
+   * @return The highest value in the bucket holding that percentile, in microseconds
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = totalCount.get();
+    if (count == 0) return 0;
+
+    long target = Math.max(1, (long)Math.ceil((percentile / 100.0) * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= target)
+        return Math.min(bucketUpperBound(i), maxValue.get());
+    }
+    return maxValue.get();
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) return (int)value;
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int shift = magnitude - SUB_BUCKET_BITS;
+    int subBucket = (int)((value >>> shift) & (SUB_BUCKETS - 1));
+    return SUB_BUCKETS + (shift * SUB_BUCKETS) + subBucket;
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) return index;
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    long lowerBound = ((long)(SUB_BUCKETS + subBucket)) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
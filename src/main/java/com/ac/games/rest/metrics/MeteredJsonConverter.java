@@ -0,0 +1,124 @@
+package com.ac.games.rest.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.ac.games.rest.message.SimpleErrorData;
+
+/**
+ * The standard Jackson converter, but it also notes on the {@link RequestProfile} whether the
+ * controller handed back a {@link SimpleErrorData}, how many bytes of JSON were written, and
+ * how long serialization took.
+ * <p>
+ * Our controllers report most failures as a SimpleErrorData with a 200, so this is the only
+ * place we can count them.  Responses up to {@link #maxBufferBytes} are written to a buffer
+ * first, so the serialization time can still make it into the Server-Timing header before the
+ * response is committed.  Anything bigger is streamed straight out once it passes the limit,
+ * and its header leaves the serialize entry out, since serialization hasn't finished when the
+ * header has to go.  Either way, the time is recorded on the profile for the route metrics.
+ *
+ * @author ac010168
+ */
+public class MeteredJsonConverter extends MappingJackson2HttpMessageConverter {
+
+  /** The largest response that is buffered before it's written */
+  public static int maxBufferBytes = Integer.getInteger("games.metrics.maxBufferBytes", 64 * 1024);
+
+  @Override
+  protected void writeInternal(Object object, final HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+    RequestProfile profile = RequestProfile.current();
+    if (profile == null) {
+      super.writeInternal(object, outputMessage);
+      return;
+    }
+
+    if (object instanceof SimpleErrorData)
+      profile.setErrorResponse(true);
+
+    long startTime = System.nanoTime();
+    final MeteredBody body = new MeteredBody(outputMessage, profile);
+    super.writeInternal(object, new HttpOutputMessage() {
+      public OutputStream getBody() throws IOException {
+        return body;
+      }
+
+      public HttpHeaders getHeaders() {
+        return outputMessage.getHeaders();
+      }
+    });
+    profile.recordSerialization(System.nanoTime() - startTime);
+    profile.addBytesOut(body.getCount());
+    body.finish();
+  }
+
+  /**
+   * Buffers the response until it passes {@link #maxBufferBytes}, then sends the headers and
+   * passes the rest straight through, counting the bytes either way.
+   */
+  private static class MeteredBody extends OutputStream {
+
+    private final HttpOutputMessage message;
+    private final RequestProfile profile;
+    private ByteArrayOutputStream buffer;
+    private OutputStream out;
+    private long count;
+
+    MeteredBody(HttpOutputMessage message, RequestProfile profile) {
+      this.message = message;
+      this.profile = profile;
+      this.buffer  = new ByteArrayOutputStream(4096);
+      this.count   = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      makeRoom(1);
+      if (buffer != null) buffer.write(b);
+      else out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      makeRoom(len);
+      if (buffer != null) buffer.write(b, off, len);
+      else out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      //Nothing goes out while we're still buffering
+      if (out != null) out.flush();
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    /**
+     * Send the buffered response, with the full timings, if it never got big enough to stream.
+     */
+    void finish() throws IOException {
+      if (buffer == null) return;
+      message.getHeaders().set(RequestProfile.SERVER_TIMING_HEADER, profile.toServerTiming(true));
+      message.getHeaders().setContentLength(buffer.size());
+      buffer.writeTo(message.getBody());
+      buffer = null;
+    }
+
+    private void makeRoom(int len) throws IOException {
+      if ((buffer == null) || (buffer.size() + len <= maxBufferBytes)) return;
+      message.getHeaders().set(RequestProfile.SERVER_TIMING_HEADER, profile.toServerTiming(false));
+      out = message.getBody();
+      buffer.writeTo(out);
+      buffer = null;
+    }
+  }
+}
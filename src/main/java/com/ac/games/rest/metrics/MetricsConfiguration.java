@@ -0,0 +1,28 @@
+package com.ac.games.rest.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Swaps our {@link MeteredJsonConverter} in for the default Jackson converter.
+ *
+ * @author ac010168
+ */
+@Configuration
+public class MetricsConfiguration {
+
+  @Autowired(required=false)
+  private ObjectMapper objectMapper;
+
+  @Bean
+  public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter() {
+    MeteredJsonConverter converter = new MeteredJsonConverter();
+    if (objectMapper != null)
+      converter.setObjectMapper(objectMapper);
+    return converter;
+  }
+}
@@ -0,0 +1,111 @@
+package com.ac.games.rest.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link RouteMetrics} for every route we've seen.
+ * <p>
+ * A route is the HTTP method, the top level path (which maps to a single controller), and the
+ * mode parameters that pick very different code paths inside that controller, like
+ * <code>GET /wishlist?display=full</code>.  IDs and other free-form parameters are left out so
+ * the number of routes stays small.
+ *
+ * @author ac010168
+ */
+public class RequestMetricsRegistry {
+
+  /** The query parameters that are part of the route */
+  public static final String[] MODE_PARAMETERS = { "source", "display", "compact", "mode", "sync" };
+  /** Mode values longer than this are cut off, in case someone passes junk */
+  public static final int MAX_MODE_LENGTH = 16;
+  /** Where requests go once we've hit the route limit */
+  public static final String OVERFLOW_ROUTE = "other";
+
+  /** The most routes we will track, so a scanner hitting random URLs can't grow this forever */
+  public static int maxRoutes = 500;
+
+  private final ConcurrentHashMap<String, RouteMetrics> routes;
+  /** The one bucket every request past the route limit shares */
+  private final RouteMetrics overflow;
+
+  public RequestMetricsRegistry() {
+    routes   = new ConcurrentHashMap<String, RouteMetrics>();
+    overflow = new RouteMetrics(OVERFLOW_ROUTE);
+  }
+
+  /**
+   * @param route The route key from {@link #buildRouteKey(String, String, String)}
+   * @param micros How long the request took, in microseconds
+   * @param error true if the request failed or returned an error message
+   * @param bytes The number of response bytes written
+   */
+  public void record(String route, long micros, boolean error, long bytes) {
+    RouteMetrics metrics = routes.get(route);
+    if (metrics == null) {
+      if (routes.size() >= maxRoutes) {
+        metrics = overflow;
+        routes.putIfAbsent(OVERFLOW_ROUTE, overflow);
+      } else {
+        metrics = new RouteMetrics(route);
+        RouteMetrics existing = routes.putIfAbsent(route, metrics);
+        if (existing != null) metrics = existing;
+      }
+    }
+    metrics.record(micros, error, bytes);
+  }
+
+  /**
+   * @return The snapshot of every route, sorted by route
+   */
+  public Map<String, Object> getSnapshot() {
+    Map<String, Object> snapshot = new TreeMap<String, Object>();
+    for (RouteMetrics metrics : routes.values())
+      snapshot.put(metrics.getRoute(), metrics.toSnapshot());
+    return snapshot;
+  }
+
+  /**
+   * Build the route key for a request.
+   *
+   * @param method The HTTP method
+   * @param path The request path, without the context path
+   * @param queryString The raw query string, or null
+   *
+   * @return The route key, like <code>GET /wishlist?display=full</code>
+   */
+  public static String buildRouteKey(String method, String path, String queryString) {
+    StringBuilder builder = new StringBuilder(48);
+    builder.append(method).append(' ');
+
+    //Just the top level path, since that's what picks the controller
+    int end = path.indexOf('/', 1);
+    builder.append((end < 0) ? path : path.substring(0, end));
+
+    if ((queryString != null) && (queryString.length() > 0)) {
+      boolean first = true;
+      for (String name : MODE_PARAMETERS) {
+        String value = findParameter(queryString, name);
+        if (value == null) continue;
+        builder.append(first ? '?' : '&').append(name).append('=');
+        builder.append(((value.length() > MAX_MODE_LENGTH) ? value.substring(0, MAX_MODE_LENGTH) : value).toLowerCase());
+        first = false;
+      }
+    }
+    return builder.toString();
+  }
+
+  private static String findParameter(String queryString, String name) {
+    int start = 0;
+    while (start < queryString.length()) {
+      int end = queryString.indexOf('&', start);
+      if (end < 0) end = queryString.length();
+      if ((end - start > name.length()) && (queryString.charAt(start + name.length()) == '=') &&
+          queryString.regionMatches(start, name, 0, name.length()))
+        return queryString.substring(start + name.length() + 1, end);
+      start = end + 1;
+    }
+    return null;
+  }
+}
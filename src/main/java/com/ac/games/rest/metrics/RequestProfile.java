@@ -0,0 +1,220 @@
+package com.ac.games.rest.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything we learn about a request from inside it, collected on the request thread for
+ * {@link RequestMetricsFilter}: whether the controller handed back an error message, how much
+ * JSON we wrote, and where the time went (database calls, upstream HTTP fetches and serialization).
+ * <p>
+ * The breakdown is returned to the caller in a <code>Server-Timing</code> header, and requests
+ * that make more than {@link #dbCallWarnThreshold} database calls are logged, since that's
+ * usually a loop reading one record at a time.  A request can hand its profile to worker threads
+ * with {@link #attach(RequestProfile)}, so the call counters are synchronized.
+ *
+ * @author ac010168
+ */
+public class RequestProfile {
+
+  /** The Server-Timing response header */
+  public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+  /** Requests making more database calls than this get logged */
+  public static int dbCallWarnThreshold = Integer.getInteger("games.db.callWarnThreshold", 25);
+
+  private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<RequestProfile>();
+
+  private final long startNanos;
+  private boolean errorResponse;
+  private long bytesOut;
+
+  private int  dbCalls;
+  private long dbNanos;
+  private Map<String, int[]> dbCallsByMethod;
+  private int  upstreamCalls;
+  private long upstreamNanos;
+  private long serializeNanos;
+
+  private RequestProfile() {
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Start a new profile for the current thread.
+   *
+   * @return The new profile
+   */
+  public static RequestProfile begin() {
+    RequestProfile profile = new RequestProfile();
+    CURRENT.set(profile);
+    return profile;
+  }
+
+  /**
+   * @return The profile for the request on this thread, or null if we're not inside a request
+   */
+  public static RequestProfile current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Carry a request's profile onto a worker thread, so the database calls made for the request
+   * there are still counted against it.  Hand the returned profile back to this method when the
+   * work is done, to put the thread back the way it was.
+   *
+   * @param profile The profile to install, or null to clear the thread's profile
+   *
+   * @return The profile the thread had before, or null if it had none
+   */
+  public static RequestProfile attach(RequestProfile profile) {
+    RequestProfile previous = CURRENT.get();
+    if (profile == null) CURRENT.remove();
+    else CURRENT.set(profile);
+    return previous;
+  }
+
+  /**
+   * Clear the profile for the current thread.
+   */
+  public static void end() {
+    CURRENT.remove();
+  }
+
+  /**
+   * @param method The GamesDatabase method called
+   * @param nanos How long it took
+   */
+  public synchronized void recordDatabaseCall(String method, long nanos) {
+    dbCalls++;
+    dbNanos += nanos;
+    if (dbCallsByMethod == null)
+      dbCallsByMethod = new HashMap<String, int[]>();
+    int[] count = dbCallsByMethod.get(method);
+    if (count == null) dbCallsByMethod.put(method, new int[] { 1 });
+    else count[0]++;
+  }
+
+  /**
+   * @param nanos How long the upstream fetch took
+   */
+  public synchronized void recordUpstreamCall(long nanos) {
+    upstreamCalls++;
+    upstreamNanos += nanos;
+  }
+
+  /**
+   * @param nanos How long the response took to serialize
+   */
+  public synchronized void recordSerialization(long nanos) {
+    serializeNanos += nanos;
+  }
+
+  /**
+   * @return true if this request made more database calls than {@link #dbCallWarnThreshold}
+   */
+  public synchronized boolean isOverDatabaseCallThreshold() {
+    return dbCalls > dbCallWarnThreshold;
+  }
+
+  /**
+   * Build the Server-Timing header value for everything recorded so far, like
+   * <code>db;dur=41.2;desc="37 calls", upstream;dur=0.0;desc="0 calls", serialize;dur=1.3, app;dur=2.8</code>.
+   *
+   * @return The header value
+   */
+  public String toServerTiming() {
+    return toServerTiming(true);
+  }
+
+  /**
+   * @param withSerialize false to leave the serialize entry out, for a header sent before the
+   * response has been serialized
+   *
+   * @return The header value
+   */
+  public synchronized String toServerTiming(boolean withSerialize) {
+    long totalNanos = System.nanoTime() - startNanos;
+    long appNanos = Math.max(0, totalNanos - dbNanos - upstreamNanos - serializeNanos);
+
+    StringBuilder builder = new StringBuilder(128);
+    appendTiming(builder, "db", dbNanos).append(";desc=\"").append(dbCalls).append(" calls\", ");
+    appendTiming(builder, "upstream", upstreamNanos).append(";desc=\"").append(upstreamCalls).append(" calls\", ");
+    if (withSerialize)
+      appendTiming(builder, "serialize", serializeNanos).append(", ");
+    appendTiming(builder, "app", appNanos);
+    return builder.toString();
+  }
+
+  /**
+   * @return The database calls made, most frequent first, like <code>readCSIPriceData x40, readGame x12</code>
+   */
+  public synchronized String describeDatabaseCalls() {
+    if (dbCallsByMethod == null) return "";
+    List<Map.Entry<String, int[]>> entries = new ArrayList<Map.Entry<String, int[]>>(dbCallsByMethod.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<String, int[]>>() {
+      public int compare(Map.Entry<String, int[]> entry1, Map.Entry<String, int[]> entry2) {
+        return entry2.getValue()[0] - entry1.getValue()[0];
+      }
+    });
+
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, int[]> entry : entries) {
+      if (builder.length() > 0) builder.append(", ");
+      builder.append(entry.getKey()).append(" x").append(entry.getValue()[0]);
+    }
+    return builder.toString();
+  }
+
+  private static StringBuilder appendTiming(StringBuilder builder, String name, long nanos) {
+    //Milliseconds with one decimal place, without going through String.format
+    long tenths = nanos / 100000;
+    return builder.append(name).append(";dur=").append(tenths / 10).append('.').append(tenths % 10);
+  }
+
+  /**
+   * @return true if the response was a SimpleErrorData message
+   */
+  public boolean isErrorResponse() {
+    return errorResponse;
+  }
+
+  /**
+   * @param errorResponse the errorResponse to set
+   */
+  public void setErrorResponse(boolean errorResponse) {
+    this.errorResponse = errorResponse;
+  }
+
+  /**
+   * @return the bytesOut
+   */
+  public long getBytesOut() {
+    return bytesOut;
+  }
+
+  /**
+   * @param bytes The number of bytes just written
+   */
+  public void addBytesOut(long bytes) {
+    bytesOut += bytes;
+  }
+
+  /**
+   * @return the dbCalls
+   */
+  public synchronized int getDbCalls() {
+    return dbCalls;
+  }
+
+  /**
+   * @return the dbNanos
+   */
+  public synchronized long getDbNanos() {
+    return dbNanos;
+  }
+}
@@ -0,0 +1,68 @@
+package com.ac.games.rest.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latency histogram and counters for a single route.
+ *
+ * @author ac010168
+ */
+public class RouteMetrics {
+
+  private final String route;
+  private final LatencyHistogram latency;
+  private final AtomicLong requests;
+  private final AtomicLong errors;
+  private final AtomicLong bytesOut;
+  private final long createdTime;
+
+  public RouteMetrics(String route) {
+    this.route       = route;
+    this.latency     = new LatencyHistogram();
+    this.requests    = new AtomicLong();
+    this.errors      = new AtomicLong();
+    this.bytesOut    = new AtomicLong();
+    this.createdTime = System.currentTimeMillis();
+  }
+
+  /**
+   * @param micros How long the request took, in microseconds
+   * @param error true if the request failed or returned an error message
+   * @param bytes The number of response bytes written
+   */
+  public void record(long micros, boolean error, long bytes) {
+    latency.record(micros);
+    requests.incrementAndGet();
+    if (error) errors.incrementAndGet();
+    if (bytes > 0) bytesOut.addAndGet(bytes);
+  }
+
+  /**
+   * @return the route
+   */
+  public String getRoute() {
+    return route;
+  }
+
+  /**
+   * @return A snapshot of the counters, with latencies in milliseconds
+   */
+  public Map<String, Object> toSnapshot() {
+    long requestCount = requests.get();
+    double seconds = Math.max(1.0, (System.currentTimeMillis() - createdTime) / 1000.0);
+
+    Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+    snapshot.put("requests", requestCount);
+    snapshot.put("errors", errors.get());
+    snapshot.put("bytesOut", bytesOut.get());
+    snapshot.put("requestsPerSecond", requestCount / seconds);
+    snapshot.put("meanMillis", latency.getMean() / 1000.0);
+    snapshot.put("p50Millis", latency.getValueAtPercentile(50.0) / 1000.0);
+    snapshot.put("p95Millis", latency.getValueAtPercentile(95.0) / 1000.0);
+    snapshot.put("p99Millis", latency.getValueAtPercentile(99.0) / 1000.0);
+    snapshot.put("maxMillis", latency.getMax() / 1000.0);
+    return snapshot;
+  }
+}
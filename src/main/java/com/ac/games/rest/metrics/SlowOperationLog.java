@@ -0,0 +1,167 @@
+package com.ac.games.rest.metrics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ac.games.rest.data.SlowOperation;
+
+/**
+ * A fixed size, lock-free ring buffer of the most recent requests and database calls that ran
+ * past their slow thresholds.
+ * <p>
+ * Writers claim a slot with a single atomic increment and overwrite whatever was there, so
+ * recording never blocks and the buffer never grows.  When the log is disabled, the only
+ * cost on the hot path is the {@link #isEnabled()} check.
+ *
+ * @author ac010168
+ */
+public class SlowOperationLog {
+
+  /** The number of entries kept.  Must be a power of two. */
+  public static final int CAPACITY = 256;
+  /** Parameter strings longer than this are cut off */
+  public static final int MAX_PARAMETER_LENGTH = 256;
+
+  private volatile boolean enabled;
+  private volatile long requestThresholdNanos;
+  private volatile long databaseThresholdNanos;
+
+  private final AtomicReferenceArray<SlowOperation> entries;
+  private final AtomicLong sequence;
+
+  public SlowOperationLog() {
+    entries  = new AtomicReferenceArray<SlowOperation>(CAPACITY);
+    sequence = new AtomicLong();
+    enabled  = Boolean.parseBoolean(System.getProperty("games.slowlog.enabled", "true"));
+    setRequestThresholdMillis(Long.getLong("games.slowlog.requestMillis", 500L));
+    setDatabaseThresholdMillis(Long.getLong("games.slowlog.dbMillis", 100L));
+  }
+
+  /**
+   * @return true if we're recording
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param enabled the enabled to set
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @param millis Requests taking longer than this are recorded
+   */
+  public void setRequestThresholdMillis(long millis) {
+    requestThresholdNanos = millis * 1000000L;
+  }
+
+  /**
+   * @param millis Database calls taking longer than this are recorded
+   */
+  public void setDatabaseThresholdMillis(long millis) {
+    databaseThresholdNanos = millis * 1000000L;
+  }
+
+  /**
+   * Record a request, if it was slow.
+   *
+   * @param route The route key
+   * @param queryString The raw query string, or null
+   * @param nanos How long the request took
+   */
+  public void recordRequest(String route, String queryString, long nanos) {
+    if (!enabled || (nanos < requestThresholdNanos)) return;
+    add(SlowOperation.REQUEST_TYPE, route, redactQuery(queryString), nanos);
+  }
+
+  /**
+   * Record a database call, if it was slow.
+   *
+   * @param method The GamesDatabase method
+   * @param args The arguments it was called with
+   * @param nanos How long the call took
+   */
+  public void recordDatabaseCall(String method, Object[] args, long nanos) {
+    if (!enabled || (nanos < databaseThresholdNanos)) return;
+    add(SlowOperation.DATABASE_TYPE, method, describeArgs(args), nanos);
+  }
+
+  /**
+   * @return The recorded entries, newest first
+   */
+  public List<SlowOperation> getEntries() {
+    long lastSequence = sequence.get();
+    List<SlowOperation> results = new ArrayList<SlowOperation>(CAPACITY);
+    for (long seq = lastSequence; (seq > 0) && (seq > lastSequence - CAPACITY); seq--) {
+      SlowOperation entry = entries.get((int)((seq - 1) & (CAPACITY - 1)));
+      //Skip slots that have already been lapped by a newer writer
+      if ((entry != null) && (entry.getSequence() == seq))
+        results.add(entry);
+    }
+    return results;
+  }
+
+  /**
+   * @return The settings and the recorded entries, for the actuator endpoint
+   */
+  public Map<String, Object> getSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+    snapshot.put("enabled", enabled);
+    snapshot.put("requestThresholdMillis", requestThresholdNanos / 1000000L);
+    snapshot.put("dbThresholdMillis", databaseThresholdNanos / 1000000L);
+    snapshot.put("recorded", sequence.get());
+    snapshot.put("entries", getEntries());
+    return snapshot;
+  }
+
+  private void add(String type, String operation, String parameters, long nanos) {
+    long seq = sequence.incrementAndGet();
+    entries.set((int)((seq - 1) & (CAPACITY - 1)),
+                new SlowOperation(seq, type, operation, parameters, nanos / 1000000.0, Thread.currentThread().getName(), new Date()));
+  }
+
+  /**
+   * @param queryString The raw query string
+   *
+   * @return The query string with any session token masked, safe to log
+   */
+  public static String redactQuery(String queryString) {
+    if (queryString == null) return "";
+    StringBuilder builder = new StringBuilder(queryString.length());
+    for (String param : queryString.split("&")) {
+      if (builder.length() > 0) builder.append('&');
+      if (param.startsWith("token=")) builder.append("token=***");
+      else builder.append(param);
+    }
+    return truncate(builder.toString());
+  }
+
+  /**
+   * @param args The call arguments
+   *
+   * @return The IDs and strings as they are, and anything bigger as just its type
+   */
+  static String describeArgs(Object[] args) {
+    if ((args == null) || (args.length == 0)) return "";
+    StringBuilder builder = new StringBuilder();
+    for (Object arg : args) {
+      if (builder.length() > 0) builder.append(", ");
+      if ((arg == null) || (arg instanceof Number) || (arg instanceof String) || (arg instanceof Boolean) || (arg instanceof Enum))
+        builder.append(arg);
+      else builder.append(arg.getClass().getSimpleName());
+    }
+    return truncate(builder.toString());
+  }
+
+  private static String truncate(String value) {
+    return (value.length() > MAX_PARAMETER_LENGTH) ? value.substring(0, MAX_PARAMETER_LENGTH) + "..." : value;
+  }
+}
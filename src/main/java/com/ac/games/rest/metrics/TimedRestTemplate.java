@@ -0,0 +1,31 @@
+package com.ac.games.rest.metrics;
+
+import java.net.URI;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A RestTemplate that adds the time spent on each upstream fetch, including reading the body,
+ * to the current {@link RequestProfile}.
+ *
+ * @author ac010168
+ */
+public class TimedRestTemplate extends RestTemplate {
+
+  @Override
+  protected <T> T doExecute(URI url, HttpMethod method, RequestCallback requestCallback,
+                            ResponseExtractor<T> responseExtractor) throws RestClientException {
+    long startTime = System.nanoTime();
+    try {
+      return super.doExecute(url, method, requestCallback, responseExtractor);
+    } finally {
+      RequestProfile profile = RequestProfile.current();
+      if (profile != null)
+        profile.recordUpstreamCall(System.nanoTime() - startTime);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.ac.games.rest.price;
+
+import com.ac.games.data.CompactPriceData;
+
+/**
+ * A built {@link CompactPriceData} display card, along with the price it should sort by.
+ *
+ * @author ac010168
+ */
+public class PriceCard {
+
+  private final CompactPriceData card;
+  private final double effectivePrice;
+
+  /**
+   * @param card The display card
+   * @param effectivePrice The current price, the MSRP if there's no current price, or -1.0
+   */
+  public PriceCard(CompactPriceData card, double effectivePrice) {
+    this.card           = card;
+    this.effectivePrice = effectivePrice;
+  }
+
+  /**
+   * @return The display card, which is shared and must not be changed
+   */
+  public CompactPriceData getCard() {
+    return card;
+  }
+
+  /**
+   * @return The current price, the MSRP if there's no current price, or -1.0 if we know neither
+   */
+  public double getEffectivePrice() {
+    return effectivePrice;
+  }
+}
@@ -0,0 +1,106 @@
+package com.ac.games.rest.price;
+
+import java.text.DecimalFormat;
+
+import com.ac.games.data.CompactPriceData;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.MiniatureMarketPriceData;
+
+/**
+ * Builds the {@link CompactPriceData} display cards for the vendor listings, shared by every
+ * controller that shows prices.
+ *
+ * @author ac010168
+ */
+public class PriceCardBuilder {
+
+  /** DecimalFormat isn't thread-safe, so each thread gets its own */
+  private final static ThreadLocal<DecimalFormat> formatter = new ThreadLocal<DecimalFormat>() {
+    @Override
+    protected DecimalFormat initialValue() {
+      return new DecimalFormat("'$'0.00");
+    }
+  };
+
+  /**
+   * @param data The CSI listing
+   *
+   * @return The display card for this listing
+   */
+  public static CompactPriceData fromCSI(CoolStuffIncPriceData data) {
+    CompactPriceData price = new CompactPriceData();
+    price.setTitleDisplay(data.getTitle() + " (CSI ID: " + data.getCsiID() + ")");
+
+    String availString = "";
+    switch (data.getAvailability()) {
+      case INSTOCK            : availString = "[This Game is In Stock]"; break;
+      case PREORDER           : availString = "[Accepting Pre-Orders]"; break;
+      case OUTOFSTOCK         : availString = "[This Game is Out of Stock]"; break;
+      case NOTYETTAKINGORDERS : availString = "[This Game is Not Yet Taking Orders]"; break;
+      default                 : availString = "";
+    }
+    String priceDisplayString = formatPrice(data.getCurPrice(), data.getMsrpValue()) + "  " + availString;
+    price.setPriceDisplay(priceDisplayString.trim());
+
+    price.setLinkURL("http://www.coolstuffinc.com/p/" + data.getCsiID());
+    price.setThumbnailURL(data.getImageURL());
+    return price;
+  }
+
+  /**
+   * @param data The MM listing
+   *
+   * @return The display card for this listing
+   */
+  public static CompactPriceData fromMM(MiniatureMarketPriceData data) {
+    CompactPriceData price = new CompactPriceData();
+    price.setTitleDisplay(data.getTitle() + " (MM ID: " + data.getMmID() + ")");
+
+    String availString = "";
+    switch (data.getAvailability()) {
+      case INSTOCK            : availString = "[This Game is In Stock]"; break;
+      case PREORDER           : availString = "[Accepting Pre-Orders]"; break;
+      case OUTOFSTOCK         : availString = "[This Game is Out of Stock]"; break;
+      case NOTYETTAKINGORDERS : availString = "[This Game is Not Yet Taking Orders]"; break;
+      default                 : availString = "";
+    }
+    String priceDisplayString = formatPrice(data.getCurPrice(), data.getMsrpValue()) + "  " + availString;
+    price.setPriceDisplay(priceDisplayString.trim());
+
+    if (data.getSku() != null)
+      price.setLinkURL("http://www.miniaturemarket.com/" + data.getSku().toLowerCase() + ".html");
+    else price.setLinkURL("http://www.miniaturemarket.com/catalog/product/view/id/" + data.getMmID());
+
+    price.setThumbnailURL(data.getImageURL());
+    return price;
+  }
+
+  /**
+   * @param curPrice The current price, negative if unknown
+   * @param msrpValue The MSRP, negative if unknown
+   *
+   * @return The price a listing sorts by: the current price, the MSRP if we have no current
+   * price, or -1.0 if we have neither
+   */
+  public static double effectivePrice(double curPrice, double msrpValue) {
+    if (curPrice >= 0.0) return curPrice;
+    if (msrpValue >= 0.0) return msrpValue;
+    return -1.0;
+  }
+
+  /**
+   * @param curPrice The current price, negative if unknown
+   * @param msrpValue The MSRP, negative if unknown
+   *
+   * @return The current price, the MSRP if we have no current price, or an empty String
+   */
+  public static String formatPrice(double curPrice, double msrpValue) {
+    if (curPrice < 0.0) {
+      if (msrpValue < 0.0)
+        return "";
+      else
+        return "MSRP " + formatter.get().format(msrpValue);
+    } else
+      return formatter.get().format(curPrice);
+  }
+}
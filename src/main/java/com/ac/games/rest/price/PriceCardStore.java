@@ -0,0 +1,166 @@
+package com.ac.games.rest.price;
+
+import com.ac.games.data.CompactPriceData;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.database.LongObjectMap;
+
+/**
+ * The built {@link CompactPriceData} display cards, keyed by csiID and mmID.
+ * <p>
+ * A card is built once, from the first read of its listing, and then handed out as-is to every
+ * request that shows prices, so the availability text, price formatting and link building
+ * aren't redone per request.  The controllers push vendor writes through the update* and remove*
+ * methods, which rebuild the card from the written record.  Reads are lock-free.
+ * <p>
+ * The cards are shared, so callers must not change them.
+ *
+ * @author ac010168
+ */
+public class PriceCardStore {
+
+  private final LongObjectMap<PriceCard> csiCards;
+  private final LongObjectMap<PriceCard> mmCards;
+  /** Bumped on every write, so a card built from a read that raced a write isn't kept */
+  private long writeCount;
+
+  public PriceCardStore() {
+    csiCards = new LongObjectMap<PriceCard>(4096);
+    mmCards  = new LongObjectMap<PriceCard>(4096);
+  }
+
+  /**
+   * @param database The database to read the listing from if the card isn't built yet
+   * @param csiID The CSI listing
+   *
+   * @return The display card, or null if there's no such listing
+   */
+  public CompactPriceData getCSICard(GamesDatabase database, long csiID) throws ConfigurationException, DatabaseOperationException {
+    PriceCard card = getCSIPriceCard(database, csiID);
+    return (card == null) ? null : card.getCard();
+  }
+
+  /**
+   * @param database The database to read the listing from if the card isn't built yet
+   * @param csiID The CSI listing
+   *
+   * @return The display card and its sort price, or null if there's no such listing
+   */
+  public PriceCard getCSIPriceCard(GamesDatabase database, long csiID) throws ConfigurationException, DatabaseOperationException {
+    PriceCard card = csiCards.get(csiID);
+    if (card != null) return card;
+
+    long writesBefore = getWriteCount();
+    CoolStuffIncPriceData data = database.readCSIPriceData(csiID);
+    if (data == null) return null;
+    card = buildCSI(data);
+    keep(csiCards, csiID, card, writesBefore);
+    return card;
+  }
+
+  /**
+   * @param database The database to read the listing from if the card isn't built yet
+   * @param mmID The MM listing
+   *
+   * @return The display card, or null if there's no such listing
+   */
+  public CompactPriceData getMMCard(GamesDatabase database, long mmID) throws ConfigurationException, DatabaseOperationException {
+    PriceCard card = getMMPriceCard(database, mmID);
+    return (card == null) ? null : card.getCard();
+  }
+
+  /**
+   * @param database The database to read the listing from if the card isn't built yet
+   * @param mmID The MM listing
+   *
+   * @return The display card and its sort price, or null if there's no such listing
+   */
+  public PriceCard getMMPriceCard(GamesDatabase database, long mmID) throws ConfigurationException, DatabaseOperationException {
+    PriceCard card = mmCards.get(mmID);
+    if (card != null) return card;
+
+    long writesBefore = getWriteCount();
+    MiniatureMarketPriceData data = database.readMMPriceData(mmID);
+    if (data == null) return null;
+    card = buildMM(data);
+    keep(mmCards, mmID, card, writesBefore);
+    return card;
+  }
+
+  /**
+   * Rebuild the card for a CSI listing that was just written.
+   *
+   * @param data The written listing
+   */
+  public void updateCSI(CoolStuffIncPriceData data) {
+    PriceCard card = buildCSI(data);
+    synchronized (this) {
+      writeCount++;
+      csiCards.put(data.getCsiID(), card);
+    }
+  }
+
+  /**
+   * Rebuild the card for an MM listing that was just written.
+   *
+   * @param data The written listing
+   */
+  public void updateMM(MiniatureMarketPriceData data) {
+    PriceCard card = buildMM(data);
+    synchronized (this) {
+      writeCount++;
+      mmCards.put(data.getMmID(), card);
+    }
+  }
+
+  /**
+   * @param csiID The deleted CSI listing
+   */
+  public synchronized void removeCSI(long csiID) {
+    writeCount++;
+    csiCards.remove(csiID);
+  }
+
+  /**
+   * @param mmID The deleted MM listing
+   */
+  public synchronized void removeMM(long mmID) {
+    writeCount++;
+    mmCards.remove(mmID);
+  }
+
+  /**
+   * @return The number of cards built
+   */
+  public int size() {
+    return csiCards.size() + mmCards.size();
+  }
+
+  /**
+   * Drop every card, so they're rebuilt from the database as they're read.
+   */
+  public synchronized void clear() {
+    writeCount++;
+    csiCards.clear();
+    mmCards.clear();
+  }
+
+  private synchronized long getWriteCount() {
+    return writeCount;
+  }
+
+  private synchronized void keep(LongObjectMap<PriceCard> cards, long id, PriceCard card, long writesBefore) {
+    if (writeCount == writesBefore) cards.put(id, card);
+  }
+
+  private static PriceCard buildCSI(CoolStuffIncPriceData data) {
+    return new PriceCard(PriceCardBuilder.fromCSI(data), PriceCardBuilder.effectivePrice(data.getCurPrice(), data.getMsrpValue()));
+  }
+
+  private static PriceCard buildMM(MiniatureMarketPriceData data) {
+    return new PriceCard(PriceCardBuilder.fromMM(data), PriceCardBuilder.effectivePrice(data.getCurPrice(), data.getMsrpValue()));
+  }
+}
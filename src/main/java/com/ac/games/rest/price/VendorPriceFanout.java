@@ -0,0 +1,200 @@
+package com.ac.games.rest.price;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.CompactPriceData;
+import com.ac.games.data.GameReltn;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.DaemonThreadFactory;
+import com.ac.games.rest.data.MultiVendorPrices;
+import com.ac.games.rest.data.VendorPrices;
+import com.ac.games.rest.metrics.RequestProfile;
+
+/**
+ * Resolves every vendor's listings for a game at once, for <code>/gamereltn?vendor=all</code>.
+ * <p>
+ * Each vendor's listings are read on their own thread, and each vendor gets
+ * {@link #vendorTimeoutMillis} from when its read starts to finish.  A vendor that runs out of
+ * time (or fails) is returned with whatever listings it had read so far, and the response is
+ * flagged as partial, so one slow vendor doesn't hold up or fail the whole page.  The reads run
+ * under the request's {@link RequestProfile}, so their database calls still show up in its
+ * Server-Timing.
+ * <p>
+ * Only {@link #queueSize} reads can wait for a thread.  Past that, the request thread does the
+ * read itself, so a busy server slows the callers down rather than quietly timing out their
+ * vendors while the reads sit in the queue.
+ *
+ * @author ac010168
+ */
+public class VendorPriceFanout {
+
+  private static final Logger logger = LoggerFactory.getLogger(VendorPriceFanout.class);
+
+  public static final String CSI_VENDOR = "csi";
+  public static final String MM_VENDOR  = "mm";
+
+  /** How long each vendor gets to read its listings */
+  public static long vendorTimeoutMillis = Long.getLong("games.vendor.timeout", 1500L);
+  /** The number of threads shared by all the vendor reads */
+  public static int  threadCount         = Integer.getInteger("games.vendor.threads", 16);
+  /** The number of reads that can wait for a thread before the request threads run them */
+  public static int  queueSize           = Integer.getInteger("games.vendor.queue", 32);
+
+  private final PriceCardStore priceCards;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * @param priceCards Where the listings' display cards come from
+   */
+  public VendorPriceFanout(PriceCardStore priceCards) {
+    this.priceCards = priceCards;
+    executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory("vendor-prices"),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  /**
+   * @param database The database to read any listings we don't have cards for from
+   * @param gameReltn The game's vendor listings
+   *
+   * @return Every vendor's listings, cheapest first within each vendor
+   */
+  public MultiVendorPrices fetchAll(GamesDatabase database, GameReltn gameReltn) {
+    VendorRead[] reads = new VendorRead[] {
+      new VendorRead(CSI_VENDOR, database, gameReltn.getCsiIDs()),
+      new VendorRead(MM_VENDOR,  database, gameReltn.getMmIDs())
+    };
+
+    List<Future<?>> futures = new ArrayList<Future<?>>(reads.length);
+    for (VendorRead read : reads)
+      futures.add(executor.submit(read));
+
+    MultiVendorPrices result = new MultiVendorPrices(gameReltn.getGameID());
+    for (int i = 0; i < reads.length; i++) {
+      VendorPrices prices;
+      try {
+        waitFor(reads[i], futures.get(i));
+        prices = reads[i].toPrices(VendorPrices.STATUS_COMPLETE, null);
+      } catch (TimeoutException te) {
+        futures.get(i).cancel(true);
+        logger.warn("The {} listings for game {} timed out after {}ms", reads[i].vendor, gameReltn.getGameID(), vendorTimeoutMillis);
+        prices = reads[i].toPrices(VendorPrices.STATUS_TIMEOUT, "The vendor listings timed out after " + vendorTimeoutMillis + "ms");
+      } catch (ExecutionException ee) {
+        logger.error("Unable to read the " + reads[i].vendor + " listings for game " + gameReltn.getGameID(), ee.getCause());
+        prices = reads[i].toPrices(VendorPrices.STATUS_FAILED, "An error occurred reading the vendor listings: " + ee.getCause().getMessage());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        futures.get(i).cancel(true);
+        prices = reads[i].toPrices(VendorPrices.STATUS_FAILED, "The request was interrupted");
+      }
+      result.addVendor(prices);
+    }
+    return result;
+  }
+
+  /**
+   * Wait for a read to finish, counting its timeout from when it started rather than from when
+   * it was queued.
+   */
+  private void waitFor(VendorRead read, Future<?> future) throws InterruptedException, ExecutionException, TimeoutException {
+    while (true) {
+      long startTime = read.startTime;
+      long wait = (startTime == 0) ? vendorTimeoutMillis : Math.max(0, startTime + vendorTimeoutMillis - System.currentTimeMillis());
+      try {
+        future.get(wait, TimeUnit.MILLISECONDS);
+        return;
+      } catch (TimeoutException te) {
+        //Still queued when we started waiting, so its clock may only just have started.  Once
+        //we're shut down, anything still queued is never going to run.
+        if ((startTime != 0) || executor.isShutdown()) throw te;
+      }
+    }
+  }
+
+  /**
+   * Stop the vendor threads.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Reads one vendor's listings, keeping what it has read so far in case it gets cut off.
+   */
+  private class VendorRead implements Callable<Void> {
+    final String vendor;
+    final GamesDatabase database;
+    final List<Long> ids;
+    final List<PriceCard> cards;
+    /** Picked up on the request thread, since that's where these are built */
+    final RequestProfile profile;
+    /** When the read came off the queue, or 0 if it hasn't yet */
+    volatile long startTime;
+
+    VendorRead(String vendor, GamesDatabase database, List<Long> ids) {
+      this.vendor   = vendor;
+      this.database = database;
+      this.ids      = (ids == null) ? Collections.<Long>emptyList() : new ArrayList<Long>(ids);
+      this.cards    = new ArrayList<PriceCard>(this.ids.size());
+      this.profile  = RequestProfile.current();
+    }
+
+    public Void call() throws Exception {
+      startTime = System.currentTimeMillis();
+      RequestProfile previous = RequestProfile.attach(profile);
+      try {
+        for (long id : ids) {
+          if (Thread.currentThread().isInterrupted()) break;
+          PriceCard card = vendor.equals(CSI_VENDOR) ? priceCards.getCSIPriceCard(database, id) : priceCards.getMMPriceCard(database, id);
+          if (card != null) {
+            synchronized (cards) {
+              cards.add(card);
+            }
+          }
+        }
+      } finally {
+        RequestProfile.attach(previous);
+      }
+      return null;
+    }
+
+    VendorPrices toPrices(String status, String message) {
+      List<PriceCard> sorted;
+      synchronized (cards) {
+        sorted = new ArrayList<PriceCard>(cards);
+      }
+      Collections.sort(sorted, BY_PRICE);
+
+      VendorPrices prices = new VendorPrices(vendor, status);
+      prices.setMessage(message);
+      List<CompactPriceData> priceList = new ArrayList<CompactPriceData>(sorted.size());
+      for (PriceCard card : sorted)
+        priceList.add(card.getCard());
+      prices.setPrices(priceList);
+      return prices;
+    }
+  }
+
+  /** Cheapest first, with the listings we have no price for at the end */
+  private static final Comparator<PriceCard> BY_PRICE = new Comparator<PriceCard>() {
+    public int compare(PriceCard left, PriceCard right) {
+      double leftPrice  = left.getEffectivePrice();
+      double rightPrice = right.getEffectivePrice();
+      if ((leftPrice < 0.0) != (rightPrice < 0.0)) return (leftPrice < 0.0) ? 1 : -1;
+      return Double.compare(leftPrice, rightPrice);
+    }
+  };
+}
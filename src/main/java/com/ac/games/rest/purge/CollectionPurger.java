@@ -0,0 +1,361 @@
+package com.ac.games.rest.purge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.Collection;
+import com.ac.games.data.CollectionItem;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.DaemonThreadFactory;
+import com.ac.games.rest.data.PurgeStatus;
+import com.ac.games.rest.purge.PurgeJob.PurgeState;
+import com.ac.games.rest.writebehind.LastLoginTask;
+
+/**
+ * This class runs the cascading deletes for users and collections.
+ * <p>
+ * Each delete is tracked as a {@link PurgeJob}.  The job is journaled to disk first, then the
+ * top level records (the Collection, plus the UserDetail and User for a user delete) are removed,
+ * so the account disappears right away.  After that, the CollectionItems are deleted in batches,
+ * with the deletes in each batch run in parallel, and the journal is checkpointed after every
+ * batch.  Any journals left behind by a crash are picked up by {@link #resumePending(GamesDatabase)}.
+ * If the top level deletes fail on a job we were handed, the failure goes back to the caller and
+ * the journal is removed, so the purge isn't quietly finished on the next start; asking again
+ * starts a new job.
+ * <p>
+ * Jobs can either be run on the calling thread with {@link #runJob(GamesDatabase, PurgeJob)}, or handed
+ * off to the background with {@link #submitJob(GamesDatabase, PurgeJob)}.
+ *
+ * @author ac010168
+ */
+public class CollectionPurger {
+
+  private static final Logger logger = LoggerFactory.getLogger(CollectionPurger.class);
+
+  /** Where the job journals live; set from the database settings at startup */
+  public static String journalDirectory = null;
+  /** The number of items deleted between journal checkpoints */
+  public static int batchSize = 200;
+  /** The number of item deletes run in parallel */
+  public static int parallelism = 8;
+  /** The number of finished jobs we keep around for status requests */
+  public static final int MAX_FINISHED_JOBS = 100;
+
+  private final Map<String, PurgeJob> jobs;
+  private final ExecutorService jobExecutor;
+  private final ExecutorService deleteExecutor;
+  private final AtomicInteger jobSequence;
+
+  public CollectionPurger() {
+    jobs           = new ConcurrentHashMap<String, PurgeJob>();
+    jobExecutor    = Executors.newSingleThreadExecutor(new DaemonThreadFactory("purge-job"));
+    deleteExecutor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("purge-delete"));
+    jobSequence    = new AtomicInteger();
+  }
+
+  /**
+   * Create and journal a job to delete a collection, and the user that owns it if userID is provided.
+   *
+   * @param userID The userID to delete, or -1 to leave the user alone
+   * @param collection The collection to delete
+   *
+   * @return The new job
+   *
+   * @throws IOException if the journal could not be written.  Nothing has been deleted in that case.
+   */
+  public PurgeJob createJob(long userID, Collection collection) throws IOException {
+    List<CollectionItem> items = collection.getGames();
+    long[] itemIDs = new long[(items == null) ? 0 : items.size()];
+    for (int i = 0; i < itemIDs.length; i++)
+      itemIDs[i] = items.get(i).getItemID();
+    //Delete the lowest IDs first, so the highest IDs (which drive the next ID we hand out) go last
+    Arrays.sort(itemIDs);
+
+    String jobID = "purge-" + collection.getCollectionID() + "-" + System.currentTimeMillis() + "-" + jobSequence.incrementAndGet();
+    PurgeJob job = new PurgeJob(jobID, userID, collection.getCollectionID(), itemIDs, new Date());
+    job.writeJournal(getJournalDirectory());
+    addJob(job);
+    return job;
+  }
+
+  /**
+   * Run a job to completion on the calling thread.
+   *
+   * @param database The database to delete from
+   * @param job The job to run
+   *
+   * @throws DatabaseOperationException if the top level deletes failed.  The job is dropped, and won't be resumed.
+   * @throws ConfigurationException if the top level deletes failed.  The job is dropped, and won't be resumed.
+   */
+  public void runJob(GamesDatabase database, PurgeJob job) throws DatabaseOperationException, ConfigurationException {
+    startJob(database, job);
+    deleteItems(database, job);
+  }
+
+  /**
+   * Remove the top level records on the calling thread, then hand the item deletes off to the background.
+   *
+   * @param database The database to delete from
+   * @param job The job to run
+   *
+   * @throws DatabaseOperationException if the top level deletes failed.  The job is dropped, and won't be resumed.
+   * @throws ConfigurationException if the top level deletes failed.  The job is dropped, and won't be resumed.
+   */
+  public void submitJob(final GamesDatabase database, final PurgeJob job) throws DatabaseOperationException, ConfigurationException {
+    startJob(database, job);
+    jobExecutor.execute(new Runnable() {
+      public void run() {
+        deleteItems(database, job);
+      }
+    });
+  }
+
+  /**
+   * Pick up any jobs left in the journal directory, typically after a crash or restart.  The
+   * jobs are resumed in the background from their last checkpoint.
+   *
+   * @param database The database to delete from
+   *
+   * @return The number of jobs resumed
+   */
+  public int resumePending(final GamesDatabase database) {
+    File[] journals = getJournalDirectory().listFiles();
+    if (journals == null) return 0;
+
+    int resumed = 0;
+    for (File journal : journals) {
+      if (!journal.getName().endsWith(".job")) continue;
+      final PurgeJob job = PurgeJob.readJournal(journal);
+      if (job == null) continue;
+
+      logger.info("Resuming purge job {} at item {} of {}", job.getJobID(), job.getProcessedCount(), job.getItemIDs().length);
+      addJob(job);
+      jobExecutor.execute(new Runnable() {
+        public void run() {
+          try {
+            deleteTopLevel(database, job);
+          } catch (Throwable t) {
+            job.setLastError(t.getMessage());
+            job.setState(PurgeState.FAILED);
+            return;
+          }
+          deleteItems(database, job);
+        }
+      });
+      resumed++;
+    }
+    return resumed;
+  }
+
+  /**
+   * @param jobID The jobID
+   *
+   * @return The status of the job, or null if we don't know about it
+   */
+  public PurgeStatus getStatus(String jobID) {
+    PurgeJob job = jobs.get(jobID);
+    return (job == null) ? null : job.toStatus();
+  }
+
+  /**
+   * @return The status of every job we know about
+   */
+  public List<PurgeStatus> getAllStatus() {
+    List<PurgeStatus> statusList = new ArrayList<PurgeStatus>(jobs.size());
+    for (PurgeJob job : jobs.values())
+      statusList.add(job.toStatus());
+    return statusList;
+  }
+
+  /**
+   * Stop the background workers.  Any job still running will be resumed from its journal on the next start.
+   */
+  public void shutdown() {
+    jobExecutor.shutdownNow();
+    deleteExecutor.shutdownNow();
+  }
+
+  /**
+   * Run the top level deletes for a job we were just handed.  A failure is reported to the caller,
+   * so drop the journal rather than leave it for {@link #resumePending} to finish behind their back.
+   */
+  private void startJob(GamesDatabase database, PurgeJob job) throws DatabaseOperationException, ConfigurationException {
+    try {
+      deleteTopLevel(database, job);
+    } catch (DatabaseOperationException doe) {
+      abandon(job);
+      throw doe;
+    } catch (ConfigurationException ce) {
+      abandon(job);
+      throw ce;
+    } catch (RuntimeException re) {
+      //A busy pool, say; the caller sees this one too
+      job.setLastError(re.getMessage());
+      job.setState(PurgeState.FAILED);
+      abandon(job);
+      throw re;
+    }
+  }
+
+  private void abandon(PurgeJob job) {
+    File journal = job.getJournalFile(getJournalDirectory());
+    if (journal.exists() && !journal.delete())
+      logger.warn("Unable to remove the journal of failed purge job {}, it will be resumed on the next start", job.getJobID());
+  }
+
+  private void deleteTopLevel(GamesDatabase database, PurgeJob job) throws DatabaseOperationException, ConfigurationException {
+    if (job.isTopLevelDone()) return;
+
+    job.setState(PurgeState.RUNNING);
+    try {
+      database.deleteCollection(job.getCollectionID());
+      if (job.getUserID() > 0) {
+        //Make sure a pending login stamp can't recreate the detail we're about to delete
+        Application.writeBehind.flushKey(LastLoginTask.buildKey(job.getUserID()));
+        database.deleteUserDetail(job.getUserID());
+        database.deleteUser(job.getUserID());
+      }
+    } catch (DatabaseOperationException doe) {
+      job.setLastError(doe.getMessage());
+      job.setState(PurgeState.FAILED);
+      throw doe;
+    } catch (ConfigurationException ce) {
+      job.setLastError(ce.getMessage());
+      job.setState(PurgeState.FAILED);
+      throw ce;
+    }
+
+    job.setTopLevelDone(true);
+    checkpoint(job);
+    Application.statsCache.recordCollectionChange((job.getUserID() > 0) ? job.getUserID() : -1);
+  }
+
+  private void deleteItems(final GamesDatabase database, PurgeJob job) {
+    job.setState(PurgeState.RUNNING);
+    long[] itemIDs = job.getItemIDs();
+
+    try {
+      //Retry anything that failed before the last restart first
+      List<Long> retryIDs;
+      synchronized (job.getFailedItemIDs()) {
+        retryIDs = new ArrayList<Long>(job.getFailedItemIDs());
+        job.getFailedItemIDs().clear();
+      }
+      if (retryIDs.size() > 0) {
+        long[] retryBatch = new long[retryIDs.size()];
+        for (int i = 0; i < retryBatch.length; i++) retryBatch[i] = retryIDs.get(i);
+        deleteBatch(database, job, retryBatch, 0, retryBatch.length);
+        checkpoint(job);
+      }
+
+      int position = job.getProcessedCount();
+      while (position < itemIDs.length) {
+        if (Thread.currentThread().isInterrupted())
+          throw new InterruptedException();
+        int end = Math.min(position + batchSize, itemIDs.length);
+        deleteBatch(database, job, itemIDs, position, end);
+        position = end;
+        job.setProcessedCount(position);
+        checkpoint(job);
+      }
+    } catch (InterruptedException ie) {
+      //Shutting down, the journal will pick this back up
+      Thread.currentThread().interrupt();
+      return;
+    } catch (Throwable t) {
+      job.setLastError(t.getMessage());
+      job.setState(PurgeState.FAILED);
+      return;
+    }
+
+    int failedCount;
+    synchronized (job.getFailedItemIDs()) {
+      failedCount = job.getFailedItemIDs().size();
+    }
+    if (failedCount > 0) {
+      //Keep the journal, so the failed items are retried on the next start
+      job.setLastError(failedCount + " collection items could not be deleted");
+      job.setState(PurgeState.FAILED);
+    } else {
+      job.setState(PurgeState.COMPLETED);
+      job.getJournalFile(getJournalDirectory()).delete();
+    }
+  }
+
+  private void deleteBatch(final GamesDatabase database, PurgeJob job, long[] itemIDs, int start, int end) throws InterruptedException {
+    List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(end - start);
+    for (int i = start; i < end; i++) {
+      final long itemID = itemIDs[i];
+      results.add(deleteExecutor.submit(new Callable<Boolean>() {
+        public Boolean call() throws Exception {
+          database.deleteCollectionItem(itemID);
+          return Boolean.TRUE;
+        }
+      }));
+    }
+
+    int deleted = 0;
+    for (int i = 0; i < results.size(); i++) {
+      try {
+        results.get(i).get();
+        deleted++;
+      } catch (java.util.concurrent.ExecutionException ee) {
+        job.setLastError(ee.getCause().getMessage());
+        synchronized (job.getFailedItemIDs()) {
+          job.getFailedItemIDs().add(itemIDs[start + i]);
+        }
+      }
+    }
+    job.addDeleted(deleted);
+  }
+
+  private void checkpoint(PurgeJob job) {
+    try {
+      job.writeJournal(getJournalDirectory());
+    } catch (IOException ioe) {
+      //The delete itself worked, we just won't be able to resume from this exact point
+      logger.warn("Unable to checkpoint purge job {}: {}", job.getJobID(), ioe.getMessage());
+    }
+  }
+
+  private void addJob(PurgeJob job) {
+    jobs.put(job.getJobID(), job);
+
+    //Trim finished jobs, so the status map doesn't grow forever
+    if (jobs.size() > MAX_FINISHED_JOBS) {
+      Iterator<PurgeJob> iter = jobs.values().iterator();
+      while (iter.hasNext() && (jobs.size() > MAX_FINISHED_JOBS)) {
+        PurgeJob curJob = iter.next();
+        if ((curJob.getState() == PurgeState.COMPLETED) || (curJob.getState() == PurgeState.FAILED))
+          iter.remove();
+      }
+    }
+  }
+
+  private static File getJournalDirectory() {
+    if (journalDirectory == null)
+      throw new IllegalStateException("The purge journal directory has not been configured");
+    File directory = new File(journalDirectory);
+    if (!directory.exists())
+      directory.mkdirs();
+    return directory;
+  }
+}
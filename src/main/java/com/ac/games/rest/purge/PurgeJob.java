@@ -0,0 +1,249 @@
+package com.ac.games.rest.purge;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.rest.data.PurgeStatus;
+
+/**
+ * A single cascading delete of a collection (and optionally the user that owns it).
+ * <p>
+ * The job is persisted to a small journal file before anything is deleted, and checkpointed
+ * after each batch, so a restart can pick it up where it left off.  The journal is removed
+ * once the job completes.
+ *
+ * @author ac010168
+ */
+public class PurgeJob {
+
+  private static final Logger logger = LoggerFactory.getLogger(PurgeJob.class);
+
+  public enum PurgeState { QUEUED, RUNNING, COMPLETED, FAILED }
+
+  private final String jobID;
+  private final long userID;
+  private final long collectionID;
+  private final long[] itemIDs;
+  private final Date createdDate;
+
+  /** true once the collection (and user) records themselves are gone */
+  private volatile boolean topLevelDone;
+  /** The number of itemIDs, from the front of the list, that have been processed */
+  private volatile int processedCount;
+  private volatile int deletedCount;
+  private final List<Long> failedItemIDs;
+
+  private volatile PurgeState state;
+  private volatile Date finishedDate;
+  private volatile String lastError;
+
+  public PurgeJob(String jobID, long userID, long collectionID, long[] itemIDs, Date createdDate) {
+    this.jobID          = jobID;
+    this.userID         = userID;
+    this.collectionID   = collectionID;
+    this.itemIDs        = itemIDs;
+    this.createdDate    = createdDate;
+    this.topLevelDone   = false;
+    this.processedCount = 0;
+    this.deletedCount   = 0;
+    this.failedItemIDs  = new ArrayList<Long>();
+    this.state          = PurgeState.QUEUED;
+    this.finishedDate   = null;
+    this.lastError      = null;
+  }
+
+  /**
+   * @return A snapshot of this job's progress
+   */
+  public PurgeStatus toStatus() {
+    PurgeStatus status = new PurgeStatus();
+    status.setJobID(jobID);
+    status.setUserID(userID);
+    status.setCollectionID(collectionID);
+    status.setState(state.toString());
+    status.setTotalItems(itemIDs.length);
+    status.setDeletedItems(deletedCount);
+    synchronized (failedItemIDs) {
+      status.setFailedItems(failedItemIDs.size());
+    }
+    status.setCreatedDate(createdDate);
+    status.setFinishedDate(finishedDate);
+    status.setLastError(lastError);
+    return status;
+  }
+
+  /**
+   * Write the current state of this job to its journal file.  The file is written to a temp
+   * file first and renamed into place, so a crash mid-write never leaves a half written journal.
+   *
+   * @param directory The journal directory
+   *
+   * @throws IOException
+   */
+  void writeJournal(File directory) throws IOException {
+    Properties props = new Properties();
+    props.setProperty("jobID", jobID);
+    props.setProperty("userID", Long.toString(userID));
+    props.setProperty("collectionID", Long.toString(collectionID));
+    props.setProperty("createdDate", Long.toString(createdDate.getTime()));
+    props.setProperty("topLevelDone", Boolean.toString(topLevelDone));
+    props.setProperty("processedCount", Integer.toString(processedCount));
+    props.setProperty("deletedCount", Integer.toString(deletedCount));
+    props.setProperty("itemIDs", joinIDs(itemIDs));
+    synchronized (failedItemIDs) {
+      long[] failed = new long[failedItemIDs.size()];
+      for (int i = 0; i < failed.length; i++) failed[i] = failedItemIDs.get(i);
+      props.setProperty("failedItemIDs", joinIDs(failed));
+    }
+
+    File tempFile = new File(directory, jobID + ".tmp");
+    OutputStream out = new FileOutputStream(tempFile);
+    try {
+      props.store(out, "Collection purge journal");
+      out.flush();
+      ((FileOutputStream)out).getFD().sync();
+    } finally {
+      out.close();
+    }
+    File journalFile = getJournalFile(directory);
+    if (!tempFile.renameTo(journalFile)) {
+      //Some platforms won't rename over an existing file
+      journalFile.delete();
+      if (!tempFile.renameTo(journalFile))
+        throw new IOException("Unable to write the purge journal " + journalFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Load a job back from its journal file.
+   *
+   * @param journalFile The journal file
+   *
+   * @return The job, or null if the file could not be read
+   */
+  static PurgeJob readJournal(File journalFile) {
+    Properties props = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(journalFile);
+      props.load(in);
+
+      PurgeJob job = new PurgeJob(props.getProperty("jobID"),
+                                  Long.parseLong(props.getProperty("userID")),
+                                  Long.parseLong(props.getProperty("collectionID")),
+                                  splitIDs(props.getProperty("itemIDs")),
+                                  new Date(Long.parseLong(props.getProperty("createdDate"))));
+      job.topLevelDone   = Boolean.parseBoolean(props.getProperty("topLevelDone"));
+      job.processedCount = Integer.parseInt(props.getProperty("processedCount"));
+      job.deletedCount   = Integer.parseInt(props.getProperty("deletedCount"));
+      for (long failedID : splitIDs(props.getProperty("failedItemIDs")))
+        job.failedItemIDs.add(failedID);
+      return job;
+    } catch (Throwable t) {
+      logger.error("Unable to read the purge journal " + journalFile.getAbsolutePath(), t);
+      return null;
+    } finally {
+      try { if (in != null) in.close(); } catch (Throwable t2) { /** Ignore Errors */ }
+    }
+  }
+
+  File getJournalFile(File directory) {
+    return new File(directory, jobID + ".job");
+  }
+
+  private static String joinIDs(long[] ids) {
+    StringBuilder builder = new StringBuilder(ids.length * 8);
+    for (int i = 0; i < ids.length; i++) {
+      if (i > 0) builder.append(',');
+      builder.append(ids[i]);
+    }
+    return builder.toString();
+  }
+
+  private static long[] splitIDs(String value) {
+    if ((value == null) || (value.trim().length() == 0))
+      return new long[0];
+    String[] parts = value.split(",");
+    long[] ids = new long[parts.length];
+    for (int i = 0; i < parts.length; i++)
+      ids[i] = Long.parseLong(parts[i].trim());
+    return ids;
+  }
+
+  /**
+   * @return the jobID
+   */
+  public String getJobID() {
+    return jobID;
+  }
+
+  /**
+   * @return the userID, or -1 if the user is not being deleted
+   */
+  public long getUserID() {
+    return userID;
+  }
+
+  /**
+   * @return the collectionID
+   */
+  public long getCollectionID() {
+    return collectionID;
+  }
+
+  /**
+   * @return the state
+   */
+  public PurgeState getState() {
+    return state;
+  }
+
+  long[] getItemIDs() {
+    return itemIDs;
+  }
+
+  boolean isTopLevelDone() {
+    return topLevelDone;
+  }
+
+  void setTopLevelDone(boolean topLevelDone) {
+    this.topLevelDone = topLevelDone;
+  }
+
+  int getProcessedCount() {
+    return processedCount;
+  }
+
+  void setProcessedCount(int processedCount) {
+    this.processedCount = processedCount;
+  }
+
+  void addDeleted(int count) {
+    deletedCount += count;
+  }
+
+  List<Long> getFailedItemIDs() {
+    return failedItemIDs;
+  }
+
+  void setState(PurgeState state) {
+    this.state = state;
+    if ((state == PurgeState.COMPLETED) || (state == PurgeState.FAILED))
+      finishedDate = new Date();
+  }
+
+  void setLastError(String lastError) {
+    this.lastError = lastError;
+  }
+}
@@ -0,0 +1,423 @@
+package com.ac.games.rest.review;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.GameType;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.data.BulkReviewSummary;
+import com.ac.games.rest.data.ReviewDecision;
+
+/**
+ * Runs a BGG approval (the move to REVIEWED that creates the Game and GameReltn) as one unit
+ * of work.
+ * <p>
+ * The reads the approval needs (the stored BGG record, the parent Game of an expansion, and the
+ * next Game and GameReltn IDs) don't depend on each other, so they're run at once.  Then the new
+ * Game, the new GameReltn and the parent's expansion list are written at once, and only when all
+ * three have landed is the BGG record itself flipped to REVIEWED.  If any write fails, the ones
+ * that landed are undone, so a game is never left half approved: either the BGG record is
+ * REVIEWED with its Game and GameReltn, or nothing changed.
+ * <p>
+ * The Game and GameReltn IDs are handed out here rather than straight from the max ID, so two
+ * approvals running at the same time can't pick the same ID.
+ *
+ * @author ac010168
+ */
+public class ApprovalService {
+
+  private static final Logger logger = LoggerFactory.getLogger(ApprovalService.class);
+
+  /** The number of approval reads and writes run at once */
+  public static int parallelism      = Integer.getInteger("games.approval.threads", 8);
+  /** The most decisions a single bulk review may carry */
+  public static int maxBulkDecisions = Integer.getInteger("games.review.bulkMax", 1000);
+
+  public enum Outcome { APPROVED, UNCHANGED, NOT_FOUND, PARENT_NOT_FOUND }
+
+  /**
+   * What an approval did, and the Game it created.
+   */
+  public static class Result {
+    private final Outcome outcome;
+    private final Game game;
+
+    Result(Outcome outcome, Game game) {
+      this.outcome = outcome;
+      this.game    = game;
+    }
+
+    /**
+     * @return the outcome
+     */
+    public Outcome getOutcome() {
+      return outcome;
+    }
+
+    /**
+     * @return the new Game, or null if none was created
+     */
+    public Game getGame() {
+      return game;
+    }
+  }
+
+  private final ExecutorService executor;
+  private final ExecutorService groups;
+  private final AtomicLong lastGameID;
+  private final AtomicLong lastReltnID;
+
+  public ApprovalService() {
+    executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "approval-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    //Bulk review groups wait on the executor, so they get threads of their own
+    groups = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "approval-group-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    lastGameID  = new AtomicLong();
+    lastReltnID = new AtomicLong();
+  }
+
+  /**
+   * Approve a BGG record, creating its Game and GameReltn.
+   *
+   * @param database The database
+   * @param game The BGG record as the reviewer submitted it; its review state and date are set here
+   * @param primaryPub The primary publisher chosen for the new Game
+   *
+   * @return What happened.  UNCHANGED means the record was already REVIEWED, so it was only updated.
+   *
+   * @throws DatabaseOperationException if a read or write failed; any writes already made have been undone
+   */
+  public Result approveBGG(final GamesDatabase database, final BGGGame game, String primaryPub) throws ConfigurationException, DatabaseOperationException {
+    final boolean expansion = (game.getGameType() == GameType.EXPANSION);
+    Future<BGGGame> prevRead = executor.submit(new Callable<BGGGame>() {
+      public BGGGame call() throws Exception {
+        return database.readBGGGameData(game.getBggID());
+      }
+    });
+    Future<Game> parentRead = executor.submit(new Callable<Game>() {
+      public Game call() throws Exception {
+        return expansion ? database.readGameByBGGID(game.getParentGameID()) : null;
+      }
+    });
+    Future<Long> maxGameRead = executor.submit(new Callable<Long>() {
+      public Long call() throws Exception {
+        return database.getMaxGameID();
+      }
+    });
+    Future<Long> maxReltnRead = executor.submit(new Callable<Long>() {
+      public Long call() throws Exception {
+        return database.getMaxGameReltnID();
+      }
+    });
+
+    BGGGame prevGame  = await(prevRead);
+    Game parentGame   = await(parentRead);
+    long maxGameID    = await(maxGameRead);
+    long maxReltnID   = await(maxReltnRead);
+    return approveBGG(database, game, prevGame, parentGame, maxGameID, maxReltnID, primaryPub);
+  }
+
+  /**
+   * The writes of an approval, for callers that have already done the reads.  Approvals that
+   * share a parent Game must be run one after the other with the same parent object, so each
+   * one adds to the expansions the last one wrote.
+   *
+   * @param prevGame The stored BGG record
+   * @param parentGame The parent Game of an expansion, or null
+   * @param maxGameID The database's max gameID
+   * @param maxReltnID The database's max reltnID
+   */
+  Result approveBGG(GamesDatabase database, BGGGame game, BGGGame prevGame, Game parentGame, long maxGameID, long maxReltnID, 
+                    String primaryPub) throws ConfigurationException, DatabaseOperationException {
+    boolean expansion = (game.getGameType() == GameType.EXPANSION);
+    if (prevGame == null)
+      return new Result(Outcome.NOT_FOUND, null);
+    if (prevGame.getReviewState() == ReviewState.REVIEWED) {
+      database.updateBGGGameData(game);
+      return new Result(Outcome.UNCHANGED, null);
+    }
+    if (expansion && (parentGame == null))
+      return new Result(Outcome.PARENT_NOT_FOUND, null);
+
+    long gameID  = nextID(lastGameID, maxGameID);
+    long reltnID = nextID(lastReltnID, maxReltnID);
+    Game newGame = convertBGGGameToGame(game, gameID, (parentGame == null) ? -1 : parentGame.getGameID(), primaryPub);
+    GameReltn newReltn = new GameReltn();
+    newReltn.setReltnID(reltnID);
+    newReltn.setGameID(gameID);
+    newReltn.setBggID(game.getBggID());
+    newReltn.setCsiIDs(new ArrayList<Long>());
+    newReltn.setMmIDs(new ArrayList<Long>());
+    newReltn.setAsinKeys(new ArrayList<String>());
+    newReltn.setOtherSites(new ArrayList<Long>());
+
+    new BGGApproval(database, game, newGame, newReltn, parentGame).run();
+    return new Result(Outcome.APPROVED, newGame);
+  }
+
+  /**
+   * Approve and reject many BGG, CSI and MM records at once.  See {@link BulkReview}.
+   *
+   * @param database The database
+   * @param decisions The decisions, no more than {@link #maxBulkDecisions}
+   *
+   * @return An outcome for every decision, in the order given
+   *
+   * @throws ConfigurationException if the database can't be reached
+   */
+  public BulkReviewSummary reviewAll(GamesDatabase database, List<ReviewDecision> decisions) throws ConfigurationException {
+    if (decisions.size() > maxBulkDecisions)
+      throw new IllegalArgumentException("No more than " + maxBulkDecisions + " items can be reviewed at once");
+    return new BulkReview(this, groups, database, decisions).run();
+  }
+
+  /**
+   * @return The pool the approval reads and writes run on
+   */
+  ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Stop the worker threads.
+   */
+  public void shutdown() {
+    groups.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Helper method to convert a BGGGame object into a Game Object
+   *
+   * @param bggGame The game we want to convert
+   * @param gameID  The new gameID sequence chosen for the game
+   * @param parentGameID The parentGameID (only required for expansion games)
+   * @param primaryPublisher The primary publisher chosen for this game
+   *
+   * @return A completed Game object
+   */
+  public static Game convertBGGGameToGame(BGGGame bggGame, long gameID, long parentGameID, String primaryPublisher) {
+    Game game = new Game();
+    game.setGameID(gameID);
+    game.setBggID(bggGame.getBggID());
+    game.setName(bggGame.getName());
+    game.setYearPublished(bggGame.getYearPublished());
+    game.setMinPlayers(bggGame.getMinPlayers());
+    game.setMaxPlayers(bggGame.getMaxPlayers());
+    game.setMinPlayingTime(bggGame.getMinPlayingTime());
+    game.setMaxPlayingTime(bggGame.getMaxPlayingTime());
+    game.setImageURL(bggGame.getImageURL());
+    game.setImageThumbnailURL(bggGame.getImageThumbnailURL());
+    game.setDescription(bggGame.getDescription());
+    game.setPrimaryPublisher(primaryPublisher);
+    game.setPublishers(bggGame.getPublishers());
+    game.setDesigners(bggGame.getDesigners());
+    game.setCategories(bggGame.getCategories());
+    game.setMechanisms(bggGame.getMechanisms());
+    game.setGameType(bggGame.getGameType());
+    game.setAddDate(new Date());
+
+    //If it's a parent game, Let's set an empty list so we can make it easier to update later
+    if ((game.getGameType() == GameType.BASE) || (game.getGameType() == GameType.COLLECTIBLE))
+      game.setExpansionIDs(new LinkedList<Long>());
+    else
+      game.setParentGameID(parentGameID);
+
+    return game;
+  }
+
+  /**
+   * The next unused ID, past both the database's max and anything we've already handed out.
+   */
+  private static long nextID(AtomicLong last, long databaseMax) {
+    while (true) {
+      long current = last.get();
+      long next    = Math.max(current, databaseMax) + 1;
+      if (last.compareAndSet(current, next)) return next;
+    }
+  }
+
+  /**
+   * Wait for a read or write, handing back the database exception it failed with.
+   */
+  static <V> V await(Future<V> future) throws ConfigurationException, DatabaseOperationException {
+    try {
+      return future.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting on the database", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof ConfigurationException)     throw (ConfigurationException)cause;
+      if (cause instanceof DatabaseOperationException) throw (DatabaseOperationException)cause;
+      if (cause instanceof RuntimeException)           throw (RuntimeException)cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * The writes of one approval, and how to undo the ones that landed.
+   */
+  private class BGGApproval {
+    final GamesDatabase database;
+    final BGGGame game;
+    final Game newGame;
+    final GameReltn newReltn;
+    final Game parentGame;
+    final List<Long> originalExpansionIDs;
+    ReviewState previousState;
+    Date previousDate;
+
+    BGGApproval(GamesDatabase database, BGGGame game, Game newGame, GameReltn newReltn, Game parentGame) {
+      this.database   = database;
+      this.game       = game;
+      this.newGame    = newGame;
+      this.newReltn   = newReltn;
+      this.parentGame = parentGame;
+      this.originalExpansionIDs = (parentGame == null) ? null : parentGame.getExpansionIDs();
+    }
+
+    void run() throws ConfigurationException, DatabaseOperationException {
+      Future<Void> gameWrite = executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          database.insertGame(newGame);
+          return null;
+        }
+      });
+      Future<Void> reltnWrite = executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          Application.vendorLinks.insert(database, newReltn);
+          return null;
+        }
+      });
+      Future<Void> parentWrite = null;
+      if (parentGame != null) {
+        List<Long> expansionIDs = (originalExpansionIDs == null) ? new ArrayList<Long>(1) : new ArrayList<Long>(originalExpansionIDs);
+        expansionIDs.add(newGame.getGameID());
+        parentGame.setExpansionIDs(expansionIDs);
+        parentWrite = executor.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            database.updateGame(parentGame);
+            return null;
+          }
+        });
+      }
+
+      boolean gameWritten   = landed(gameWrite);
+      boolean reltnWritten  = landed(reltnWrite);
+      boolean parentWritten = (parentWrite == null) || landed(parentWrite);
+      try {
+        if (!gameWritten)   await(gameWrite);
+        if (!reltnWritten)  await(reltnWrite);
+        if (!parentWritten) await(parentWrite);
+
+        //Everything else is in place, so this is the write that makes it an approval
+        previousState = game.getReviewState();
+        previousDate  = game.getReviewDate();
+        game.setReviewState(ReviewState.REVIEWED);
+        game.setReviewDate(new Date());
+        database.updateBGGGameData(game);
+      } catch (ConfigurationException ce) {
+        undo(gameWritten, reltnWritten, parentWritten && (parentWrite != null));
+        throw ce;
+      } catch (DatabaseOperationException doe) {
+        undo(gameWritten, reltnWritten, parentWritten && (parentWrite != null));
+        throw doe;
+      } catch (RuntimeException re) {
+        undo(gameWritten, reltnWritten, parentWritten && (parentWrite != null));
+        throw re;
+      }
+    }
+
+    /**
+     * Wait for a write, and say whether it worked.  The failure itself is picked up by await.
+     */
+    private boolean landed(Future<Void> write) {
+      try {
+        write.get();
+        return true;
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException ee) {
+        return false;
+      }
+    }
+
+    private void undo(boolean gameWritten, boolean reltnWritten, boolean parentWritten) {
+      logger.warn("Approval of bggID {} failed, undoing the writes that landed", game.getBggID());
+      if (previousState != null) {
+        game.setReviewState(previousState);
+        game.setReviewDate(previousDate);
+      }
+      //Only take our own ID back out; other approvals may have added theirs since we read the parent
+      if (parentGame != null) parentGame.setExpansionIDs(withoutID(parentGame.getExpansionIDs(), newGame.getGameID()));
+      if (parentWritten) {
+        try {
+          Game currentParent = database.readGame(parentGame.getGameID());
+          if ((currentParent != null) && (currentParent.getExpansionIDs() != null) && currentParent.getExpansionIDs().contains(newGame.getGameID())) {
+            currentParent.setExpansionIDs(withoutID(currentParent.getExpansionIDs(), newGame.getGameID()));
+            database.updateGame(currentParent);
+          }
+        } catch (Throwable t) {
+          logger.error("Unable to remove gameID " + newGame.getGameID() + " from the expansions of parent gameID " + parentGame.getGameID(), t);
+        }
+      }
+      if (reltnWritten) {
+        try {
+          Application.vendorLinks.delete(database, newReltn.getReltnID());
+        } catch (Throwable t) {
+          logger.error("Unable to remove the GameReltn " + newReltn.getReltnID() + " of the failed approval", t);
+        }
+      }
+      if (gameWritten) {
+        try {
+          database.deleteGame(newGame.getGameID());
+        } catch (Throwable t) {
+          logger.error("Unable to remove the Game " + newGame.getGameID() + " of the failed approval", t);
+        }
+      }
+    }
+  }
+
+  private static List<Long> withoutID(List<Long> ids, long id) {
+    if (ids == null) return null;
+    List<Long> remaining = new ArrayList<Long>(ids.size());
+    for (Long curID : ids)
+      if (curID.longValue() != id) remaining.add(curID);
+    return remaining;
+  }
+}
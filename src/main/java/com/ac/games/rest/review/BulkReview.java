@@ -0,0 +1,505 @@
+package com.ac.games.rest.review;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.BGGGameStats;
+import com.ac.games.data.CSIDataStats;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.GameType;
+import com.ac.games.data.MMDataStats;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.data.BulkReviewSummary;
+import com.ac.games.rest.data.ReviewDecision;
+import com.ac.games.rest.data.ReviewOutcome;
+import com.ac.games.rest.writebehind.BGGSyncTask;
+
+/**
+ * One bulk review request: a list of approve and reject decisions across the BGG, CSI and MM
+ * records, run together.
+ * <p>
+ * All the reads happen up front and at once, with each shared record read once: the records
+ * themselves, the GameReltn of every game a CSI or MM listing is being linked to, the parent
+ * Game of every BGG expansion, and the max IDs.  Only once every read is back do the writes
+ * start:
+ * <ul>
+ * <li>Rejects are single record writes, run in parallel.</li>
+ * <li>CSI and MM approvals are grouped by the game they link to.  The listings are flipped in
+ * parallel and the group's GameReltn is written once with all of them; if that write fails the
+ * listings are flipped back.</li>
+ * <li>BGG approvals run through {@link ApprovalService}, grouped by parent so the expansions of
+ * one parent are added one after the other, with the groups in parallel.</li>
+ * </ul>
+ * Every decision gets its own {@link ReviewOutcome}.  Records that are already approved can't
+ * be rejected here; the single review PUTs handle taking an approval back.
+ *
+ * @author ac010168
+ */
+class BulkReview {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkReview.class);
+
+  private static final String APPROVE = "approve";
+  private static final String REJECT  = "reject";
+
+  private final ApprovalService approvals;
+  private final ExecutorService writers;
+  private final ExecutorService groups;
+  private final GamesDatabase database;
+  private final List<ReviewDecision> decisions;
+
+  BulkReview(ApprovalService approvals, ExecutorService groups, GamesDatabase database, List<ReviewDecision> decisions) {
+    this.approvals = approvals;
+    this.writers   = approvals.getExecutor();
+    this.groups    = groups;
+    this.database  = database;
+    this.decisions = decisions;
+  }
+
+  /**
+   * One valid decision, and what we've learned about it.
+   */
+  private static class Entry {
+    final ReviewDecision decision;
+    final ReviewOutcome outcome;
+    final ReviewSource<Object> source;
+    final ReviewState newState;
+    Future<Object> read;
+    Object record;
+    ReviewState previousState;
+    Game newGame;
+
+    @SuppressWarnings("unchecked")
+    Entry(ReviewDecision decision, ReviewOutcome outcome, ReviewSource<?> source) {
+      this.decision = decision;
+      this.outcome  = outcome;
+      this.source   = (ReviewSource<Object>)source;
+      this.newState = APPROVE.equalsIgnoreCase(decision.getReview()) ? ReviewState.REVIEWED : ReviewState.REJECTED;
+    }
+
+    boolean isBGG() {
+      return source == (Object)ReviewSource.BGG;
+    }
+
+    boolean isCSI() {
+      return source == (Object)ReviewSource.CSI;
+    }
+  }
+
+  /**
+   * Run every decision.
+   *
+   * @throws ConfigurationException if the database can't be reached for the reads, which all happen
+   * before the first write, so nothing has been written
+   */
+  BulkReviewSummary run() throws ConfigurationException {
+    long startTime = System.currentTimeMillis();
+    List<ReviewOutcome> outcomes = new ArrayList<ReviewOutcome>(decisions.size());
+    List<Entry> entries = validate(outcomes);
+
+    //All the reads that only depend on the request go out together
+    for (final Entry entry : entries) {
+      entry.read = writers.submit(new Callable<Object>() {
+        public Object call() throws Exception {
+          return entry.source.read(database, entry.decision.getId());
+        }
+      });
+    }
+    Map<Long, Future<GameReltn>> reltnReads = new LinkedHashMap<Long, Future<GameReltn>>();
+    boolean anyBGGApprovals = false;
+    for (Entry entry : entries) {
+      if (entry.newState != ReviewState.REVIEWED) continue;
+      if (entry.isBGG()) anyBGGApprovals = true;
+      else if (!reltnReads.containsKey(entry.decision.getGameID()))
+        reltnReads.put(entry.decision.getGameID(), readReltn(entry.decision.getGameID()));
+    }
+    Future<Long> maxGameRead  = null;
+    Future<Long> maxReltnRead = null;
+    if (anyBGGApprovals) {
+      maxGameRead = writers.submit(new Callable<Long>() {
+        public Long call() throws Exception {
+          return database.getMaxGameID();
+        }
+      });
+      maxReltnRead = writers.submit(new Callable<Long>() {
+        public Long call() throws Exception {
+          return database.getMaxGameReltnID();
+        }
+      });
+    }
+
+    List<Entry> rejects      = new ArrayList<Entry>();
+    List<Entry> links        = new ArrayList<Entry>();
+    List<Entry> bggApprovals = new ArrayList<Entry>();
+    for (Entry entry : entries) {
+      entry.record = await(entry.read, entry.outcome);
+      if (entry.outcome.getStatus() != null) continue;
+      if (entry.record == null) {
+        entry.outcome.finish(ReviewOutcome.STATUS_NOT_FOUND, "The requested item could not be found in the database.");
+        continue;
+      }
+      entry.previousState = entry.source.getReviewState(entry.record);
+      if (entry.previousState == entry.newState)
+        entry.outcome.finish(ReviewOutcome.STATUS_UNCHANGED, null);
+      else if (entry.previousState == ReviewState.REVIEWED)
+        entry.outcome.finish(ReviewOutcome.STATUS_INVALID, "Approved items must be rejected one at a time with the review PUT");
+      else if (entry.newState == ReviewState.REJECTED) rejects.add(entry);
+      else if (entry.isBGG())                         bggApprovals.add(entry);
+      else                                            links.add(entry);
+    }
+
+    //The rest of the reads depend on the records.  Every read is back before the first write,
+    //so a database we can't reach fails the request with nothing written.
+    Map<Long, List<Entry>> linkGroups = groupLinks(links);
+    Map<Long, List<Entry>> bggGroups  = groupBGG(bggApprovals);
+    Map<Long, Future<Game>> parentReads = new LinkedHashMap<Long, Future<Game>>();
+    for (long parentBGGID : bggGroups.keySet())
+      if (parentBGGID > 0) parentReads.put(parentBGGID, readParent(parentBGGID));
+    Map<Long, GameReltn> reltns = new HashMap<Long, GameReltn>();
+    for (Map.Entry<Long, List<Entry>> game : linkGroups.entrySet()) {
+      GameReltn reltn = await(reltnReads.get(game.getKey()), game.getValue());
+      if (reltn != null) reltns.put(game.getKey(), reltn);
+      else fail(game.getValue(), "Unable to link this entry to a GameReltn, none was found for gameID " + game.getKey());
+    }
+    Map<Long, Game> parents = new HashMap<Long, Game>();
+    for (Map.Entry<Long, Future<Game>> parent : parentReads.entrySet())
+      parents.put(parent.getKey(), await(parent.getValue(), bggGroups.get(parent.getKey())));
+    long maxGameID  = -1;
+    long maxReltnID = -1;
+    if (maxGameRead != null) {
+      try {
+        maxGameID  = ApprovalService.await(maxGameRead);
+        maxReltnID = ApprovalService.await(maxReltnRead);
+      } catch (DatabaseOperationException doe) {
+        fail(bggApprovals, "An error occurred running the request: " + doe.getMessage());
+      }
+    }
+
+    List<Future<?>> work = new ArrayList<Future<?>>();
+    try {
+      reject(rejects);
+      work.addAll(link(linkGroups, reltns));
+      work.addAll(approveBGG(bggGroups, parents, maxGameID, maxReltnID));
+    } catch (RuntimeException re) {
+      //Whatever was written still gets its outcome and bookkeeping below
+      logger.error("The bulk review stopped part way through its writes", re);
+    }
+    for (Future<?> group : work) {
+      try {
+        group.get();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        logger.error("A bulk review group failed", e);
+      }
+    }
+
+    for (Entry entry : entries) {
+      if (entry.outcome.getStatus() == null)
+        entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "The review did not complete");
+      else if (ReviewOutcome.STATUS_OK.equals(entry.outcome.getStatus()))
+        reviewed(entry);
+    }
+
+    BulkReviewSummary summary = new BulkReviewSummary(outcomes, System.currentTimeMillis() - startTime);
+    logger.info("Bulk reviewed {} items in {}ms: {} succeeded, {} failed", outcomes.size(), summary.getElapsedMillis(),
+                summary.getSucceeded(), summary.getFailed());
+    return summary;
+  }
+
+  /**
+   * Check every decision, adding an outcome for each in order.
+   *
+   * @return The decisions that can be run
+   */
+  private List<Entry> validate(List<ReviewOutcome> outcomes) {
+    List<Entry> entries = new ArrayList<Entry>(decisions.size());
+    Set<String> seen = new HashSet<String>();
+    for (ReviewDecision decision : decisions) {
+      ReviewOutcome outcome = new ReviewOutcome(decision);
+      outcomes.add(outcome);
+      ReviewSource<?> source = ReviewSource.forName(decision.getSource());
+      String review = decision.getReview();
+      if (source == null)
+        outcome.finish(ReviewOutcome.STATUS_INVALID, "The source value of " + decision.getSource() + " is not a valid source value");
+      else if (decision.getId() <= 0)
+        outcome.finish(ReviewOutcome.STATUS_INVALID, "There was no valid ID provided");
+      else if (!APPROVE.equalsIgnoreCase(review) && !REJECT.equalsIgnoreCase(review))
+        outcome.finish(ReviewOutcome.STATUS_INVALID, "The review value of " + review + " is not a valid review value");
+      else if (!seen.add(source.getName() + ":" + decision.getId()))
+        outcome.finish(ReviewOutcome.STATUS_INVALID, "The item appears more than once in the request");
+      else if (APPROVE.equalsIgnoreCase(review) && (source == ReviewSource.BGG) &&
+               ((decision.getPrimaryPub() == null) || (decision.getPrimaryPub().trim().length() == 0)))
+        outcome.finish(ReviewOutcome.STATUS_INVALID, "This game cannot be reviewed without a primary publisher");
+      else if (APPROVE.equalsIgnoreCase(review) && (source != ReviewSource.BGG) && (decision.getGameID() <= 0))
+        outcome.finish(ReviewOutcome.STATUS_INVALID, "This game cannot be reviewed without a gameID provided");
+      else {
+        //Make sure a pending sync write can't land on top of this one
+        if (source == ReviewSource.BGG) Application.writeBehind.flushKey(BGGSyncTask.buildKey(decision.getId()));
+        entries.add(new Entry(decision, outcome, source));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Move the records to REJECTED, all at once.
+   */
+  private void reject(List<Entry> rejects) {
+    List<Future<Void>> writes = new ArrayList<Future<Void>>(rejects.size());
+    for (Entry entry : rejects)
+      writes.add(writeState(entry, entry.newState));
+    for (int i = 0; i < rejects.size(); i++) {
+      Entry entry = rejects.get(i);
+      if (landed(writes.get(i), entry)) entry.outcome.finish(ReviewOutcome.STATUS_OK, null);
+    }
+  }
+
+  /**
+   * @return The CSI and MM approvals, grouped by the game they link to
+   */
+  private static Map<Long, List<Entry>> groupLinks(List<Entry> links) {
+    Map<Long, List<Entry>> byGame = new LinkedHashMap<Long, List<Entry>>();
+    for (Entry entry : links)
+      addTo(byGame, entry.decision.getGameID(), entry);
+    return byGame;
+  }
+
+  /**
+   * @return The BGG approvals, grouped by the bggID of their parent; games that aren't
+   * expansions each get a group of their own, under a negative key
+   */
+  private static Map<Long, List<Entry>> groupBGG(List<Entry> bggApprovals) {
+    Map<Long, List<Entry>> byParent = new LinkedHashMap<Long, List<Entry>>();
+    long standalone = 0;
+    for (Entry entry : bggApprovals) {
+      BGGGame game = (BGGGame)entry.record;
+      addTo(byParent, (game.getGameType() == GameType.EXPANSION) ? game.getParentGameID() : --standalone, entry);
+    }
+    return byParent;
+  }
+
+  private static void addTo(Map<Long, List<Entry>> groups, long key, Entry entry) {
+    List<Entry> group = groups.get(key);
+    if (group == null) {
+      group = new ArrayList<Entry>();
+      groups.put(key, group);
+    }
+    group.add(entry);
+  }
+
+  /**
+   * Approve the CSI and MM listings, one group per game.
+   */
+  private List<Future<?>> link(Map<Long, List<Entry>> linkGroups, Map<Long, GameReltn> reltns) {
+    List<Future<?>> work = new ArrayList<Future<?>>(linkGroups.size());
+    for (Map.Entry<Long, List<Entry>> game : linkGroups.entrySet()) {
+      final List<Entry> group = game.getValue();
+      final GameReltn reltn = reltns.get(game.getKey());
+      if (reltn == null) continue;
+      work.add(groups.submit(new Runnable() {
+        public void run() {
+          linkGroup(reltn, group);
+        }
+      }));
+    }
+    return work;
+  }
+
+  private void linkGroup(GameReltn reltn, List<Entry> group) {
+    List<Future<Void>> writes = new ArrayList<Future<Void>>(group.size());
+    for (Entry entry : group)
+      writes.add(writeState(entry, ReviewState.REVIEWED));
+    List<Entry> flipped = new ArrayList<Entry>(group.size());
+    for (int i = 0; i < group.size(); i++)
+      if (landed(writes.get(i), group.get(i))) flipped.add(group.get(i));
+    if (flipped.isEmpty()) return;
+
+    for (Entry entry : flipped) {
+      List<Long> ids = entry.isCSI() ? reltn.getCsiIDs() : reltn.getMmIDs();
+      if (ids == null) ids = new ArrayList<Long>();
+      long linkedGameID = entry.isCSI() ? Application.vendorLinks.getGameForCSI(entry.decision.getId())
+                                        : Application.vendorLinks.getGameForMM(entry.decision.getId());
+      if (linkedGameID != reltn.getGameID()) ids.add(entry.decision.getId());
+      if (entry.isCSI()) reltn.setCsiIDs(ids);
+      else               reltn.setMmIDs(ids);
+    }
+    try {
+      Application.vendorLinks.update(database, reltn);
+      for (Entry entry : flipped) {
+        entry.outcome.setGameID(reltn.getGameID());
+        entry.outcome.finish(ReviewOutcome.STATUS_OK, null);
+      }
+    } catch (Exception e) {
+      logger.error("Unable to write the GameReltn for gameID " + reltn.getGameID() + ", putting its listings back", e);
+      writes.clear();
+      for (Entry entry : flipped)
+        writes.add(writeState(entry, entry.previousState));
+      for (int i = 0; i < flipped.size(); i++) {
+        Entry entry = flipped.get(i);
+        if (!landed(writes.get(i), entry))
+          logger.error("The {} listing {} is REVIEWED but not linked to gameID {}", entry.source.getName(), entry.decision.getId(), reltn.getGameID());
+        entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred linking to the GameReltn: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Approve the BGG records, one group per parent.
+   */
+  private List<Future<?>> approveBGG(Map<Long, List<Entry>> bggGroups, Map<Long, Game> parents, final long maxGameID, final long maxReltnID) {
+    List<Future<?>> work = new ArrayList<Future<?>>(bggGroups.size());
+    for (Map.Entry<Long, List<Entry>> parent : bggGroups.entrySet()) {
+      final List<Entry> group = parent.getValue();
+      final Game parentGame = parents.get(parent.getKey());
+      work.add(groups.submit(new Runnable() {
+        public void run() {
+          for (Entry entry : group) {
+            if (entry.outcome.getStatus() != null) continue;
+            BGGGame game = (BGGGame)entry.record;
+            try {
+              ApprovalService.Result result = approvals.approveBGG(database, game, game, parentGame, maxGameID, maxReltnID, entry.decision.getPrimaryPub());
+              if (result.getOutcome() == ApprovalService.Outcome.PARENT_NOT_FOUND)
+                entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "The Parent Game for this Expansion could not be found");
+              else {
+                entry.newGame = result.getGame();
+                entry.outcome.setGameID(entry.newGame.getGameID());
+                entry.outcome.finish(ReviewOutcome.STATUS_OK, null);
+              }
+            } catch (Exception e) {
+              entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred approving the game: " + e.getMessage());
+            }
+          }
+        }
+      }));
+    }
+    return work;
+  }
+
+  /**
+   * Keep the indexes, stats and review queue in step with a record that's been reviewed, the
+   * same as the single review PUTs do.
+   */
+  private void reviewed(Entry entry) {
+    long id = entry.decision.getId();
+    Application.reviewQueue.complete(entry.source, id);
+    if (entry.isBGG()) {
+      Application.statsCache.recordReviewTransition(BGGGameStats.BGG_GAME_STATS, entry.newState);
+      Application.nameIndex.indexBGGGame((BGGGame)entry.record);
+      if (entry.newGame != null) Application.nameIndex.indexGame(entry.newGame);
+    } else if (entry.isCSI()) {
+      CoolStuffIncPriceData data = (CoolStuffIncPriceData)entry.record;
+      Application.statsCache.recordReviewTransition(CSIDataStats.CSI_DATA_STATS, entry.newState);
+      Application.nameIndex.indexCSIData(data);
+      Application.priceCards.updateCSI(data);
+      Application.priceHistory.recordCSI(data);
+    } else {
+      MiniatureMarketPriceData data = (MiniatureMarketPriceData)entry.record;
+      Application.statsCache.recordReviewTransition(MMDataStats.MM_DATA_STATS, entry.newState);
+      Application.nameIndex.indexMMData(data);
+      Application.priceCards.updateMM(data);
+      Application.priceHistory.recordMM(data);
+    }
+  }
+
+  /**
+   * Fail the entries of a group that haven't already got an outcome.
+   */
+  private static void fail(List<Entry> group, String message) {
+    for (Entry entry : group)
+      if (entry.outcome.getStatus() == null)
+        entry.outcome.finish(ReviewOutcome.STATUS_ERROR, message);
+  }
+
+  private Future<GameReltn> readReltn(final long gameID) {
+    return writers.submit(new Callable<GameReltn>() {
+      public GameReltn call() throws Exception {
+        return Application.vendorLinks.readGameReltn(database, gameID);
+      }
+    });
+  }
+
+  private Future<Game> readParent(final long parentBGGID) {
+    return writers.submit(new Callable<Game>() {
+      public Game call() throws Exception {
+        return database.readGameByBGGID(parentBGGID);
+      }
+    });
+  }
+
+  private Future<Void> writeState(final Entry entry, final ReviewState state) {
+    entry.source.setReviewState(entry.record, state);
+    return writers.submit(new Callable<Void>() {
+      public Void call() throws Exception {
+        entry.source.update(database, entry.record);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Wait for a write, failing the entry (and putting its state back in memory) if it didn't land.
+   */
+  private boolean landed(Future<Void> write, Entry entry) {
+    try {
+      ApprovalService.await(write);
+      return true;
+    } catch (Exception e) {
+      entry.source.setReviewState(entry.record, entry.previousState);
+      entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred running the request: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Wait for a read that one entry needs.
+   *
+   * @return The value, or null with the entry failed if the read failed
+   */
+  private static <V> V await(Future<V> read, ReviewOutcome outcome) throws ConfigurationException {
+    try {
+      return ApprovalService.await(read);
+    } catch (DatabaseOperationException doe) {
+      outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred running the request: " + doe.getMessage());
+    } catch (RuntimeException re) {
+      outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred running the request: " + re.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Wait for a read that a whole group needs.
+   */
+  private static <V> V await(Future<V> read, List<Entry> group) throws ConfigurationException {
+    try {
+      return ApprovalService.await(read);
+    } catch (DatabaseOperationException doe) {
+      for (Entry entry : group)
+        entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred running the request: " + doe.getMessage());
+    } catch (RuntimeException re) {
+      for (Entry entry : group)
+        entry.outcome.finish(ReviewOutcome.STATUS_ERROR, "An error occurred running the request: " + re.getMessage());
+    }
+    return null;
+  }
+}
@@ -0,0 +1,502 @@
+package com.ac.games.rest.review;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.data.ReviewLease;
+
+/**
+ * Hands out the pending BGG, CSI and MM records to the moderators from memory, one lease at a
+ * time.
+ * <p>
+ * Each source has a queue per review order (new and old) holding the IDs of up to
+ * {@link #prefetchSize} pending records.  When a queue drops below {@link #refillBelow} it's
+ * topped up on the refill thread, never on the request thread.  The database can only tell us
+ * the single newest or oldest pending record, so a refill starts from that record and walks the
+ * IDs from there (down for new, up for old), keeping the pending ones, and carries on from where
+ * it stopped the next time.  Once a walk finds nothing it starts again from the newest or oldest
+ * pending record.  The new walk also checks the newest pending record on every refill, and walks
+ * down from it first when records have come in above where the walk started.
+ * <p>
+ * The queues only hold IDs, so a record is read fresh from the database as it's leased, and one
+ * that is no longer pending (reviewed by a plain PUT, say) is dropped then.  A request that finds
+ * its queue empty waits up to {@link #refillWaitMillis} on the refill thread rather than reading
+ * the database itself.
+ * <p>
+ * A record handed out is leased to that reviewer for {@link #leaseMillis}, and no one else is
+ * given it while the lease holds.  A lease that runs out, or is handed back, puts the record
+ * back at the front of its queue.  The review PUTs and the deletes call {@link #complete} so a
+ * finished record is dropped from the queues and its lease.
+ *
+ * @author ac010168
+ */
+public class ReviewQueue {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReviewQueue.class);
+
+  public static final String ORDER_NEW = "new";
+  public static final String ORDER_OLD = "old";
+
+  /** The number of pending records kept ready per source and order */
+  public static int  prefetchSize = Integer.getInteger("games.review.prefetch", 20);
+  /** A queue with fewer than this many records left is refilled in the background */
+  public static int  refillBelow  = Integer.getInteger("games.review.refillBelow", 5);
+  /** How long a reviewer holds a record before it goes back on the queue */
+  public static long leaseMillis  = Long.getLong("games.review.lease", 10 * 60 * 1000L);
+  /** The most IDs a single refill will read looking for pending records */
+  public static int  scanLimit    = Integer.getInteger("games.review.scan", 2000);
+  /** How long a request with an empty queue waits on the refill before reporting nothing waiting */
+  public static long refillWaitMillis = Long.getLong("games.review.refillWait", 2000L);
+
+  private final Map<String, SourceQueue<?>> queues;
+  private final ExecutorService refiller;
+
+  public ReviewQueue() {
+    queues = new HashMap<String, SourceQueue<?>>();
+    queues.put(ReviewSource.BGG.getName(), new SourceQueue<Object>(ReviewSource.BGG));
+    queues.put(ReviewSource.CSI.getName(), new SourceQueue<Object>(ReviewSource.CSI));
+    queues.put(ReviewSource.MM.getName(),  new SourceQueue<Object>(ReviewSource.MM));
+    refiller = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "review-refill-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Lease the next pending record to a reviewer.
+   *
+   * @param database The database to refill from
+   * @param source bgg, csi or mm
+   * @param order new or old
+   * @param reviewer Who the record is for, or null
+   *
+   * @return The lease, or null if nothing is waiting on a review
+   */
+  public ReviewLease next(GamesDatabase database, ReviewSource<?> source, String order, String reviewer) throws ConfigurationException, DatabaseOperationException {
+    SourceQueue<?> queue = queues.get(source.getName());
+    Lane lane = queue.lane(order);
+    ReviewLease lease = lease(database, queue, lane, reviewer);
+    if (lease == null) {
+      awaitRefill(scheduleRefill(database, queue, lane));
+      lease = lease(database, queue, lane, reviewer);
+    }
+    if (queue.size(lane) < refillBelow) scheduleRefill(database, queue, lane);
+    return lease;
+  }
+
+  /**
+   * Lease the next pending record without a reviewer, for the older review pages that only
+   * want the record.
+   *
+   * @return The record, or null if nothing is waiting on a review
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T nextItem(GamesDatabase database, ReviewSource<T> source, String order) throws ConfigurationException, DatabaseOperationException {
+    ReviewLease lease = next(database, source, order, null);
+    return (lease == null) ? null : (T)lease.getItem();
+  }
+
+  /**
+   * Give a record back before its lease runs out, putting it at the front of its queue.
+   *
+   * @return true if the lease was held
+   */
+  public boolean release(String leaseID) {
+    for (SourceQueue<?> queue : queues.values())
+      if (queue.release(leaseID)) return true;
+    return false;
+  }
+
+  /**
+   * Give a reviewer another {@link #leaseMillis} on a record.
+   *
+   * @return The renewed lease, or null if it isn't held any more
+   */
+  public ReviewLease renew(String leaseID) {
+    for (SourceQueue<?> queue : queues.values()) {
+      ReviewLease lease = queue.renew(leaseID);
+      if (lease != null) return lease;
+    }
+    return null;
+  }
+
+  /**
+   * Drop a record that has been reviewed (or deleted) from the queues and its lease.
+   *
+   * @param source bgg, csi or mm
+   * @param id The vendor ID
+   */
+  public void complete(ReviewSource<?> source, long id) {
+    queues.get(source.getName()).complete(id);
+  }
+
+  /**
+   * Drop everything, so the queues are rebuilt from the database.
+   */
+  public void clear() {
+    for (SourceQueue<?> queue : queues.values())
+      queue.clear();
+  }
+
+  /**
+   * @return The queued and leased counts per source
+   */
+  public Map<String, Object> getStatus() {
+    Map<String, Object> status = new LinkedHashMap<String, Object>();
+    for (ReviewSource<?> source : new ReviewSource<?>[] { ReviewSource.BGG, ReviewSource.CSI, ReviewSource.MM }) {
+      SourceQueue<?> queue = queues.get(source.getName());
+      Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+      synchronized (queue) {
+        counts.put("queuedNew", queue.newest.items.size());
+        counts.put("queuedOld", queue.oldest.items.size());
+        counts.put("leased", queue.leases.size());
+      }
+      status.put(source.getName(), counts);
+    }
+    return status;
+  }
+
+  /**
+   * Stop the refill thread.
+   */
+  public void shutdown() {
+    refiller.shutdownNow();
+  }
+
+  /**
+   * Take IDs off the front of the lane until one is still pending, and lease it with the record as
+   * it is now.
+   *
+   * @return The lease, or null if the lane ran out
+   */
+  private <T> ReviewLease lease(GamesDatabase database, SourceQueue<T> queue, Lane lane, String reviewer) throws ConfigurationException, DatabaseOperationException {
+    while (true) {
+      long id = queue.take(lane);
+      if (id <= 0) return null;
+
+      boolean read = false;
+      try {
+        T record = queue.source.read(database, id);
+        read = true;
+        if ((record == null) || !queue.source.isPending(record)) {
+          queue.drop(id);
+          continue;
+        }
+        ReviewLease lease = queue.lease(lane, id, record, reviewer);
+        if (lease != null) return lease;
+      } finally {
+        //Don't lose the record if the read failed
+        if (!read) queue.putBack(lane, id);
+      }
+    }
+  }
+
+  /**
+   * Start a refill of the lane on the refill thread, unless one is already waiting or running.
+   *
+   * @return The refill, or null if it couldn't be started
+   */
+  private FutureTask<Void> scheduleRefill(final GamesDatabase database, final SourceQueue<?> queue, final Lane lane) {
+    FutureTask<Void> running = lane.refill.get();
+    if (running != null) return running;
+    FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+      public void run() {
+        try {
+          refill(database, queue, lane);
+        } catch (Exception e) {
+          logger.error("Unable to refill the " + queue.source.getName() + " " + lane.order + " review queue", e);
+        }
+      }
+    }, null) {
+      protected void done() {
+        lane.refill.compareAndSet(this, null);
+      }
+    };
+    if (!lane.refill.compareAndSet(null, task)) return lane.refill.get();
+    try {
+      refiller.execute(task);
+    } catch (RejectedExecutionException ree) {
+      //The refiller has been shut down
+      lane.refill.compareAndSet(task, null);
+      return null;
+    }
+    return task;
+  }
+
+  private static void awaitRefill(FutureTask<Void> refill) {
+    if (refill == null) return;
+    try {
+      refill.get(refillWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      //Still going; this request reports nothing waiting, the next one will find the records
+    } catch (ExecutionException ee) {
+      //The refill logs its own failures
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Top a queue back up to {@link #prefetchSize}.  Only one refill of a lane runs at a time.
+   */
+  private <T> void refill(GamesDatabase database, SourceQueue<T> queue, Lane lane) throws ConfigurationException, DatabaseOperationException {
+    synchronized (lane) {
+      int wanted = prefetchSize - queue.size(lane);
+      if (wanted <= 0) return;
+      ReviewSource<T> source = queue.source;
+
+      if (lane.cursor <= 0) {
+        T anchor = source.readForReview(database, lane.order);
+        if (anchor == null) return;
+        lane.cursor = source.getID(anchor);
+        lane.top    = lane.cursor;
+        lane.gapCursor = -1;
+      } else if (lane.descending) {
+        //Records that came in above where this walk started would never be reached by it
+        T newest = source.readForReview(database, lane.order);
+        if ((newest != null) && (source.getID(newest) > lane.top)) {
+          if (lane.gapCursor <= 0) {
+            lane.gapCursor = source.getID(newest);
+            lane.gapEnd    = lane.top;
+          }
+          lane.top = source.getID(newest);
+        }
+      }
+
+      queue.startRefill();
+      List<Long> found = new ArrayList<Long>(wanted);
+      try {
+        int scanned = 0;
+        //The gap above the walk first, as those are the newest
+        while ((found.size() < wanted) && (scanned < scanLimit) && (lane.gapCursor > lane.gapEnd)) {
+          long id = lane.gapCursor--;
+          scanned++;
+          if (isPending(database, queue, id)) found.add(id);
+        }
+        if (lane.gapCursor <= lane.gapEnd) lane.gapCursor = -1;
+        while ((found.size() < wanted) && (scanned < scanLimit) && (lane.cursor > 0)) {
+          long id = lane.cursor;
+          lane.cursor += lane.descending ? -1 : 1;
+          scanned++;
+          if (isPending(database, queue, id)) found.add(id);
+        }
+      } finally {
+        queue.finishRefill(lane, found);
+      }
+      //Nothing left this way, so start again from the end next time
+      if (found.isEmpty()) lane.cursor = -1;
+      logger.debug("Refilled the {} {} review queue with {} records", source.getName(), lane.order, found.size());
+    }
+  }
+
+  private static <T> boolean isPending(GamesDatabase database, SourceQueue<T> queue, long id) throws ConfigurationException, DatabaseOperationException {
+    if (queue.isHeld(id)) return false;
+    T record = queue.source.read(database, id);
+    return (record != null) && queue.source.isPending(record);
+  }
+
+  /**
+   * The IDs queued for one review order.  The cursors belong to the refill, the items to the
+   * source queue's lock.
+   */
+  private static class Lane {
+    final String order;
+    final boolean descending;
+    final LinkedList<Long> items = new LinkedList<Long>();
+    /** The refill waiting or running, if there is one */
+    final AtomicReference<FutureTask<Void>> refill = new AtomicReference<FutureTask<Void>>();
+    volatile long cursor = -1;
+    /** The highest ID the new walk has covered */
+    long top = -1;
+    /** Where the walk down through records that came in above top has got to, and where it stops */
+    long gapCursor = -1;
+    long gapEnd    = -1;
+
+    Lane(String order) {
+      this.order      = order;
+      this.descending = ORDER_NEW.equals(order);
+    }
+  }
+
+  /**
+   * A record out with a reviewer.
+   */
+  private static class Lease {
+    final String leaseID;
+    final long id;
+    final Object item;
+    final Lane lane;
+    final String reviewer;
+    long expiresAt;
+
+    Lease(String leaseID, long id, Object item, Lane lane, String reviewer, long expiresAt) {
+      this.leaseID   = leaseID;
+      this.id        = id;
+      this.item      = item;
+      this.lane      = lane;
+      this.reviewer  = reviewer;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Both lanes and the leases of one source, all guarded by the SourceQueue itself.
+   */
+  private static class SourceQueue<T> {
+    final ReviewSource<T> source;
+    final Lane newest = new Lane(ORDER_NEW);
+    final Lane oldest = new Lane(ORDER_OLD);
+    /** Every ID that's queued or leased, so no record is handed out twice */
+    final Set<Long> held = new HashSet<Long>();
+    final Map<Long, Lease> leases = new HashMap<Long, Lease>();
+    final Map<String, Lease> leasesByLeaseID = new HashMap<String, Lease>();
+    /** Records completed while a refill was reading, which it mustn't queue */
+    final Set<Long> completedDuringRefill = new HashSet<Long>();
+    int activeRefills;
+
+    @SuppressWarnings("unchecked")
+    SourceQueue(ReviewSource<?> source) {
+      this.source = (ReviewSource<T>)source;
+    }
+
+    Lane lane(String order) {
+      return ORDER_NEW.equalsIgnoreCase(order) ? newest : oldest;
+    }
+
+    synchronized int size(Lane lane) {
+      return lane.items.size();
+    }
+
+    synchronized boolean isHeld(long id) {
+      return held.contains(id);
+    }
+
+    /**
+     * Take the next ID off the front of the lane.  It stays held until it's leased, dropped or
+     * put back.
+     *
+     * @return The ID, or -1 if the lane is empty
+     */
+    synchronized long take(Lane lane) {
+      expire(System.currentTimeMillis());
+      Long id = lane.items.poll();
+      return (id == null) ? -1 : id;
+    }
+
+    /**
+     * @return The lease, or null if the record was completed while it was being read
+     */
+    synchronized ReviewLease lease(Lane lane, long id, T record, String reviewer) {
+      if (!held.contains(id)) return null;
+      Lease lease = new Lease(UUID.randomUUID().toString(), id, record, lane, reviewer, System.currentTimeMillis() + leaseMillis);
+      leases.put(id, lease);
+      leasesByLeaseID.put(lease.leaseID, lease);
+      return toLeaseData(lease);
+    }
+
+    synchronized void drop(long id) {
+      held.remove(id);
+    }
+
+    synchronized void putBack(Lane lane, long id) {
+      if (held.contains(id)) lane.items.addFirst(id);
+    }
+
+    synchronized boolean release(String leaseID) {
+      Lease lease = leasesByLeaseID.remove(leaseID);
+      if (lease == null) return false;
+      leases.remove(lease.id);
+      lease.lane.items.addFirst(lease.id);
+      return true;
+    }
+
+    synchronized ReviewLease renew(String leaseID) {
+      expire(System.currentTimeMillis());
+      Lease lease = leasesByLeaseID.get(leaseID);
+      if (lease == null) return null;
+      lease.expiresAt = System.currentTimeMillis() + leaseMillis;
+      return toLeaseData(lease);
+    }
+
+    synchronized void complete(long id) {
+      held.remove(id);
+      if (activeRefills > 0) completedDuringRefill.add(id);
+      Lease lease = leases.remove(id);
+      if (lease != null) leasesByLeaseID.remove(lease.leaseID);
+      for (Lane lane : new Lane[] { newest, oldest }) {
+        Iterator<Long> iterator = lane.items.iterator();
+        while (iterator.hasNext())
+          if (iterator.next() == id) iterator.remove();
+      }
+    }
+
+    synchronized void startRefill() {
+      activeRefills++;
+    }
+
+    synchronized void finishRefill(Lane lane, List<Long> found) {
+      for (Long id : found) {
+        if (completedDuringRefill.contains(id)) continue;
+        if (held.add(id)) lane.items.addLast(id);
+      }
+      if (--activeRefills == 0) completedDuringRefill.clear();
+    }
+
+    synchronized void clear() {
+      held.clear();
+      leases.clear();
+      leasesByLeaseID.clear();
+      newest.items.clear();
+      oldest.items.clear();
+      newest.cursor = -1;
+      oldest.cursor = -1;
+    }
+
+    /**
+     * Put every lease that has run out back at the front of its queue.
+     */
+    private void expire(long now) {
+      Iterator<Lease> iterator = leases.values().iterator();
+      while (iterator.hasNext()) {
+        Lease lease = iterator.next();
+        if (lease.expiresAt > now) continue;
+        iterator.remove();
+        leasesByLeaseID.remove(lease.leaseID);
+        lease.lane.items.addFirst(lease.id);
+        logger.debug("The {} review lease on {} expired, requeued", source.getName(), lease.id);
+      }
+    }
+
+    private ReviewLease toLeaseData(Lease lease) {
+      return new ReviewLease(lease.leaseID, source.getName(), lease.id, lease.reviewer, lease.expiresAt, lease.item);
+    }
+  }
+}
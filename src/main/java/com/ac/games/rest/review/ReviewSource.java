@@ -0,0 +1,151 @@
+package com.ac.games.rest.review;
+
+import java.util.Date;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+
+/**
+ * One kind of record that goes through moderation (BGG, CSI or MM), as the review queue sees
+ * it: how to find the next pending record, read one by ID, tell whether it's still pending, and
+ * move it to a new review state.
+ *
+ * @author ac010168
+ */
+public abstract class ReviewSource<T> {
+
+  public static final ReviewSource<BGGGame> BGG = new ReviewSource<BGGGame>("bgg") {
+    public BGGGame readForReview(GamesDatabase database, String order) throws ConfigurationException, DatabaseOperationException {
+      return database.readBGGGameForReview(order);
+    }
+    public BGGGame read(GamesDatabase database, long id) throws ConfigurationException, DatabaseOperationException {
+      return database.readBGGGameData(id);
+    }
+    public long getID(BGGGame record) {
+      return record.getBggID();
+    }
+    public ReviewState getReviewState(BGGGame record) {
+      return record.getReviewState();
+    }
+    public void setReviewState(BGGGame record, ReviewState state) {
+      record.setReviewState(state);
+      record.setReviewDate(new Date());
+    }
+    public void update(GamesDatabase database, BGGGame record) throws ConfigurationException, DatabaseOperationException {
+      database.updateBGGGameData(record);
+    }
+  };
+
+  public static final ReviewSource<CoolStuffIncPriceData> CSI = new ReviewSource<CoolStuffIncPriceData>("csi") {
+    public CoolStuffIncPriceData readForReview(GamesDatabase database, String order) throws ConfigurationException, DatabaseOperationException {
+      return database.readCSIDataForReview(order);
+    }
+    public CoolStuffIncPriceData read(GamesDatabase database, long id) throws ConfigurationException, DatabaseOperationException {
+      return database.readCSIPriceData(id);
+    }
+    public long getID(CoolStuffIncPriceData record) {
+      return record.getCsiID();
+    }
+    public ReviewState getReviewState(CoolStuffIncPriceData record) {
+      return record.getReviewState();
+    }
+    public void setReviewState(CoolStuffIncPriceData record, ReviewState state) {
+      record.setReviewState(state);
+      record.setReviewDate(new Date());
+    }
+    public void update(GamesDatabase database, CoolStuffIncPriceData record) throws ConfigurationException, DatabaseOperationException {
+      database.updateCSIPriceData(record);
+    }
+  };
+
+  public static final ReviewSource<MiniatureMarketPriceData> MM = new ReviewSource<MiniatureMarketPriceData>("mm") {
+    public MiniatureMarketPriceData readForReview(GamesDatabase database, String order) throws ConfigurationException, DatabaseOperationException {
+      return database.readMMDataForReview(order);
+    }
+    public MiniatureMarketPriceData read(GamesDatabase database, long id) throws ConfigurationException, DatabaseOperationException {
+      return database.readMMPriceData(id);
+    }
+    public long getID(MiniatureMarketPriceData record) {
+      return record.getMmID();
+    }
+    public ReviewState getReviewState(MiniatureMarketPriceData record) {
+      return record.getReviewState();
+    }
+    public void setReviewState(MiniatureMarketPriceData record, ReviewState state) {
+      record.setReviewState(state);
+      record.setReviewDate(new Date());
+    }
+    public void update(GamesDatabase database, MiniatureMarketPriceData record) throws ConfigurationException, DatabaseOperationException {
+      database.updateMMPriceData(record);
+    }
+  };
+
+  private final String name;
+
+  private ReviewSource(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @param name bgg, csi or mm
+   *
+   * @return The matching source, or null if there isn't one
+   */
+  public static ReviewSource<?> forName(String name) {
+    if (BGG.name.equalsIgnoreCase(name)) return BGG;
+    if (CSI.name.equalsIgnoreCase(name)) return CSI;
+    if (MM.name.equalsIgnoreCase(name))  return MM;
+    return null;
+  }
+
+  /**
+   * @return bgg, csi or mm
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @param order new for the highest pending ID, old for the lowest
+   *
+   * @return The pending record at that end, or null if nothing is pending
+   */
+  public abstract T readForReview(GamesDatabase database, String order) throws ConfigurationException, DatabaseOperationException;
+
+  /**
+   * @return The stored record, or null if there isn't one
+   */
+  public abstract T read(GamesDatabase database, long id) throws ConfigurationException, DatabaseOperationException;
+
+  /**
+   * @return The record's vendor ID
+   */
+  public abstract long getID(T record);
+
+  /**
+   * @return The record's review state
+   */
+  public abstract ReviewState getReviewState(T record);
+
+  /**
+   * Move the record to a new review state, dated now.  The record isn't written.
+   */
+  public abstract void setReviewState(T record, ReviewState state);
+
+  /**
+   * Write the record over the stored one.
+   */
+  public abstract void update(GamesDatabase database, T record) throws ConfigurationException, DatabaseOperationException;
+
+  /**
+   * @return true if the record is waiting on a review
+   */
+  public boolean isPending(T record) {
+    return getReviewState(record) == ReviewState.PENDING;
+  }
+}
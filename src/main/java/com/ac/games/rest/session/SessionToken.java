@@ -0,0 +1,60 @@
+package com.ac.games.rest.session;
+
+/**
+ * The validated contents of a session token, as issued by {@link SessionTokenService} on login.
+ *
+ * @author ac010168
+ */
+public class SessionToken {
+
+  public static final String ROLE_USER  = "User";
+  public static final String ROLE_ADMIN = "Admin";
+  public static final String ROLE_NONE  = "None";
+
+  private final long userID;
+  private final long collectionID;
+  private final String userRole;
+  private final long expiresAt;
+
+  public SessionToken(long userID, long collectionID, String userRole, long expiresAt) {
+    this.userID       = userID;
+    this.collectionID = collectionID;
+    this.userRole     = userRole;
+    this.expiresAt    = expiresAt;
+  }
+
+  /**
+   * @return the userID
+   */
+  public long getUserID() {
+    return userID;
+  }
+
+  /**
+   * @return the collectionID
+   */
+  public long getCollectionID() {
+    return collectionID;
+  }
+
+  /**
+   * @return the userRole
+   */
+  public String getUserRole() {
+    return userRole;
+  }
+
+  /**
+   * @return the time the token expires, in epoch millis
+   */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  /**
+   * @return true if this token was issued to an admin user
+   */
+  public boolean isAdmin() {
+    return ROLE_ADMIN.equals(userRole);
+  }
+}
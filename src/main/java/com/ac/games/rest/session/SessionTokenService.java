@@ -0,0 +1,245 @@
+package com.ac.games.rest.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class issues and validates the stateless session tokens handed out on login, so the
+ * downstream controllers can trust the userID, collectionID and role without going back to
+ * the database to read the User.
+ * <p>
+ * A token looks like <code>&lt;userID&gt;.&lt;collectionID&gt;.&lt;role&gt;.&lt;expires&gt;.&lt;signature&gt;</code>,
+ * where the numbers are lower case hex, the role is a single character (U, A or N) and the
+ * signature is the first 128 bits of the HmacSHA256 of everything before it, also in hex.
+ * <p>
+ * Validation parses the fields in place and feeds the payload into a per-thread {@link Mac}, so
+ * the only object created for a valid token is the resulting {@link SessionToken}.
+ *
+ * @author ac010168
+ */
+public class SessionTokenService {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionTokenService.class);
+
+  /** The system property (or environment variable) holding the signing secret */
+  public static final String SECRET_PROPERTY = "games.session.secret";
+  public static final String SECRET_ENV      = "GAMES_SESSION_SECRET";
+
+  /** How long an issued token stays valid, 12 hours */
+  public static final long DEFAULT_TTL_MILLIS = 12L * 60L * 60L * 1000L;
+
+  private static final String MAC_ALGORITHM  = "HmacSHA256";
+  /** Number of signature bytes we keep, and the hex characters needed for them */
+  private static final int SIGNATURE_BYTES   = 16;
+  private static final int SIGNATURE_CHARS   = SIGNATURE_BYTES * 2;
+  /** Tokens longer than this can't be ours, so don't bother parsing them */
+  private static final int MAX_TOKEN_LENGTH  = 128;
+  private static final char[] HEX_CHARS      = "0123456789abcdef".toCharArray();
+
+  private final SecretKeySpec key;
+  private final long ttlMillis;
+  private final ThreadLocal<Mac> macs;
+  private final ThreadLocal<byte[]> digestBuffers;
+
+  public SessionTokenService(byte[] secret, long ttlMillis) {
+    if ((secret == null) || (secret.length < 16))
+      throw new IllegalArgumentException("The session secret must be at least 16 bytes");
+
+    this.key       = new SecretKeySpec(secret.clone(), MAC_ALGORITHM);
+    this.ttlMillis = ttlMillis;
+    macs = new ThreadLocal<Mac>() {
+      @Override
+      protected Mac initialValue() {
+        try {
+          Mac mac = Mac.getInstance(MAC_ALGORITHM);
+          mac.init(key);
+          return mac;
+        } catch (GeneralSecurityException gse) {
+          throw new IllegalStateException("Unable to initialize the session token signer", gse);
+        }
+      }
+    };
+    digestBuffers = new ThreadLocal<byte[]>() {
+      @Override
+      protected byte[] initialValue() {
+        return new byte[32];
+      }
+    };
+  }
+
+  /**
+   * Load the signing secret from the {@link #SECRET_PROPERTY} system property or the
+   * {@link #SECRET_ENV} environment variable.  If neither is set, a random secret is generated,
+   * which means tokens will not survive a restart of the service.
+   *
+   * @return The secret bytes
+   */
+  public static byte[] loadSecret() {
+    String secret = System.getProperty(SECRET_PROPERTY);
+    if ((secret == null) || (secret.length() == 0))
+      secret = System.getenv(SECRET_ENV);
+    if ((secret != null) && (secret.length() >= 16)) {
+      try {
+        return secret.getBytes("UTF-8");
+      } catch (java.io.UnsupportedEncodingException uee) {
+        //UTF-8 is always supported
+      }
+    }
+
+    logger.warn("No session secret configured, generating a random one.  Sessions will not survive a restart.");
+    byte[] randomSecret = new byte[32];
+    new SecureRandom().nextBytes(randomSecret);
+    return randomSecret;
+  }
+
+  /**
+   * Issue a new token for a successfully logged in user.
+   *
+   * @param userID The userID
+   * @param collectionID The user's collectionID
+   * @param userRole One of the {@link SessionToken} role values
+   *
+   * @return The token string
+   */
+  public String issue(long userID, long collectionID, String userRole) {
+    long expiresAt = System.currentTimeMillis() + ttlMillis;
+
+    StringBuilder token = new StringBuilder(80);
+    token.append(Long.toHexString(userID)).append('.');
+    token.append(Long.toHexString(collectionID)).append('.');
+    token.append(encodeRole(userRole)).append('.');
+    token.append(Long.toHexString(expiresAt));
+
+    byte[] digest = digestBuffers.get();
+    sign(token, token.length(), digest);
+    token.append('.');
+    for (int i = 0; i < SIGNATURE_BYTES; i++) {
+      token.append(HEX_CHARS[(digest[i] >> 4) & 0x0F]);
+      token.append(HEX_CHARS[digest[i] & 0x0F]);
+    }
+    return token.toString();
+  }
+
+  /**
+   * Validate a token, without touching the database.
+   *
+   * @param token The token string provided on the request
+   *
+   * @return The {@link SessionToken} contents, or null if the token is malformed, has a bad
+   * signature, or has expired.
+   */
+  public SessionToken validate(String token) {
+    if (token == null) return null;
+    int length = token.length();
+    if ((length > MAX_TOKEN_LENGTH) || (length < SIGNATURE_CHARS + 8)) return null;
+
+    //The signature is always the last SIGNATURE_CHARS characters, after a '.'
+    int payloadLength = length - SIGNATURE_CHARS - 1;
+    if (token.charAt(payloadLength) != '.') return null;
+
+    //Parse the four payload fields in place
+    long userID       = 0;
+    long collectionID = 0;
+    char roleChar     = 0;
+    long expiresAt    = 0;
+    int field  = 0;
+    int digits = 0;
+    long value = 0;
+    for (int i = 0; i <= payloadLength; i++) {
+      char c = (i < payloadLength) ? token.charAt(i) : '.';
+      if (c == '.') {
+        if (digits == 0) return null;
+        switch (field) {
+          case 0 : userID = value; break;
+          case 1 : collectionID = value; break;
+          case 2 : if (digits != 1) return null; break;
+          case 3 : expiresAt = value; break;
+          default : return null;
+        }
+        field++;
+        digits = 0;
+        value  = 0;
+      } else if (field == 2) {
+        roleChar = c;
+        digits++;
+      } else {
+        int nibble = hexValue(c);
+        if ((nibble < 0) || (digits >= 16)) return null;
+        value = (value << 4) | nibble;
+        digits++;
+      }
+    }
+    if (field != 4) return null;
+
+    String userRole = decodeRole(roleChar);
+    if (userRole == null) return null;
+    if (expiresAt < System.currentTimeMillis()) return null;
+
+    byte[] digest = digestBuffers.get();
+    if (!sign(token, payloadLength, digest)) return null;
+
+    //Constant time compare against the hex signature
+    int diff = 0;
+    int sigStart = payloadLength + 1;
+    for (int i = 0; i < SIGNATURE_BYTES; i++) {
+      int high = hexValue(token.charAt(sigStart + (i * 2)));
+      int low  = hexValue(token.charAt(sigStart + (i * 2) + 1));
+      if ((high < 0) || (low < 0)) return null;
+      diff |= (((high << 4) | low) ^ (digest[i] & 0xFF));
+    }
+    if (diff != 0) return null;
+
+    return new SessionToken(userID, collectionID, userRole, expiresAt);
+  }
+
+  /**
+   * Run the HMAC over the first payloadLength characters, writing the result into digest.
+   *
+   * @return false if the payload contains anything other than ASCII.
+   */
+  private boolean sign(CharSequence payload, int payloadLength, byte[] digest) {
+    Mac mac = macs.get();
+    for (int i = 0; i < payloadLength; i++) {
+      char c = payload.charAt(i);
+      if (c > 0x7F) {
+        mac.reset();
+        return false;
+      }
+      mac.update((byte)c);
+    }
+    try {
+      mac.doFinal(digest, 0);
+    } catch (GeneralSecurityException gse) {
+      mac.reset();
+      return false;
+    }
+    return true;
+  }
+
+  private static int hexValue(char c) {
+    if ((c >= '0') && (c <= '9')) return c - '0';
+    if ((c >= 'a') && (c <= 'f')) return c - 'a' + 10;
+    return -1;
+  }
+
+  private static char encodeRole(String userRole) {
+    if (SessionToken.ROLE_ADMIN.equals(userRole)) return 'A';
+    if (SessionToken.ROLE_USER.equals(userRole))  return 'U';
+    return 'N';
+  }
+
+  private static String decodeRole(char roleChar) {
+    switch (roleChar) {
+      case 'A' : return SessionToken.ROLE_ADMIN;
+      case 'U' : return SessionToken.ROLE_USER;
+      case 'N' : return SessionToken.ROLE_NONE;
+      default  : return null;
+    }
+  }
+}
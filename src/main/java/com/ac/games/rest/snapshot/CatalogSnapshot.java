@@ -0,0 +1,227 @@
+package com.ac.games.rest.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * A read-only, memory-mapped view of a catalog snapshot file written by {@link CatalogSnapshotWriter}.
+ * <p>
+ * The file is laid out as:
+ * <ul>
+ * <li>A header: magic, version, creation time, and for each section its record count and the
+ * offset of its index</li>
+ * <li>The records, each one Smile encoded</li>
+ * <li>One index per section, sorted by ID, of <code>(long id, int offset, int length)</code> entries</li></ul>
+ * Opening a snapshot only maps the file and reads the header, so it takes the same time however
+ * many records it holds.  Lookups binary search the mapped index, and only the record asked for
+ * is decoded.
+ *
+ * @author ac010168
+ */
+public class CatalogSnapshot {
+
+  static final int MAGIC   = 0x41434753;  //"ACGS"
+  static final int VERSION = 1;
+
+  static final int GAMES        = 0;
+  static final int GAMES_BY_BGG = 1;
+  static final int BGG_GAMES    = 2;
+  static final int GAME_RELTNS  = 3;
+  static final int CSI_DATA     = 4;
+  static final int MM_DATA      = 5;
+  static final int SECTION_COUNT = 6;
+  static final String[] SECTION_NAMES = new String[] { "games", "gamesByBGGID", "bggGames", "gameReltns", "csiData", "mmData" };
+
+  static final int HEADER_SIZE      = 4 + 4 + 8 + (SECTION_COUNT * (4 + 8));
+  static final int INDEX_ENTRY_SIZE = 8 + 4 + 4;
+
+  private final File file;
+  private final MappedByteBuffer buffer;
+  private final long createdMillis;
+  private final int[] counts;
+  private final int[] indexOffsets;
+  private final ObjectMapper mapper;
+
+  private CatalogSnapshot(File file, MappedByteBuffer buffer) throws IOException {
+    this.file   = file;
+    this.buffer = buffer;
+    if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC))
+      throw new IOException(file.getAbsolutePath() + " is not a catalog snapshot");
+    if (buffer.getInt(4) != VERSION)
+      throw new IOException(file.getAbsolutePath() + " is snapshot version " + buffer.getInt(4) + ", not " + VERSION);
+
+    createdMillis = buffer.getLong(8);
+    counts        = new int[SECTION_COUNT];
+    indexOffsets  = new int[SECTION_COUNT];
+    for (int i = 0; i < SECTION_COUNT; i++) {
+      counts[i]       = buffer.getInt(16 + (i * 12));
+      long indexStart = buffer.getLong(16 + (i * 12) + 4);
+      if ((indexStart < HEADER_SIZE) || (indexStart + ((long)counts[i] * INDEX_ENTRY_SIZE) > buffer.capacity()))
+        throw new IOException(file.getAbsolutePath() + " is truncated or corrupt");
+      indexOffsets[i] = (int)indexStart;
+    }
+
+    mapper = new ObjectMapper(new SmileFactory());
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  }
+
+  /**
+   * Map a snapshot file.
+   *
+   * @param file The snapshot file
+   *
+   * @return The snapshot
+   *
+   * @throws IOException if the file can't be read or isn't a valid snapshot
+   */
+  public static CatalogSnapshot open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IOException(file.getAbsolutePath() + " is too large to map");
+      //The mapping stays valid after the channel is closed
+      return new CatalogSnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      raf.close();
+    }
+  }
+
+  public Game readGame(long gameID) {
+    return read(GAMES, gameID, Game.class);
+  }
+
+  public Game readGameByBGGID(long bggID) {
+    return read(GAMES_BY_BGG, bggID, Game.class);
+  }
+
+  public BGGGame readBGGGame(long bggID) {
+    return read(BGG_GAMES, bggID, BGGGame.class);
+  }
+
+  public GameReltn readGameReltn(long gameID) {
+    return read(GAME_RELTNS, gameID, GameReltn.class);
+  }
+
+  public CoolStuffIncPriceData readCSIData(long csiID) {
+    return read(CSI_DATA, csiID, CoolStuffIncPriceData.class);
+  }
+
+  public MiniatureMarketPriceData readMMData(long mmID) {
+    return read(MM_DATA, mmID, MiniatureMarketPriceData.class);
+  }
+
+  /**
+   * Copy every record into the store, skipping anything the store already holds, since that is
+   * newer than the snapshot.
+   *
+   * @param store The store to fill
+   *
+   * @return The number of records copied
+   */
+  public int loadInto(InMemoryGamesDatabase store) {
+    int loaded = 0;
+    for (int i = 0; i < counts[GAMES]; i++) {
+      Game game = decode(GAMES, i, Game.class);
+      if (store.getGame(game.getGameID()) == null) { store.storeGame(game); loaded++; }
+    }
+    for (int i = 0; i < counts[BGG_GAMES]; i++) {
+      BGGGame bggGame = decode(BGG_GAMES, i, BGGGame.class);
+      if (store.getBGGGame(bggGame.getBggID()) == null) { store.storeBGGGame(bggGame); loaded++; }
+    }
+    for (int i = 0; i < counts[GAME_RELTNS]; i++) {
+      GameReltn reltn = decode(GAME_RELTNS, i, GameReltn.class);
+      if (store.getGameReltn(reltn.getGameID()) == null) { store.storeGameReltn(reltn); loaded++; }
+    }
+    for (int i = 0; i < counts[CSI_DATA]; i++) {
+      CoolStuffIncPriceData data = decode(CSI_DATA, i, CoolStuffIncPriceData.class);
+      if (store.getCSIData(data.getCsiID()) == null) { store.storeCSIData(data); loaded++; }
+    }
+    for (int i = 0; i < counts[MM_DATA]; i++) {
+      MiniatureMarketPriceData data = decode(MM_DATA, i, MiniatureMarketPriceData.class);
+      if (store.getMMData(data.getMmID()) == null) { store.storeMMData(data); loaded++; }
+    }
+    return loaded;
+  }
+
+  /**
+   * @return When the snapshot was written
+   */
+  public long getCreatedMillis() {
+    return createdMillis;
+  }
+
+  /**
+   * @return The snapshot file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return The record count per section, along with the file details
+   */
+  public Map<String, Object> getDetails() {
+    Map<String, Object> details = new LinkedHashMap<String, Object>();
+    details.put("file", file.getAbsolutePath());
+    details.put("sizeBytes", buffer.capacity());
+    details.put("createdMillis", createdMillis);
+    for (int i = 0; i < SECTION_COUNT; i++)
+      details.put(SECTION_NAMES[i], counts[i]);
+    return details;
+  }
+
+  private <T> T read(int section, long id, Class<T> type) {
+    int entry = find(section, id);
+    return (entry < 0) ? null : decode(section, entry, type);
+  }
+
+  /**
+   * @return The position of the id in the section's index, or -1 if it isn't there
+   */
+  private int find(int section, long id) {
+    int low  = 0;
+    int high = counts[section] - 1;
+    int base = indexOffsets[section];
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midID = buffer.getLong(base + (mid * INDEX_ENTRY_SIZE));
+      if      (midID < id) low  = mid + 1;
+      else if (midID > id) high = mid - 1;
+      else                 return mid;
+    }
+    return -1;
+  }
+
+  private <T> T decode(int section, int entry, Class<T> type) {
+    int entryStart = indexOffsets[section] + (entry * INDEX_ENTRY_SIZE);
+    int offset = buffer.getInt(entryStart + 8);
+    int length = buffer.getInt(entryStart + 12);
+
+    byte[] bytes = new byte[length];
+    ByteBuffer record = buffer.duplicate();
+    record.position(offset);
+    record.get(bytes);
+    try {
+      return mapper.readValue(bytes, type);
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Unable to decode a " + type.getSimpleName() + " from " + file.getAbsolutePath(), ioe);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package com.ac.games.rest.snapshot;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.DaemonThreadFactory;
+
+/**
+ * Keeps the catalog snapshot up to date, and tracks whether we're serving from it.
+ * <p>
+ * The last snapshot is mapped at startup, so there's something to serve from even if the
+ * database is down when we come up.  After that a new snapshot is written from the database
+ * every {@link #intervalMinutes} and swapped in once it's complete, but only if a catalog write
+ * has landed since the last one; writing it reads the whole catalog.  No snapshot is written
+ * while the database is unreachable, so the last good one is kept.
+ * <p>
+ * A database that couldn't be reached at startup is held here ({@link #setPendingConnection})
+ * and connected by the first probe that gets through to it.
+ *
+ * @author ac010168
+ */
+public class CatalogSnapshotService {
+
+  private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+  /** Where the snapshot lives */
+  public static String snapshotPath        = System.getProperty("games.snapshot.file", "catalog.snapshot");
+  /** How often a new snapshot is written, in minutes; 0 turns writing off */
+  public static long   intervalMinutes     = Long.getLong("games.snapshot.interval", 60L);
+  /** While the database is down, how often one call is let through to see if it's back */
+  public static long   probeIntervalMillis = Long.getLong("games.snapshot.probe", 5000L);
+
+  private volatile CatalogSnapshot snapshot;
+  private volatile GamesDatabase source;
+  private ScheduledExecutorService scheduler;
+
+  private volatile boolean outage;
+  private volatile long outageSince;
+  private volatile String outageCause;
+  private final AtomicLong nextProbeMillis = new AtomicLong();
+
+  /** The database still to be connected, after it couldn't be reached at startup */
+  private volatile GamesDatabase pendingConnection;
+  private volatile ConfigurationException pendingCause;
+  private final Object connectLock = new Object();
+
+  /** The catalog writes that have landed, and how many had when the last snapshot was started */
+  private final AtomicLong catalogWrites = new AtomicLong();
+  private volatile long writesAtLastSnapshot = -1;
+
+  private final AtomicLong outages       = new AtomicLong();
+  private final AtomicLong snapshotReads = new AtomicLong();
+  private final AtomicLong writes        = new AtomicLong();
+  private final AtomicLong writeFailures = new AtomicLong();
+  private final AtomicLong writesSkipped = new AtomicLong();
+  private volatile long lastWriteMillis;
+  private volatile long lastOpenMillis;
+  private volatile String lastWriteError;
+
+  /**
+   * Map the last snapshot written, if there is one.
+   *
+   * @return The snapshot, or null if there isn't a usable one
+   */
+  public CatalogSnapshot openExisting() {
+    File file = new File(snapshotPath);
+    if (!file.exists()) {
+      logger.info("There is no catalog snapshot at {} yet", file.getAbsolutePath());
+      return null;
+    }
+    try {
+      long startTime = System.currentTimeMillis();
+      snapshot = CatalogSnapshot.open(file);
+      lastOpenMillis = System.currentTimeMillis() - startTime;
+      logger.info("Mapped the catalog snapshot from {} in {}ms: {}", file.getAbsolutePath(), lastOpenMillis, snapshot.getDetails());
+      return snapshot;
+    } catch (Throwable t) {
+      logger.error("Unable to open the catalog snapshot " + file.getAbsolutePath(), t);
+      return null;
+    }
+  }
+
+  /**
+   * Put the snapshot fallback in front of the database, and write future snapshots from it.
+   *
+   * @param target The database to wrap
+   *
+   * @return The wrapped database
+   */
+  public GamesDatabase wrap(GamesDatabase target) {
+    source = target;
+    return SnapshotFallbackDatabase.wrap(target, this);
+  }
+
+  /**
+   * Start writing snapshots in the background.  Does nothing if there's no source or writing is off.
+   */
+  public synchronized void start() {
+    if ((scheduler != null) || (source == null) || (intervalMinutes <= 0)) return;
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("catalog-snapshot"));
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        writeSnapshot();
+      }
+    }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stop writing snapshots.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Write a new snapshot from the source now, and swap it in.
+   *
+   * @return true if a snapshot was written
+   */
+  public boolean writeSnapshot() {
+    GamesDatabase curSource = source;
+    if ((curSource == null) || outage) return false;
+
+    //Writes that land while this one runs will be in the next one
+    long writesBefore = catalogWrites.get();
+    if (writesBefore == writesAtLastSnapshot) {
+      writesSkipped.incrementAndGet();
+      logger.debug("Nothing in the catalog has changed since the last snapshot, so it was not rewritten");
+      return false;
+    }
+
+    File file = new File(snapshotPath);
+    long startTime = System.currentTimeMillis();
+    try {
+      int gameCount = new CatalogSnapshotWriter().write(curSource, file);
+      snapshot = CatalogSnapshot.open(file);
+      lastWriteMillis = System.currentTimeMillis() - startTime;
+      lastWriteError  = null;
+      writesAtLastSnapshot = writesBefore;
+      writes.incrementAndGet();
+      logger.info("Wrote the catalog snapshot ({} games) to {} in {}ms", gameCount, file.getAbsolutePath(), lastWriteMillis);
+      return true;
+    } catch (Throwable t) {
+      lastWriteError = t.getMessage();
+      writeFailures.incrementAndGet();
+      logger.error("Unable to write the catalog snapshot " + file.getAbsolutePath(), t);
+      return false;
+    }
+  }
+
+  /**
+   * @return The current snapshot, or null if we don't have one
+   */
+  public CatalogSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return true while the database is unreachable
+   */
+  public boolean isOutage() {
+    return outage;
+  }
+
+  /**
+   * @return true if the caller should try the database, to see if it's back
+   */
+  boolean shouldProbe() {
+    long now = System.currentTimeMillis();
+    long nextProbe = nextProbeMillis.get();
+    return (now >= nextProbe) && nextProbeMillis.compareAndSet(nextProbe, now + probeIntervalMillis);
+  }
+
+  /**
+   * Flag the database as unreachable.
+   *
+   * @param cause What the database threw
+   */
+  public void markOutage(Throwable cause) {
+    outageCause = cause.getMessage();
+    if (outage) return;
+    synchronized (this) {
+      if (outage) return;
+      outageSince = System.currentTimeMillis();
+      nextProbeMillis.set(outageSince + probeIntervalMillis);
+      outage = true;
+      outages.incrementAndGet();
+    }
+    logger.warn("The database is unreachable, serving catalog reads from the snapshot: {}", cause.getMessage());
+  }
+
+  /**
+   * Flag the database as reachable again.
+   */
+  public void markAvailable() {
+    if (!outage) return;
+    synchronized (this) {
+      if (!outage) return;
+      outage = false;
+    }
+    logger.info("The database is back after {}ms", System.currentTimeMillis() - outageSince);
+  }
+
+  /**
+   * Hold a database that couldn't be reached at startup, so the probes can connect it later.
+   *
+   * @param database The database, not yet connected
+   * @param cause Why it couldn't be connected
+   */
+  public void setPendingConnection(GamesDatabase database, ConfigurationException cause) {
+    pendingCause      = cause;
+    pendingConnection = database;
+    markOutage(cause);
+  }
+
+  /**
+   * Connect the database that couldn't be reached at startup, if there is one.  Only one call per
+   * probe interval tries; the others fail straight away, as the database is still down.
+   *
+   * @param probing true if the caller has already been picked by {@link #shouldProbe()}
+   *
+   * @throws ConfigurationException if the database still isn't connected
+   */
+  void connectPending(boolean probing) throws ConfigurationException {
+    if (pendingConnection == null) return;
+    synchronized (connectLock) {
+      GamesDatabase database = pendingConnection;
+      if (database == null) return;
+      if (!probing && !shouldProbe()) throw pendingCause;
+      try {
+        database.initializeDBConnection();
+      } catch (ConfigurationException ce) {
+        pendingCause = ce;
+        throw ce;
+      }
+      pendingConnection = null;
+      pendingCause      = null;
+      logger.info("Connected to the database that could not be reached at startup");
+    }
+  }
+
+  void recordCatalogWrite() {
+    catalogWrites.incrementAndGet();
+  }
+
+  void recordSnapshotRead() {
+    snapshotReads.incrementAndGet();
+  }
+
+  /**
+   * @return The snapshot and outage counters
+   */
+  public Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put("outage", outage);
+    if (outage) {
+      metrics.put("outageMillis", System.currentTimeMillis() - outageSince);
+      metrics.put("outageCause", outageCause);
+    }
+    metrics.put("outages", outages.get());
+    metrics.put("snapshotReads", snapshotReads.get());
+    metrics.put("intervalMinutes", intervalMinutes);
+    metrics.put("writes", writes.get());
+    metrics.put("writeFailures", writeFailures.get());
+    metrics.put("writesSkipped", writesSkipped.get());
+    metrics.put("catalogWrites", catalogWrites.get());
+    metrics.put("lastWriteMillis", lastWriteMillis);
+    metrics.put("lastOpenMillis", lastOpenMillis);
+    if (lastWriteError != null) metrics.put("lastWriteError", lastWriteError);
+    CatalogSnapshot curSnapshot = snapshot;
+    if (curSnapshot != null) metrics.put("snapshot", curSnapshot.getDetails());
+    return metrics;
+  }
+}
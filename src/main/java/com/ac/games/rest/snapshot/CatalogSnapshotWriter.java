@@ -0,0 +1,204 @@
+package com.ac.games.rest.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.MiniatureMarketPriceData;
+import com.ac.games.db.GamesDatabase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Writes the catalog (every Game, along with its BGG data, its GameReltn, and the CSI and MM
+ * listings the GameReltn points at) to a {@link CatalogSnapshot} file.
+ * <p>
+ * The snapshot is written to a temp file and renamed into place, so readers only ever see a
+ * whole snapshot.  Each writer writes one snapshot.
+ *
+ * @author ac010168
+ */
+public class CatalogSnapshotWriter {
+
+  private final ObjectMapper mapper = new ObjectMapper(new SmileFactory());
+  private final Section[] sections;
+  private DataOutputStream out;
+  private int position;
+
+  public CatalogSnapshotWriter() {
+    sections = new Section[CatalogSnapshot.SECTION_COUNT];
+    for (int i = 0; i < sections.length; i++)
+      sections[i] = new Section();
+  }
+
+  /**
+   * Read the catalog from the database and write it out.
+   *
+   * @param database The database to read from
+   * @param file The snapshot file to (re)place
+   *
+   * @return The number of Games written
+   *
+   * @throws Exception if the database can't be read or the file can't be written
+   */
+  public int write(GamesDatabase database, File file) throws Exception {
+    File tempFile = new File(file.getAbsolutePath() + ".tmp");
+    FileOutputStream fileOut = new FileOutputStream(tempFile);
+    out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+    position = 0;
+    int gameCount = 0;
+    try {
+      //Leave room for the header, which is filled in once we know where the indexes landed
+      out.write(new byte[CatalogSnapshot.HEADER_SIZE]);
+      position = CatalogSnapshot.HEADER_SIZE;
+
+      Set<Long> bggIDs = new HashSet<Long>();
+      Set<Long> csiIDs = new HashSet<Long>();
+      Set<Long> mmIDs  = new HashSet<Long>();
+      long maxGameID = database.getMaxGameID();
+      for (long gameID = 1; gameID <= maxGameID; gameID++) {
+        Game game = database.readGame(gameID);
+        if (game == null) continue;
+        int gameStart = writeRecord(game);
+        sections[CatalogSnapshot.GAMES].add(gameID, gameStart, position - gameStart);
+        gameCount++;
+
+        if ((game.getBggID() > 0) && bggIDs.add(game.getBggID())) {
+          //The bggID index points at the same Game record
+          sections[CatalogSnapshot.GAMES_BY_BGG].add(game.getBggID(), gameStart, position - gameStart);
+          BGGGame bggGame = database.readBGGGameData(game.getBggID());
+          if (bggGame != null) addRecord(CatalogSnapshot.BGG_GAMES, bggGame.getBggID(), bggGame);
+        }
+
+        GameReltn reltn = database.readGameReltn(gameID);
+        if (reltn == null) continue;
+        addRecord(CatalogSnapshot.GAME_RELTNS, gameID, reltn);
+        for (long csiID : nullSafe(reltn.getCsiIDs())) {
+          if (!csiIDs.add(csiID)) continue;
+          CoolStuffIncPriceData data = database.readCSIPriceData(csiID);
+          if (data != null) addRecord(CatalogSnapshot.CSI_DATA, csiID, data);
+        }
+        for (long mmID : nullSafe(reltn.getMmIDs())) {
+          if (!mmIDs.add(mmID)) continue;
+          MiniatureMarketPriceData data = database.readMMPriceData(mmID);
+          if (data != null) addRecord(CatalogSnapshot.MM_DATA, mmID, data);
+        }
+      }
+
+      long[] indexOffsets = new long[sections.length];
+      for (int i = 0; i < sections.length; i++) {
+        indexOffsets[i] = position;
+        sections[i].writeIndex(out);
+        position += sections[i].count * CatalogSnapshot.INDEX_ENTRY_SIZE;
+      }
+      out.flush();
+      fileOut.getFD().sync();
+      out.close();
+      writeHeader(tempFile, indexOffsets);
+    } catch (Exception e) {
+      try { out.close(); } catch (Throwable t2) { /** Ignore Errors */ }
+      tempFile.delete();
+      throw e;
+    }
+
+    if (!tempFile.renameTo(file)) {
+      //Some platforms won't rename over an existing file
+      file.delete();
+      if (!tempFile.renameTo(file))
+        throw new IOException("Unable to write the catalog snapshot " + file.getAbsolutePath());
+    }
+    return gameCount;
+  }
+
+  private void addRecord(int section, long id, Object record) throws IOException {
+    int start = writeRecord(record);
+    sections[section].add(id, start, position - start);
+  }
+
+  /**
+   * @return The offset the record was written at
+   */
+  private int writeRecord(Object record) throws IOException {
+    byte[] bytes = mapper.writeValueAsBytes(record);
+    if ((long)position + bytes.length > Integer.MAX_VALUE)
+      throw new IOException("The catalog snapshot is too large to map");
+    int start = position;
+    out.write(bytes);
+    position += bytes.length;
+    return start;
+  }
+
+  private void writeHeader(File tempFile, long[] indexOffsets) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+    try {
+      raf.writeInt(CatalogSnapshot.MAGIC);
+      raf.writeInt(CatalogSnapshot.VERSION);
+      raf.writeLong(System.currentTimeMillis());
+      for (int i = 0; i < sections.length; i++) {
+        raf.writeInt(sections[i].count);
+        raf.writeLong(indexOffsets[i]);
+      }
+      raf.getFD().sync();
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static List<Long> nullSafe(List<Long> ids) {
+    return (ids == null) ? Collections.<Long>emptyList() : ids;
+  }
+
+  /**
+   * The index entries for one section, sorted by ID when written.
+   */
+  private static class Section {
+    long[] ids     = new long[1024];
+    int[]  offsets = new int[1024];
+    int[]  lengths = new int[1024];
+    int    count;
+
+    void add(long id, int offset, int length) {
+      if (count == ids.length) {
+        ids     = Arrays.copyOf(ids, count * 2);
+        offsets = Arrays.copyOf(offsets, count * 2);
+        lengths = Arrays.copyOf(lengths, count * 2);
+      }
+      ids[count]     = id;
+      offsets[count] = offset;
+      lengths[count] = length;
+      count++;
+    }
+
+    void writeIndex(DataOutputStream out) throws IOException {
+      Integer[] order = new Integer[count];
+      for (int i = 0; i < count; i++) order[i] = i;
+      Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer left, Integer right) {
+          long leftID  = ids[left];
+          long rightID = ids[right];
+          return (leftID < rightID) ? -1 : ((leftID == rightID) ? 0 : 1);
+        }
+      });
+
+      for (int i = 0; i < count; i++) {
+        int entry = order[i];
+        out.writeLong(ids[entry]);
+        out.writeInt(offsets[entry]);
+        out.writeInt(lengths[entry]);
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.ac.games.rest.snapshot;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+
+/**
+ * Sits in front of the shared {@link GamesDatabase} and answers the catalog reads from the
+ * {@link CatalogSnapshot} while the database can't be reached.
+ * <p>
+ * A {@link ConfigurationException} from the database is what tells us it's gone.  From then on
+ * the catalog reads go straight to the snapshot, without waiting on the database, except for
+ * one call every {@link CatalogSnapshotService#probeIntervalMillis} that is let through to see if
+ * it's back.  Everything else (writes, users, collections, searches) still goes to the database
+ * and fails the way it always has, so the service is read-only for the catalog until the
+ * database returns.  If the database couldn't be reached at startup, the probes also open its
+ * connection ({@link CatalogSnapshotService#connectPending(boolean)}).
+ * <p>
+ * The catalog writes that land are counted, so the snapshot is only rewritten once something
+ * in it has changed.
+ * <p>
+ * A read answered from the snapshot is flagged on the calling thread, so a cache sitting in front
+ * of us (the in-memory hot tier) can tell it apart from a database read with
+ * {@link #takeSnapshotRead()}, and not keep what may be an old copy once the database is back.
+ *
+ * @author ac010168
+ */
+public class SnapshotFallbackDatabase implements InvocationHandler {
+
+  private static final int READ_GAME          = 0;
+  private static final int READ_GAME_BY_BGGID = 1;
+  private static final int READ_BGG_GAME      = 2;
+  private static final int READ_GAME_RELTN    = 3;
+  private static final int READ_CSI_DATA      = 4;
+  private static final int READ_MM_DATA       = 5;
+
+  /** The reads the snapshot can answer, to what they read */
+  private static final Map<String, Integer> CATALOG_READS = new HashMap<String, Integer>();
+  /** The writes that change what goes into the snapshot */
+  private static final Set<String> CATALOG_WRITES = new HashSet<String>(Arrays.asList(
+      "insertGame", "updateGame", "deleteGame", "insertBGGGameData", "updateBGGGameData", "deleteBGGGameData",
+      "insertGameReltn", "updateGameReltn", "deleteGameReltn", "insertCSIPriceData", "updateCSIPriceData",
+      "deleteCSIPriceData", "insertMMPriceData", "updateMMPriceData", "deleteMMPriceData"));
+
+  static {
+    CATALOG_READS.put("readGame", READ_GAME);
+    CATALOG_READS.put("readGameByBGGID", READ_GAME_BY_BGGID);
+    CATALOG_READS.put("readBGGGameData", READ_BGG_GAME);
+    CATALOG_READS.put("readGameReltn", READ_GAME_RELTN);
+    CATALOG_READS.put("readCSIPriceData", READ_CSI_DATA);
+    CATALOG_READS.put("readMMPriceData", READ_MM_DATA);
+  }
+
+  /** Set when the last read on this thread was answered from the snapshot */
+  private static final ThreadLocal<Boolean> SNAPSHOT_READ = new ThreadLocal<Boolean>();
+
+  private final GamesDatabase target;
+  private final CatalogSnapshotService service;
+
+  private SnapshotFallbackDatabase(GamesDatabase target, CatalogSnapshotService service) {
+    this.target  = target;
+    this.service = service;
+  }
+
+  /**
+   * @param target The database to wrap
+   * @param service Holds the current snapshot and the outage state
+   *
+   * @return The wrapped database
+   */
+  public static GamesDatabase wrap(GamesDatabase target, CatalogSnapshotService service) {
+    return (GamesDatabase)Proxy.newProxyInstance(GamesDatabase.class.getClassLoader(),
+                                                 new Class<?>[] { GamesDatabase.class }, new SnapshotFallbackDatabase(target, service));
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    CatalogSnapshot snapshot = service.getSnapshot();
+    Integer readKind = (snapshot == null) ? null : CATALOG_READS.get(method.getName());
+    boolean catalogRead = (readKind != null);
+    boolean probing = false;
+    if (catalogRead && service.isOutage()) {
+      if (!service.shouldProbe())
+        return readSnapshot(snapshot, readKind, (Long)args[0]);
+      probing = true;
+    }
+
+    try {
+      //The Object methods never reach the database, so they don't need a connection
+      if (method.getDeclaringClass() != Object.class)
+        service.connectPending(probing);
+      Object result = invokeTarget(method, args);
+      service.markAvailable();
+      if (CATALOG_WRITES.contains(method.getName()))
+        service.recordCatalogWrite();
+      return result;
+    } catch (ConfigurationException ce) {
+      service.markOutage(ce);
+      if (!catalogRead) throw ce;
+      return readSnapshot(snapshot, readKind, (Long)args[0]);
+    }
+  }
+
+  /**
+   * Clear this thread's flag, and say whether it was set.  Call it before a read to clear any
+   * leftover flag, and again after it to see where the answer came from.
+   *
+   * @return true if a read on this thread was answered from the snapshot since the last call
+   */
+  public static boolean takeSnapshotRead() {
+    boolean snapshotRead = (SNAPSHOT_READ.get() != null);
+    if (snapshotRead) SNAPSHOT_READ.remove();
+    return snapshotRead;
+  }
+
+  private Object invokeTarget(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException ite) {
+      throw ite.getCause();
+    }
+  }
+
+  private Object readSnapshot(CatalogSnapshot snapshot, int readKind, long id) {
+    service.recordSnapshotRead();
+    SNAPSHOT_READ.set(Boolean.TRUE);
+    switch (readKind) {
+      case READ_GAME          : return snapshot.readGame(id);
+      case READ_GAME_BY_BGGID : return snapshot.readGameByBGGID(id);
+      case READ_BGG_GAME      : return snapshot.readBGGGame(id);
+      case READ_GAME_RELTN    : return snapshot.readGameReltn(id);
+      case READ_CSI_DATA      : return snapshot.readCSIData(id);
+      default                 : return snapshot.readMMData(id);
+    }
+  }
+}
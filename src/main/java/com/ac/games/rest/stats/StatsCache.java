@@ -0,0 +1,354 @@
+package com.ac.games.rest.stats;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.BGGGameStats;
+import com.ac.games.data.CSIDataStats;
+import com.ac.games.data.MMDataStats;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.DaemonThreadFactory;
+import com.ac.games.rest.data.StatsSnapshot;
+
+/**
+ * This class keeps the results of the stats queries in memory, so the /stats requests don't
+ * have to aggregate over the full collections every time the dashboard polls.
+ * <p>
+ * Each stats type holds the last full result from the database, plus a set of counters for the
+ * inserts, updates, deletes and review transitions the controllers have reported since then.
+ * A background task recomputes everything on a fixed interval to correct any drift, and a dirty
+ * entry is recomputed early (asynchronously) once it is older than {@link #MIN_RECOMPUTE_MILLIS}.
+ * <p>
+ * The result and its counters are held together in one immutable {@link State}, swapped whole.
+ * Recomputes of an entry run one at a time, and each one takes away only the changes it counted
+ * before its read, in the same swap that puts in the new result.  So a change is counted once,
+ * and a response never shows counters that belong to a different result.
+ *
+ * @author ac010168
+ */
+public class StatsCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(StatsCache.class);
+
+  /** The stats type used for per-user collection stats */
+  public static final String USER_STATS = "user";
+
+  /** How often the background task recomputes every entry, in seconds */
+  public static long refreshIntervalSeconds = 300;
+  /** A dirty entry will not be recomputed more often than this, in milliseconds */
+  public static final long MIN_RECOMPUTE_MILLIS = 30000;
+  /** User entries that have not been requested for this long are dropped, in milliseconds */
+  public static final long USER_ENTRY_IDLE_MILLIS = 3600000;
+
+  private final Map<String, StatsEntry> entries;
+  private final ExecutorService recomputeExecutor;
+  private ScheduledExecutorService refreshScheduler;
+  private volatile GamesDatabase database;
+
+  public StatsCache() {
+    entries           = new ConcurrentHashMap<String, StatsEntry>();
+    recomputeExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("stats-recompute"));
+    refreshScheduler  = null;
+    database          = null;
+  }
+
+  /**
+   * Retrieve the stats for the requested type, from memory if we have them.
+   *
+   * @param database The database to compute from, if the stats are missing or need a refresh
+   * @param type One of the BGG, CSI or MM stats types, or user
+   * @param userID The userID, only used for the user stats type
+   * @param refresh true to force a synchronous recompute
+   *
+   * @return The {@link StatsSnapshot}, or null if the database had no stats for this request
+   *
+   * @throws DatabaseOperationException
+   * @throws ConfigurationException
+   */
+  public StatsSnapshot getStats(GamesDatabase database, String type, long userID, boolean refresh)
+      throws DatabaseOperationException, ConfigurationException {
+    this.database = database;
+    String key = buildKey(type, userID);
+    StatsEntry entry = entries.get(key);
+    if (entry == null) {
+      entry = new StatsEntry(type.toLowerCase(), userID);
+      StatsEntry existing = ((ConcurrentHashMap<String, StatsEntry>)entries).putIfAbsent(key, entry);
+      if (existing != null) entry = existing;
+    }
+    entry.lastAccessTime = System.currentTimeMillis();
+
+    if (refresh)
+      recompute(database, entry, false);
+    else if (entry.state.get().stats == null)
+      recompute(database, entry, true);
+    else if (entry.state.get().isDirty() && (entry.state.get().getAgeMillis() > MIN_RECOMPUTE_MILLIS))
+      scheduleRecompute(database, entry);
+
+    State state = entry.state.get();
+    if (state.stats == null)
+      return null;
+    return state.toSnapshot(entry.type, refreshIntervalSeconds * 1000);
+  }
+
+  /**
+   * @param type The stats type that had a record inserted
+   */
+  public void recordInsert(String type) {
+    StatsEntry entry = entries.get(buildKey(type, -1));
+    if (entry != null) entry.count(State.INSERTED);
+  }
+
+  /**
+   * @param type The stats type that had a record updated
+   */
+  public void recordUpdate(String type) {
+    StatsEntry entry = entries.get(buildKey(type, -1));
+    if (entry != null) entry.count(State.UPDATED);
+  }
+
+  /**
+   * @param type The stats type that had a record deleted
+   */
+  public void recordDelete(String type) {
+    StatsEntry entry = entries.get(buildKey(type, -1));
+    if (entry != null) entry.count(State.DELETED);
+  }
+
+  /**
+   * @param type The stats type that had a record change review state
+   * @param newState The state the record moved into
+   */
+  public void recordReviewTransition(String type, ReviewState newState) {
+    StatsEntry entry = entries.get(buildKey(type, -1));
+    if (entry == null) return;
+    if (newState == ReviewState.REVIEWED)      entry.count(State.APPROVED);
+    else if (newState == ReviewState.REJECTED) entry.count(State.REJECTED);
+    else                                       entry.count(State.RESET);
+  }
+
+  /**
+   * Flag a change to a user's collection.
+   *
+   * @param userID The userID whose collection changed, or -1 if we only know the collection, in which
+   * case every cached user entry is flagged.
+   */
+  public void recordCollectionChange(long userID) {
+    if (userID > 0) {
+      StatsEntry entry = entries.get(buildKey(USER_STATS, userID));
+      if (entry != null) entry.count(State.UPDATED);
+    } else {
+      for (StatsEntry entry : entries.values())
+        if (entry.type.equals(USER_STATS)) entry.count(State.UPDATED);
+    }
+  }
+
+  /**
+   * Start the background task that periodically recomputes every cached entry.
+   *
+   * @param database The database to compute from
+   */
+  public synchronized void startRefresh(GamesDatabase database) {
+    this.database = database;
+    if (refreshScheduler != null) return;
+
+    refreshScheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("stats-refresh"));
+    refreshScheduler.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        refreshAll();
+      }
+    }, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stop the background refresh task.
+   */
+  public synchronized void stopRefresh() {
+    if (refreshScheduler != null) {
+      refreshScheduler.shutdownNow();
+      refreshScheduler = null;
+    }
+    recomputeExecutor.shutdownNow();
+  }
+
+  /**
+   * Recompute every cached entry, and drop idle user entries.
+   */
+  void refreshAll() {
+    GamesDatabase curDatabase = database;
+    if (curDatabase == null) return;
+
+    long now = System.currentTimeMillis();
+    Iterator<StatsEntry> iter = entries.values().iterator();
+    while (iter.hasNext()) {
+      StatsEntry entry = iter.next();
+      if (entry.type.equals(USER_STATS) && ((now - entry.lastAccessTime) > USER_ENTRY_IDLE_MILLIS)) {
+        iter.remove();
+        continue;
+      }
+      try {
+        recompute(curDatabase, entry, false);
+      } catch (Throwable t) {
+        logger.error("Unable to refresh the " + entry.type + " stats...", t);
+      }
+    }
+  }
+
+  private void scheduleRecompute(final GamesDatabase database, final StatsEntry entry) {
+    if (!entry.recomputing.compareAndSet(false, true))
+      return;
+    try {
+      recomputeExecutor.execute(new Runnable() {
+        public void run() {
+          try {
+            recompute(database, entry, false);
+          } catch (Throwable t) {
+            logger.error("Unable to recompute the " + entry.type + " stats...", t);
+          } finally {
+            entry.recomputing.set(false);
+          }
+        }
+      });
+    } catch (RuntimeException re) {
+      entry.recomputing.set(false);
+    }
+  }
+
+  /**
+   * @param onlyIfMissing true to skip the read if another recompute filled the entry while we waited for it
+   */
+  private void recompute(GamesDatabase database, StatsEntry entry, boolean onlyIfMissing) throws DatabaseOperationException, ConfigurationException {
+    synchronized (entry.recomputeLock) {
+      //Capture the counters before we read, so changes that land during the read are kept for the next round
+      State before = entry.state.get();
+      if (onlyIfMissing && (before.stats != null)) return;
+
+      Object stats = null;
+      if (entry.type.equals(BGGGameStats.BGG_GAME_STATS.toLowerCase()))
+        stats = database.readBGGGameStats();
+      else if (entry.type.equals(CSIDataStats.CSI_DATA_STATS.toLowerCase()))
+        stats = database.readCSIDataStats();
+      else if (entry.type.equals(MMDataStats.MM_DATA_STATS.toLowerCase()))
+        stats = database.readMMDataStats();
+      else if (entry.type.equals(USER_STATS))
+        stats = database.readCollectionStats(entry.userID);
+
+      long computedTime = System.currentTimeMillis();
+      while (true) {
+        State current = entry.state.get();
+        if (entry.state.compareAndSet(current, current.recomputed(stats, computedTime, before))) return;
+      }
+    }
+  }
+
+  private static String buildKey(String type, long userID) {
+    if (type.equalsIgnoreCase(USER_STATS))
+      return USER_STATS + ":" + userID;
+    return type.toLowerCase();
+  }
+
+  /**
+   * The cached state for a single stats type (or a single user).
+   */
+  private static class StatsEntry {
+    final String type;
+    final long userID;
+
+    final AtomicReference<State> state = new AtomicReference<State>(State.EMPTY);
+    volatile long lastAccessTime;
+
+    /** Held for the whole of a recompute, so two never overlap */
+    final Object recomputeLock = new Object();
+    final AtomicBoolean recomputing = new AtomicBoolean(false);
+
+    StatsEntry(String type, long userID) {
+      this.type   = type;
+      this.userID = userID;
+    }
+
+    void count(int counter) {
+      while (true) {
+        State current = state.get();
+        if (state.compareAndSet(current, current.plus(counter))) return;
+      }
+    }
+  }
+
+  /**
+   * One computed result, and the changes reported since it was computed.  Never changed once built.
+   */
+  private static final class State {
+    static final int INSERTED = 0;
+    static final int UPDATED  = 1;
+    static final int DELETED  = 2;
+    static final int APPROVED = 3;
+    static final int REJECTED = 4;
+    static final int RESET    = 5;
+
+    static final State EMPTY = new State(null, 0, new long[6]);
+
+    final Object stats;
+    final long computedTime;
+    final long[] counts;
+
+    State(Object stats, long computedTime, long[] counts) {
+      this.stats        = stats;
+      this.computedTime = computedTime;
+      this.counts       = counts;
+    }
+
+    State plus(int counter) {
+      long[] newCounts = counts.clone();
+      newCounts[counter]++;
+      return new State(stats, computedTime, newCounts);
+    }
+
+    /**
+     * @param before The state the recompute started from, whose changes the new result covers
+     */
+    State recomputed(Object newStats, long newComputedTime, State before) {
+      long[] newCounts = new long[counts.length];
+      for (int i = 0; i < counts.length; i++) newCounts[i] = counts[i] - before.counts[i];
+      return new State(newStats, newComputedTime, newCounts);
+    }
+
+    boolean isDirty() {
+      for (long count : counts) if (count > 0) return true;
+      return false;
+    }
+
+    long getAgeMillis() {
+      return System.currentTimeMillis() - computedTime;
+    }
+
+    StatsSnapshot toSnapshot(String type, long maxAgeMillis) {
+      StatsSnapshot snapshot = new StatsSnapshot();
+      snapshot.setType(type);
+      snapshot.setStats(stats);
+      snapshot.setComputedDate(new java.util.Date(computedTime));
+      snapshot.setAgeSeconds(getAgeMillis() / 1000);
+      snapshot.setInsertCount(counts[INSERTED]);
+      snapshot.setUpdateCount(counts[UPDATED]);
+      snapshot.setDeleteCount(counts[DELETED]);
+      snapshot.setApproveCount(counts[APPROVED]);
+      snapshot.setRejectCount(counts[REJECTED]);
+      snapshot.setResetCount(counts[RESET]);
+      snapshot.setRecordCountChange(counts[INSERTED] - counts[DELETED]);
+      snapshot.setPendingCountChange(counts[RESET] - counts[APPROVED] - counts[REJECTED]);
+      snapshot.setStale(isDirty() || (getAgeMillis() > maxAgeMillis));
+      return snapshot;
+    }
+  }
+}
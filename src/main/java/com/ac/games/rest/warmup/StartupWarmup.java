@@ -0,0 +1,281 @@
+package com.ac.games.rest.warmup;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.data.BGGGameStats;
+import com.ac.games.data.CSIDataStats;
+import com.ac.games.data.MMDataStats;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.Application;
+import com.ac.games.rest.link.VendorLinks;
+import com.ac.games.rest.snapshot.CatalogSnapshot;
+
+/**
+ * Loads the data the first requests after a deploy are going to want, before we report ready.
+ * <p>
+ * Each part (the catalog snapshot when the standalone in-memory store is the whole catalog, the price history,
+ * the autocomplete name sets, the newest Games, the newest Collections, the vendor price cards for
+ * those Games, the vendor links of every Game, and the stats) runs on its own thread, so the parts load in parallel.
+ * The whole warm-up shares one time budget.  Parts that run past it are cut off, and we go
+ * ready anyway: a partly warm service is better than one that never takes traffic.
+ *
+ * @author ac010168
+ */
+public class StartupWarmup {
+
+  private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+  public enum WarmupState { NOT_STARTED, RUNNING, COMPLETE, BUDGET_EXCEEDED }
+
+  /** How long the whole warm-up may take before we stop waiting on it */
+  public static long budgetMillis         = Long.getLong("games.warmup.budget", 60000L);
+  /** The number of the newest Games (and their vendor prices) to load */
+  public static int  recentGameCount       = Integer.getInteger("games.warmup.games", 500);
+  /** The number of the newest Collections to load */
+  public static int  recentCollectionCount = Integer.getInteger("games.warmup.collections", 200);
+
+  private volatile WarmupState state;
+  private volatile long startTime;
+  private volatile long finishTime;
+  private final Map<String, WarmupPart> parts;
+
+  public StartupWarmup() {
+    state = WarmupState.NOT_STARTED;
+    parts = new LinkedHashMap<String, WarmupPart>();
+  }
+
+  /**
+   * @return true once warm-up is over, either because everything loaded or the budget ran out
+   */
+  public boolean isReady() {
+    return (state == WarmupState.COMPLETE) || (state == WarmupState.BUDGET_EXCEEDED);
+  }
+
+  /**
+   * @return the state
+   */
+  public WarmupState getState() {
+    return state;
+  }
+
+  /**
+   * Kick off the warm-up on a background thread, so startup isn't held up by it.
+   *
+   * @param database The database to load from
+   */
+  public synchronized void start(final GamesDatabase database) {
+    if (state != WarmupState.NOT_STARTED) return;
+    state = WarmupState.RUNNING;
+
+    Thread warmupThread = new Thread(new Runnable() {
+      public void run() {
+        runWarmup(database);
+      }
+    }, "startup-warmup");
+    warmupThread.setDaemon(true);
+    warmupThread.start();
+  }
+
+  /**
+   * @return How each part of the warm-up went, for the health details
+   */
+  public Map<String, Object> getDetails() {
+    Map<String, Object> details = new LinkedHashMap<String, Object>();
+    details.put("state", state.toString());
+    if (startTime > 0)
+      details.put("elapsedMillis", ((finishTime > 0) ? finishTime : System.currentTimeMillis()) - startTime);
+    details.put("budgetMillis", budgetMillis);
+    synchronized (parts) {
+      for (WarmupPart part : parts.values())
+        details.put(part.name, part.toDetail());
+    }
+    return details;
+  }
+
+  private void runWarmup(final GamesDatabase database) {
+    startTime = System.currentTimeMillis();
+    final long deadline = startTime + budgetMillis;
+
+    WarmupPart[] warmupParts = new WarmupPart[] {
+      new WarmupPart("snapshot") {
+        int load() {
+          //Fill the standalone store straight from the mapped snapshot.  A hot tier in front of Mongo is
+          //left to read through, as it never goes back to Mongo for a record it holds, and the
+          //snapshot may be older than what Mongo has now.
+          CatalogSnapshot snapshot = Application.snapshots.getSnapshot();
+          if ((Application.memoryStore == null) || !Application.memoryStore.isStandalone() || (snapshot == null)) return 0;
+          return snapshot.loadInto(Application.memoryStore);
+        }
+      },
+      new WarmupPart("priceHistory") {
+        int load() {
+          return (int)Application.priceHistory.load();
+        }
+      },
+      new WarmupPart("names") {
+        int load() {
+          //The name index reads the same four lists the autocomplete requests do
+          Application.nameIndex.build(database);
+          return Application.nameIndex.isBuilt() ? 4 : 0;
+        }
+      },
+      new WarmupPart("games") {
+        int load() throws Exception {
+          long maxGameID = database.getMaxGameID();
+          int loaded = 0;
+          for (long gameID = maxGameID; (gameID > 0) && (loaded < recentGameCount) && !pastDeadline(deadline); gameID--) {
+            if (database.readGame(gameID) != null) loaded++;
+          }
+          return loaded;
+        }
+      },
+      new WarmupPart("collections") {
+        int load() throws Exception {
+          long maxCollectionID = database.getMaxCollectionID();
+          int loaded = 0;
+          for (long collectionID = maxCollectionID; (collectionID > 0) && (loaded < recentCollectionCount) && !pastDeadline(deadline); collectionID--) {
+            if (database.readCollection(collectionID) != null) loaded++;
+          }
+          return loaded;
+        }
+      },
+      new WarmupPart("prices") {
+        int load() throws Exception {
+          long maxGameID = database.getMaxGameID();
+          int loaded = 0;
+          for (long gameID = maxGameID; (gameID > 0) && (gameID > maxGameID - recentGameCount) && !pastDeadline(deadline); gameID--) {
+            VendorLinks links = Application.vendorLinks.getLinks(database, gameID);
+            if (links == null) continue;
+            loaded += readAll(links.getCsiIDs(), true);
+            loaded += readAll(links.getMmIDs(), false);
+          }
+          return loaded;
+        }
+
+        private int readAll(List<Long> ids, boolean csi) throws Exception {
+          if (ids == null) return 0;
+          int loaded = 0;
+          for (long id : ids) {
+            //Through the card store, so the cards are built as well as the listings read
+            Object card = csi ? Application.priceCards.getCSIPriceCard(database, id) : Application.priceCards.getMMPriceCard(database, id);
+            if (card != null) loaded++;
+          }
+          return loaded;
+        }
+      },
+      new WarmupPart("links") {
+        int load() throws Exception {
+          return Application.vendorLinks.load(database, deadline);
+        }
+      },
+      new WarmupPart("stats") {
+        int load() throws Exception {
+          Application.statsCache.getStats(database, BGGGameStats.BGG_GAME_STATS, -1, false);
+          Application.statsCache.getStats(database, CSIDataStats.CSI_DATA_STATS, -1, false);
+          Application.statsCache.getStats(database, MMDataStats.MM_DATA_STATS, -1, false);
+          return 3;
+        }
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(warmupParts.length, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "startup-warmup-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    Future<?>[] futures = new Future<?>[warmupParts.length];
+    for (int i = 0; i < warmupParts.length; i++) {
+      synchronized (parts) {
+        parts.put(warmupParts[i].name, warmupParts[i]);
+      }
+      futures[i] = executor.submit(warmupParts[i]);
+    }
+
+    boolean timedOut = false;
+    try {
+      for (int i = 0; i < futures.length; i++) {
+        try {
+          futures[i].get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException te) {
+          timedOut = true;
+          break;
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          timedOut = true;
+          break;
+        } catch (Throwable t) {
+          //The part already recorded its own failure
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    finishTime = System.currentTimeMillis();
+    state = timedOut ? WarmupState.BUDGET_EXCEEDED : WarmupState.COMPLETE;
+    if (timedOut) logger.warn("Startup warm-up ran out of budget after {}ms", finishTime - startTime);
+    else          logger.info("Startup warm-up finished in {}ms", finishTime - startTime);
+  }
+
+  private static boolean pastDeadline(long deadline) {
+    return (System.currentTimeMillis() > deadline) || Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * One independently timed piece of the warm-up.
+   */
+  private static abstract class WarmupPart implements Runnable {
+    final String name;
+    volatile String status = "pending";
+    volatile long elapsedMillis;
+    volatile int loaded;
+    volatile String error;
+
+    WarmupPart(String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return The number of records loaded
+     */
+    abstract int load() throws Exception;
+
+    public void run() {
+      long partStart = System.currentTimeMillis();
+      status = "running";
+      try {
+        loaded = load();
+        status = "complete";
+      } catch (Throwable t) {
+        error  = t.getMessage();
+        status = "failed";
+      }
+      elapsedMillis = System.currentTimeMillis() - partStart;
+      logger.info("Warm-up part {} {} in {}ms ({} loaded){}", name, status, elapsedMillis, loaded, ((error == null) ? "" : ": " + error));
+    }
+
+    Map<String, Object> toDetail() {
+      Map<String, Object> detail = new LinkedHashMap<String, Object>();
+      detail.put("status", status);
+      detail.put("loaded", loaded);
+      detail.put("elapsedMillis", elapsedMillis);
+      if (error != null) detail.put("error", error);
+      return detail;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.ac.games.rest.writebehind;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+
+/**
+ * Deferred write of a {@link BGGGame} that was refreshed from the BGG XML API during a
+ * <code>sync=y</code> GET.  The refreshed game has already been handed back to the caller, so
+ * nothing is waiting on the write.
+ * <p>
+ * Any request that writes the same bggID directly should call
+ * {@link WriteBehindQueue#flushKey(String)} with {@link #buildKey(long)} first, so a pending
+ * sync can never land on top of it.
+ *
+ * @author ac010168
+ */
+public class BGGSyncTask implements WriteBehindTask {
+
+  private final BGGGame game;
+
+  public BGGSyncTask(BGGGame game) {
+    this.game = game;
+  }
+
+  /**
+   * @param bggID The bggID
+   *
+   * @return The coalescing key for this game's sync write
+   */
+  public static String buildKey(long bggID) {
+    return "bggsync:" + bggID;
+  }
+
+  public String getKey() {
+    return buildKey(game.getBggID());
+  }
+
+  public void write(GamesDatabase database) throws DatabaseOperationException, ConfigurationException {
+    database.updateBGGGameData(game);
+  }
+}
@@ -0,0 +1,52 @@
+package com.ac.games.rest.writebehind;
+
+import java.util.Date;
+
+import com.ac.games.data.UserDetail;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+
+/**
+ * Deferred stamp of the lastLoginDate on a {@link UserDetail}.
+ * <p>
+ * The UserDetail is re-read when the write runs, so only the login date is changed and any
+ * other edits made to the record in the meantime are kept.
+ *
+ * @author ac010168
+ */
+public class LastLoginTask implements WriteBehindTask {
+
+  private final long userID;
+  private final Date loginDate;
+
+  public LastLoginTask(long userID, Date loginDate) {
+    this.userID    = userID;
+    this.loginDate = loginDate;
+  }
+
+  /**
+   * @param userID The userID
+   *
+   * @return The coalescing key for this user's login stamp
+   */
+  public static String buildKey(long userID) {
+    return "lastlogin:" + userID;
+  }
+
+  public String getKey() {
+    return buildKey(userID);
+  }
+
+  public void write(GamesDatabase database) throws DatabaseOperationException, ConfigurationException {
+    UserDetail userDetail = database.readUserDetail(userID);
+    //The user may have been deleted since they logged in
+    if (userDetail == null)
+      return;
+    if ((userDetail.getLastLoginDate() != null) && userDetail.getLastLoginDate().after(loginDate))
+      return;
+
+    userDetail.setLastLoginDate(loginDate);
+    database.updateUserDetail(userDetail);
+  }
+}
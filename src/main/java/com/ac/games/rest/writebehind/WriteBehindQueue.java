@@ -0,0 +1,349 @@
+package com.ac.games.rest.writebehind;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ac.games.db.GamesDatabase;
+
+/**
+ * This class takes low priority bookkeeping writes off the request thread.
+ * <p>
+ * Writes are queued as {@link WriteBehindTask} instances and coalesced by key, so if the same
+ * record is written several times before a flush, only the newest write is run.  The queue is
+ * flushed in batches, either every {@link #flushIntervalMillis} or as soon as {@link #batchSize}
+ * writes are pending, and is drained by {@link #drain(long)} on shutdown.
+ * <p>
+ * Failed writes are retried up to {@link #MAX_ATTEMPTS} times.  If the queue is full, new keys are
+ * dropped rather than blocking the request.  Both are counted in {@link #getMetrics()}.
+ *
+ * @author ac010168
+ */
+public class WriteBehindQueue {
+
+  private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+  /** The number of writes run per flush batch, and the pending count that triggers an early flush */
+  public static int batchSize = 100;
+  /** How often the queue is flushed, in milliseconds */
+  public static long flushIntervalMillis = 1000;
+  /** The maximum number of distinct keys we will hold before dropping new ones */
+  public static int maxPending = 10000;
+  /** The number of times we try a write before giving up on it */
+  public static final int MAX_ATTEMPTS = 3;
+
+  private final ConcurrentHashMap<String, PendingWrite> pending;
+  private final ConcurrentLinkedQueue<String> order;
+  /** The keys a flush has taken off pending and is writing (or about to) */
+  private final Set<String> inFlight;
+  private final Object flushLock;
+  private final AtomicBoolean flushRequested;
+
+  private ScheduledExecutorService scheduler;
+  private volatile GamesDatabase database;
+  private volatile boolean accepting;
+
+  private final AtomicLong enqueued;
+  private final AtomicLong coalesced;
+  private final AtomicLong written;
+  private final AtomicLong retried;
+  private final AtomicLong failed;
+  private final AtomicLong dropped;
+  private final AtomicLong flushCount;
+  private final AtomicLong lastFlushMillis;
+  private final AtomicLong maxFlushMillis;
+  private final AtomicLong totalWriteLatencyMillis;
+  private final AtomicLong maxWriteLatencyMillis;
+
+  public WriteBehindQueue() {
+    pending        = new ConcurrentHashMap<String, PendingWrite>();
+    order          = new ConcurrentLinkedQueue<String>();
+    inFlight       = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    flushLock      = new Object();
+    flushRequested = new AtomicBoolean(false);
+    scheduler      = null;
+    database       = null;
+    accepting      = true;
+
+    enqueued                = new AtomicLong();
+    coalesced               = new AtomicLong();
+    written                 = new AtomicLong();
+    retried                 = new AtomicLong();
+    failed                  = new AtomicLong();
+    dropped                 = new AtomicLong();
+    flushCount              = new AtomicLong();
+    lastFlushMillis         = new AtomicLong();
+    maxFlushMillis          = new AtomicLong();
+    totalWriteLatencyMillis = new AtomicLong();
+    maxWriteLatencyMillis   = new AtomicLong();
+  }
+
+  /**
+   * Queue a write.  This never blocks on the database.
+   *
+   * @param task The write to queue
+   * @param database The database to write to, or null to keep the one we already have
+   *
+   * @return true if the write was queued (or coalesced), false if it was dropped
+   */
+  public boolean enqueue(WriteBehindTask task, GamesDatabase database) {
+    if (database != null)
+      this.database = database;
+    ensureStarted();
+
+    String key = task.getKey();
+    if ((!accepting) || ((pending.size() >= maxPending) && (!pending.containsKey(key)))) {
+      dropped.incrementAndGet();
+      return false;
+    }
+
+    enqueued.incrementAndGet();
+    PendingWrite newWrite = new PendingWrite(task, System.currentTimeMillis());
+    PendingWrite prevWrite = pending.put(key, newWrite);
+    if (prevWrite == null)
+      order.offer(key);
+    else {
+      //Keep the original enqueue time, so the latency reflects how long the record has been out of date
+      newWrite.enqueuedAt = prevWrite.enqueuedAt;
+      coalesced.incrementAndGet();
+    }
+
+    if ((pending.size() >= batchSize) && flushRequested.compareAndSet(false, true))
+      requestFlush();
+    return true;
+  }
+
+  /**
+   * Run any pending write for this key right now, on the calling thread.  Once this returns,
+   * no write for the key is queued or running, so the caller can safely write the same record
+   * itself.  A write a flush is already running is waited for, since flushes hold the flushLock.
+   *
+   * @param key The key to flush
+   */
+  public void flushKey(String key) {
+    //A flush marks the key in flight before taking it off pending, so checking in this order
+    //can't miss a write that's moving from one to the other
+    if ((!pending.containsKey(key)) && (!inFlight.contains(key)))
+      return;
+    synchronized (flushLock) {
+      PendingWrite write = pending.remove(key);
+      if (write != null)
+        runWrite(key, write, false);
+    }
+  }
+
+  /**
+   * Flush everything currently pending, in batches.
+   *
+   * @return the number of writes that were run successfully
+   */
+  public int flush() {
+    GamesDatabase curDatabase = database;
+    if (curDatabase == null) return 0;
+
+    int successCount = 0;
+    synchronized (flushLock) {
+      long startTime = System.currentTimeMillis();
+      int toFlush = order.size();
+      while (toFlush > 0) {
+        int batchCount = 0;
+        String key = null;
+        while ((batchCount < batchSize) && (toFlush > 0) && ((key = order.poll()) != null)) {
+          toFlush--;
+          inFlight.add(key);
+          PendingWrite write = pending.remove(key);
+          if (write == null) {
+            inFlight.remove(key);
+            continue;
+          }
+          batchCount++;
+          if (runWrite(key, write, accepting)) successCount++;
+        }
+        if (key == null) break;
+      }
+
+      long flushMillis = System.currentTimeMillis() - startTime;
+      flushCount.incrementAndGet();
+      lastFlushMillis.set(flushMillis);
+      updateMax(maxFlushMillis, flushMillis);
+    }
+    return successCount;
+  }
+
+  /**
+   * Stop accepting writes, and flush everything still pending.  Called from the shutdown hook.
+   *
+   * @param timeoutMillis The longest we will spend draining
+   *
+   * @return the number of writes left behind, which are counted as dropped
+   */
+  public int drain(long timeoutMillis) {
+    accepting = false;
+    synchronized (this) {
+      if (scheduler != null) {
+        scheduler.shutdownNow();
+        scheduler = null;
+      }
+    }
+
+    long endTime = System.currentTimeMillis() + timeoutMillis;
+    while ((!pending.isEmpty()) && (System.currentTimeMillis() < endTime) && (database != null))
+      flush();
+
+    int remaining = pending.size();
+    if (remaining > 0) {
+      logger.warn("Write-behind queue drained with {} writes left behind", remaining);
+      dropped.addAndGet(remaining);
+      pending.clear();
+      order.clear();
+    }
+    return remaining;
+  }
+
+  /**
+   * @return the number of distinct keys waiting to be written
+   */
+  public int getQueueDepth() {
+    return pending.size();
+  }
+
+  /**
+   * @return A snapshot of the queue counters, suitable for the metrics endpoint
+   */
+  public Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put("queueDepth", pending.size());
+
+    long oldestAge = 0;
+    String oldestKey = order.peek();
+    if (oldestKey != null) {
+      PendingWrite oldest = pending.get(oldestKey);
+      if (oldest != null) oldestAge = System.currentTimeMillis() - oldest.enqueuedAt;
+    }
+    metrics.put("oldestPendingMillis", oldestAge);
+    metrics.put("enqueued", enqueued.get());
+    metrics.put("coalesced", coalesced.get());
+    metrics.put("written", written.get());
+    metrics.put("retried", retried.get());
+    metrics.put("failed", failed.get());
+    metrics.put("dropped", dropped.get());
+    metrics.put("flushes", flushCount.get());
+    metrics.put("lastFlushMillis", lastFlushMillis.get());
+    metrics.put("maxFlushMillis", maxFlushMillis.get());
+
+    long writeCount = written.get();
+    metrics.put("avgWriteLatencyMillis", (writeCount == 0) ? 0 : totalWriteLatencyMillis.get() / writeCount);
+    metrics.put("maxWriteLatencyMillis", maxWriteLatencyMillis.get());
+    return metrics;
+  }
+
+  /**
+   * Run a single write.  Must be called under the flushLock.
+   *
+   * @return true if the write succeeded
+   */
+  private boolean runWrite(String key, PendingWrite write, boolean allowRetry) {
+    GamesDatabase curDatabase = database;
+    try {
+      write.task.write(curDatabase);
+      written.incrementAndGet();
+      long latency = System.currentTimeMillis() - write.enqueuedAt;
+      totalWriteLatencyMillis.addAndGet(latency);
+      updateMax(maxWriteLatencyMillis, latency);
+      return true;
+    } catch (Throwable t) {
+      write.attempts++;
+      if (allowRetry && (write.attempts < MAX_ATTEMPTS)) {
+        //Only requeue if nothing newer has shown up for this key in the meantime
+        if (pending.putIfAbsent(key, write) == null) {
+          order.offer(key);
+          retried.incrementAndGet();
+        } else
+          coalesced.incrementAndGet();
+      } else {
+        logger.warn("Write-behind write for {} failed after {} attempts: {}", key, write.attempts, t.getMessage());
+        failed.incrementAndGet();
+      }
+      return false;
+    } finally {
+      //Any retry is back on pending by now, so flushKey still sees it
+      inFlight.remove(key);
+    }
+  }
+
+  private synchronized void ensureStarted() {
+    if ((scheduler != null) || (!accepting)) return;
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "write-behind-flush");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        flushSafely();
+      }
+    }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void requestFlush() {
+    if (scheduler == null) {
+      flushRequested.set(false);
+      return;
+    }
+    try {
+      scheduler.execute(new Runnable() {
+        public void run() {
+          flushRequested.set(false);
+          flushSafely();
+        }
+      });
+    } catch (RejectedExecutionException ree) {
+      flushRequested.set(false);
+    }
+  }
+
+  private void flushSafely() {
+    try {
+      flush();
+    } catch (Throwable t) {
+      logger.error("Write-behind flush failed...", t);
+    }
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long curMax = max.get();
+    while ((value > curMax) && (!max.compareAndSet(curMax, value)))
+      curMax = max.get();
+  }
+
+  /**
+   * A queued write, plus the bookkeeping we need for retries and latency.
+   */
+  private static class PendingWrite {
+    final WriteBehindTask task;
+    volatile long enqueuedAt;
+    int attempts;
+
+    PendingWrite(WriteBehindTask task, long enqueuedAt) {
+      this.task       = task;
+      this.enqueuedAt = enqueuedAt;
+      this.attempts   = 0;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.ac.games.rest.writebehind;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.db.exception.DatabaseOperationException;
+
+/**
+ * A single deferred write for the {@link WriteBehindQueue}.
+ * <p>
+ * Tasks are coalesced by key, with the newest task replacing any pending task with the same key,
+ * so each task must carry everything needed to bring the record up to date on its own.
+ *
+ * @author ac010168
+ */
+public interface WriteBehindTask {
+
+  /**
+   * @return The coalescing key, typically the record type plus its id
+   */
+  public String getKey();
+
+  /**
+   * Run the write against the database.
+   *
+   * @param database The database to write to
+   *
+   * @throws DatabaseOperationException
+   * @throws ConfigurationException
+   */
+  public void write(GamesDatabase database) throws DatabaseOperationException, ConfigurationException;
+}
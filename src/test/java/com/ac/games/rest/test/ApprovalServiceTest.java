@@ -0,0 +1,102 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameType;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.DatabaseOperationException;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.review.ApprovalService;
+
+/**
+ * @author ac010168
+ *
+ */
+public class ApprovalServiceTest {
+
+  /**
+   * This should test the BGG approval unit of work in the following order:
+   * <ol>
+   * <li>Insert a base Game, and two pending BGG expansions of it</li>
+   * <li>Approve the first expansion, and validate the Game, GameReltn and parent expansion list</li>
+   * <li>Approve the second expansion against a database that fails the BGG update, and validate
+   * the Game, GameReltn and parent change were all undone</li></ol>
+   */
+  @Test
+  public void testApproveBGG() throws Exception {
+    System.out.println ("===  Insert Records  ===");
+    final GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    Game parent = new Game();
+    parent.setGameID(1);
+    parent.setBggID(100);
+    parent.setName("Dominion");
+    parent.setGameType(GameType.BASE);
+    parent.setExpansionIDs(new ArrayList<Long>());
+    database.insertGame(parent);
+    for (long bggID : new long[] { 200, 300 }) {
+      BGGGame expansion = new BGGGame();
+      expansion.setBggID(bggID);
+      expansion.setName("Dominion Expansion " + bggID);
+      expansion.setGameType(GameType.EXPANSION);
+      expansion.setParentGameID(100);
+      expansion.setReviewState(ReviewState.PENDING);
+      database.insertBGGGameData(expansion);
+    }
+    ApprovalService approvals = new ApprovalService();
+
+    try {
+      System.out.println ("===  Approve Expansion  ===");
+      ApprovalService.Result result = approvals.approveBGG(database, database.readBGGGameData(200), "Rio Grande");
+      assertEquals(ApprovalService.Outcome.APPROVED, result.getOutcome());
+      long gameID = result.getGame().getGameID();
+      assertEquals(2L, gameID);
+      assertEquals(1L, database.readGameByBGGID(200).getParentGameID());
+      assertNotNull(database.readGameReltn(gameID));
+      assertEquals(Arrays.asList(2L), database.readGame(1).getExpansionIDs());
+      assertEquals(ReviewState.REVIEWED, database.readBGGGameData(200).getReviewState());
+
+      System.out.println ("===  Failed Approval  ===");
+      GamesDatabase failing = (GamesDatabase)Proxy.newProxyInstance(GamesDatabase.class.getClassLoader(), new Class<?>[] { GamesDatabase.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("updateBGGGameData"))
+              throw mock(DatabaseOperationException.class);
+            try {
+              return method.invoke(database, args);
+            } catch (InvocationTargetException ite) {
+              throw ite.getCause();
+            }
+          }
+        });
+      try {
+        approvals.approveBGG(failing, database.readBGGGameData(300), "Rio Grande");
+        fail("The approval should have failed");
+      } catch (DatabaseOperationException doe) {
+        //Expected
+      }
+      assertNull(database.readGameByBGGID(300));
+      assertNull(database.readGame(3));
+      assertNull(database.readGameReltn(3));
+      assertEquals(Arrays.asList(2L), database.readGame(1).getExpansionIDs());
+      assertEquals(ReviewState.PENDING, database.readBGGGameData(300).getReviewState());
+    } finally {
+      approvals.shutdown();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ac.games.data.Game;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.bulk.BatchReader;
+import com.ac.games.rest.data.BatchItem;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.metrics.RequestProfile;
+
+/**
+ * @author ac010168
+ *
+ */
+public class BatchReaderTest {
+
+  /**
+   * This should test the multi-ID reads in the following order:
+   * <ol>
+   * <li>Parse an ID list with single IDs and a range, and reject a bad one</li>
+   * <li>Insert three Games, leaving a gap in the gameIDs</li>
+   * <li>Read an out of order list with a repeat and a missing ID, and validate the order and statuses</li>
+   * <li>Validate that only the found Games are kept by foundOnly</li>
+   * <li>Read a batch on a single lane from inside a request, and validate every read was counted
+   * against the request's profile</li></ol>
+   */
+  @Test
+  public void testBatchReader() throws Exception {
+    System.out.println ("===  Parse IDs  ===");
+    assertEquals(Arrays.asList(7L, 2L, 3L, 4L, 9L), BatchReader.parseIDs("7, 2-4,9"));
+    try {
+      BatchReader.parseIDs("5-2");
+      fail("A backwards range should not parse");
+    } catch (IllegalArgumentException iae) {
+      //Expected
+    }
+    try {
+      BatchReader.parseIDs("1-" + (BatchReader.maxIDs + 1));
+      fail("A range over the limit should not parse");
+    } catch (IllegalArgumentException iae) {
+      //Expected
+    }
+
+    System.out.println ("===  Insert Games  ===");
+    GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    for (long gameID : new long[] { 1, 2, 4 }) {
+      Game game = new Game();
+      game.setGameID(gameID);
+      game.setName("Game " + gameID);
+      database.insertGame(game);
+    }
+
+    System.out.println ("===  Read Batch  ===");
+    BatchReader reader = new BatchReader();
+    try {
+      List<BatchItem> items = reader.read(database, BatchReader.GAMES, BatchReader.parseIDs("4,3,1,4"));
+      assertEquals(4, items.size());
+      assertEquals(4L, items.get(0).getId());
+      assertEquals(BatchItem.STATUS_FOUND, items.get(0).getStatus());
+      assertEquals("Game 4", ((Game)items.get(0).getData()).getName());
+      assertEquals(3L, items.get(1).getId());
+      assertEquals(BatchItem.STATUS_NOT_FOUND, items.get(1).getStatus());
+      assertNull(items.get(1).getData());
+      assertEquals(1L, items.get(2).getId());
+      assertEquals(BatchItem.STATUS_FOUND, items.get(3).getStatus());
+
+      System.out.println ("===  Found Only  ===");
+      List<Object> found = BatchReader.foundOnly(reader.read(database, BatchReader.GAMES, BatchReader.range(1, 4)));
+      assertEquals(3, found.size());
+      assertEquals(2L, ((Game)found.get(1)).getGameID());
+
+      System.out.println ("===  Profiled Reads  ===");
+      BatchReader.Source profiled = new BatchReader.Source() {
+        public Object read(GamesDatabase database, long id) throws Exception {
+          RequestProfile profile = RequestProfile.current();
+          if (profile != null) profile.recordDatabaseCall("readGame", 1000);
+          return database.readGame(id);
+        }
+      };
+      int savedMaxReads = BatchReader.maxReadsPerRequest;
+      RequestProfile profile = RequestProfile.begin();
+      try {
+        BatchReader.maxReadsPerRequest = 1;
+        found = BatchReader.foundOnly(reader.read(database, profiled, BatchReader.range(1, 4)));
+        assertEquals(3, found.size());
+        assertEquals(4, profile.getDbCalls());
+      } finally {
+        BatchReader.maxReadsPerRequest = savedMaxReads;
+        RequestProfile.end();
+      }
+    } finally {
+      reader.shutdown();
+    }
+  }
+}
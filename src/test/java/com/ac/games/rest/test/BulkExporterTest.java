@@ -0,0 +1,59 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ac.games.data.Game;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.bulk.BulkExporter;
+import com.ac.games.rest.bulk.RecordCursor;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+
+/**
+ * @author ac010168
+ *
+ */
+public class BulkExporterTest {
+
+  /**
+   * This should test the bulk export functions in the following order:
+   * <ol>
+   * <li>Insert three Games, leaving a gap in the gameIDs</li>
+   * <li>Export the Games as NDJSON with two fields, and validate each line</li>
+   * <li>Export the Games as CSV, and validate the header and the quoting of a name with a comma</li></ol>
+   */
+  @Test
+  public void testBulkExporter() throws Exception {
+    System.out.println ("===  Insert Games  ===");
+    GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    String[] names = new String[] { "Abyss", "Lords of Waterdeep", "Sheriff of Nottingham, 2nd Ed" };
+    long[] gameIDs = new long[] { 1, 2, 4 };
+    for (int i = 0; i < names.length; i++) {
+      Game game = new Game();
+      game.setGameID(gameIDs[i]);
+      game.setName(names[i]);
+      database.insertGame(game);
+    }
+    BulkExporter exporter = new BulkExporter();
+
+    System.out.println ("===  Export NDJSON  ===");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(3L, exporter.export(RecordCursor.games(database), out, BulkExporter.FORMAT_NDJSON, Arrays.asList("gameID", "name")));
+    String[] lines = out.toString("UTF-8").split("\n");
+    assertEquals(3, lines.length);
+    assertEquals("{\"gameID\":1,\"name\":\"Abyss\"}", lines[0]);
+    assertEquals("{\"gameID\":4,\"name\":\"Sheriff of Nottingham, 2nd Ed\"}", lines[2]);
+
+    System.out.println ("===  Export CSV  ===");
+    out = new ByteArrayOutputStream();
+    exporter.export(RecordCursor.games(database), out, BulkExporter.FORMAT_CSV, Arrays.asList("name", "gameID"));
+    lines = out.toString("UTF-8").split("\r\n");
+    assertEquals(4, lines.length);
+    assertEquals("name,gameID", lines[0]);
+    assertEquals("\"Sheriff of Nottingham, 2nd Ed\",4", lines[3]);
+  }
+}
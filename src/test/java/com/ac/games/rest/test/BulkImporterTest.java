@@ -0,0 +1,60 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import org.junit.Test;
+
+import com.ac.games.rest.bulk.BulkImporter;
+import com.ac.games.rest.bulk.CatalogType;
+import com.ac.games.rest.data.ImportSummary;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.history.PriceHistoryStore;
+
+/**
+ * @author ac010168
+ *
+ */
+public class BulkImporterTest {
+
+  /**
+   * This should test the bulk import functions in the following order:
+   * <ol>
+   * <li>Import a CSI stream with new records, a repeated record, a blank line and a bad line, in batches of 2</li>
+   * <li>Validate the inserted, updated and failed counts, and that the failure names its line</li>
+   * <li>Validate the records made it into the database</li></ol>
+   */
+  @Test
+  public void testBulkImporter() throws Exception {
+    File historyDir = File.createTempFile("price-history", "");
+    historyDir.delete();
+    PriceHistoryStore.historyDir = historyDir.getAbsolutePath();
+
+    System.out.println ("===  Import CSI Stream  ===");
+    InMemoryGamesDatabase memoryStore = new InMemoryGamesDatabase(null);
+    String ndjson = "{\"csiID\":101,\"title\":\"Abyss\",\"curPrice\":39.99}\n"
+                  + "{\"csiID\":102,\"title\":\"Splendor\",\"curPrice\":29.99}\n"
+                  + "\n"
+                  + "{\"csiID\":103,\"title\":\"Broken\n"
+                  + "{\"csiID\":101,\"title\":\"Abyss\",\"curPrice\":34.99}\n";
+    BulkImporter importer = new BulkImporter();
+    ImportSummary summary = importer.importRecords(memoryStore.asDatabase(), CatalogType.CSI,
+                                                   new ByteArrayInputStream(ndjson.getBytes("UTF-8")), 2);
+
+    System.out.println ("===  Validate Summary  ===");
+    assertEquals(4L, summary.getLines());
+    assertEquals(2L, summary.getInserted());
+    assertEquals(1L, summary.getUpdated());
+    assertEquals(1L, summary.getFailed());
+    assertFalse(summary.isAborted());
+    assertEquals(true, summary.getErrors().get(0).startsWith("Line 4:"));
+
+    System.out.println ("===  Validate Records  ===");
+    assertEquals(34.99, memoryStore.getCSIData(101).getCurPrice(), 0.001);
+    assertEquals("Splendor", memoryStore.getCSIData(102).getTitle());
+    importer.shutdown();
+  }
+}
@@ -0,0 +1,131 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.data.GameType;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.data.BulkReviewSummary;
+import com.ac.games.rest.data.ReviewDecision;
+import com.ac.games.rest.data.ReviewOutcome;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.review.ApprovalService;
+
+/**
+ * @author ac010168
+ *
+ */
+public class BulkReviewTest {
+
+  /**
+   * This should test the bulk review in the following order:
+   * <ol>
+   * <li>Insert a base Game with its GameReltn, two pending CSI listings, and two pending BGG
+   * expansions of the base Game</li>
+   * <li>Run one bulk review that approves both CSI listings to the base Game, approves both
+   * expansions, rejects a listing that was already linked, and asks for a listing that doesn't
+   * exist, a bad source and a repeated item</li>
+   * <li>Validate each outcome, the GameReltn links, the new Games and the parent expansion list</li></ol>
+   */
+  @Test
+  public void testReviewAll() throws Exception {
+    System.out.println ("===  Insert Records  ===");
+    GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    Game parent = new Game();
+    parent.setGameID(1);
+    parent.setBggID(100);
+    parent.setName("Dominion");
+    parent.setGameType(GameType.BASE);
+    parent.setExpansionIDs(new ArrayList<Long>());
+    database.insertGame(parent);
+    GameReltn reltn = new GameReltn();
+    reltn.setReltnID(1);
+    reltn.setGameID(1);
+    reltn.setBggID(100);
+    reltn.setCsiIDs(new ArrayList<Long>());
+    reltn.setMmIDs(new ArrayList<Long>());
+    database.insertGameReltn(reltn);
+    for (long csiID : new long[] { 10, 11, 12 }) {
+      CoolStuffIncPriceData data = new CoolStuffIncPriceData();
+      data.setCsiID(csiID);
+      data.setTitle("Dominion " + csiID);
+      data.setReviewState(ReviewState.PENDING);
+      database.insertCSIPriceData(data);
+    }
+    for (long bggID : new long[] { 200, 300 }) {
+      BGGGame expansion = new BGGGame();
+      expansion.setBggID(bggID);
+      expansion.setName("Dominion Expansion " + bggID);
+      expansion.setGameType(GameType.EXPANSION);
+      expansion.setParentGameID(100);
+      expansion.setReviewState(ReviewState.PENDING);
+      database.insertBGGGameData(expansion);
+    }
+    ApprovalService approvals = new ApprovalService();
+
+    try {
+      System.out.println ("===  Bulk Review  ===");
+      List<ReviewDecision> decisions = new ArrayList<ReviewDecision>();
+      decisions.add(link(10, 1));
+      decisions.add(link(11, 1));
+      decisions.add(new ReviewDecision("csi", 12, "reject"));
+      decisions.add(new ReviewDecision("csi", 99, "reject"));
+      decisions.add(approve(200));
+      decisions.add(approve(300));
+      decisions.add(new ReviewDecision("ebay", 5, "approve"));
+      decisions.add(new ReviewDecision("csi", 12, "reject"));
+      BulkReviewSummary summary = approvals.reviewAll(database, decisions);
+
+      System.out.println ("===  Validate Outcomes  ===");
+      List<ReviewOutcome> outcomes = summary.getOutcomes();
+      assertEquals(8, outcomes.size());
+      assertEquals(ReviewOutcome.STATUS_OK,        outcomes.get(0).getStatus());
+      assertEquals(1L,                             outcomes.get(0).getGameID());
+      assertEquals(ReviewOutcome.STATUS_OK,        outcomes.get(1).getStatus());
+      assertEquals(ReviewOutcome.STATUS_OK,        outcomes.get(2).getStatus());
+      assertEquals(ReviewOutcome.STATUS_NOT_FOUND, outcomes.get(3).getStatus());
+      assertEquals(ReviewOutcome.STATUS_OK,        outcomes.get(4).getStatus());
+      assertEquals(ReviewOutcome.STATUS_OK,        outcomes.get(5).getStatus());
+      assertEquals(ReviewOutcome.STATUS_INVALID,   outcomes.get(6).getStatus());
+      assertEquals(ReviewOutcome.STATUS_INVALID,   outcomes.get(7).getStatus());
+      assertEquals(5, summary.getSucceeded());
+      assertEquals(3, summary.getFailed());
+
+      System.out.println ("===  Validate Records  ===");
+      assertEquals(Arrays.asList(10L, 11L), database.readGameReltn(1).getCsiIDs());
+      assertEquals(ReviewState.REVIEWED, database.readCSIPriceData(10).getReviewState());
+      assertEquals(ReviewState.REJECTED, database.readCSIPriceData(12).getReviewState());
+      long firstID  = outcomes.get(4).getGameID();
+      long secondID = outcomes.get(5).getGameID();
+      assertNotNull(database.readGameReltn(firstID));
+      assertNotNull(database.readGameReltn(secondID));
+      assertEquals(ReviewState.REVIEWED, database.readBGGGameData(300).getReviewState());
+      assertEquals(Arrays.asList(firstID, secondID), database.readGame(1).getExpansionIDs());
+    } finally {
+      approvals.shutdown();
+    }
+  }
+
+  private static ReviewDecision link(long csiID, long gameID) {
+    ReviewDecision decision = new ReviewDecision("csi", csiID, "approve");
+    decision.setGameID(gameID);
+    return decision;
+  }
+
+  private static ReviewDecision approve(long bggID) {
+    ReviewDecision decision = new ReviewDecision("bgg", bggID, "approve");
+    decision.setPrimaryPub("Rio Grande");
+    return decision;
+  }
+}
@@ -0,0 +1,115 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.ac.games.data.Game;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.db.exception.ConfigurationException;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.snapshot.CatalogSnapshot;
+import com.ac.games.rest.snapshot.CatalogSnapshotService;
+import com.ac.games.rest.snapshot.CatalogSnapshotWriter;
+
+/**
+ * @author ac010168
+ *
+ */
+public class CatalogSnapshotTest {
+
+  /**
+   * This should test the catalog snapshot functions in the following order:
+   * <ol>
+   * <li>Write a snapshot from a standalone in-memory database</li>
+   * <li>Map the snapshot, and read Games back by gameID and bggID</li>
+   * <li>Load the snapshot into an empty in-memory database</li>
+   * <li>Fail the database with a ConfigurationException, and validate the read is answered from the snapshot</li>
+   * <li>Validate the next read goes straight to the snapshot, without waiting on the database</li>
+   * <li>Start with a database that can't be connected, and validate a later probe connects it</li>
+   * <li>Validate the snapshot is only rewritten once a catalog write has landed</li></ol>
+   */
+  @Test
+  public void testCatalogSnapshot() throws Exception {
+    System.out.println ("===  Write Snapshot  ===");
+    InMemoryGamesDatabase source = new InMemoryGamesDatabase(null);
+    for (long gameID = 1; gameID <= 25; gameID++) {
+      Game game = new Game();
+      game.setGameID(gameID);
+      game.setBggID(1000 + gameID);
+      game.setName("Game " + gameID);
+      source.asDatabase().insertGame(game);
+    }
+    File file = File.createTempFile("catalog", ".snapshot");
+    file.deleteOnExit();
+    assertEquals(25, new CatalogSnapshotWriter().write(source.asDatabase(), file));
+
+    System.out.println ("===  Read Snapshot  ===");
+    CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+    assertEquals("Game 7", snapshot.readGame(7).getName());
+    assertEquals(19L, snapshot.readGameByBGGID(1019).getGameID());
+    assertNull(snapshot.readGame(26));
+    assertNull(snapshot.readGameReltn(7));
+
+    System.out.println ("===  Load Snapshot  ===");
+    InMemoryGamesDatabase memoryStore = new InMemoryGamesDatabase(null);
+    assertEquals(25, snapshot.loadInto(memoryStore));
+    assertEquals("Game 25", memoryStore.getGame(25).getName());
+
+    System.out.println ("===  Outage Fallback  ===");
+    CatalogSnapshotService.snapshotPath = file.getAbsolutePath();
+    CatalogSnapshotService service = new CatalogSnapshotService();
+    service.openExisting();
+    GamesDatabase mongo = mock(GamesDatabase.class);
+    when(mongo.readGame(7)).thenThrow(mock(ConfigurationException.class));
+    GamesDatabase database = service.wrap(mongo);
+    assertEquals("Game 7", database.readGame(7).getName());
+    assertTrue(service.isOutage());
+
+    System.out.println ("===  Outage Snapshot Reads  ===");
+    assertEquals("Game 7", database.readGame(7).getName());
+    verify(mongo, times(1)).readGame(7);
+    service.markAvailable();
+    assertFalse(service.isOutage());
+
+    System.out.println ("===  Connect After Startup  ===");
+    long savedProbeInterval = CatalogSnapshotService.probeIntervalMillis;
+    try {
+      CatalogSnapshotService.probeIntervalMillis = 0;
+      CatalogSnapshotService lateService = new CatalogSnapshotService();
+      lateService.openExisting();
+      GamesDatabase lateMongo = mock(GamesDatabase.class);
+      ConfigurationException cause = mock(ConfigurationException.class);
+      doThrow(cause).doNothing().when(lateMongo).initializeDBConnection();
+      Game liveGame = new Game();
+      liveGame.setGameID(8);
+      liveGame.setName("Live Game 8");
+      when(lateMongo.readGame(8)).thenReturn(liveGame);
+      lateService.setPendingConnection(lateMongo, cause);
+      GamesDatabase lateDatabase = lateService.wrap(lateMongo);
+      assertEquals("Game 8", lateDatabase.readGame(8).getName());
+      assertTrue(lateService.isOutage());
+      assertEquals("Live Game 8", lateDatabase.readGame(8).getName());
+      assertFalse(lateService.isOutage());
+      verify(lateMongo, times(2)).initializeDBConnection();
+
+      System.out.println ("===  Skip Unchanged Snapshot  ===");
+      assertTrue(lateService.writeSnapshot());
+      assertFalse(lateService.writeSnapshot());
+      lateDatabase.updateGame(liveGame);
+      assertTrue(lateService.writeSnapshot());
+    } finally {
+      CatalogSnapshotService.probeIntervalMillis = savedProbeInterval;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.database.DatabaseBusyException;
+import com.ac.games.rest.database.DatabasePool;
+import com.ac.games.rest.database.DatabaseSettings;
+
+/**
+ * @author ac010168
+ *
+ */
+public class DatabasePoolTest {
+
+  /**
+   * This should test the pool functions in the following order:
+   * <ol>
+   * <li>Hold the only slot in a single slot pool from another thread</li>
+   * <li>Validate a second call is turned away when the wait queue is full</li>
+   * <li>Release the slot and validate the next call goes through</li>
+   * <li>Validate the checkout counters</li></ol>
+   */
+  @Test
+  public void testDatabasePool() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    GamesDatabase database = mock(GamesDatabase.class);
+    when(database.getMaxGameID()).thenAnswer(new Answer<Long>() {
+      public Long answer(InvocationOnMock invocation) throws Throwable {
+        started.countDown();
+        release.await();
+        return 42L;
+      }
+    });
+
+    DatabaseSettings settings = new DatabaseSettings();
+    settings.setMaxPoolSize(1);
+    settings.setMaxWaitQueue(0);
+    settings.setCheckoutTimeoutMillis(100);
+    final DatabasePool pool = new DatabasePool(database, settings);
+
+    System.out.println ("===  Hold Only Slot  ===");
+    Thread holder = new Thread(new Runnable() {
+      public void run() {
+        try {
+          pool.getDatabase().getMaxGameID();
+        } catch (Throwable t) {
+          t.printStackTrace();
+        }
+      }
+    });
+    holder.start();
+    started.await();
+    assertEquals(1, pool.getMetrics().get("inUse"));
+
+    System.out.println ("===  Reject Second Call  ===");
+    try {
+      pool.getDatabase().getMaxGameID();
+      fail("The second call should have been turned away");
+    } catch (DatabaseBusyException dbe) {
+      //Expected
+    }
+    assertEquals(1L, pool.getMetrics().get("rejections"));
+
+    System.out.println ("===  Release Slot  ===");
+    release.countDown();
+    holder.join();
+    assertEquals(42L, pool.getDatabase().getMaxGameID());
+
+    System.out.println ("===  Validate Counters  ===");
+    assertEquals(0, pool.getMetrics().get("inUse"));
+    assertEquals(2L, pool.getMetrics().get("checkouts"));
+  }
+
+  /**
+   * This should test an interrupted checkout in the following order:
+   * <ol>
+   * <li>Hold the only slot in a single slot pool from another thread</li>
+   * <li>Make a call from an interrupted thread, and validate it's turned away as busy with the
+   * interrupt still set</li></ol>
+   */
+  @Test
+  public void testInterruptedCheckout() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    GamesDatabase database = mock(GamesDatabase.class);
+    when(database.getMaxGameID()).thenAnswer(new Answer<Long>() {
+      public Long answer(InvocationOnMock invocation) throws Throwable {
+        started.countDown();
+        release.await();
+        return 42L;
+      }
+    });
+
+    DatabaseSettings settings = new DatabaseSettings();
+    settings.setMaxPoolSize(1);
+    settings.setMaxWaitQueue(1);
+    settings.setCheckoutTimeoutMillis(10000);
+    final DatabasePool pool = new DatabasePool(database, settings);
+
+    System.out.println ("===  Hold Only Slot  ===");
+    Thread holder = new Thread(new Runnable() {
+      public void run() {
+        try {
+          pool.getDatabase().getMaxGameID();
+        } catch (Throwable t) {
+          t.printStackTrace();
+        }
+      }
+    });
+    holder.start();
+    started.await();
+
+    System.out.println ("===  Interrupted Call  ===");
+    try {
+      Thread.currentThread().interrupt();
+      pool.getDatabase().getMaxGameID();
+      fail("The interrupted call should have been turned away");
+    } catch (DatabaseBusyException dbe) {
+      assertTrue(Thread.interrupted());
+    } finally {
+      Thread.interrupted();
+      release.countDown();
+      holder.join();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ac.games.data.Game;
+import com.ac.games.data.User;
+import com.ac.games.data.WishlistItem;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.database.LongObjectMap;
+
+/**
+ * @author ac010168
+ *
+ */
+public class InMemoryGamesDatabaseTest {
+
+  /**
+   * This should test the in-memory database functions in the following order:
+   * <ol>
+   * <li>Fill a long keyed map past a few resizes, remove every other key, and validate the rest</li>
+   * <li>Insert a Game standalone and read it back by gameID and bggID, as a copy</li>
+   * <li>Insert a User and read it back by a differently cased user name</li>
+   * <li>Insert and delete wishlist items, and validate the user's wishlist follows along</li>
+   * <li>Read a Game through to a backing database, and validate the second read stays in memory</li>
+   * <li>Update the Game, and validate the write went through to the backing database</li>
+   * <li>Read more Games through than the hot tier holds, and validate the oldest is dropped and read back through</li></ol>
+   */
+  @Test
+  public void testInMemoryGamesDatabase() throws Exception {
+    System.out.println ("===  Long Object Map  ===");
+    LongObjectMap<String> map = new LongObjectMap<String>(4);
+    for (long key = 1; key <= 1000; key++)
+      map.put(key, "value" + key);
+    for (long key = 2; key <= 1000; key += 2)
+      assertEquals("value" + key, map.remove(key));
+    assertEquals(500, map.size());
+    assertEquals("value999", map.get(999));
+    assertNull(map.get(998));
+    assertNull(map.get(-1));
+    map.put(998, "again");
+    assertEquals("again", map.get(998));
+
+    System.out.println ("===  Standalone Game  ===");
+    InMemoryGamesDatabase memoryStore = new InMemoryGamesDatabase(null);
+    GamesDatabase database = memoryStore.asDatabase();
+    Game game = new Game();
+    game.setGameID(12);
+    game.setBggID(68448);
+    game.setName("7 Wonders");
+    game.setPrimaryPublisher("Repos Production");
+    game.setYearPublished(2010);
+    database.insertGame(game);
+
+    Game readGame = database.readGame(12);
+    assertEquals("7 Wonders", readGame.getName());
+    assertNotSame(memoryStore.getGame(12), readGame);
+    assertSame(memoryStore.getGame(12), memoryStore.getGameByBGGID(68448));
+    assertEquals(12L, database.readGameByBGGID(68448).getGameID());
+    assertEquals(12L, database.getMaxGameID());
+
+    System.out.println ("===  Standalone User  ===");
+    User user = new User();
+    user.setUserID(3);
+    user.setUserName("BoardGamer");
+    database.insertUser(user);
+    assertEquals(3L, database.readUser("boardgamer").getUserID());
+
+    System.out.println ("===  Standalone Wishlist  ===");
+    for (long wishID = 1; wishID <= 3; wishID++) {
+      WishlistItem item = new WishlistItem();
+      item.setWishID(wishID);
+      item.setUserID(3);
+      item.setGameID(10 + wishID);
+      database.insertWishlistItem(item);
+    }
+    database.deleteWishlistItem(2);
+    List<WishlistItem> wishlist = database.readWishlistForUser(3);
+    assertEquals(2, wishlist.size());
+    assertNull(database.readWishlistItem(3, 12));
+    assertEquals(3L, database.readWishlistItem(3, 13).getWishID());
+
+    System.out.println ("===  Tiered Read Through  ===");
+    GamesDatabase backing = mock(GamesDatabase.class);
+    when(backing.readGame(12)).thenReturn(game);
+    InMemoryGamesDatabase hotTier = new InMemoryGamesDatabase(backing);
+    assertEquals("7 Wonders", hotTier.asDatabase().readGame(12).getName());
+    assertEquals("7 Wonders", hotTier.asDatabase().readGame(12).getName());
+    verify(backing, times(1)).readGame(12);
+
+    System.out.println ("===  Tiered Write Through  ===");
+    game.setName("7 Wonders (Second Edition)");
+    hotTier.asDatabase().updateGame(game);
+    verify(backing, times(1)).updateGame(game);
+    assertEquals("7 Wonders (Second Edition)", hotTier.asDatabase().readGame(12).getName());
+    verify(backing, times(1)).readGame(12);
+
+    System.out.println ("===  Tiered Eviction  ===");
+    int maxHotRecords = InMemoryGamesDatabase.maxHotRecords;
+    InMemoryGamesDatabase.maxHotRecords = 2;
+    try {
+      for (long gameID = 20; gameID <= 22; gameID++) {
+        Game curGame = new Game();
+        curGame.setGameID(gameID);
+        curGame.setName("Game " + gameID);
+        when(backing.readGame(gameID)).thenReturn(curGame);
+      }
+      InMemoryGamesDatabase boundedTier = new InMemoryGamesDatabase(backing);
+      for (long gameID = 20; gameID <= 22; gameID++)
+        boundedTier.asDatabase().readGame(gameID);
+      assertNull(boundedTier.getGame(20));
+      assertEquals("Game 22", boundedTier.getGame(22).getName());
+      assertEquals("Game 20", boundedTier.asDatabase().readGame(20).getName());
+      verify(backing, times(2)).readGame(20);
+      assertNull(boundedTier.getGame(21));
+    } finally {
+      InMemoryGamesDatabase.maxHotRecords = maxHotRecords;
+    }
+  }
+}
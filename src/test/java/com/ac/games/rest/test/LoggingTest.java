@@ -0,0 +1,123 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+import com.ac.games.rest.logging.DroppingAsyncAppender;
+import com.ac.games.rest.logging.SamplingTurboFilter;
+
+/**
+ * @author ac010168
+ *
+ */
+public class LoggingTest {
+
+  /**
+   * This should test the sampling filter in the following order:
+   * <ol>
+   * <li>Sample one logger 1 in 10 and leave another alone</li>
+   * <li>Validate only every tenth debug event gets through</li>
+   * <li>Validate warnings are never sampled</li></ol>
+   */
+  @Test
+  public void testSamplingTurboFilter() throws Exception {
+    LoggerContext context = new LoggerContext();
+    CountingAppender counter = new CountingAppender(null);
+    counter.setContext(context);
+    counter.start();
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.addAppender(counter);
+    root.setLevel(Level.DEBUG);
+
+    System.out.println ("===  Configure Sampling  ===");
+    SamplingTurboFilter filter = new SamplingTurboFilter();
+    filter.setContext(context);
+    filter.addSample("com.ac.games.rest.controller=10");
+    filter.start();
+    context.addTurboFilter(filter);
+
+    System.out.println ("===  Validate Debug Sampling  ===");
+    Logger sampled   = context.getLogger("com.ac.games.rest.controller.BGGDataController");
+    Logger unsampled = context.getLogger("com.ac.games.rest.purge.CollectionPurger");
+    for (int i = 0; i < 100; i++) sampled.debug("bggID: {}", i);
+    assertEquals(10, counter.count);
+    for (int i = 0; i < 100; i++) unsampled.debug("jobID: {}", i);
+    assertEquals(110, counter.count);
+
+    System.out.println ("===  Validate Warnings Kept  ===");
+    for (int i = 0; i < 100; i++) sampled.warn("Unable to reach BGG: {}", i);
+    assertEquals(210, counter.count);
+  }
+
+  /**
+   * This should test the async appender in the following order:
+   * <ol>
+   * <li>Block the downstream appender so the queue fills</li>
+   * <li>Validate logging past the queue size drops events rather than blocking</li>
+   * <li>Release the downstream appender and validate the queued events are delivered on stop</li></ol>
+   */
+  @Test
+  public void testDroppingAsyncAppender() throws Exception {
+    LoggerContext context = new LoggerContext();
+    CountDownLatch release = new CountDownLatch(1);
+    CountingAppender blocked = new CountingAppender(release);
+    blocked.setContext(context);
+    blocked.start();
+
+    DroppingAsyncAppender async = new DroppingAsyncAppender();
+    async.setContext(context);
+    async.setName("ASYNC");
+    async.setQueueSize(10);
+    async.addAppender(blocked);
+    async.start();
+    Logger logger = context.getLogger("com.ac.games.rest.test");
+    logger.addAppender(async);
+    logger.setLevel(Level.INFO);
+
+    System.out.println ("===  Fill Queue  ===");
+    long droppedBefore = DroppingAsyncAppender.getTotalDropped();
+    long startTime = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) logger.info("Event {}", i);
+
+    System.out.println ("===  Validate Drops  ===");
+    assertTrue(System.currentTimeMillis() - startTime < 1000);
+    assertTrue(DroppingAsyncAppender.getTotalDropped() - droppedBefore >= 89);
+
+    System.out.println ("===  Release And Drain  ===");
+    release.countDown();
+    async.stop();
+    assertEquals(100 - (DroppingAsyncAppender.getTotalDropped() - droppedBefore), blocked.count);
+  }
+
+  /**
+   * Counts the events it's handed, optionally holding each one until released.
+   */
+  private static class CountingAppender extends AppenderBase<ILoggingEvent> {
+    private final CountDownLatch release;
+    volatile int count;
+
+    CountingAppender(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+      try {
+        if (release != null) release.await();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      count++;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ac.games.data.CoolStuffIncPriceData;
+import com.ac.games.data.GameReltn;
+import com.ac.games.rest.history.PriceHistoryStore;
+import com.ac.games.rest.history.PriceWindow;
+
+/**
+ * @author ac010168
+ *
+ */
+public class PriceHistoryStoreTest {
+
+  /**
+   * This should test the price history functions in the following order:
+   * <ol>
+   * <li>Record a CSI listing's price several times, with some repeats that aren't changes</li>
+   * <li>Summarize the game's history, and validate the low, current price and change count</li>
+   * <li>Replay the segment files into a new store, and validate the same summary comes back</li>
+   * <li>Compact the history with a two point cap, and validate only the base file and the last two points are left</li></ol>
+   */
+  @Test
+  public void testPriceHistoryStore() throws Exception {
+    File dir = File.createTempFile("price-history", "");
+    dir.delete();
+    dir.mkdirs();
+    PriceHistoryStore.historyDir = dir.getAbsolutePath();
+
+    System.out.println ("===  Record Prices  ===");
+    PriceHistoryStore store = new PriceHistoryStore();
+    CoolStuffIncPriceData data = new CoolStuffIncPriceData();
+    data.setCsiID(4321);
+    double[] prices = new double[] { 49.99, 49.99, 44.99, 39.99, 39.99, 42.50 };
+    for (double price : prices) {
+      data.setCurPrice(price);
+      store.recordCSI(data);
+    }
+    store.close();
+
+    System.out.println ("===  Summarize History  ===");
+    GameReltn gameReltn = new GameReltn();
+    gameReltn.setGameID(12);
+    List<Long> csiIDs = new ArrayList<Long>();
+    csiIDs.add(4321L);
+    gameReltn.setCsiIDs(csiIDs);
+    PriceWindow window = store.summarize(gameReltn, new int[] { 30 })[0];
+    assertEquals(39.99, window.getMinPrice(), 0.001);
+    assertEquals(42.50, window.getCurrentPrice(), 0.001);
+    assertEquals(3, window.getChanges());
+
+    System.out.println ("===  Replay Segments  ===");
+    PriceHistoryStore replayed = new PriceHistoryStore();
+    assertEquals(4L, replayed.load());
+    window = replayed.summarize(gameReltn, new int[] { 30 })[0];
+    assertEquals(39.99, window.getMinPrice(), 0.001);
+    assertEquals(42.50, window.getCurrentPrice(), 0.001);
+
+    System.out.println ("===  Compact History  ===");
+    int maxPoints = PriceHistoryStore.maxPointsPerListing;
+    PriceHistoryStore.maxPointsPerListing = 2;
+    try {
+      replayed.compact();
+      replayed.close();
+    } finally {
+      PriceHistoryStore.maxPointsPerListing = maxPoints;
+    }
+    String[] files = dir.list();
+    assertEquals(1, files.length);
+    assertTrue(files[0].endsWith(".base"));
+    PriceHistoryStore compacted = new PriceHistoryStore();
+    assertEquals(2L, compacted.load());
+    window = compacted.summarize(gameReltn, new int[] { 30 })[0];
+    assertEquals(39.99, window.getMinPrice(), 0.001);
+    assertEquals(42.50, window.getCurrentPrice(), 0.001);
+    compacted.close();
+  }
+}
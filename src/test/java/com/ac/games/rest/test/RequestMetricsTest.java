@@ -0,0 +1,106 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ac.games.rest.metrics.LatencyHistogram;
+import com.ac.games.rest.metrics.RequestMetricsRegistry;
+import com.ac.games.rest.metrics.RequestProfile;
+
+/**
+ * @author ac010168
+ *
+ */
+public class RequestMetricsTest {
+
+  /**
+   * This should test the metrics functions in the following order:
+   * <ol>
+   * <li>Record 1 to 10000 microseconds and validate the percentiles are within 3%</li>
+   * <li>Validate the route keys only keep the top level path and mode parameters</li>
+   * <li>Record against a route and validate the snapshot counters</li>
+   * <li>Fill the route table, and validate new routes all share the overflow bucket</li></ol>
+   */
+  @Test
+  public void testRequestMetrics() {
+    System.out.println ("===  Validate Percentiles  ===");
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 10000; value++)
+      histogram.record(value);
+    assertEquals(10000, histogram.getCount());
+    assertEquals(10000, histogram.getMax());
+    assertWithin(5000, histogram.getValueAtPercentile(50.0));
+    assertWithin(9500, histogram.getValueAtPercentile(95.0));
+    assertWithin(9900, histogram.getValueAtPercentile(99.0));
+
+    System.out.println ("===  Validate Route Keys  ===");
+    assertEquals("GET /wishlist?display=full", RequestMetricsRegistry.buildRouteKey("GET", "/wishlist", "userid=12&display=FULL"));
+    assertEquals("GET /bgg?source=hybrid&sync=y", RequestMetricsRegistry.buildRouteKey("GET", "/bgg", "sync=y&bggid=1234&source=hybrid"));
+    assertEquals("PUT /collection", RequestMetricsRegistry.buildRouteKey("PUT", "/collection/items", null));
+    assertEquals("GET /auto", RequestMetricsRegistry.buildRouteKey("GET", "/auto", "sources=game"));
+
+    System.out.println ("===  Validate Route Counters  ===");
+    RequestMetricsRegistry registry = new RequestMetricsRegistry();
+    registry.record("GET /game", 1500, false, 100);
+    registry.record("GET /game", 2500, true, 50);
+    @SuppressWarnings("unchecked")
+    Map<String, Object> route = (Map<String, Object>)registry.getSnapshot().get("GET /game");
+    assertEquals(2L, route.get("requests"));
+    assertEquals(1L, route.get("errors"));
+    assertEquals(150L, route.get("bytesOut"));
+
+    System.out.println ("===  Validate Overflow Route  ===");
+    int savedMaxRoutes = RequestMetricsRegistry.maxRoutes;
+    try {
+      RequestMetricsRegistry.maxRoutes = 1;
+      registry.record("GET /bgg", 1000, false, 10);
+      registry.record("GET /csi", 1000, false, 20);
+      assertEquals(2, registry.getSnapshot().size());
+      @SuppressWarnings("unchecked")
+      Map<String, Object> other = (Map<String, Object>)registry.getSnapshot().get(RequestMetricsRegistry.OVERFLOW_ROUTE);
+      assertEquals(2L, other.get("requests"));
+      assertEquals(30L, other.get("bytesOut"));
+    } finally {
+      RequestMetricsRegistry.maxRoutes = savedMaxRoutes;
+    }
+  }
+
+  /**
+   * This should test the request profile functions in the following order:
+   * <ol>
+   * <li>Record a run of database calls, an upstream fetch and serialization</li>
+   * <li>Validate the Server-Timing header value, with and without the serialize entry</li>
+   * <li>Validate the call threshold and the per-method breakdown</li></ol>
+   */
+  @Test
+  public void testRequestProfile() {
+    System.out.println ("===  Record Request Timings  ===");
+    RequestProfile profile = RequestProfile.begin();
+    try {
+      for (int i = 0; i < 30; i++)
+        profile.recordDatabaseCall((i % 3 == 0) ? "readGame" : "readCSIPriceData", 1500000);
+      profile.recordUpstreamCall(25000000);
+      profile.recordSerialization(1300000);
+
+      System.out.println ("===  Validate Server-Timing  ===");
+      String timing = profile.toServerTiming();
+      assertTrue(timing, timing.startsWith("db;dur=45.0;desc=\"30 calls\", upstream;dur=25.0;desc=\"1 calls\", serialize;dur=1.3, app;dur="));
+      timing = profile.toServerTiming(false);
+      assertTrue(timing, timing.startsWith("db;dur=45.0;desc=\"30 calls\", upstream;dur=25.0;desc=\"1 calls\", app;dur="));
+
+      System.out.println ("===  Validate Call Threshold  ===");
+      assertEquals(30 > RequestProfile.dbCallWarnThreshold, profile.isOverDatabaseCallThreshold());
+      assertEquals("readCSIPriceData x20, readGame x10", profile.describeDatabaseCalls());
+    } finally {
+      RequestProfile.end();
+    }
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue("Expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.03);
+  }
+}
@@ -0,0 +1,129 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ac.games.data.BGGGame;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.data.ReviewLease;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.review.ReviewQueue;
+import com.ac.games.rest.review.ReviewSource;
+
+/**
+ * @author ac010168
+ *
+ */
+public class ReviewQueueTest {
+
+  /**
+   * This should test the review queue in the following order:
+   * <ol>
+   * <li>Insert five BGG records, one of them already reviewed</li>
+   * <li>Lease two records to two reviewers, and validate they don't get the same one</li>
+   * <li>Hand the first back, and validate it's the next one leased</li>
+   * <li>Complete a record, and validate its lease is gone</li>
+   * <li>Lease with no lease time, and validate the expired record is handed out again</li></ol>
+   */
+  @Test
+  public void testReviewQueue() throws Exception {
+    System.out.println ("===  Insert BGG Records  ===");
+    GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    for (long bggID = 1; bggID <= 5; bggID++) {
+      BGGGame game = new BGGGame();
+      game.setBggID(bggID);
+      game.setName("BGG Game " + bggID);
+      game.setReviewState((bggID == 2) ? ReviewState.REVIEWED : ReviewState.PENDING);
+      database.insertBGGGameData(game);
+    }
+
+    long savedLease = ReviewQueue.leaseMillis;
+    ReviewQueue queue = new ReviewQueue();
+    try {
+      System.out.println ("===  Lease Records  ===");
+      ReviewLease alice = queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_OLD, "alice");
+      ReviewLease bob   = queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_OLD, "bob");
+      assertEquals(1L, alice.getId());
+      assertEquals(3L, bob.getId());
+      assertEquals("bob", bob.getReviewer());
+      assertEquals(3L, ((BGGGame)bob.getItem()).getBggID());
+
+      System.out.println ("===  Release Lease  ===");
+      assertTrue(queue.release(alice.getLeaseID()));
+      assertFalse(queue.release(alice.getLeaseID()));
+      ReviewLease carol = queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_OLD, "carol");
+      assertEquals(1L, carol.getId());
+
+      System.out.println ("===  Complete Record  ===");
+      queue.complete(ReviewSource.BGG, 3);
+      assertNull(queue.renew(bob.getLeaseID()));
+      assertEquals(carol.getLeaseID(), queue.renew(carol.getLeaseID()).getLeaseID());
+
+      System.out.println ("===  Expire Lease  ===");
+      ReviewQueue.leaseMillis = 0;
+      ReviewLease first  = queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_OLD, "dave");
+      ReviewLease second = queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_OLD, "erin");
+      assertEquals(first.getId(), second.getId());
+    } finally {
+      ReviewQueue.leaseMillis = savedLease;
+      queue.shutdown();
+    }
+  }
+
+  /**
+   * This should test that the review queue leases what the database has now, in the following order:
+   * <ol>
+   * <li>Insert five pending BGG records, and lease the newest with a refill that only reads two IDs</li>
+   * <li>Review the queued record with a plain update, and insert a newer pending record</li>
+   * <li>Validate the next lease skips the reviewed record and finds the newer one, then carries on down</li></ol>
+   */
+  @Test
+  public void testFreshLeases() throws Exception {
+    System.out.println ("===  Insert BGG Records  ===");
+    GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    for (long bggID = 1; bggID <= 5; bggID++)
+      database.insertBGGGameData(buildGame(bggID));
+
+    int savedPrefetch = ReviewQueue.prefetchSize;
+    int savedScan     = ReviewQueue.scanLimit;
+    int savedBelow    = ReviewQueue.refillBelow;
+    ReviewQueue.prefetchSize = 2;
+    ReviewQueue.scanLimit    = 2;
+    ReviewQueue.refillBelow  = 0;
+    ReviewQueue queue = new ReviewQueue();
+    try {
+      System.out.println ("===  Lease Newest  ===");
+      assertEquals(5L, queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_NEW, "alice").getId());
+
+      System.out.println ("===  Change Records  ===");
+      BGGGame reviewed = database.readBGGGameData(4);
+      reviewed.setReviewState(ReviewState.REVIEWED);
+      database.updateBGGGameData(reviewed);
+      database.insertBGGGameData(buildGame(6));
+
+      System.out.println ("===  Validate Leases  ===");
+      ReviewLease newer = queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_NEW, "bob");
+      assertEquals(6L, newer.getId());
+      assertEquals(ReviewState.PENDING, ((BGGGame)newer.getItem()).getReviewState());
+      assertEquals(3L, queue.next(database, ReviewSource.BGG, ReviewQueue.ORDER_NEW, "carol").getId());
+    } finally {
+      ReviewQueue.prefetchSize = savedPrefetch;
+      ReviewQueue.scanLimit    = savedScan;
+      ReviewQueue.refillBelow  = savedBelow;
+      queue.shutdown();
+    }
+  }
+
+  private static BGGGame buildGame(long bggID) {
+    BGGGame game = new BGGGame();
+    game.setBggID(bggID);
+    game.setName("BGG Game " + bggID);
+    game.setReviewState(ReviewState.PENDING);
+    return game;
+  }
+}
@@ -0,0 +1,53 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.ac.games.rest.session.SessionToken;
+import com.ac.games.rest.session.SessionTokenService;
+
+/**
+ * @author ac010168
+ *
+ */
+public class SessionTokenServiceTest {
+
+  /**
+   * This should test the token functions in the following order:
+   * <ol>
+   * <li>Issue a token and validate it round trips the userID, collectionID and role</li>
+   * <li>Tamper with the token and validate it is rejected</li>
+   * <li>Validate a token signed with a different secret is rejected</li>
+   * <li>Validate an expired token is rejected</li></ol>
+   */
+  @Test
+  public void testSessionTokens() {
+    SessionTokenService service = new SessionTokenService("mock-session-secret-value".getBytes(), 60000);
+
+    System.out.println ("===  Issue and Validate Token  ===");
+    String token = service.issue(42, 1042, SessionToken.ROLE_ADMIN);
+    SessionToken session = service.validate(token);
+    assertNotNull(session);
+    assertEquals(42, session.getUserID());
+    assertEquals(1042, session.getCollectionID());
+    assertEquals(SessionToken.ROLE_ADMIN, session.getUserRole());
+
+    System.out.println ("===  Validate Tampered Token  ===");
+    char[] tampered = token.toCharArray();
+    tampered[0] = (tampered[0] == '3') ? '2' : '3';
+    assertNull(service.validate(new String(tampered)));
+    assertNull(service.validate("not-a-token"));
+    assertNull(service.validate(null));
+
+    System.out.println ("===  Validate Foreign Secret  ===");
+    SessionTokenService otherService = new SessionTokenService("another-session-secret".getBytes(), 60000);
+    assertNull(otherService.validate(token));
+
+    System.out.println ("===  Validate Expired Token  ===");
+    SessionTokenService expiredService = new SessionTokenService("mock-session-secret-value".getBytes(), -1000);
+    assertNull(expiredService.validate(expiredService.issue(42, 1042, SessionToken.ROLE_USER)));
+  }
+}
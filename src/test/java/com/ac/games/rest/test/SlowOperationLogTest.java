@@ -0,0 +1,62 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ac.games.rest.data.SlowOperation;
+import com.ac.games.rest.metrics.SlowOperationLog;
+
+/**
+ * @author ac010168
+ *
+ */
+public class SlowOperationLogTest {
+
+  /**
+   * This should test the slow log functions in the following order:
+   * <ol>
+   * <li>Record fast and slow operations and validate only the slow ones are kept</li>
+   * <li>Validate session tokens are masked and large arguments are reduced to their type</li>
+   * <li>Overfill the buffer and validate only the newest entries are kept, newest first</li>
+   * <li>Disable the log and validate nothing more is recorded</li></ol>
+   */
+  @Test
+  public void testSlowOperationLog() {
+    SlowOperationLog log = new SlowOperationLog();
+    log.setEnabled(true);
+    log.setRequestThresholdMillis(500);
+    log.setDatabaseThresholdMillis(100);
+
+    System.out.println ("===  Record Operations  ===");
+    log.recordRequest("GET /wishlist?display=full", "userid=12&display=full&token=abc.def", 750000000L);
+    log.recordRequest("GET /game", "gameid=1", 1000000L);
+    log.recordDatabaseCall("readCSIPriceData", new Object[] { 1234L }, 150000000L);
+    log.recordDatabaseCall("updateGame", new Object[] { new StringBuilder("game") }, 250000000L);
+    log.recordDatabaseCall("readGame", new Object[] { 1L }, 5000000L);
+
+    List<SlowOperation> entries = log.getEntries();
+    assertEquals(3, entries.size());
+
+    System.out.println ("===  Validate Parameters  ===");
+    assertEquals("updateGame", entries.get(0).getOperation());
+    assertEquals("StringBuilder", entries.get(0).getParameters());
+    assertEquals("1234", entries.get(1).getParameters());
+    assertEquals(SlowOperation.REQUEST_TYPE, entries.get(2).getType());
+    assertEquals("userid=12&display=full&token=***", entries.get(2).getParameters());
+
+    System.out.println ("===  Overfill Buffer  ===");
+    for (int i = 0; i < SlowOperationLog.CAPACITY * 2; i++)
+      log.recordDatabaseCall("readGame", new Object[] { (long)i }, 200000000L);
+    entries = log.getEntries();
+    assertEquals(SlowOperationLog.CAPACITY, entries.size());
+    assertEquals("" + (SlowOperationLog.CAPACITY * 2 - 1), entries.get(0).getParameters());
+
+    System.out.println ("===  Disable Log  ===");
+    log.setEnabled(false);
+    log.recordDatabaseCall("readGame", new Object[] { -1L }, 900000000L);
+    assertEquals("" + (SlowOperationLog.CAPACITY * 2 - 1), log.getEntries().get(0).getParameters());
+  }
+}
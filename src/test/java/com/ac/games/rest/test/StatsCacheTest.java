@@ -0,0 +1,112 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.ac.games.data.BGGGameStats;
+import com.ac.games.data.ReviewState;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.data.StatsSnapshot;
+import com.ac.games.rest.stats.StatsCache;
+
+/**
+ * @author ac010168
+ *
+ */
+public class StatsCacheTest {
+
+  /**
+   * This should test the stats cache counters in the following order:
+   * <ol>
+   * <li>Compute the BGG stats, and validate nothing has changed since</li>
+   * <li>Report inserts, a delete and review transitions, and validate the counts and net changes</li>
+   * <li>Run two forced recomputes at once, with inserts landing during the first read, and validate
+   * each change is taken away once, so the counts end at zero rather than below it</li></ol>
+   */
+  @Test
+  public void testStatsCache() throws Exception {
+    System.out.println ("===  Compute Stats  ===");
+    final GamesDatabase database = mock(GamesDatabase.class);
+    final BGGGameStats stats = mock(BGGGameStats.class);
+    final CountDownLatch readStarted = new CountDownLatch(1);
+    final CountDownLatch finishRead  = new CountDownLatch(1);
+    final AtomicInteger reads = new AtomicInteger();
+    when(database.readBGGGameStats()).thenAnswer(new Answer<BGGGameStats>() {
+      public BGGGameStats answer(InvocationOnMock invocation) throws Throwable {
+        //The second read is the first of the concurrent recomputes; hold it until the inserts land
+        if (reads.incrementAndGet() == 2) {
+          readStarted.countDown();
+          finishRead.await(10, TimeUnit.SECONDS);
+        }
+        return stats;
+      }
+    });
+    final StatsCache cache = new StatsCache();
+    try {
+      StatsSnapshot snapshot = cache.getStats(database, BGGGameStats.BGG_GAME_STATS, -1, false);
+      assertEquals(stats, snapshot.getStats());
+      assertEquals(0L, snapshot.getInsertCount());
+
+      System.out.println ("===  Report Changes  ===");
+      for (int i = 0; i < 3; i++) cache.recordInsert(BGGGameStats.BGG_GAME_STATS);
+      cache.recordDelete(BGGGameStats.BGG_GAME_STATS);
+      cache.recordReviewTransition(BGGGameStats.BGG_GAME_STATS, ReviewState.REVIEWED);
+      cache.recordReviewTransition(BGGGameStats.BGG_GAME_STATS, ReviewState.REVIEWED);
+      cache.recordReviewTransition(BGGGameStats.BGG_GAME_STATS, ReviewState.PENDING);
+      snapshot = cache.getStats(database, BGGGameStats.BGG_GAME_STATS, -1, false);
+      assertEquals(3L, snapshot.getInsertCount());
+      assertEquals(1L, snapshot.getDeleteCount());
+      assertEquals(2L, snapshot.getApproveCount());
+      assertEquals(1L, snapshot.getResetCount());
+      assertEquals(2L, snapshot.getRecordCountChange());
+      assertEquals(-1L, snapshot.getPendingCountChange());
+      assertTrue(snapshot.isStale());
+
+      System.out.println ("===  Concurrent Recomputes  ===");
+      final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+      Runnable refresh = new Runnable() {
+        public void run() {
+          try {
+            cache.getStats(database, BGGGameStats.BGG_GAME_STATS, -1, true);
+          } catch (Exception e) {
+            failure.set(e);
+          }
+        }
+      };
+      Thread first = new Thread(refresh);
+      first.start();
+      assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+      cache.recordInsert(BGGGameStats.BGG_GAME_STATS);
+      cache.recordInsert(BGGGameStats.BGG_GAME_STATS);
+      Thread second = new Thread(refresh);
+      second.start();
+      //Give the second recompute time to reach the first one's read
+      Thread.sleep(100);
+      finishRead.countDown();
+      first.join(10000);
+      second.join(10000);
+      assertNull(failure.get());
+
+      snapshot = cache.getStats(database, BGGGameStats.BGG_GAME_STATS, -1, false);
+      assertEquals(0L, snapshot.getInsertCount());
+      assertEquals(0L, snapshot.getDeleteCount());
+      assertEquals(0L, snapshot.getApproveCount());
+      assertEquals(0L, snapshot.getRecordCountChange());
+      assertEquals(3, reads.get());
+    } finally {
+      cache.stopRefresh();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ac.games.rest.data.NameMatch;
+import com.ac.games.rest.index.TrigramIndex;
+
+/**
+ * @author ac010168
+ *
+ */
+public class TrigramIndexTest {
+
+  /**
+   * This should test the basic functions of the index in the following order:
+   * <ol>
+   * <li>Load a handful of BGG style display values</li>
+   * <li>Search with a misspelled name and validate the best match</li>
+   * <li>Remove the best match and validate it no longer comes back</li>
+   * <li>Validate the result limit is honored</li></ol>
+   */
+  @Test
+  public void testTrigramIndex() {
+    System.out.println ("===  Generate Mock Data  ===");
+    List<String> values = new ArrayList<String>();
+    values.add("Twilight Imperium (12493 - 2005)");
+    values.add("Twilight Imperium: Shattered Empire (19011 - 2006)");
+    values.add("Twilight Struggle (12333 - 2005)");
+    values.add("Abyss (155987 - 2014)");
+    values.add("Agricola (31260 - 2007)");
+
+    TrigramIndex index = new TrigramIndex("bgg");
+    index.addAll(values);
+    assertEquals(5, index.size());
+
+    System.out.println ("===  Search with a misspelled name  ===");
+    List<NameMatch> matches = index.search("Twilght Imperium", 10, TrigramIndex.DEFAULT_MIN_SCORE);
+    assertTrue(matches.size() > 0);
+    assertEquals("Twilight Imperium (12493 - 2005)", matches.get(0).getValue());
+    assertEquals("bgg", matches.get(0).getSource());
+
+    System.out.println ("===  Remove the best match  ===");
+    index.remove("Twilight Imperium (12493 - 2005)");
+    assertEquals(4, index.size());
+    matches = index.search("Twilght Imperium", 10, TrigramIndex.DEFAULT_MIN_SCORE);
+    for (NameMatch match : matches)
+      assertTrue(!match.getValue().equals("Twilight Imperium (12493 - 2005)"));
+
+    System.out.println ("===  Validate the limit  ===");
+    matches = index.search("Twilight", 1, 0.0);
+    assertEquals(1, matches.size());
+  }
+}
@@ -0,0 +1,90 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ac.games.data.Game;
+import com.ac.games.data.GameReltn;
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.database.InMemoryGamesDatabase;
+import com.ac.games.rest.link.VendorLinkIndex;
+
+/**
+ * @author ac010168
+ *
+ */
+public class VendorLinkIndexTest {
+
+  /**
+   * This should test the vendor link index in the following order:
+   * <ol>
+   * <li>Insert two Games, one GameReltn straight into the database and one through the index</li>
+   * <li>Validate the listing lookups know the indexed game, and not yet the other one</li>
+   * <li>Load the index, and validate the lookups are complete</li>
+   * <li>Move a CSI listing from one game to the other through updates, and validate both directions</li>
+   * <li>Delete a GameReltn through the index, and validate its listings are gone</li></ol>
+   */
+  @Test
+  public void testVendorLinkIndex() throws Exception {
+    System.out.println ("===  Insert Records  ===");
+    GamesDatabase database = new InMemoryGamesDatabase(null).asDatabase();
+    for (long gameID = 1; gameID <= 2; gameID++) {
+      Game game = new Game();
+      game.setGameID(gameID);
+      game.setName("Game " + gameID);
+      database.insertGame(game);
+    }
+    VendorLinkIndex index = new VendorLinkIndex();
+    database.insertGameReltn(buildReltn(1, 10, new Long[] { 100L, 101L }, new Long[] { 500L }, "B00KU10PH2"));
+    index.insert(database, buildReltn(2, 20, new Long[] { 200L }, new Long[0], null));
+
+    System.out.println ("===  Validate Lookups  ===");
+    assertEquals(2L, index.getGameForCSI(200));
+    assertEquals(-1L, index.getGameForCSI(100));
+    assertFalse(index.isComplete());
+    assertEquals(Arrays.asList(100L, 101L), index.getLinks(database, 1).getCsiIDs());
+    assertEquals(1L, index.getGameForCSI(100));
+    assertEquals(1L, index.getGameForMM(500));
+    assertEquals(1L, index.getGameForASIN("B00KU10PH2"));
+
+    System.out.println ("===  Load Index  ===");
+    index.clear();
+    assertEquals(2, index.load(database, System.currentTimeMillis() + 10000L));
+    assertTrue(index.isComplete());
+    assertEquals(1L, index.getGameForCSI(101));
+
+    System.out.println ("===  Move Listing  ===");
+    index.update(database, buildReltn(1, 10, new Long[] { 100L }, new Long[] { 500L }, "B00KU10PH2"));
+    index.update(database, buildReltn(2, 20, new Long[] { 200L, 101L }, new Long[0], null));
+    assertEquals(2L, index.getGameForCSI(101));
+    assertEquals(1L, index.getGameForCSI(100));
+    assertEquals(Arrays.asList(100L), index.getLinks(database, 1).getCsiIDs());
+    assertEquals(Arrays.asList(200L, 101L), database.readGameReltn(2).getCsiIDs());
+
+    System.out.println ("===  Delete Relation  ===");
+    index.delete(database, 10);
+    assertEquals(-1L, index.getGameForCSI(100));
+    assertEquals(-1L, index.getGameForMM(500));
+    assertEquals(-1L, index.getGameForASIN("B00KU10PH2"));
+    assertNull(index.getLinks(database, 1));
+    assertEquals(2L, index.getGameForCSI(101));
+  }
+
+  private static GameReltn buildReltn(long gameID, long reltnID, Long[] csiIDs, Long[] mmIDs, String asin) {
+    GameReltn reltn = new GameReltn();
+    reltn.setGameID(gameID);
+    reltn.setReltnID(reltnID);
+    reltn.setCsiIDs(new ArrayList<Long>(Arrays.asList(csiIDs)));
+    reltn.setMmIDs(new ArrayList<Long>(Arrays.asList(mmIDs)));
+    reltn.setAsinKeys(new ArrayList<String>());
+    if (asin != null) reltn.getAsinKeys().add(asin);
+    return reltn;
+  }
+}
@@ -0,0 +1,144 @@
+package com.ac.games.rest.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.ac.games.db.GamesDatabase;
+import com.ac.games.rest.writebehind.WriteBehindQueue;
+import com.ac.games.rest.writebehind.WriteBehindTask;
+
+/**
+ * @author ac010168
+ *
+ */
+public class WriteBehindQueueTest {
+
+  /**
+   * This should test the queue functions in the following order:
+   * <ol>
+   * <li>Queue several writes against a handful of keys</li>
+   * <li>Flush and validate only the newest write per key was run</li>
+   * <li>Queue a write that always fails, and validate it is retried and then counted as failed</li>
+   * <li>Drain the queue and validate new writes are dropped</li></ol>
+   */
+  @Test
+  public void testWriteBehindQueue() {
+    GamesDatabase database = mock(GamesDatabase.class);
+    WriteBehindQueue queue = new WriteBehindQueue();
+    final List<String> written = new ArrayList<String>();
+
+    System.out.println ("===  Queue Coalescing Writes  ===");
+    for (int i = 0; i < 30; i++)
+      queue.enqueue(new MockTask("key" + (i % 3), "value" + i, written, false), database);
+    assertEquals(3, queue.getQueueDepth());
+
+    System.out.println ("===  Flush Queue  ===");
+    queue.flush();
+    assertEquals(0, queue.getQueueDepth());
+    assertEquals(3, written.size());
+    assertEquals(true, written.contains("value27"));
+    assertEquals(true, written.contains("value28"));
+    assertEquals(true, written.contains("value29"));
+
+    System.out.println ("===  Queue Failing Write  ===");
+    queue.enqueue(new MockTask("bad", "bad", written, true), database);
+    for (int i = 0; i < WriteBehindQueue.MAX_ATTEMPTS; i++)
+      queue.flush();
+    Map<String, Object> metrics = queue.getMetrics();
+    assertEquals(1L, metrics.get("failed"));
+    assertEquals((long)(WriteBehindQueue.MAX_ATTEMPTS - 1), metrics.get("retried"));
+
+    System.out.println ("===  Drain Queue  ===");
+    queue.drain(1000);
+    assertEquals(false, queue.enqueue(new MockTask("late", "late", written, false), database));
+    assertEquals(1L, queue.getMetrics().get("dropped"));
+  }
+
+  /**
+   * This should test flushing a single key in the following order:
+   * <ol>
+   * <li>Queue a write that blocks, and start a flush that runs it</li>
+   * <li>Call flushKey for the same key while that write is running, and validate it waits</li>
+   * <li>Let the write finish, and validate flushKey returns after it</li></ol>
+   */
+  @Test
+  public void testFlushKeyWaitsForRunningWrite() throws Exception {
+    GamesDatabase database = mock(GamesDatabase.class);
+    final WriteBehindQueue queue = new WriteBehindQueue();
+    final List<String> written = new ArrayList<String>();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    System.out.println ("===  Start Running Write  ===");
+    queue.enqueue(new MockTask("user:1", "slow", written, false) {
+      public void write(GamesDatabase database) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+        super.write(database);
+      }
+    }, database);
+    Thread flusher = new Thread(new Runnable() {
+      public void run() {
+        queue.flush();
+      }
+    });
+    flusher.start();
+    assertEquals(true, started.await(5, TimeUnit.SECONDS));
+    assertEquals(0, queue.getQueueDepth());
+
+    System.out.println ("===  Flush Key While Running  ===");
+    final AtomicBoolean returned = new AtomicBoolean(false);
+    Thread keyFlusher = new Thread(new Runnable() {
+      public void run() {
+        queue.flushKey("user:1");
+        returned.set(true);
+      }
+    });
+    keyFlusher.start();
+    Thread.sleep(200);
+    assertEquals(false, returned.get());
+
+    System.out.println ("===  Finish Write  ===");
+    release.countDown();
+    keyFlusher.join(5000);
+    flusher.join(5000);
+    assertEquals(true, returned.get());
+    assertEquals(true, written.contains("slow"));
+  }
+
+  private static class MockTask implements WriteBehindTask {
+    private final String key;
+    private final String value;
+    private final List<String> written;
+    private final boolean fail;
+
+    MockTask(String key, String value, List<String> written, boolean fail) {
+      this.key     = key;
+      this.value   = value;
+      this.written = written;
+      this.fail    = fail;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public void write(GamesDatabase database) {
+      if (fail) throw new IllegalStateException("Mock write failure");
+      written.add(value);
+    }
+  }
+}